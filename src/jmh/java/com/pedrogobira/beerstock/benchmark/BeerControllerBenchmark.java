@@ -0,0 +1,152 @@
+package com.pedrogobira.beerstock.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.enums.StockMovementMode;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.ConfigurableWebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * Full MockMvc round trips through the filters, controller, service and the embedded H2 database for each
+ * {@code BeerController} endpoint, except the never-ending stock event stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BeerControllerBenchmark {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+    private static final int CATALOG_SIZE = 1000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong created = new AtomicLong();
+    private ConfigurableWebApplicationContext context;
+    private MockMvc mockMvc;
+    private BeerRepository repository;
+    private Beer stockBeer;
+    private byte[] quantity;
+    private byte[] excessiveQuantity;
+    private byte[] movements;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = (ConfigurableWebApplicationContext) BenchmarkApplication.start(WebApplicationType.SERVLET);
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+        repository = context.getBean(BeerRepository.class);
+
+        BeerType[] types = BeerType.values();
+        List<Beer> catalog = new ArrayList<>();
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            catalog.add(new Beer(null, "Beer " + i, "Brand " + i % 20, 100, i % 100, 0, types[i % types.length], null));
+        }
+        repository.saveAll(catalog);
+        stockBeer = repository.save(new Beer(null, "Stock", "Benchmark", 500, 50, 0, BeerType.LAGER, null));
+
+        quantity = objectMapper.writeValueAsBytes(new QuantityDto(1));
+        excessiveQuantity = objectMapper.writeValueAsBytes(new QuantityDto(100));
+        movements = objectMapper.writeValueAsBytes(new StockMovementsDto(Arrays.asList(
+                new StockMovementDto(stockBeer.getId(), 1),
+                new StockMovementDto(stockBeer.getId(), -1)), StockMovementMode.ALL_OR_NOTHING));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int findByName() throws Exception {
+        return status(mockMvc.perform(get(BEER_API_URL_PATH + "/Beer 42")).andReturn());
+    }
+
+    @Benchmark
+    public int findAllPage() throws Exception {
+        return status(mockMvc.perform(get(BEER_API_URL_PATH).param("size", "100")).andReturn());
+    }
+
+    @Benchmark
+    public int search() throws Exception {
+        return status(mockMvc.perform(get(BEER_API_URL_PATH + "/search")
+                .param("type", "IPA")
+                .param("maxFillPercent", "20")).andReturn());
+    }
+
+    @Benchmark
+    public int streamAll() throws Exception {
+        MvcResult result = mockMvc.perform(get(BEER_API_URL_PATH).accept(MediaType.APPLICATION_NDJSON)).andReturn();
+        return status(mockMvc.perform(asyncDispatch(result)).andReturn());
+    }
+
+    @Benchmark
+    public int saveAndDelete() throws Exception {
+        BeerDto dto = new BeerDto(null, "Created " + created.incrementAndGet(), "Benchmark", 50, 10, BeerType.ALE);
+        MockHttpServletResponse response = mockMvc.perform(post(BEER_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(dto))).andReturn().getResponse();
+        Long id = objectMapper.readValue(response.getContentAsByteArray(), BeerDto.class).getId();
+        return status(mockMvc.perform(delete(BEER_API_URL_PATH + "/" + id)).andReturn());
+    }
+
+    @Benchmark
+    public int fullUpdate() throws Exception {
+        BeerDto dto = new BeerDto(null, "Stock", "Benchmark " + created.incrementAndGet() % 2, 500, 50, BeerType.LAGER);
+        return status(mockMvc.perform(put(BEER_API_URL_PATH + "/" + stockBeer.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(dto))).andReturn());
+    }
+
+    @Benchmark
+    public int incrementAndDecrement() throws Exception {
+        mockMvc.perform(patch(BEER_API_URL_PATH + "/" + stockBeer.getId() + "/increment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(quantity)).andReturn();
+        return status(mockMvc.perform(patch(BEER_API_URL_PATH + "/" + stockBeer.getId() + "/decrement")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(quantity)).andReturn());
+    }
+
+    @Benchmark
+    public int rejectedDecrement() throws Exception {
+        int status = mockMvc.perform(patch(BEER_API_URL_PATH + "/" + stockBeer.getId() + "/decrement")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(excessiveQuantity)).andReturn().getResponse().getStatus();
+        if (status != 422) throw new IllegalStateException("Unexpected status " + status);
+        return status;
+    }
+
+    @Benchmark
+    public int stockMovements() throws Exception {
+        return status(mockMvc.perform(post(BEER_API_URL_PATH + "/stock-movements")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(movements)).andReturn());
+    }
+
+    private static int status(MvcResult result) {
+        int status = result.getResponse().getStatus();
+        if (status >= 400) throw new IllegalStateException("Unexpected status " + status);
+        return status;
+    }
+}
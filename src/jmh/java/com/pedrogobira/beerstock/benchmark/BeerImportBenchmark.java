@@ -0,0 +1,97 @@
+package com.pedrogobira.beerstock.benchmark;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerImportErrorDto;
+import com.pedrogobira.beerstock.dto.BeerImportProgressDto;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.repository.StockMovementRepository;
+import com.pedrogobira.beerstock.service.BeerCsv;
+import com.pedrogobira.beerstock.service.BeerImportReader;
+import com.pedrogobira.beerstock.service.BeerImportService;
+import com.pedrogobira.beerstock.service.BeerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads 10,000 beers into H2: one {@link BeerService#save} per beer, as through {@code POST /api/v1/beers}, against
+ * a CSV import, which checks their names a chunk at a time and inserts them in JDBC batches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BeerImportBenchmark {
+
+    private static final int BEERS = 10_000;
+
+    @Param({"save", "import"})
+    private String path;
+
+    private ConfigurableApplicationContext context;
+    private BeerService service;
+    private BeerImportService importService;
+    private BeerRepository repository;
+    private StockMovementRepository movementRepository;
+    private String csv;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start(WebApplicationType.SERVLET);
+        service = context.getBean(BeerService.class);
+        importService = context.getBean(BeerImportService.class);
+        repository = context.getBean(BeerRepository.class);
+        movementRepository = context.getBean(StockMovementRepository.class);
+        StringBuilder text = new StringBuilder(BeerCsv.header());
+        for (int i = 0; i < BEERS; i++) {
+            text.append(BeerCsv.format(beer(i)));
+        }
+        csv = text.toString();
+    }
+
+    @Setup(Level.Iteration)
+    public void empty() {
+        repository.deleteAllInBatch();
+        movementRepository.deleteAllInBatch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long load() throws IOException {
+        if (path.equals("save")) {
+            for (int i = 0; i < BEERS; i++) {
+                BeerDto beer = beer(i);
+                beer.setId(null);
+                service.save(beer);
+            }
+            return BEERS;
+        }
+        BeerImportReader reader = BeerImportReader.csv(new BufferedReader(new StringReader(csv)));
+        return importService.importBeers(reader, new BeerImportService.Listener() {
+            @Override
+            public void rejected(BeerImportErrorDto error) {
+                throw new IllegalStateException(error.getError());
+            }
+
+            @Override
+            public void progress(BeerImportProgressDto progress) {
+            }
+        }).getImported();
+    }
+
+    private static BeerDto beer(int i) {
+        return new BeerDto(i + 1L, "Benchmark-" + i, "Benchmark", 100, 10, BeerType.LAGER);
+    }
+}
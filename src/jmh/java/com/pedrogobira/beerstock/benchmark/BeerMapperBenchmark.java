@@ -0,0 +1,38 @@
+package com.pedrogobira.beerstock.benchmark;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.mapper.BeerMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BeerMapperBenchmark {
+
+    private final BeerMapper mapper = BeerMapper.INSTANCE;
+    private Beer beer;
+    private BeerDto dto;
+
+    @Setup
+    public void setUp() {
+        beer = new Beer(1L, "Brahma", "Ambev", 50, 10, 0, BeerType.LAGER, 0L);
+        dto = new BeerDto(1L, "Brahma", "Ambev", 50, 10, BeerType.LAGER);
+    }
+
+    @Benchmark
+    public BeerDto toDto() {
+        return mapper.toDto(beer);
+    }
+
+    @Benchmark
+    public Beer toEntity() {
+        return mapper.toEntity(dto);
+    }
+}
@@ -0,0 +1,77 @@
+package com.pedrogobira.beerstock.benchmark;
+
+import com.pedrogobira.beerstock.service.TrigramIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suggestion queries on a {@link TrigramIndex} of a million beers, named from random syllables over 200 brands: a
+ * name typed in full, with a typo, its first letters, and a brand, which matches 5000 beers. The footprint of the
+ * index is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BeerSearchBenchmark {
+
+    private static final int BEERS = 1_000_000;
+    private static final int BRANDS = 200;
+    private static final double MIN_SCORE = 0.5;
+    private static final String[] SYLLABLES = {"ba", "ber", "bra", "co", "da", "den", "ei", "fa", "gol", "ha", "in",
+            "ka", "ken", "la", "ma", "ne", "no", "pa", "ra", "sa", "skol", "ta", "to", "ur", "va", "ze"};
+
+    @Param({"exact", "typo", "prefix", "brand"})
+    private String query;
+
+    private TrigramIndex index;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] brands = new String[BRANDS];
+        for (int brand = 0; brand < BRANDS; brand++) {
+            brands[brand] = word(random, 3) + " " + word(random, 2);
+        }
+        index = new TrigramIndex();
+        String name = null;
+        for (long id = 1; id <= BEERS; id++) {
+            name = word(random, 3) + " " + word(random, 2 + random.nextInt(2));
+            index.put(id, name, brands[(int) (id % BRANDS)]);
+        }
+        switch (query) {
+            case "exact":
+                text = name;
+                break;
+            case "typo":
+                text = name.substring(0, 2) + name.charAt(3) + name.charAt(2) + name.substring(4);
+                break;
+            case "prefix":
+                text = name.substring(0, Math.min(6, name.length()));
+                break;
+            default:
+                text = brands[7];
+        }
+        System.out.printf("%nIndex of %s%n", index.footprint());
+    }
+
+    @Benchmark
+    public List<TrigramIndex.Match> suggest() {
+        return index.search(text, 10, MIN_SCORE);
+    }
+
+    private static String word(Random random, int syllables) {
+        StringBuilder word = new StringBuilder();
+        for (int syllable = 0; syllable < syllables; syllable++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+}
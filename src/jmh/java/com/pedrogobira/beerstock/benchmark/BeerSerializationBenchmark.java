@@ -0,0 +1,66 @@
+package com.pedrogobira.beerstock.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pedrogobira.beerstock.config.WireFormatConfig;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.enums.BeerType;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding in each wire format, with the mappers the controllers use, of a single beer for size 1, as
+ * served by a lookup by name, and of a list of beers otherwise, as served by a page. The payload size of each
+ * combination is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BeerSerializationBenchmark {
+
+    private static final TypeReference<List<BeerDto>> BEER_LIST = new TypeReference<>() {
+    };
+
+    @Param({"1", "100", "1000"})
+    private int size;
+
+    @Param({"json", "smile"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private Object payload;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = "smile".equals(format)
+                ? WireFormatConfig.smileMapper(Jackson2ObjectMapperBuilder.json())
+                : Jackson2ObjectMapperBuilder.json().build();
+        BeerType[] types = BeerType.values();
+        List<BeerDto> beers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            beers.add(new BeerDto((long) i, "Beer " + i, "Brand " + i % 20, 100, i % 100, types[i % types.length]));
+        }
+        payload = size == 1 ? beers.get(0) : beers;
+        encoded = objectMapper.writeValueAsBytes(payload);
+        System.out.printf("%n%s payload of %d beer(s): %d bytes%n", format, size, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException {
+        return size == 1 ? objectMapper.readValue(encoded, BeerDto.class) : objectMapper.readValue(encoded, BEER_LIST);
+    }
+}
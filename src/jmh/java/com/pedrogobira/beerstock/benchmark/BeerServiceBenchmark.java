@@ -0,0 +1,68 @@
+package com.pedrogobira.beerstock.benchmark;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.service.BeerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BeerService#increment} against the embedded H2 database, with the default stock mode unless
+ * {@code -p mode=...} picks another one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BeerServiceBenchmark {
+
+    @Param({"atomic", "optimistic", "partitioned"})
+    private String mode;
+
+    private final QuantityDto one = new QuantityDto(1);
+    private ConfigurableApplicationContext context;
+    private BeerService service;
+    private BeerRepository repository;
+    private Long id;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start(WebApplicationType.NONE, "application.stock.mode=" + mode,
+                "application.stock.retry.max-attempts=1000");
+        service = context.getBean(BeerService.class);
+        repository = context.getBean(BeerRepository.class);
+        // saved through the repository so max isn't capped by the DTO validation
+        id = repository.save(new Beer(null, "Benchmark", "Benchmark", Integer.MAX_VALUE, 0, 0, BeerType.LAGER, null)).getId();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetQuantity() {
+        Beer beer = repository.findById(id).orElseThrow();
+        beer.setQuantity(0);
+        repository.save(beer);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BeerDto increment() {
+        return service.increment(id, one);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BeerDto incrementContended() {
+        return service.increment(id, one);
+    }
+}
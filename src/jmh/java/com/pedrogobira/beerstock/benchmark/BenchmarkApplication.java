@@ -0,0 +1,26 @@
+package com.pedrogobira.beerstock.benchmark;
+
+import com.pedrogobira.beerstock.BeerStockApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application inside a benchmark fork, on an in-memory database of its own.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return new SpringApplicationBuilder(BeerStockApplication.class)
+                .web(webApplicationType)
+                .properties("server.port=0", "logging.level.root=warn",
+                        // its database shutdown on close fails once the H2 shutdown hook has run
+                        "spring.autoconfigure.exclude=org.springframework.boot.devtools.autoconfigure.DevToolsDataSourceAutoConfiguration")
+                .properties(properties)
+                .run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.pedrogobira.beerstock.benchmark;
+
+import com.pedrogobira.beerstock.exception.ExceptionResponse;
+import com.pedrogobira.beerstock.exception.ExceptionsHandler;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The rejection path of a decrement below zero, from the throw in the stock updater to the response built by
+ * {@link ExceptionsHandler}, thrown {@code depth} frames down to stand in for the Spring call stack. {@code legacy}
+ * is what it cost before the exceptions became stackless: a full stack trace and a new response body each time.
+ * Run with {@code -prof gc} (the benchmark profile does) to compare the bytes allocated per rejection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RejectionBenchmark {
+
+    @Param({"20", "100"})
+    private int depth;
+
+    private MeterRegistry meterRegistry;
+    private ExceptionsHandler handler;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        handler = new ExceptionsHandler(meterRegistry);
+        request = new MockHttpServletRequest("PATCH", "/api/v1/beers/1/decrement");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/beers/{id}/decrement");
+    }
+
+    @Benchmark
+    public ResponseEntity<ExceptionResponse> legacy() {
+        try {
+            throwAt(depth, Kind.LEGACY);
+            throw new IllegalStateException();
+        } catch (LegacyNegativeStockException e) {
+            meterRegistry.counter(ExceptionsHandler.EXCEPTIONS_COUNTER, "exception", "NegativeStockException",
+                    "method", request.getMethod(), "uri", "/api/v1/beers/{id}/decrement").increment();
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(new ExceptionResponse(e.getMessage()));
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<ExceptionResponse> stackless() {
+        try {
+            throwAt(depth, Kind.STACKLESS);
+            throw new IllegalStateException();
+        } catch (NegativeStockException e) {
+            return handler.handleException(e, request);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<ExceptionResponse> preallocated() {
+        try {
+            throwAt(depth, Kind.PREALLOCATED);
+            throw new IllegalStateException();
+        } catch (NegativeStockException e) {
+            return handler.handleException(e, request);
+        }
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private static void throwAt(int depth, Kind kind) {
+        if (depth > 0) {
+            throwAt(depth - 1, kind);
+            return;
+        }
+        switch (kind) {
+            case LEGACY:
+                throw new LegacyNegativeStockException();
+            case STACKLESS:
+                throw new NegativeStockException();
+            default:
+                throw NegativeStockException.INSTANCE;
+        }
+    }
+
+    private enum Kind {
+        LEGACY, STACKLESS, PREALLOCATED
+    }
+
+    /**
+     * {@code NegativeStockException} as it was, with a stack trace filled in on construction.
+     */
+    private static final class LegacyNegativeStockException extends RuntimeException {
+
+        private LegacyNegativeStockException() {
+            super("Stock quantity can't be negative");
+        }
+    }
+}
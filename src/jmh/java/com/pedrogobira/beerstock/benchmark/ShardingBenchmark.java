@@ -0,0 +1,70 @@
+package com.pedrogobira.beerstock.benchmark;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerPageDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.service.BeerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BeerService} throughput with the beers spread over {@code shards} in-memory H2 databases, by brand: stock
+ * increments on random beers, which each go to one shard, and first pages, which gather from all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+public class ShardingBenchmark {
+
+    private static final int BEERS = 64;
+
+    @Param({"1", "4"})
+    private int shards;
+
+    private final QuantityDto one = new QuantityDto(1);
+    private ConfigurableApplicationContext context;
+    private BeerService service;
+    private long[] ids;
+
+    @Setup
+    public void setUp() {
+        List<String> properties = new ArrayList<>();
+        properties.add("application.sharding.enabled=true");
+        properties.add("spring.jpa.hibernate.ddl-auto=create-drop");
+        for (int shard = 0; shard < shards; shard++) {
+            properties.add("application.sharding.shards[" + shard + "].url=jdbc:h2:mem:benchmark-shard" + shard + ";DB_CLOSE_DELAY=-1");
+        }
+        context = BenchmarkApplication.start(WebApplicationType.NONE, properties.toArray(new String[0]));
+        service = context.getBean(BeerService.class);
+        ids = new long[BEERS];
+        for (int i = 0; i < BEERS; i++) {
+            ids[i] = service.save(new BeerDto(null, "Benchmark-" + i, "Brand-" + i, Integer.MAX_VALUE, 0, BeerType.LAGER)).getId();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BeerDto increment() {
+        return service.increment(ids[ThreadLocalRandom.current().nextInt(BEERS)], one);
+    }
+
+    @Benchmark
+    public BeerPageDto findPage() {
+        return service.findAll(null, 20);
+    }
+}
@@ -0,0 +1,86 @@
+package com.pedrogobira.beerstock.benchmark;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.service.BeerService;
+import com.pedrogobira.beerstock.service.PartitionedStockUpdater;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BeerService#increment} from 32 threads on 1000 beers picked with a Zipfian distribution of exponent
+ * {@code skew}, where 0 is uniform and the higher it is, the more the few hottest beers get: the default atomic
+ * stock mode, where the increments of a hot beer queue on its row lock, against the partitioned one. Setup prints
+ * the hottest beer's share of the increments, and the partitioned mode prints how many increments a write merged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+public class SkewedStockBenchmark {
+
+    private static final int BEERS = 1000;
+
+    @Param({"atomic", "partitioned"})
+    private String mode;
+
+    @Param({"0", "0.99", "1.2"})
+    private double skew;
+
+    private final QuantityDto one = new QuantityDto(1);
+    private ConfigurableApplicationContext context;
+    private BeerService service;
+    private long[] ids;
+    private double[] cumulative;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start(WebApplicationType.NONE, "application.stock.mode=" + mode);
+        service = context.getBean(BeerService.class);
+        BeerRepository repository = context.getBean(BeerRepository.class);
+        ids = new long[BEERS];
+        for (int i = 0; i < BEERS; i++) {
+            // saved through the repository so max isn't capped by the DTO validation
+            ids[i] = repository.save(new Beer(null, "Benchmark-" + i, "Benchmark", Integer.MAX_VALUE, 0, 0, BeerType.LAGER, null)).getId();
+        }
+        cumulative = new double[BEERS];
+        double total = 0;
+        for (int rank = 0; rank < BEERS; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < BEERS; rank++) {
+            cumulative[rank] /= total;
+        }
+        System.out.printf("%nThe hottest beer gets %.1f%% of the increments%n", cumulative[0] * 100);
+    }
+
+    @TearDown
+    public void tearDown() {
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        double writes = meterRegistry.counter(PartitionedStockUpdater.WRITES_COUNTER).count();
+        if (writes > 0) {
+            System.out.printf("%n%.1f increments per write%n",
+                    meterRegistry.counter(PartitionedStockUpdater.MUTATIONS_COUNTER).count() / writes);
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public BeerDto increment() {
+        int rank = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return service.increment(ids[Math.min(rank < 0 ? -rank - 1 : rank, BEERS - 1)], one);
+    }
+}
@@ -3,7 +3,17 @@ package com.pedrogobira.beerstock;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-@SpringBootApplication
+/**
+ * Spring Boot's R2DBC auto-configuration is left out whatever the profile: it is only on the class path of a build
+ * with the {@code reactive} Maven profile, whose stack sets up R2DBC itself, see
+ * {@code com.pedrogobira.beerstock.config.R2dbcConfig}.
+ */
+@SpringBootApplication(excludeName = {
+		"org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration",
+		"org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration",
+		"org.springframework.boot.autoconfigure.data.r2dbc.R2dbcDataAutoConfiguration",
+		"org.springframework.boot.autoconfigure.data.r2dbc.R2dbcRepositoriesAutoConfiguration"
+})
 public class BeerStockApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,72 @@
+package com.pedrogobira.beerstock.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.actuate.metrics.cache.CaffeineCacheMeterBinderProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The caches are Caffeine caches bounded by the {@code spring.cache.caffeine.spec} size and TTL, and their hit, miss
+ * and eviction counts are published as {@code cache.*} metrics. Cached {@code BeerDto}s are shared snapshots and
+ * must not be modified. The cache advice runs before the transaction advice, so a hit doesn't open a transaction.
+ * <p>
+ * Every cache is wrapped in a {@link GenerationCheckedCache}, so a slow miss can't put back a row evicted while it
+ * was read.
+ */
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    public static final String BEERS_BY_NAME = "beers-by-name";
+
+    @Bean
+    static BeanPostProcessor generationCheckedCaches() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof CacheManager ? new GenerationCheckedCacheManager((CacheManager) bean) : bean;
+            }
+        };
+    }
+
+    @Bean
+    CacheMeterBinderProvider<GenerationCheckedCache> generationCheckedCacheMeterBinderProvider() {
+        CaffeineCacheMeterBinderProvider caffeine = new CaffeineCacheMeterBinderProvider();
+        return (cache, tags) -> cache.getTarget() instanceof CaffeineCache
+                ? caffeine.getMeterBinder((CaffeineCache) cache.getTarget(), tags)
+                : null;
+    }
+
+    private static final class GenerationCheckedCacheManager implements CacheManager {
+
+        private final CacheManager target;
+        private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+        private GenerationCheckedCacheManager(CacheManager target) {
+            this.target = target;
+        }
+
+        @Override
+        public Cache getCache(String name) {
+            Cache cache = caches.get(name);
+            if (cache != null) return cache;
+            Cache created = target.getCache(name);
+            return created == null ? null : caches.computeIfAbsent(name, key -> new GenerationCheckedCache(created));
+        }
+
+        @Override
+        public Collection<String> getCacheNames() {
+            return target.getCacheNames();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.pedrogobira.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.coalescing")
+public class CoalescingProperties {
+
+    /**
+     * Lets concurrent identical reads share one call to {@code BeerService}; off, every request makes its own.
+     */
+    private boolean enabled = true;
+}
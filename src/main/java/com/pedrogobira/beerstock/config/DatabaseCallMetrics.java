@@ -0,0 +1,61 @@
+package com.pedrogobira.beerstock.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Counts the SQL statements Hibernate prepares while a request is handled and records them in the
+ * {@code beer.db.statements} summary, tagged with the method and uri template like {@code http.server.requests}.
+ * <p>
+ * The count is kept per thread, so statements run by other threads (stock counter flushes, the ledger jobs, the body
+ * of a streaming response) are not attributed to the request. Nor are the JDBC batches sent through
+ * {@code JdbcTemplate}, which bypass Hibernate.
+ */
+public class DatabaseCallMetrics implements StatementInspector, AsyncHandlerInterceptor {
+
+    public static final String STATEMENTS_SUMMARY = "beer.db.statements";
+
+    private static final ThreadLocal<int[]> STATEMENTS = new ThreadLocal<>();
+
+    private final transient MeterRegistry meterRegistry;
+
+    public DatabaseCallMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] statements = STATEMENTS.get();
+        if (statements != null) statements[0]++;
+        return sql;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        STATEMENTS.set(new int[1]);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        STATEMENTS.remove();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        int[] statements = STATEMENTS.get();
+        STATEMENTS.remove();
+        if (statements == null) return;
+        DistributionSummary.builder(STATEMENTS_SUMMARY)
+                .description("SQL statements prepared by Hibernate per request")
+                .baseUnit("statements")
+                .tags("method", request.getMethod(), "uri", MetricsConfig.uri(request))
+                .register(meterRegistry)
+                .record(statements[0]);
+    }
+}
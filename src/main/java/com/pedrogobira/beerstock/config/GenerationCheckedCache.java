@@ -0,0 +1,150 @@
+package com.pedrogobira.beerstock.config;
+
+import org.springframework.cache.Cache;
+import org.springframework.lang.Nullable;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+/**
+ * A cache-aside {@link Cache} that drops a put when its key was evicted since the thread missed it. A miss that reads
+ * the database before a change commits, and is slower than the eviction after the commit, would otherwise cache the
+ * row the eviction was meant to remove until it expires.
+ * <p>
+ * Evictions bump the generation of the key's stripe, and a miss remembers the generation it saw, one miss per thread
+ * as the cache advice gets and puts on the caller's thread. A put checks and writes under the stripe's lock, which
+ * evictions take too. Keys sharing a stripe only cost each other a put.
+ */
+class GenerationCheckedCache implements Cache {
+
+    private static final int STRIPES = 1024;
+
+    private final Cache target;
+    private final long[] generations = new long[STRIPES];
+    private final Object[] locks = new Object[STRIPES];
+    private final ThreadLocal<Miss> misses = new ThreadLocal<>();
+
+    GenerationCheckedCache(Cache target) {
+        this.target = target;
+        for (int i = 0; i < STRIPES; i++) locks[i] = new Object();
+    }
+
+    Cache getTarget() {
+        return target;
+    }
+
+    @Override
+    public String getName() {
+        return target.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return target.getNativeCache();
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper get(Object key) {
+        int stripe = stripe(key);
+        long generation;
+        synchronized (locks[stripe]) {
+            generation = generations[stripe];
+        }
+        ValueWrapper value = target.get(key);
+        if (value == null) misses.set(new Miss(key, generation));
+        return value;
+    }
+
+    @Override
+    @Nullable
+    public <T> T get(Object key, @Nullable Class<T> type) {
+        return target.get(key, type);
+    }
+
+    @Override
+    @Nullable
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return target.get(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, @Nullable Object value) {
+        int stripe = stripe(key);
+        synchronized (locks[stripe]) {
+            if (unchangedSinceMiss(key, stripe)) target.put(key, value);
+        }
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper putIfAbsent(Object key, @Nullable Object value) {
+        int stripe = stripe(key);
+        synchronized (locks[stripe]) {
+            return unchangedSinceMiss(key, stripe) ? target.putIfAbsent(key, value) : target.get(key);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        int stripe = stripe(key);
+        synchronized (locks[stripe]) {
+            generations[stripe]++;
+            target.evict(key);
+        }
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        int stripe = stripe(key);
+        synchronized (locks[stripe]) {
+            generations[stripe]++;
+            return target.evictIfPresent(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            synchronized (locks[stripe]) {
+                generations[stripe]++;
+            }
+        }
+        target.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            synchronized (locks[stripe]) {
+                generations[stripe]++;
+            }
+        }
+        return target.invalidate();
+    }
+
+    /**
+     * Consumes the thread's miss. A put without one, not coming from a read, is let through.
+     */
+    private boolean unchangedSinceMiss(Object key, int stripe) {
+        Miss miss = misses.get();
+        misses.remove();
+        return miss == null || !Objects.equals(miss.key, key) || miss.generation == generations[stripe];
+    }
+
+    private static int stripe(Object key) {
+        int hash = Objects.hashCode(key);
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    private static final class Miss {
+
+        private final Object key;
+        private final long generation;
+
+        private Miss(Object key, long generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.pedrogobira.beerstock.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The DDL Hibernate runs when it creates the schema, written out to temporary files so it can be replayed on
+ * databases Hibernate doesn't manage: the shards other than 0, or local replicas. The scripts are complete once the
+ * entity manager factory is created, and hold one target's schema at a time.
+ */
+class HibernateSchemaScripts {
+
+    private final Path createScript;
+    private final Path dropScript;
+
+    HibernateSchemaScripts() {
+        try {
+            this.createScript = Files.createTempFile("beer-stock-create-", ".sql");
+            this.dropScript = Files.createTempFile("beer-stock-drop-", ".sql");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    HibernatePropertiesCustomizer customizer() {
+        return hibernate -> {
+            // Hibernate only falls back on ddl-auto when no schema generation action is set, the scripts' included
+            Object ddlAuto = hibernate.get(AvailableSettings.HBM2DDL_AUTO);
+            if (ddlAuto != null) hibernate.putIfAbsent(AvailableSettings.HBM2DDL_DATABASE_ACTION, ddlAuto);
+            hibernate.put(AvailableSettings.HBM2DDL_SCRIPTS_ACTION, "drop-and-create");
+            hibernate.put(AvailableSettings.HBM2DDL_SCRIPTS_CREATE_TARGET, createScript.toString());
+            hibernate.put(AvailableSettings.HBM2DDL_SCRIPTS_DROP_TARGET, dropScript.toString());
+            hibernate.put(AvailableSettings.HBM2DDL_DELIMITER, ";");
+        };
+    }
+
+    /**
+     * Drops what the schema would replace on the target, ignoring what doesn't exist yet, and creates it.
+     */
+    void replay(DataSource target) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new FileSystemResource(dropScript), new FileSystemResource(createScript));
+        populator.setIgnoreFailedDrops(true);
+        DatabasePopulatorUtils.execute(populator, target);
+    }
+
+    void delete() {
+        try {
+            Files.deleteIfExists(createScript);
+            Files.deleteIfExists(dropScript);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.pedrogobira.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * How long the response to an {@code Idempotency-Key} is replayed to duplicates.
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * Responses kept in memory; the least recently used are evicted beyond it.
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * Also stores the responses in the {@code idempotency_record} table, so they survive restarts and memory
+     * evictions and are shared between instances.
+     */
+    private boolean persistent = false;
+
+    /**
+     * How often expired responses are deleted from the table.
+     */
+    private Duration purgeInterval = Duration.ofHours(1);
+}
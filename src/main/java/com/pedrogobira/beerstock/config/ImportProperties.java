@@ -0,0 +1,17 @@
+package com.pedrogobira.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.import")
+public class ImportProperties {
+
+    /**
+     * Rows of an upload checked and inserted together, with one uniqueness query per shard and one transaction per
+     * shard. Memory use grows with it, not with the upload.
+     */
+    private int chunkSize = 1_000;
+}
@@ -0,0 +1,57 @@
+package com.pedrogobira.beerstock.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Service methods annotated with {@code @Timed(MetricsConfig.SERVICE_TIMER)} are timed per class and method, and
+ * every request records how many statements it sent to the database. The histograms, along with the Hibernate
+ * statistics and Hikari pool metrics, are scraped from {@code /actuator/prometheus}.
+ */
+@Configuration
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class MetricsConfig implements WebMvcConfigurer {
+
+    public static final String SERVICE_TIMER = "beer.service";
+
+    private final MeterRegistry meterRegistry;
+
+    @Bean
+    public TimedAspect timedAspect() {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public DatabaseCallMetrics databaseCallMetrics() {
+        return new DatabaseCallMetrics(meterRegistry);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, databaseCallMetrics());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(databaseCallMetrics());
+    }
+
+    /**
+     * @return the uri template the request was mapped to, so metrics aren't tagged once per beer id
+     */
+    public static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "UNKNOWN" : pattern.toString();
+    }
+}
@@ -7,6 +7,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+/**
+ * springdoc scans the controllers for the specification on the first request to {@code /v3/api-docs}, not at
+ * startup, as long as {@code springdoc.pre-loading-enabled} stays off. Under lazy initialization this bean waits for
+ * that request too.
+ */
 @Configuration
 public class OpenApiConfig {
 
@@ -0,0 +1,26 @@
+package com.pedrogobira.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.pagination")
+public class PaginationProperties {
+
+    /**
+     * Page size used when the request doesn't ask for one.
+     */
+    private int defaultSize = 100;
+
+    /**
+     * Largest page a request can ask for; bigger sizes are capped to it.
+     */
+    private int maxSize = 1000;
+
+    public int pageSize(Integer requested) {
+        if (requested == null) return Math.min(defaultSize, maxSize);
+        return Math.max(1, Math.min(requested, maxSize));
+    }
+}
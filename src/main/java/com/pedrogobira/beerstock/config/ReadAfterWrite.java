@@ -0,0 +1,35 @@
+package com.pedrogobira.beerstock.config;
+
+import java.time.Instant;
+
+/**
+ * The time the reads of the current thread must not be older than, usually the time of the client's last write.
+ * Read-only transactions only go to a replica that has caught up with it.
+ */
+public final class ReadAfterWrite {
+
+    private static final ThreadLocal<Instant> REQUIRED = new ThreadLocal<>();
+
+    private ReadAfterWrite() {
+    }
+
+    /**
+     * @return the time to read after, null when any replica within the maximum lag will do
+     */
+    public static Instant required() {
+        return REQUIRED.get();
+    }
+
+    /**
+     * Raises the time to read after; a time before the current one is ignored.
+     */
+    public static void require(Instant time) {
+        if (time == null) return;
+        Instant current = REQUIRED.get();
+        if (current == null || time.isAfter(current)) REQUIRED.set(time);
+    }
+
+    public static void clear() {
+        REQUIRED.remove();
+    }
+}
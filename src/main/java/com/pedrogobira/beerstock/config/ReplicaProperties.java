@@ -0,0 +1,59 @@
+package com.pedrogobira.beerstock.config;
+
+import com.pedrogobira.beerstock.enums.ReplicaSelection;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.replicas")
+public class ReplicaProperties {
+
+    /**
+     * Sends read-only transactions to the {@code datasources} replicas; off, everything uses {@code spring.datasource}.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Read replicas of {@code spring.datasource}, the {@code replication_heartbeat} table included.
+     */
+    private List<Replica> datasources = new ArrayList<>();
+
+    private ReplicaSelection selection = ReplicaSelection.ROUND_ROBIN;
+
+    /**
+     * Replicas further behind the primary get no reads. It is also how long a client's reads avoid the replicas that
+     * haven't caught up with its last write.
+     */
+    private Duration maxLag = Duration.ofSeconds(1);
+
+    /**
+     * How often the primary's heartbeat is stamped and read back from the replicas.
+     */
+    private Duration heartbeatInterval = Duration.ofMillis(200);
+
+    /**
+     * Stands in for database replication with local replicas: the primary's schema is created on them and its
+     * tables are copied over theirs every {@code simulated-replication-interval}.
+     */
+    private boolean simulateReplication = false;
+
+    private Duration simulatedReplicationInterval = Duration.ofMillis(250);
+
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username = "sa";
+
+        private String password = "";
+
+        private int maximumPoolSize = 10;
+    }
+}
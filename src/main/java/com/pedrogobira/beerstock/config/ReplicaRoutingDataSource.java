@@ -0,0 +1,40 @@
+package com.pedrogobira.beerstock.config;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out connections of the replica {@link ReplicaSet} picks for read-only transactions, and of the primary for
+ * everything else.
+ * <p>
+ * Transaction managers take their connection before they mark the transaction read-only, so this datasource must sit
+ * behind a {@link LazyConnectionDataSourceProxy}, which only fetches the connection at the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+
+    private final ReplicaSet replicas;
+
+    public ReplicaRoutingDataSource(ReplicaSet replicas) {
+        this.replicas = replicas;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, replicas.primary());
+        for (int replica = 0; replica < replicas.size(); replica++) {
+            targets.put(replica, replicas.replica(replica));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(replicas.primary());
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer replica = replicas.route(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+        return replica == null ? PRIMARY : replica;
+    }
+}
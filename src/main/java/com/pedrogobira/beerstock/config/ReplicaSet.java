@@ -0,0 +1,211 @@
+package com.pedrogobira.beerstock.config;
+
+import com.pedrogobira.beerstock.enums.ReplicaSelection;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The primary and its read replicas, and how far each replica has caught up.
+ * <p>
+ * Every heartbeat interval the primary's {@code replication_heartbeat} row is stamped with the current time and each
+ * replica's copy of it is read back. A replica holding time {@code t} has every transaction committed on the primary
+ * before {@code t}. A read-only transaction goes to a replica less than {@code max-lag} behind that has caught up with
+ * {@link ReadAfterWrite#required()}, and to the primary when there is none. A replica that can't be read gets no
+ * reads until it can be again.
+ * <p>
+ * The connections handed out are counted in {@code beer.datasource.connections}, tagged with their {@code target} and
+ * whether the transaction was {@code read-only}; {@code beer.replica.lag} is each replica's lag in seconds. They are
+ * bound as a {@link MeterBinder}, since the meter registry's own datasource metrics depend on the datasource built
+ * from this set.
+ */
+@Slf4j
+public class ReplicaSet implements MeterBinder {
+
+    public static final String CONNECTIONS_COUNTER = "beer.datasource.connections";
+    public static final String LAG_GAUGE = "beer.replica.lag";
+
+    private static final long HEARTBEAT_ID = 1L;
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final ReplicaProperties properties;
+    private final AtomicReferenceArray<Instant> caughtUp;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryWrites = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final List<LongAdder> replicaReads = new ArrayList<>();
+    private ScheduledExecutorService monitor;
+
+    public ReplicaSet(HikariDataSource primary, List<HikariDataSource> replicas, ReplicaProperties properties) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.properties = properties;
+        this.caughtUp = new AtomicReferenceArray<>(replicas.size());
+        for (int replica = 0; replica < replicas.size(); replica++) {
+            replicaReads.add(new LongAdder());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        connections(registry, primaryWrites, "primary", "false");
+        connections(registry, primaryReads, "primary", "true");
+        for (int replica = 0; replica < replicas.size(); replica++) {
+            int index = replica;
+            connections(registry, replicaReads.get(replica), name(replica), "true");
+            Gauge.builder(LAG_GAUGE, this, set -> set.lagSeconds(index))
+                    .tag("replica", name(replica))
+                    .baseUnit("seconds")
+                    .register(registry);
+        }
+    }
+
+    private static void connections(MeterRegistry registry, LongAdder count, String target, String readOnly) {
+        FunctionCounter.builder(CONNECTIONS_COUNTER, count, LongAdder::doubleValue)
+                .tags("target", target, "read-only", readOnly)
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long interval = properties.getHeartbeatInterval().toMillis();
+        monitor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replica-heartbeat-"));
+        monitor.scheduleWithFixedDelay(this::heartbeat, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (monitor != null) {
+            monitor.shutdown();
+            monitor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        replicas.forEach(HikariDataSource::close);
+    }
+
+    public DataSource primary() {
+        return primary;
+    }
+
+    public int size() {
+        return replicas.size();
+    }
+
+    public DataSource replica(int replica) {
+        return replicas.get(replica);
+    }
+
+    /**
+     * @return the replica a transaction gets its connection from, null for the primary
+     */
+    public Integer route(boolean readOnly) {
+        if (!readOnly) {
+            primaryWrites.increment();
+            return null;
+        }
+        Integer replica = select(ReadAfterWrite.required(), Instant.now());
+        if (replica == null) primaryReads.increment();
+        else replicaReads.get(replica).increment();
+        return replica;
+    }
+
+    Integer select(Instant readAfter, Instant now) {
+        Instant oldest = now.minus(properties.getMaxLag());
+        if (readAfter != null && readAfter.isAfter(oldest)) oldest = readAfter;
+        if (properties.getSelection() == ReplicaSelection.LEAST_LOADED) {
+            Integer leastLoaded = null;
+            int leastLoad = Integer.MAX_VALUE;
+            for (int replica = 0; replica < replicas.size(); replica++) {
+                if (!hasCaughtUp(replica, oldest)) continue;
+                int load = load(replica);
+                if (load < leastLoad) {
+                    leastLoaded = replica;
+                    leastLoad = load;
+                }
+            }
+            return leastLoaded;
+        }
+        int first = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int offset = 0; offset < replicas.size(); offset++) {
+            int replica = (first + offset) % replicas.size();
+            if (hasCaughtUp(replica, oldest)) return replica;
+        }
+        return null;
+    }
+
+    /**
+     * @param time the primary's heartbeat time the replica holds, null when it can't be read
+     */
+    void caughtUp(int replica, Instant time) {
+        caughtUp.set(replica, time);
+    }
+
+    private boolean hasCaughtUp(int replica, Instant time) {
+        Instant replicated = caughtUp.get(replica);
+        return replicated != null && !replicated.isBefore(time);
+    }
+
+    private int load(int replica) {
+        HikariPoolMXBean pool = replicas.get(replica).getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+    }
+
+    private double lagSeconds(int replica) {
+        Instant replicated = caughtUp.get(replica);
+        return replicated == null ? Double.NaN : Duration.between(replicated, Instant.now()).toMillis() / 1000.0;
+    }
+
+    /**
+     * The stamp is truncated to milliseconds, so a replica never looks further ahead than it is.
+     */
+    private void heartbeat() {
+        Timestamp now = Timestamp.from(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(primary);
+            if (jdbc.update("update replication_heartbeat set beat_at = ? where id = ?", now, HEARTBEAT_ID) == 0) {
+                jdbc.update("insert into replication_heartbeat (id, beat_at) values (?, ?)", HEARTBEAT_ID, now);
+            }
+        } catch (DataAccessException e) {
+            log.error("Replica heartbeat failed on the primary, retrying on the next one", e);
+        }
+        for (int replica = 0; replica < replicas.size(); replica++) {
+            try {
+                List<Timestamp> beats = new JdbcTemplate(replicas.get(replica)).queryForList(
+                        "select beat_at from replication_heartbeat where id = ?", Timestamp.class, HEARTBEAT_ID);
+                caughtUp(replica, beats.isEmpty() ? null : beats.get(0).toInstant());
+            } catch (DataAccessException e) {
+                if (caughtUp.getAndSet(replica, null) != null) {
+                    log.warn("Replica {} can't be read, its reads go elsewhere until it can", name(replica), e);
+                }
+            }
+        }
+    }
+
+    private static String name(int replica) {
+        return "replica-" + replica;
+    }
+}
@@ -0,0 +1,111 @@
+package com.pedrogobira.beerstock.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends read-only transactions to the {@code application.replicas.datasources} through a
+ * {@link ReplicaRoutingDataSource}, and everything else to the {@code spring.datasource} primary.
+ * <p>
+ * With {@code simulate-replication}, the schema Hibernate creates on the primary is replayed on the replicas and
+ * {@link SimulatedReplication} keeps their rows up to date; real replicas get both from the database's replication.
+ * Sharding, which routes by shard rather than by transaction, and the reactive stack, which reads beers through
+ * R2DBC, don't use replicas.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.replicas", name = "enabled", havingValue = "true")
+public class ReplicasConfig {
+
+    private final ReplicaProperties properties;
+    private final HibernateSchemaScripts schemaScripts;
+
+    @Autowired
+    public ReplicasConfig(ReplicaProperties properties, ShardingProperties shardingProperties, ApplicationContext context) {
+        if (properties.getDatasources().isEmpty()) {
+            throw new IllegalStateException("application.replicas.datasources must list at least one replica");
+        }
+        if (shardingProperties.isEnabled()) {
+            throw new IllegalStateException("Replicas can't be used with sharding");
+        }
+        if (context instanceof ReactiveWebApplicationContext) {
+            throw new IllegalStateException("Replicas are only supported by the servlet stack");
+        }
+        this.properties = properties;
+        this.schemaScripts = properties.isSimulateReplication() ? new HibernateSchemaScripts() : null;
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaSet replicaSet(HikariDataSource primaryDataSource) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int index = 0; index < properties.getDatasources().size(); index++) {
+            ReplicaProperties.Replica replica = properties.getDatasources().get(index);
+            HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                    .url(replica.getUrl()).username(replica.getUsername()).password(replica.getPassword()).build();
+            dataSource.setPoolName("replica-" + index);
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            replicas.add(dataSource);
+        }
+        return new ReplicaSet(primaryDataSource, replicas, properties);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaSet replicaSet) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(replicaSet);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "application.replicas", name = "simulate-replication", havingValue = "true")
+    public SimulatedReplication simulatedReplication(HikariDataSource primaryDataSource) {
+        return new SimulatedReplication(primaryDataSource, properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "application.replicas", name = "simulate-replication", havingValue = "true")
+    public HibernatePropertiesCustomizer replicaSchemaScriptCustomizer() {
+        return schemaScripts.customizer();
+    }
+
+    /**
+     * Runs once every singleton, the entity manager factory among them, is created, and before the web server starts.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "application.replicas", name = "simulate-replication", havingValue = "true")
+    public SmartInitializingSingleton replicaSchemaReplication(SimulatedReplication replication) {
+        return () -> {
+            try {
+                replication.replicas().forEach(schemaScripts::replay);
+            } finally {
+                schemaScripts.delete();
+            }
+            replication.start();
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package com.pedrogobira.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.search")
+public class SearchProperties {
+
+    /**
+     * Suggestions returned when the request doesn't ask for a number.
+     */
+    private int defaultSize = 10;
+
+    /**
+     * Most suggestions a request can ask for; bigger sizes are capped to it.
+     */
+    private int maxSize = 50;
+
+    /**
+     * Share of the query's trigrams a beer must have to be suggested. Lower values tolerate more typos and cost more
+     * candidates per query.
+     */
+    private double minScore = 0.5;
+
+    /**
+     * How often the index is reloaded from the database, to pick up the changes of other instances. Zero turns it
+     * off.
+     */
+    private Duration rebuildInterval = Duration.ofHours(1);
+
+    public int size(Integer requested) {
+        if (requested == null) return Math.min(defaultSize, maxSize);
+        return Math.max(1, Math.min(requested, maxSize));
+    }
+}
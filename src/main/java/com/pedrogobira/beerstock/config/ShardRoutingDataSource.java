@@ -0,0 +1,51 @@
+package com.pedrogobira.beerstock.config;
+
+import com.pedrogobira.beerstock.service.ShardRouter;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out connections of the shard {@link ShardRouter} bound to the current thread, or of shard 0 when none is
+ * bound, which is where the tables that aren't sharded (idempotency records, stock counter checkpoints) are used.
+ * <p>
+ * A transaction keeps the connection it started with, so it stays on its shard whatever is bound afterwards.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+    }
+
+    public DataSource shard(int shard) {
+        return getResolvedDataSources().get(shard);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardRouter.currentShard();
+    }
+
+    @Override
+    public void close() {
+        getResolvedDataSources().values().forEach(dataSource -> {
+            if (dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) dataSource).close();
+                } catch (Exception e) {
+                    logger.warn("Failed to close a shard datasource", e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package com.pedrogobira.beerstock.config;
+
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.service.ShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads the beers over the {@code application.sharding.shards} datasources through a {@link ShardRoutingDataSource},
+ * with one entity manager factory and one transaction manager over all of them.
+ * <p>
+ * Hibernate creates the schema through the routing datasource, so on shard 0 only. The DDL it writes out while doing
+ * so is replayed on the other shards. Each shard's beer id sequence is then restarted at {@link ShardRouter#firstId} and
+ * capped so its ids stop at {@link ShardRouter#lastId}, rather than running into the next shard's. The stock
+ * counter engine, which checkpoints all beers in one transaction, and the reactive stack, which reads beers through
+ * R2DBC, can't be sharded.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+    private final ShardingProperties properties;
+    private final HibernateSchemaScripts schemaScripts = new HibernateSchemaScripts();
+
+    @Autowired
+    public ShardingConfig(ShardingProperties properties, StockProperties stockProperties, ApplicationContext context) {
+        if ("counter".equals(stockProperties.getMode())) {
+            throw new IllegalStateException("Sharding doesn't support the counter stock mode");
+        }
+        if (context instanceof ReactiveWebApplicationContext) {
+            throw new IllegalStateException("Sharding is only supported by the servlet stack");
+        }
+        this.properties = properties;
+    }
+
+    @Bean
+    public ShardRoutingDataSource dataSource() {
+        List<DataSource> shards = new ArrayList<>();
+        for (int index = 0; index < properties.getShards().size(); index++) {
+            ShardingProperties.Shard shard = properties.getShards().get(index);
+            HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                    .url(shard.getUrl()).username(shard.getUsername()).password(shard.getPassword()).build();
+            dataSource.setPoolName("shard-" + index);
+            dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+            shards.add(dataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaScriptCustomizer() {
+        return hibernate -> {
+            if (properties.isReplicateSchema()) schemaScripts.customizer().customize(hibernate);
+        };
+    }
+
+    /**
+     * Runs once every singleton, the entity manager factory among them, is created, and before the web server starts.
+     */
+    @Bean
+    public SmartInitializingSingleton shardSchemaReplication(ShardRoutingDataSource dataSource) {
+        return () -> {
+            try {
+                if (properties.isReplicateSchema()) replicateSchema(dataSource);
+            } finally {
+                schemaScripts.delete();
+            }
+        };
+    }
+
+    private void replicateSchema(ShardRoutingDataSource dataSource) {
+        for (int shard = 0; shard < properties.getShards().size(); shard++) {
+            DataSource target = dataSource.shard(shard);
+            if (shard > 0) schemaScripts.replay(target);
+            // a block of ids runs from the value taken from the sequence, so the last block must end at lastId
+            new JdbcTemplate(target).execute("alter sequence beer_seq restart with " + ShardRouter.firstId(shard)
+                    + " maxvalue " + (ShardRouter.lastId(shard) - Beer.ID_BLOCK_SIZE + 1));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.pedrogobira.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.sharding")
+public class ShardingProperties {
+
+    /**
+     * Spreads the beers over the {@code shards} datasources; off, everything uses {@code spring.datasource}.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The shard datasources, by index. A beer's id holds the index of its shard, so shards can be appended but not
+     * removed or reordered.
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    /**
+     * Brands placed on a given shard index. Other brands go to the shard of their hash.
+     */
+    private Map<String, Integer> brands = new HashMap<>();
+
+    /**
+     * Threads querying the shards in parallel for the reads that span all of them.
+     */
+    private int gatherThreads = 32;
+
+    /**
+     * Replays on the other shards the schema Hibernate creates on shard 0. Turn it off when the shards' schemas,
+     * and the first beer id of each, are managed outside the application.
+     */
+    private boolean replicateSchema = true;
+
+    @Data
+    public static class Shard {
+
+        private String url;
+
+        private String username = "sa";
+
+        private String password = "";
+
+        private int maximumPoolSize = 10;
+    }
+}
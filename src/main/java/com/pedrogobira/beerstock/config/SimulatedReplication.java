@@ -0,0 +1,152 @@
+package com.pedrogobira.beerstock.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Replication for local replicas, such as in-memory H2 databases, which have none of their own: every interval the
+ * primary's tables are copied over the replicas', each replica in one transaction.
+ * <p>
+ * The heartbeat table is read before the others and written after them, so a replica never holds a heartbeat newer
+ * than its rows. Whole tables are copied, which only suits the small databases of local runs and tests.
+ */
+@Slf4j
+public class SimulatedReplication {
+
+    private static final String HEARTBEAT_TABLE = "replication_heartbeat";
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final ReplicaProperties properties;
+    private ScheduledExecutorService scheduler;
+    private List<String> tables;
+
+    public SimulatedReplication(DataSource primary, ReplicaProperties properties) {
+        this.primary = primary;
+        this.properties = properties;
+        this.replicas = properties.getDatasources().stream()
+                .map(replica -> new DriverManagerDataSource(replica.getUrl(), replica.getUsername(), replica.getPassword()))
+                .collect(Collectors.toList());
+    }
+
+    public List<DataSource> replicas() {
+        return replicas;
+    }
+
+    /**
+     * To be called once the primary's schema exists on the replicas.
+     */
+    public void start() {
+        long interval = properties.getSimulatedReplicationInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("simulated-replication-"));
+        scheduler.scheduleWithFixedDelay(this::replicateQuietly, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    void replicate() {
+        if (tables == null) tables = tables();
+        JdbcTemplate source = new JdbcTemplate(primary);
+        List<Table> copies = new ArrayList<>();
+        Table heartbeat = read(source, HEARTBEAT_TABLE);
+        for (String table : tables) {
+            copies.add(read(source, table));
+        }
+        copies.add(heartbeat);
+        for (DataSource replica : replicas) {
+            JdbcTemplate target = new JdbcTemplate(replica);
+            new TransactionTemplate(new DataSourceTransactionManager(replica)).executeWithoutResult(status ->
+                    copies.forEach(copy -> copy.writeTo(target)));
+        }
+    }
+
+    private void replicateQuietly() {
+        try {
+            replicate();
+        } catch (RuntimeException e) {
+            log.error("Simulated replication failed, retrying on the next interval", e);
+        }
+    }
+
+    /**
+     * @return the primary's tables, but the heartbeat one
+     */
+    private List<String> tables() {
+        try (Connection connection = primary.getConnection();
+             ResultSet tables = connection.getMetaData().getTables(
+                     connection.getCatalog(), connection.getSchema(), "%", new String[]{"TABLE"})) {
+            List<String> names = new ArrayList<>();
+            while (tables.next()) {
+                String name = tables.getString("TABLE_NAME");
+                if (!HEARTBEAT_TABLE.equalsIgnoreCase(name)) names.add(name);
+            }
+            return Collections.unmodifiableList(names);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Can't list the tables to replicate", e);
+        }
+    }
+
+    private static Table read(JdbcTemplate source, String table) {
+        return source.query("select * from " + table, rows -> {
+            ResultSetMetaData metaData = rows.getMetaData();
+            List<String> columns = new ArrayList<>();
+            for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                columns.add(metaData.getColumnName(column));
+            }
+            List<Object[]> values = new ArrayList<>();
+            while (rows.next()) {
+                Object[] row = new Object[columns.size()];
+                for (int column = 0; column < row.length; column++) {
+                    row[column] = rows.getObject(column + 1);
+                }
+                values.add(row);
+            }
+            return new Table(table, columns, values);
+        });
+    }
+
+    private static final class Table {
+
+        private final String name;
+        private final List<String> columns;
+        private final List<Object[]> rows;
+
+        private Table(String name, List<String> columns, List<Object[]> rows) {
+            this.name = name;
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        private void writeTo(JdbcTemplate target) {
+            target.update("delete from " + name);
+            if (rows.isEmpty()) return;
+            String insert = "insert into " + name + " (" + String.join(", ", columns) + ") values ("
+                    + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+            target.batchUpdate(insert, rows);
+        }
+    }
+}
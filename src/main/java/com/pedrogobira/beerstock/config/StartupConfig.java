@@ -0,0 +1,62 @@
+package com.pedrogobira.beerstock.config;
+
+import com.pedrogobira.beerstock.service.IdempotencyStore;
+import com.pedrogobira.beerstock.service.StockCounterEngine;
+import com.pedrogobira.beerstock.service.StockLedger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import javax.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Under {@code spring.main.lazy-initialization}, which the {@code fast-start} profile turns on, a bean is only created
+ * when first used, mostly by the first request. Some beans can't wait for that:
+ * <ul>
+ *     <li>the entity manager factory, which creates the schema the sharded and replicas setups copy,</li>
+ *     <li>the {@link SmartInitializingSingleton}s that copy it, which lazy beans never run,</li>
+ *     <li>the ledger, idempotency store and counter engine, whose background work (snapshots, purges, write-ahead log
+ *     recovery) must start with the application, whether this instance gets requests or not.</li>
+ * </ul>
+ * Beans started by {@code ApplicationReadyEvent} listeners are created by the event anyway.
+ * <p>
+ * Once the application accepts traffic, after every ready listener has run, the JVM uptime is logged, which the
+ * startup benchmark waits for.
+ */
+@Slf4j
+@Configuration
+public class StartupConfig {
+
+    public static final String READY_MESSAGE = "Accepting traffic";
+
+    private final StartupProperties properties;
+    private final ApplicationContext context;
+
+    @Autowired
+    public StartupConfig(StartupProperties properties, ApplicationContext context) {
+        this.properties = properties;
+        this.context = context;
+    }
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(EntityManagerFactory.class,
+                SmartInitializingSingleton.class, StockLedger.class, IdempotencyStore.class, StockCounterEngine.class);
+    }
+
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() != ReadinessState.ACCEPTING_TRAFFIC) return;
+        log.info("{} {} ms after the JVM started", READY_MESSAGE, ManagementFactory.getRuntimeMXBean().getUptime());
+        if (properties.isExitWhenReady()) System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,17 @@
+package com.pedrogobira.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.startup")
+public class StartupProperties {
+
+    /**
+     * Exits the JVM as soon as the application accepts traffic. The cds build profile starts the application with it
+     * to record the classes a startup loads.
+     */
+    private boolean exitWhenReady = false;
+}
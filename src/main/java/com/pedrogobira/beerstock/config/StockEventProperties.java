@@ -0,0 +1,38 @@
+package com.pedrogobira.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.stock-events")
+public class StockEventProperties {
+
+    /**
+     * Events a subscriber may have pending before it is dropped as a slow consumer.
+     */
+    private int bufferSize = 256;
+
+    /**
+     * Threads writing events to subscribers; idle subscribers hold none.
+     */
+    private int dispatcherThreads = 4;
+
+    /**
+     * Fill percentage of max at or below which a beer is low on stock.
+     */
+    private int lowStockPercent = 10;
+
+    /**
+     * Fill percentage of max at or above which a beer is near its max.
+     */
+    private int nearMaxPercent = 90;
+
+    /**
+     * How often idle subscribers get a comment line, so dead connections are noticed.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(30);
+}
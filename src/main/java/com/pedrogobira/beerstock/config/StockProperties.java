@@ -0,0 +1,142 @@
+package com.pedrogobira.beerstock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "application.stock")
+public class StockProperties {
+
+    /**
+     * How increments and decrements are written: {@code atomic} (single conditional UPDATE),
+     * {@code optimistic} (versioned read-check-write, retried on conflict), {@code partitioned} (ids hashed onto
+     * {@code partitions.count} shared writer threads, merging queued deltas) or {@code counter} (in-memory counters
+     * written behind to the database).
+     */
+    private String mode = "atomic";
+
+    private Retry retry = new Retry();
+
+    private Counter counter = new Counter();
+
+    private Ledger ledger = new Ledger();
+
+    private Holds holds = new Holds();
+
+    private Partitions partitions = new Partitions();
+
+    @Data
+    public static class Retry {
+
+        /**
+         * Attempts, including the first one, before a conflicting mutation is given up with 409.
+         */
+        private int maxAttempts = 5;
+
+        private Duration initialBackoff = Duration.ofMillis(5);
+
+        private double multiplier = 2.0;
+
+        private Duration maxBackoff = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class Counter {
+
+        /**
+         * How often the coalesced deltas are written to the database.
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * Number of unflushed mutations that triggers a flush before the interval elapses.
+         */
+        private int flushThreshold = 10_000;
+
+        private Path walDirectory = Paths.get("data", "stock-wal");
+
+        /**
+         * Forces every log append to disk before the mutation is acknowledged. Turning it off trades durability
+         * on power loss (not on process crash) for latency.
+         */
+        private boolean fsync = true;
+    }
+
+    @Data
+    public static class Ledger {
+
+        /**
+         * How often every beer that moved gets a new snapshot, which bounds the movements replayed per query.
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(5);
+
+        /**
+         * How far behind now a snapshot is taken, so movements of transactions still committing aren't skipped.
+         */
+        private Duration settleLag = Duration.ofMinutes(1);
+
+        /**
+         * How often movements and snapshots older than the retention are compacted.
+         */
+        private Duration compactionInterval = Duration.ofHours(1);
+
+        /**
+         * How long movements are kept. Quantities before the oldest snapshot kept for a beer can't be queried.
+         */
+        private Duration retention = Duration.ofDays(90);
+    }
+
+    @Data
+    public static class Holds {
+
+        /**
+         * How long a hold keeps its stock before it is released, unless confirmed.
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+
+        /**
+         * Resolution of the expiry timing wheel: holds are released at most one tick after they expire.
+         */
+        private Duration tick = Duration.ofMillis(100);
+
+        /**
+         * Most expired holds released in one transaction.
+         */
+        private int expiryBatchSize = 1_000;
+
+        /**
+         * How often every instance releases the holds overdue by more than this, left by instances that stopped.
+         */
+        private Duration sweepInterval = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Partitions {
+
+        /**
+         * Writer threads. Each beer's mutations all go to the same one.
+         */
+        private int count = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Mutations a partition queues before callers wait for room.
+         */
+        private int queueCapacity = 1_000;
+
+        /**
+         * How long a caller waits for room in a full queue before the mutation is refused with 503.
+         */
+        private Duration enqueueTimeout = Duration.ofMillis(50);
+
+        /**
+         * Most queued mutations a partition takes into one transaction.
+         */
+        private int maxBatchSize = 500;
+    }
+}
@@ -0,0 +1,49 @@
+package com.pedrogobira.beerstock.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * With {@code application.threads.virtual} on, Tomcat runs every request on a virtual thread of its own, and so
+ * does the async part of MVC requests such as streamed responses. A request blocked on JDBC then holds a few hundred
+ * bytes of heap instead of a platform thread, so concurrency is bounded by the connection pool rather than the
+ * Tomcat pool.
+ * <p>
+ * A virtual thread that blocks inside a {@code synchronized} block stays pinned to its carrier thread. The stock
+ * write-ahead log and counter engine use {@code ReentrantLock}s, and HikariCP is held at 5.1, which dropped
+ * {@code synchronized} from its connection handout. The load-test profile traces any pinning left with
+ * {@code -Djdk.tracePinnedThreads=short}. The trace misses H2's row lock waits, an {@code Object.wait} in a
+ * {@code synchronized} method that pins the carrier too, see the README for what a JFR recording shows.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "application.threads", name = "virtual", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    public ExecutorService virtualThreadExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory());
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor());
+    }
+
+    /**
+     * Takes the name of the executor Boot would configure, which is the one MVC runs async requests on.
+     */
+    @Bean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(virtualThreadExecutor());
+    }
+}
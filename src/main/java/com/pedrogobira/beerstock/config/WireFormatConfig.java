@@ -0,0 +1,44 @@
+package com.pedrogobira.beerstock.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Serves and accepts Smile, Jackson's binary encoding of JSON, next to JSON: a request with
+ * {@code Accept: application/x-jackson-smile} gets its body in Smile, and one with that content type is read as
+ * Smile. The stream of all beers stays NDJSON.
+ * <p>
+ * The Smile mapper comes from the same {@link Jackson2ObjectMapperBuilder} as the JSON one, so both encode the DTOs
+ * alike, and the DTO classes are the schema of both. Smile writes field names and short string values seen earlier in
+ * the payload as back-references, which is where lists of beers shrink most, and numbers in binary, which spares
+ * formatting and parsing them.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WireFormatConfig {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+
+    /**
+     * Replaces Spring's default Smile converter, whose mapper isn't customized like Boot's JSON one.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(smileMapper(builder));
+    }
+
+    public static ObjectMapper smileMapper(Jackson2ObjectMapperBuilder builder) {
+        SmileFactory factory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        return builder.factory(factory).build();
+    }
+}
@@ -1,24 +1,68 @@
 package com.pedrogobira.beerstock.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pedrogobira.beerstock.config.WireFormatConfig;
 import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerImportErrorDto;
+import com.pedrogobira.beerstock.dto.BeerImportProgressDto;
+import com.pedrogobira.beerstock.dto.BeerPageDto;
+import com.pedrogobira.beerstock.dto.BeerSearchDto;
+import com.pedrogobira.beerstock.dto.BeerSuggestionDto;
 import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementResultDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.dto.StockQuantityDto;
+import com.pedrogobira.beerstock.enums.StockEventType;
+import com.pedrogobira.beerstock.service.BeerCsv;
+import com.pedrogobira.beerstock.service.BeerImportReader;
+import com.pedrogobira.beerstock.service.BeerImportService;
 import com.pedrogobira.beerstock.service.BeerService;
+import com.pedrogobira.beerstock.service.BeerSuggestionService;
+import com.pedrogobira.beerstock.service.RequestCoalescer;
+import com.pedrogobira.beerstock.service.StockEventBroker;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("api/v1/beers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class BeerController implements BeerControllerDocs {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final BeerService service;
+    private final ObjectMapper objectMapper;
+    private final StockEventBroker stockEventBroker;
+    private final RequestCoalescer coalescer;
+    private final BeerSuggestionService suggestionService;
+    private final BeerImportService importService;
 
     @PostMapping
     public ResponseEntity<BeerDto> save(@RequestBody @Valid BeerDto dto) {
@@ -27,12 +71,81 @@ public class BeerController implements BeerControllerDocs {
 
     @GetMapping("/{name}")
     public ResponseEntity<BeerDto> findByName(@PathVariable String name) {
-        return ResponseEntity.status(HttpStatus.OK).body(service.findByName(name));
+        BeerDto beer = coalescer.execute(RequestCoalescer.BEERS_BY_NAME, name, () -> service.findByName(name));
+        return ResponseEntity.status(HttpStatus.OK).body(beer);
     }
 
     @GetMapping
-    public ResponseEntity<List<BeerDto>> findAll() {
-        return ResponseEntity.status(HttpStatus.OK).body(service.findAll());
+    public ResponseEntity<List<BeerDto>> findAll(@RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) Integer size) {
+        return page(coalescer.execute(RequestCoalescer.BEER_PAGES, Arrays.asList(cursor, size),
+                () -> service.findAll(cursor, size)));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<BeerDto>> search(@Valid BeerSearchDto filter,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(required = false) Integer size) {
+        return page(service.search(filter, cursor, size));
+    }
+
+    @GetMapping("/suggestions")
+    public ResponseEntity<List<BeerSuggestionDto>> suggest(@RequestParam String q,
+                                                           @RequestParam(required = false) Integer size) {
+        return ResponseEntity.status(HttpStatus.OK).body(suggestionService.suggest(q, size));
+    }
+
+    @GetMapping(value = "/stock-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stockEvents(@RequestParam(required = false) Set<StockEventType> types) {
+        return ResponseEntity.status(HttpStatus.OK).body(stockEventBroker.subscribe(types));
+    }
+
+    @GetMapping("/{id}/quantity")
+    public ResponseEntity<StockQuantityDto> quantityAt(@PathVariable Long id,
+                                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        return ResponseEntity.status(HttpStatus.OK).body(service.findQuantityAt(id, at));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        StreamingResponseBody body = out -> service.streamAll(dto -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(dto));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping(produces = BeerCsv.MEDIA_TYPE_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCsv() {
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(BeerCsv.header());
+            service.streamAll(dto -> {
+                try {
+                    writer.write(BeerCsv.format(dto));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.parseMediaType(BeerCsv.MEDIA_TYPE_VALUE + ";charset=UTF-8"))
+                .body(body);
+    }
+
+    @PostMapping(value = "/import", consumes = BeerCsv.MEDIA_TYPE_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importCsv(InputStream body) throws IOException {
+        return importing(BeerImportReader.csv(utf8(body)));
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importNdjson(InputStream body) {
+        return importing(BeerImportReader.ndjson(utf8(body), objectMapper));
     }
 
     @DeleteMapping("/{id}")
@@ -41,7 +154,7 @@ public class BeerController implements BeerControllerDocs {
         return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
 
-    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PutMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, WireFormatConfig.SMILE_VALUE})
     public ResponseEntity<Void> fullUpdate(@PathVariable Long id, @RequestBody @Valid BeerDto dto) {
         service.update(id, dto);
         return ResponseEntity.status(HttpStatus.OK).build();
@@ -57,4 +170,53 @@ public class BeerController implements BeerControllerDocs {
         return ResponseEntity.status(HttpStatus.OK).body(service.decrement(id, dto));
     }
 
+    @PostMapping("/stock-movements")
+    public ResponseEntity<List<StockMovementResultDto>> move(@RequestBody @Valid StockMovementsDto dto) {
+        return ResponseEntity.status(HttpStatus.OK).body(service.move(dto));
+    }
+
+    /**
+     * The reader is opened here, so a bad CSV header is a 400 before the response starts. The rows are then imported
+     * while the response streams a line per rejected row and per chunk done, flushed as they come.
+     */
+    private ResponseEntity<StreamingResponseBody> importing(BeerImportReader reader) {
+        StreamingResponseBody body = out -> importService.importBeers(reader, new BeerImportService.Listener() {
+            @Override
+            public void rejected(BeerImportErrorDto error) {
+                write(out, error, false);
+            }
+
+            @Override
+            public void progress(BeerImportProgressDto progress) {
+                write(out, progress, true);
+            }
+        });
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private void write(OutputStream out, Object line, boolean flush) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+            if (flush) out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BufferedReader utf8(InputStream body) {
+        return new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    private static ResponseEntity<List<BeerDto>> page(BeerPageDto page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        if (page.getNextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .toUriString();
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor())
+                    .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page.getContent());
+    }
 }
@@ -1,17 +1,31 @@
 package com.pedrogobira.beerstock.controller;
 
 import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerSearchDto;
+import com.pedrogobira.beerstock.dto.BeerSuggestionDto;
 import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementResultDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.dto.StockQuantityDto;
+import com.pedrogobira.beerstock.enums.StockEventType;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
+import java.util.Set;
 
 @Configuration("Manages beer stock")
 public interface BeerControllerDocs {
@@ -30,11 +44,77 @@ public interface BeerControllerDocs {
     })
     ResponseEntity<BeerDto> findByName(@PathVariable String name);
 
-    @Operation(description = "Returns a list of all beers registered in the system")
+    @Operation(description = "Returns a page of the beers registered in the system, ordered by id. "
+            + "The cursor for the next page is sent in the X-Next-Cursor and Link headers")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of all beers registered in the system"),
+            @ApiResponse(responseCode = "200", description = "Page of beers registered in the system"),
+            @ApiResponse(responseCode = "400", description = "Invalid page cursor")
     })
-    ResponseEntity<List<BeerDto>> findAll();
+    ResponseEntity<List<BeerDto>> findAll(@RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Integer size);
+
+    @Operation(description = "Returns a page of the beers matching every given filter, ordered by id. "
+            + "The cursor for the next page is sent in the X-Next-Cursor and Link headers")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of matching beers"),
+            @ApiResponse(responseCode = "400", description = "Invalid filter value or page cursor")
+    })
+    ResponseEntity<List<BeerDto>> search(@Valid BeerSearchDto filter,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer size);
+
+    @Operation(description = "Returns the beers whose name and brand best match the query, tolerating typos, best "
+            + "first. The last word of the query may be the start of a word")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Suggested beers, possibly none"),
+            @ApiResponse(responseCode = "400", description = "Missing query")
+    })
+    ResponseEntity<List<BeerSuggestionDto>> suggest(@RequestParam String q,
+                                                    @RequestParam(required = false) Integer size);
+
+    @Operation(description = "Subscribes to committed stock changes as Server-Sent Events, optionally only the given "
+            + "types. Subscribers that fall too far behind are disconnected")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream of stock events"),
+    })
+    ResponseEntity<SseEmitter> stockEvents(@RequestParam(required = false) Set<StockEventType> types);
+
+    @Operation(description = "Returns the quantity of a beer at the given time, or now, replayed from the stock ledger. "
+            + "Works for deleted beers too")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Quantity of the beer at the given time"),
+            @ApiResponse(responseCode = "404", description = "No stock history for the given id"),
+            @ApiResponse(responseCode = "410", description = "Stock history before the given time was compacted")
+    })
+    ResponseEntity<StockQuantityDto> quantityAt(@PathVariable Long id,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at);
+
+    @Operation(description = "Streams every beer registered in the system as newline-delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "All beers registered in the system, one per line"),
+    })
+    ResponseEntity<StreamingResponseBody> streamAll();
+
+    @Operation(description = "Streams every beer registered in the system as CSV, after a header naming the columns")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "All beers registered in the system, one per line"),
+    })
+    ResponseEntity<StreamingResponseBody> exportCsv();
+
+    @Operation(description = "Imports the beers of a CSV upload, whose header names the name, brand, max, quantity "
+            + "and type columns. Streams a line per rejected row and the totals after every chunk of rows")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rejected rows and progress, one per line, the totals last"),
+            @ApiResponse(responseCode = "400", description = "The CSV header is missing a column")
+    })
+    ResponseEntity<StreamingResponseBody> importCsv(InputStream body) throws IOException;
+
+    @Operation(description = "Imports the beers of a newline-delimited JSON upload, one beer per line. Streams a line "
+            + "per rejected row and the totals after every chunk of rows")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rejected rows and progress, one per line, the totals last"),
+    })
+    ResponseEntity<StreamingResponseBody> importNdjson(InputStream body);
 
     @Operation(description = "Delete a beer found by a given valid Id")
     @ApiResponses(value = {
@@ -67,4 +147,12 @@ public interface BeerControllerDocs {
             @ApiResponse(responseCode = "422", description = "Negative quantity reached because of the decrement")
     })
     ResponseEntity<BeerDto> decrement(@PathVariable Long id, @RequestBody @Valid QuantityDto dto);
+
+    @Operation(description = "Applies a batch of stock movements (beer id and signed delta) in one transaction")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Movements processed, see the status of each one"),
+            @ApiResponse(responseCode = "400", description = "Missing required fields or wrong field range value"),
+            @ApiResponse(responseCode = "422", description = "A movement was rejected and the whole batch rolled back")
+    })
+    ResponseEntity<List<StockMovementResultDto>> move(@RequestBody @Valid StockMovementsDto dto);
 }
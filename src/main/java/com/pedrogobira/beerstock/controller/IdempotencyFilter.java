@@ -0,0 +1,247 @@
+package com.pedrogobira.beerstock.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pedrogobira.beerstock.config.WireFormatConfig;
+import com.pedrogobira.beerstock.entity.IdempotencyRecord;
+import com.pedrogobira.beerstock.exception.ExceptionResponse;
+import com.pedrogobira.beerstock.service.IdempotencyStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Makes the stock writes retry-safe: a save, increment, decrement, stock-movements, hold or hold confirmation request
+ * sent with an {@code Idempotency-Key} header runs once, and its successful response is replayed to every duplicate through
+ * {@link IdempotencyStore}, with an {@code Idempotent-Replayed} header, without reaching the controller. Error
+ * responses aren't kept, so a rejected request can be retried.
+ * <p>
+ * Keys are scoped to the method, the path and the type the response is negotiated to, JSON or Smile, so a response is
+ * only replayed to a client accepting it. A request reusing a key with a different body gets 422.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    static final int MAX_KEY_LENGTH = 255;
+    static final String INVALID_KEY = "Idempotency-Key must have 1 to " + MAX_KEY_LENGTH + " characters";
+    static final String KEY_REUSED = "Idempotency-Key was already used for a different request";
+
+    private static final List<String> POST_PATHS = List.of("/api/v1/beers", "/api/v1/beers/stock-movements",
+            "/api/v1/beers/*/holds", "/api/v1/beers/*/holds/*/confirm");
+    private static final List<String> PATCH_PATHS = List.of("/api/v1/beers/*/increment", "/api/v1/beers/*/decrement");
+    private static final List<MediaType> PRODUCED_TYPES = List.of(MediaType.APPLICATION_JSON, WireFormatConfig.SMILE);
+    private static final String NOT_ACCEPTABLE = "none";
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Autowired
+    public IdempotencyFilter(IdempotencyStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (request.getHeader(IDEMPOTENCY_KEY_HEADER) == null) return true;
+        List<String> patterns;
+        if ("POST".equals(request.getMethod())) patterns = POST_PATHS;
+        else if ("PATCH".equals(request.getMethod())) patterns = PATCH_PATHS;
+        else return true;
+        String path = path(request);
+        return patterns.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, INVALID_KEY);
+            return;
+        }
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        String fingerprint = fingerprint(body);
+        String requestKey = request.getMethod() + " " + path(request) + " " + responseType(request) + " " + key;
+
+        Optional<IdempotencyRecord> stored;
+        try {
+            stored = store.execute(requestKey, () -> run(new CachedBodyRequest(request, body), response, chain,
+                    requestKey, fingerprint));
+        } catch (ChainException e) {
+            if (e.getCause() instanceof ServletException) throw (ServletException) e.getCause();
+            throw (IOException) e.getCause();
+        }
+        if (stored.isEmpty()) return;
+
+        IdempotencyRecord record = stored.get();
+        if (!record.getFingerprint().equals(fingerprint)) {
+            reject(response, HttpStatus.UNPROCESSABLE_ENTITY, KEY_REUSED);
+            return;
+        }
+        response.setStatus(record.getStatus());
+        if (record.getContentType() != null) response.setContentType(record.getContentType());
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(record.getBody().length);
+        response.getOutputStream().write(record.getBody());
+    }
+
+    /**
+     * @return the response to keep, null unless it is a success
+     */
+    private static IdempotencyRecord run(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                                         String requestKey, String fingerprint) {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            chain.doFilter(request, wrapper);
+            byte[] content = wrapper.getContentAsByteArray();
+            int status = wrapper.getStatus();
+            String contentType = wrapper.getContentType();
+            wrapper.copyBodyToResponse();
+            if (HttpStatus.Series.resolve(status) != HttpStatus.Series.SUCCESSFUL) return null;
+            return new IdempotencyRecord(requestKey, fingerprint, status, contentType, content, Instant.now());
+        } catch (IOException | ServletException e) {
+            throw new ChainException(e);
+        }
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ExceptionResponse(message));
+    }
+
+    /**
+     * Negotiates the response type like the controllers, picking the first of the types they produce that the
+     * {@code Accept} header allows, by specificity and quality.
+     */
+    private static String responseType(HttpServletRequest request) {
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(Collections.list(request.getHeaders(HttpHeaders.ACCEPT)));
+        } catch (InvalidMediaTypeException e) {
+            return NOT_ACCEPTABLE;
+        }
+        if (accepted.isEmpty()) return MediaType.APPLICATION_JSON_VALUE;
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType type : accepted) {
+            for (MediaType produced : PRODUCED_TYPES) {
+                if (type.isCompatibleWith(produced)) return produced.toString();
+            }
+        }
+        return NOT_ACCEPTABLE;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String fingerprint(byte[] body) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Carries the checked exceptions of the filter chain through {@link IdempotencyStore#execute}.
+     */
+    private static final class ChainException extends RuntimeException {
+
+        private ChainException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Serves the body read to fingerprint the request to the rest of the chain.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    // the whole body is in memory, so the listener is told at once that it can be read, then that it was
+                    if (!isAsyncStarted()) throw new IllegalStateException("A read listener needs an async request");
+                    try {
+                        if (!isFinished()) listener.onDataAvailable();
+                        if (isFinished()) listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+    }
+}
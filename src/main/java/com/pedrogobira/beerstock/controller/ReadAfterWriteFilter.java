@@ -0,0 +1,89 @@
+package com.pedrogobira.beerstock.controller;
+
+import com.pedrogobira.beerstock.config.ReadAfterWrite;
+import com.pedrogobira.beerstock.config.ReplicaProperties;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Read-your-writes with replicas: once a client's write is committed, its reads go to the primary or to a replica
+ * that has caught up with the write. After {@code max-lag}, every replica that gets reads has.
+ * <p>
+ * The time of the write is sent back in the {@code Last-Write} header, in epoch milliseconds, and the client passes it
+ * back in {@code Last-Write} to read its writes. Nothing is remembered per address, which a load balancer or NAT
+ * shares between clients. The header is a hint the client controls: a time in the future is clamped to now, so it
+ * can't pin reads to the primary, and one older than {@code max-lag} is ignored, as every replica getting reads has
+ * caught up with it.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "application.replicas", name = "enabled", havingValue = "true")
+public class ReadAfterWriteFilter extends OncePerRequestFilter {
+
+    public static final String LAST_WRITE_HEADER = "Last-Write";
+
+    private static final ThreadLocal<HttpServletResponse> CURRENT = new ThreadLocal<>();
+
+    private final Duration maxLag;
+
+    @Autowired
+    public ReadAfterWriteFilter(ReplicaProperties properties) {
+        this.maxLag = properties.getMaxLag();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReadAfterWrite.require(lastWrite(request.getHeader(LAST_WRITE_HEADER), Instant.now()));
+        CURRENT.set(response);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            CURRENT.remove();
+            ReadAfterWrite.clear();
+        }
+    }
+
+    /**
+     * The time is rounded up to the next millisecond, the precision it is sent with, so it is never before the
+     * commit.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        HttpServletResponse response = CURRENT.get();
+        if (response == null) return;
+        Instant written = Instant.ofEpochMilli(Instant.now().toEpochMilli() + 1);
+        ReadAfterWrite.require(written);
+        if (!response.isCommitted()) {
+            response.setHeader(LAST_WRITE_HEADER, Long.toString(written.toEpochMilli()));
+        }
+    }
+
+    /**
+     * @return the time of the client's last write, at most now, or null if there is none to wait for
+     */
+    Instant lastWrite(String header, Instant now) {
+        if (header == null) return null;
+        Instant lastWrite;
+        try {
+            lastWrite = Instant.ofEpochMilli(Long.parseLong(header.trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (lastWrite.isBefore(now.minus(maxLag))) return null;
+        return lastWrite.isAfter(now) ? now : lastWrite;
+    }
+}
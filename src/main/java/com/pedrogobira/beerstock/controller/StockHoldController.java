@@ -0,0 +1,41 @@
+package com.pedrogobira.beerstock.controller;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockHoldDto;
+import com.pedrogobira.beerstock.service.StockHoldService;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+
+@RestController
+@RequestMapping("api/v1/beers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnExpression("'${application.stock.mode:atomic}' != 'counter'")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockHoldController implements StockHoldControllerDocs {
+
+    private final StockHoldService service;
+
+    @PostMapping("/{id}/holds")
+    public ResponseEntity<StockHoldDto> reserve(@PathVariable Long id, @RequestBody @Valid QuantityDto dto) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(service.reserve(id, dto));
+    }
+
+    @PostMapping("/{id}/holds/{holdId}/confirm")
+    public ResponseEntity<BeerDto> confirm(@PathVariable Long id, @PathVariable Long holdId) {
+        return ResponseEntity.status(HttpStatus.OK).body(service.confirm(id, holdId));
+    }
+
+    @DeleteMapping("/{id}/holds/{holdId}")
+    public ResponseEntity<Void> release(@PathVariable Long id, @PathVariable Long holdId) {
+        service.release(id, holdId);
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+    }
+}
@@ -0,0 +1,41 @@
+package com.pedrogobira.beerstock.controller;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockHoldDto;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import javax.validation.Valid;
+
+@Configuration("Holds beer stock for carts until checkout")
+public interface StockHoldControllerDocs {
+
+    @Operation(description = "Holds stock of a beer, which can't be sold or held again until the hold is confirmed, "
+            + "released or expires")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Stock successfully held"),
+            @ApiResponse(responseCode = "404", description = "Beer with given id not found"),
+            @ApiResponse(responseCode = "422", description = "Not enough stock available to hold")
+    })
+    ResponseEntity<StockHoldDto> reserve(@PathVariable Long id, @RequestBody @Valid QuantityDto dto);
+
+    @Operation(description = "Sells the stock of a hold")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stock of the hold sold"),
+            @ApiResponse(responseCode = "404", description = "Hold already confirmed, released or expired")
+    })
+    ResponseEntity<BeerDto> confirm(@PathVariable Long id, @PathVariable Long holdId);
+
+    @Operation(description = "Makes the stock of a hold available again")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Hold released"),
+            @ApiResponse(responseCode = "404", description = "Hold already confirmed, released or expired")
+    })
+    ResponseEntity<Void> release(@PathVariable Long id, @PathVariable Long holdId);
+}
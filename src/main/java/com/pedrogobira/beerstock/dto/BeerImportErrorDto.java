@@ -0,0 +1,20 @@
+package com.pedrogobira.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A row of an import that was not loaded, by its line in the upload.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BeerImportErrorDto {
+
+    private Long line;
+
+    private String name;
+
+    private String error;
+}
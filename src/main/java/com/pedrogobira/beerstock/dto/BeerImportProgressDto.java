@@ -0,0 +1,22 @@
+package com.pedrogobira.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Rows of an import read so far, and how many of them were loaded or rejected. The last one is {@code done}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BeerImportProgressDto {
+
+    private Long rows;
+
+    private Long imported;
+
+    private Long rejected;
+
+    private Boolean done;
+}
@@ -0,0 +1,20 @@
+package com.pedrogobira.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BeerPageDto {
+
+    private List<BeerDto> content;
+
+    /**
+     * Opaque token for the next page, null on the last one.
+     */
+    private String nextCursor;
+}
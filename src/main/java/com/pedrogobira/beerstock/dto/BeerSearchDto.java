@@ -0,0 +1,37 @@
+package com.pedrogobira.beerstock.dto;
+
+import com.pedrogobira.beerstock.enums.BeerType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * Search filters, all optional and combined with AND. Ranges are inclusive; the fill filters compare
+ * {@code quantity / max} against a percentage.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BeerSearchDto {
+
+    private String brand;
+
+    private BeerType type;
+
+    @Min(0)
+    private Integer minQuantity;
+
+    @Min(0)
+    private Integer maxQuantity;
+
+    @Min(0)
+    @Max(100)
+    private Integer minFillPercent;
+
+    @Min(0)
+    @Max(100)
+    private Integer maxFillPercent;
+}
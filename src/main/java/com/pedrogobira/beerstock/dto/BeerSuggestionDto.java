@@ -0,0 +1,22 @@
+package com.pedrogobira.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BeerSuggestionDto {
+
+    private Long id;
+
+    private String name;
+
+    private String brand;
+
+    /**
+     * Share of the query's trigrams found in the name and brand, 1 when all of them are.
+     */
+    private Double score;
+}
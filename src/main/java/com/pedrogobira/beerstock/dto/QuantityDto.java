@@ -6,6 +6,7 @@ import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.Max;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.PositiveOrZero;
 
 @Data
 @AllArgsConstructor
@@ -13,6 +14,7 @@ import javax.validation.constraints.NotNull;
 public class QuantityDto {
 
     @NotNull
+    @PositiveOrZero
     @Max(100)
     private Integer quantity;
 }
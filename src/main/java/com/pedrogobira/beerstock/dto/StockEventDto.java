@@ -0,0 +1,29 @@
+package com.pedrogobira.beerstock.dto;
+
+import com.pedrogobira.beerstock.enums.StockEventType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockEventDto {
+
+    /**
+     * Increases by one with every event published by the node, so subscribers can spot the ones they missed.
+     */
+    private Long sequence;
+
+    private StockEventType type;
+
+    private Long id;
+
+    private String name;
+
+    private Integer previousQuantity;
+
+    private Integer quantity;
+
+    private Integer max;
+}
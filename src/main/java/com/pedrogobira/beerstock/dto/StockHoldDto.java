@@ -0,0 +1,29 @@
+package com.pedrogobira.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockHoldDto {
+
+    private Long id;
+
+    private Long beerId;
+
+    private Integer quantity;
+
+    /**
+     * When the hold is released unless confirmed before.
+     */
+    private Instant expiresAt;
+
+    /**
+     * Stock of the beer left to sell or hold once this hold was taken.
+     */
+    private Integer available;
+}
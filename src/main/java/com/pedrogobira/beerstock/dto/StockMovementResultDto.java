@@ -0,0 +1,23 @@
+package com.pedrogobira.beerstock.dto;
+
+import com.pedrogobira.beerstock.enums.StockMovementStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockMovementResultDto {
+
+    private Long id;
+
+    private Integer delta;
+
+    private StockMovementStatus status;
+
+    /**
+     * Quantity of the beer once the whole batch was applied, only set for applied movements.
+     */
+    private Integer quantity;
+}
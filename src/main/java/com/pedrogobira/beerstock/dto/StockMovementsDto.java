@@ -0,0 +1,25 @@
+package com.pedrogobira.beerstock.dto;
+
+import com.pedrogobira.beerstock.enums.StockMovementMode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockMovementsDto {
+
+    @NotEmpty
+    @Size(max = 5000)
+    private List<@Valid @NotNull StockMovementDto> movements;
+
+    @NotNull
+    private StockMovementMode mode = StockMovementMode.ALL_OR_NOTHING;
+}
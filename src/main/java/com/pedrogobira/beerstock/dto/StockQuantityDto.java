@@ -0,0 +1,19 @@
+package com.pedrogobira.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockQuantityDto {
+
+    private Long id;
+
+    private Integer quantity;
+
+    private Instant at;
+}
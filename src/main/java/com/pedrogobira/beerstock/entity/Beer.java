@@ -4,17 +4,36 @@ import com.pedrogobira.beerstock.enums.BeerType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
 @Data
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_beer_brand_type_quantity", columnList = "brand, type, quantity"),
+        @Index(name = "idx_beer_type_quantity", columnList = "type, quantity")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Beer {
 
+    public static final int ID_BLOCK_SIZE = 50;
+
+    /**
+     * Taken from {@code beer_seq} in blocks of {@value #ID_BLOCK_SIZE}, so inserts can be batched, which identity ids
+     * prevent. The sequence value is the first id of a block, so restarting a shard's sequence at its first id keeps
+     * the shard's ids in its range, as long as each shard's blocks are kept apart by {@link ShardedSequenceGenerator}.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "beer_seq")
+    @GenericGenerator(name = "beer_seq", strategy = "com.pedrogobira.beerstock.entity.ShardedSequenceGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "beer_seq"),
+            @Parameter(name = "increment_size", value = "" + Beer.ID_BLOCK_SIZE),
+            @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -29,7 +48,18 @@ public class Beer {
     @Column(nullable = false)
     private Integer quantity;
 
+    /**
+     * Stock held by unexpired {@link StockHold}s. Only {@code quantity - reserved} can be decremented or held.
+     */
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Integer reserved = 0;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private BeerType type;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
@@ -0,0 +1,24 @@
+package com.pedrogobira.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * A beer name claimed in the directory that keeps names unique across the shards. It is only used on shard 0, where
+ * its primary key does for all shards what the unique constraint on {@link Beer#getName()} does for one.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerName {
+
+    @Id
+    @Column(nullable = false)
+    private String name;
+}
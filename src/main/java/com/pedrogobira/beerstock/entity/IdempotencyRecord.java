@@ -0,0 +1,44 @@
+package com.pedrogobira.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Response to the first request sent with an {@code Idempotency-Key}, replayed to its duplicates until it expires.
+ */
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_idempotency_record_created", columnList = "created_at"))
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    /**
+     * Method, path and key of the request.
+     */
+    @Id
+    @Column(name = "request_key", length = 512)
+    private String requestKey;
+
+    /**
+     * Hash of the request body, to tell a duplicate from a different request reusing the key.
+     */
+    @Column(nullable = false)
+    private String fingerprint;
+
+    @Column(nullable = false)
+    private Integer status;
+
+    private String contentType;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] body;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
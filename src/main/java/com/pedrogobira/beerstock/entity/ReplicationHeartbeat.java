@@ -0,0 +1,27 @@
+package com.pedrogobira.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.Instant;
+
+/**
+ * Row the primary stamps with the current time at every replica heartbeat. The time a replica's copy holds tells how
+ * far the replica has caught up with the primary.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicationHeartbeat {
+
+    @Id
+    private Long id;
+
+    @Column(name = "beat_at", nullable = false)
+    private Instant beatAt;
+}
@@ -0,0 +1,45 @@
+package com.pedrogobira.beerstock.entity;
+
+import com.pedrogobira.beerstock.service.ShardRouter;
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link SequenceStyleGenerator} keeping one optimizer, so one block of ids in memory, per shard. A single optimizer
+ * would hand out the rest of a block taken from one shard's sequence to beers inserted on another shard, whose ids
+ * would then name the wrong shard. The shard is the one {@link ShardRouter} bound to the thread, as for the
+ * connection the insert runs on; with sharding off it is always 0.
+ */
+public class ShardedSequenceGenerator extends SequenceStyleGenerator {
+
+    private final Map<Integer, Optimizer> optimizers = new ConcurrentHashMap<>();
+    private String optimizerName;
+    private Class<?> returnedClass;
+    private int incrementSize;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, params, serviceRegistry);
+        this.optimizerName = determineOptimizationStrategy(params, getDatabaseStructure().getIncrementSize());
+        this.returnedClass = type.getReturnedClass();
+        this.incrementSize = getDatabaseStructure().getIncrementSize();
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Integer shard = ShardRouter.currentShard();
+        Optimizer optimizer = optimizers.computeIfAbsent(shard == null ? 0 : shard,
+                key -> OptimizerFactory.buildOptimizer(optimizerName, returnedClass, incrementSize, -1));
+        return optimizer.generate(getDatabaseStructure().buildCallback(session));
+    }
+}
@@ -0,0 +1,26 @@
+package com.pedrogobira.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Last write-ahead log segment whose deltas the stock counter engine has written to the beer table. It is saved in
+ * the same transaction as the deltas, so replaying the log never applies a segment twice.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockCounterCheckpoint {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long segment;
+}
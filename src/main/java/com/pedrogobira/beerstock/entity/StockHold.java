@@ -0,0 +1,33 @@
+package com.pedrogobira.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Stock of a beer held for a cart until it is confirmed, released or expires, counted in {@link Beer#getReserved()}.
+ * Holds of a deleted beer are left to expire, so there is no foreign key.
+ */
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_stock_hold_expires_at", columnList = "expires_at"))
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockHold {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "beer_id", nullable = false)
+    private Long beerId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
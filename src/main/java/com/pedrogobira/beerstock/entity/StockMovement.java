@@ -0,0 +1,41 @@
+package com.pedrogobira.beerstock.entity;
+
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * One change of a beer's quantity, appended in the transaction that applied it and never updated. The ledger
+ * outlives the beer, so there is no foreign key.
+ * <p>
+ * A beer's movements commit in id order: each is inserted after its transaction updated the beer's row, whose lock it
+ * holds until it commits. Across beers, a movement can commit after one with a higher id.
+ */
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_stock_movement_beer_id", columnList = "beer_id, id"))
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "beer_id", nullable = false)
+    private Long beerId;
+
+    @Column(nullable = false)
+    private Integer delta;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StockMovementType type;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,45 @@
+package com.pedrogobira.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * A beer's quantity as the sum of its ledger movements up to {@link #lastMovementId}, all created up to
+ * {@link #asOf}. A compacted snapshot is the oldest one kept for the beer: the movements it covers were deleted, so
+ * history before it is gone.
+ */
+@Data
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_stock_snapshot_beer_as_of", columnNames = {"beer_id", "as_of"}),
+        indexes = @Index(name = "idx_stock_snapshot_as_of", columnList = "as_of"))
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "beer_id", nullable = false)
+    private Long beerId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(name = "as_of", nullable = false)
+    private Instant asOf;
+
+    @Column(nullable = false)
+    private boolean compacted;
+
+    /**
+     * The highest id of the beer's movements folded into the snapshot. Those with a higher id come after it, even
+     * when created before {@link #asOf} by a transaction that committed late.
+     */
+    @Column(name = "last_movement_id", nullable = false)
+    private Long lastMovementId;
+}
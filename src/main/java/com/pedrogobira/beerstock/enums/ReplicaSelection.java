@@ -0,0 +1,17 @@
+package com.pedrogobira.beerstock.enums;
+
+/**
+ * How a read-only transaction picks among the replicas it may use.
+ */
+public enum ReplicaSelection {
+
+    /**
+     * Each replica in turn.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * The replica with the fewest connections in use or awaited.
+     */
+    LEAST_LOADED
+}
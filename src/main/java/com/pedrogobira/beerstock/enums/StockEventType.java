@@ -0,0 +1,15 @@
+package com.pedrogobira.beerstock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public enum StockEventType {
+
+    STOCK_CHANGED("Stock quantity changed"),
+    LOW_STOCK("Stock dropped to the low-stock threshold or below"),
+    NEAR_MAX("Stock rose to the near-max threshold or above");
+
+    private final String description;
+}
@@ -0,0 +1,14 @@
+package com.pedrogobira.beerstock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public enum StockMovementMode {
+
+    ALL_OR_NOTHING("Rolls every movement back if any of them is rejected"),
+    BEST_EFFORT("Applies the valid movements and reports the rejected ones");
+
+    private final String description;
+}
@@ -0,0 +1,17 @@
+package com.pedrogobira.beerstock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public enum StockMovementStatus {
+
+    APPLIED("Applied"),
+    NOT_FOUND("Beer not found"),
+    STOCK_EXCEEDED("Beer stock exceeded"),
+    NEGATIVE_STOCK("Stock quantity can't be negative"),
+    ROLLED_BACK("Rolled back because another movement was rejected");
+
+    private final String description;
+}
@@ -0,0 +1,20 @@
+package com.pedrogobira.beerstock.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public enum StockMovementType {
+
+    CREATED("Initial stock of a new beer"),
+    UPDATED("Quantity overwritten by a full update"),
+    DELETED("Stock removed with the beer"),
+    INCREMENT("Stock incremented"),
+    DECREMENT("Stock decremented"),
+    BATCH("Movement of a stock-movement batch"),
+    WRITE_BEHIND("Coalesced deltas flushed by the stock counter engine"),
+    HOLD_CONFIRMED("Stock on hold sold at checkout");
+
+    private final String description;
+}
@@ -0,0 +1,33 @@
+package com.pedrogobira.beerstock.event;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by {@code BeerService} whenever a beer is created, changed or removed. Listeners bound to the
+ * transaction only see it once the change is committed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class BeerChangedEvent {
+
+    private final Long id;
+
+    /**
+     * Name of the beer before the change, null when it was just created.
+     */
+    private final String previousName;
+
+    /**
+     * Quantity of the beer before the change, null when it was just created.
+     */
+    private final Integer previousQuantity;
+
+    /**
+     * State of the beer after the change, null when it was deleted.
+     */
+    private final BeerDto beer;
+}
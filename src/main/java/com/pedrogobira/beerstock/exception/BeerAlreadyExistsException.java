@@ -4,9 +4,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.BAD_REQUEST)
-public class BeerAlreadyExistsException extends RuntimeException {
+public class BeerAlreadyExistsException extends BusinessException {
 
-    public BeerAlreadyExistsException(String name){
+    public BeerAlreadyExistsException(String name) {
         super("Beer " + name + " already exists");
     }
 }
@@ -4,9 +4,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
-public class BeerStockExceededException extends RuntimeException {
+public class BeerStockExceededException extends BusinessException {
 
-    public BeerStockExceededException(){
+    public static final BeerStockExceededException INSTANCE = new BeerStockExceededException();
+
+    public BeerStockExceededException() {
         super("Beer stock exceeded");
     }
 }
@@ -0,0 +1,14 @@
+package com.pedrogobira.beerstock.exception;
+
+/**
+ * An expected outcome of a request rather than a bug, such as a decrement below zero, which can be a large share of
+ * the traffic. These skip the stack trace, by far the most expensive part of an exception and never read for them,
+ * and the ones without arguments are preallocated as {@code INSTANCE}. Shared instances are immutable: they have no
+ * stack trace, cause or suppressed exceptions to change.
+ */
+public abstract class BusinessException extends RuntimeException {
+
+    protected BusinessException(String message) {
+        super(message, null, false, false);
+    }
+}
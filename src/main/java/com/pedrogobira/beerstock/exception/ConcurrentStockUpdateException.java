@@ -0,0 +1,14 @@
+package com.pedrogobira.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConcurrentStockUpdateException extends BusinessException {
+
+    public static final ConcurrentStockUpdateException INSTANCE = new ConcurrentStockUpdateException();
+
+    public ConcurrentStockUpdateException() {
+        super("Beer was concurrently modified, try again");
+    }
+}
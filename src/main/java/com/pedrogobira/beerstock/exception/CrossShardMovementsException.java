@@ -0,0 +1,14 @@
+package com.pedrogobira.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class CrossShardMovementsException extends BusinessException {
+
+    public static final CrossShardMovementsException INSTANCE = new CrossShardMovementsException();
+
+    public CrossShardMovementsException() {
+        super("Stock movements must all be on beers of the same shard");
+    }
+}
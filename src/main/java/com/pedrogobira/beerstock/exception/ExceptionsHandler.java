@@ -1,30 +1,126 @@
 package com.pedrogobira.beerstock.exception;
 
+import com.pedrogobira.beerstock.config.MetricsConfig;
+import com.pedrogobira.beerstock.dto.StockMovementResultDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+
+/**
+ * Every handled exception is counted in {@code beer.exceptions}, tagged with its class and the method and uri
+ * template of the request, like {@code http.server.requests}. Exceptions with a fixed message get a response built
+ * once, as the rejections among them are routine.
+ */
 @RestControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@AllArgsConstructor(onConstructor = @__(@Autowired))
 public class ExceptionsHandler {
 
+    public static final String EXCEPTIONS_COUNTER = "beer.exceptions";
+
+    static final ResponseEntity<ExceptionResponse> NOT_FOUND = response(HttpStatus.NOT_FOUND, NotFoundException.INSTANCE);
+    static final ResponseEntity<ExceptionResponse> STOCK_EXCEEDED = response(HttpStatus.UNPROCESSABLE_ENTITY, BeerStockExceededException.INSTANCE);
+    static final ResponseEntity<ExceptionResponse> NEGATIVE_STOCK = response(HttpStatus.UNPROCESSABLE_ENTITY, NegativeStockException.INSTANCE);
+    static final ResponseEntity<ExceptionResponse> INVALID_CURSOR = response(HttpStatus.BAD_REQUEST, InvalidCursorException.INSTANCE);
+    static final ResponseEntity<ExceptionResponse> HISTORY_COMPACTED = response(HttpStatus.GONE, StockHistoryCompactedException.INSTANCE);
+    static final ResponseEntity<ExceptionResponse> CONCURRENT_UPDATE = response(HttpStatus.CONFLICT, ConcurrentStockUpdateException.INSTANCE);
+    static final ResponseEntity<ExceptionResponse> CROSS_SHARD = response(HttpStatus.UNPROCESSABLE_ENTITY, CrossShardMovementsException.INSTANCE);
+    static final ResponseEntity<ExceptionResponse> UPDATES_BUSY = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(new ExceptionResponse(StockUpdatesBusyException.INSTANCE.getMessage()));
+
+    private final MeterRegistry meterRegistry;
+
     @ExceptionHandler(NotFoundException.class)
-    public ResponseEntity<ExceptionResponse> handleException(NotFoundException exception) {
-        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ExceptionResponse(exception.getMessage()));
+    public ResponseEntity<ExceptionResponse> handleException(NotFoundException exception, HttpServletRequest request) {
+        count(exception, request);
+        return NOT_FOUND;
     }
 
     @ExceptionHandler(BeerAlreadyExistsException.class)
-    public ResponseEntity<ExceptionResponse> handleException(BeerAlreadyExistsException exception) {
+    public ResponseEntity<ExceptionResponse> handleException(BeerAlreadyExistsException exception, HttpServletRequest request) {
+        count(exception, request);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ExceptionResponse(exception.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidImportException.class)
+    public ResponseEntity<ExceptionResponse> handleException(InvalidImportException exception, HttpServletRequest request) {
+        count(exception, request);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ExceptionResponse(exception.getMessage()));
     }
 
     @ExceptionHandler(BeerStockExceededException.class)
-    public ResponseEntity<ExceptionResponse> handleException(BeerStockExceededException exception) {
-        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(new ExceptionResponse(exception.getMessage()));
+    public ResponseEntity<ExceptionResponse> handleException(BeerStockExceededException exception, HttpServletRequest request) {
+        count(exception, request);
+        return STOCK_EXCEEDED;
     }
 
     @ExceptionHandler(NegativeStockException.class)
-    public ResponseEntity<ExceptionResponse> handleException(NegativeStockException exception) {
-        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(new ExceptionResponse(exception.getMessage()));
+    public ResponseEntity<ExceptionResponse> handleException(NegativeStockException exception, HttpServletRequest request) {
+        count(exception, request);
+        return NEGATIVE_STOCK;
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ExceptionResponse> handleException(InvalidCursorException exception, HttpServletRequest request) {
+        count(exception, request);
+        return INVALID_CURSOR;
+    }
+
+    @ExceptionHandler(StockHistoryCompactedException.class)
+    public ResponseEntity<ExceptionResponse> handleException(StockHistoryCompactedException exception, HttpServletRequest request) {
+        count(exception, request);
+        return HISTORY_COMPACTED;
+    }
+
+    @ExceptionHandler(ConcurrentStockUpdateException.class)
+    public ResponseEntity<ExceptionResponse> handleException(ConcurrentStockUpdateException exception, HttpServletRequest request) {
+        count(exception, request);
+        return CONCURRENT_UPDATE;
+    }
+
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<ExceptionResponse> handleException(ObjectOptimisticLockingFailureException exception, HttpServletRequest request) {
+        count(exception, request);
+        return CONCURRENT_UPDATE;
+    }
+
+    @ExceptionHandler(CrossShardMovementsException.class)
+    public ResponseEntity<ExceptionResponse> handleException(CrossShardMovementsException exception, HttpServletRequest request) {
+        count(exception, request);
+        return CROSS_SHARD;
+    }
+
+    @ExceptionHandler(StockUpdatesBusyException.class)
+    public ResponseEntity<ExceptionResponse> handleException(StockUpdatesBusyException exception, HttpServletRequest request) {
+        count(exception, request);
+        return UPDATES_BUSY;
+    }
+
+    @ExceptionHandler(StockMovementsRejectedException.class)
+    public ResponseEntity<List<StockMovementResultDto>> handleException(StockMovementsRejectedException exception, HttpServletRequest request) {
+        count(exception, request);
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(exception.getResults());
+    }
+
+    private static ResponseEntity<ExceptionResponse> response(HttpStatus status, BusinessException exception) {
+        return ResponseEntity.status(status).body(new ExceptionResponse(exception.getMessage()));
+    }
+
+    private void count(Exception exception, HttpServletRequest request) {
+        meterRegistry.counter(EXCEPTIONS_COUNTER,
+                "exception", exception.getClass().getSimpleName(),
+                "method", request.getMethod(),
+                "uri", MetricsConfig.uri(request)).increment();
     }
 }
@@ -0,0 +1,14 @@
+package com.pedrogobira.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends BusinessException {
+
+    public static final InvalidCursorException INSTANCE = new InvalidCursorException();
+
+    public InvalidCursorException() {
+        super("Invalid page cursor");
+    }
+}
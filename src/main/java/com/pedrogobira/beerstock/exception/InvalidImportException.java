@@ -0,0 +1,12 @@
+package com.pedrogobira.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidImportException extends BusinessException {
+
+    public InvalidImportException(String message) {
+        super(message);
+    }
+}
@@ -4,7 +4,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
-public class NegativeStockException extends RuntimeException {
+public class NegativeStockException extends BusinessException {
+
+    public static final NegativeStockException INSTANCE = new NegativeStockException();
 
     public NegativeStockException() {
         super("Stock quantity can't be negative");
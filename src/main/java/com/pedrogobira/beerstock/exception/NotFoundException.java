@@ -4,7 +4,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.NOT_FOUND)
-public class NotFoundException extends RuntimeException {
+public class NotFoundException extends BusinessException {
+
+    public static final NotFoundException INSTANCE = new NotFoundException();
 
     public NotFoundException() {
         super("Record(s) not found");
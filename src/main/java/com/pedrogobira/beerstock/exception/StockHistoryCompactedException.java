@@ -0,0 +1,14 @@
+package com.pedrogobira.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.GONE)
+public class StockHistoryCompactedException extends BusinessException {
+
+    public static final StockHistoryCompactedException INSTANCE = new StockHistoryCompactedException();
+
+    public StockHistoryCompactedException() {
+        super("Stock history before the requested time was compacted");
+    }
+}
@@ -0,0 +1,10 @@
+package com.pedrogobira.beerstock.exception;
+
+/**
+ * A hold settled after it expired. It answers like any hold that is gone, but the transaction that released the
+ * overdue hold on the way commits.
+ */
+public class StockHoldExpiredException extends NotFoundException {
+
+    public static final StockHoldExpiredException INSTANCE = new StockHoldExpiredException();
+}
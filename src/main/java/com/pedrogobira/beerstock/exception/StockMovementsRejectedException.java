@@ -0,0 +1,20 @@
+package com.pedrogobira.beerstock.exception;
+
+import com.pedrogobira.beerstock.dto.StockMovementResultDto;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+@Getter
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class StockMovementsRejectedException extends BusinessException {
+
+    private final transient List<StockMovementResultDto> results;
+
+    public StockMovementsRejectedException(List<StockMovementResultDto> results) {
+        super("Stock movements rejected");
+        this.results = results;
+    }
+}
@@ -0,0 +1,14 @@
+package com.pedrogobira.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class StockUpdatesBusyException extends BusinessException {
+
+    public static final StockUpdatesBusyException INSTANCE = new StockUpdatesBusyException();
+
+    public StockUpdatesBusyException() {
+        super("Too many stock updates are queued for this beer, try again");
+    }
+}
@@ -3,6 +3,8 @@ package com.pedrogobira.beerstock.mapper;
 import com.pedrogobira.beerstock.dto.BeerDto;
 import com.pedrogobira.beerstock.entity.Beer;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
 import org.mapstruct.factory.Mappers;
 
 @Mapper
@@ -12,5 +14,12 @@ public interface BeerMapper {
 
     BeerDto toDto(Beer beer);
 
+    @Mapping(target = "reserved", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Beer toEntity(BeerDto dto);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "reserved", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void updateEntity(BeerDto dto, @MappingTarget Beer beer);
 }
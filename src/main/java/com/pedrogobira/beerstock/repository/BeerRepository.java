@@ -1,11 +1,78 @@
 package com.pedrogobira.beerstock.repository;
 
+import com.pedrogobira.beerstock.dto.BeerDto;
 import com.pedrogobira.beerstock.entity.Beer;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface BeerRepository extends JpaRepository<Beer, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public interface BeerRepository extends JpaRepository<Beer, Long>, BeerRepositoryCustom {
 
     Optional<Beer> findByName(String name);
+
+    /**
+     * @return those of the names some beer already has, checking many names in one query
+     */
+    @Query("select b.name from Beer b where b.name in :names")
+    List<String> findNamesIn(@Param("names") Collection<String> names);
+
+    List<Beer> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Streams every beer in id order as DTOs, so rows don't pile up in the persistence context. Must be consumed
+     * and closed inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.pedrogobira.beerstock.dto.BeerDto(b.id, b.name, b.brand, b.max, b.quantity, b.type) " +
+            "from Beer b order by b.id")
+    Stream<BeerDto> streamAllAsDto();
+
+    /**
+     * Sets the quantity only if nobody changed the beer since the given version was read.
+     *
+     * @return 1 when the quantity was written, 0 when the version no longer matches (or the beer is gone)
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Beer b set b.quantity = :quantity, b.version = b.version + 1 where b.id = :id and b.version = :version")
+    int updateQuantityIfVersionMatches(@Param("id") Long id, @Param("quantity") int quantity, @Param("version") long version);
+
+    /**
+     * Puts the given quantity on hold if that much is available, that is neither sold nor already on hold.
+     *
+     * @return 1 when the stock was reserved, 0 when the beer doesn't exist or not enough is available
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Beer b set b.reserved = b.reserved + :quantity, b.version = b.version + 1 " +
+            "where b.id = :id and b.quantity - b.reserved >= :quantity")
+    int reserve(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Sells stock put on hold by {@link #reserve}: both the quantity and the stock on hold go down.
+     *
+     * @return 1 when the stock was sold, 0 when the beer doesn't exist
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Beer b set b.quantity = b.quantity - :quantity, b.reserved = b.reserved - :quantity, " +
+            "b.version = b.version + 1 where b.id = :id")
+    int confirmReserved(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Makes stock put on hold by {@link #reserve} available again.
+     *
+     * @return 1 when the stock was released, 0 when the beer doesn't exist
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Beer b set b.reserved = b.reserved - :quantity, b.version = b.version + 1 where b.id = :id")
+    int releaseReserved(@Param("id") Long id, @Param("quantity") int quantity);
 }
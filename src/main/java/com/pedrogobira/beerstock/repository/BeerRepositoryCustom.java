@@ -0,0 +1,42 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface BeerRepositoryCustom {
+
+    /**
+     * Adds the delta, negative to subtract, in a single conditional UPDATE checking both bounds, so concurrent
+     * mutations can't overwrite each other. The updated row comes back from the UPDATE itself, through H2's
+     * {@code final table} (PostgreSQL's {@code update ... returning}), so it takes one round trip.
+     *
+     * @return the updated beer, empty when the beer doesn't exist or the result would leave the range from the stock
+     * on hold to the max
+     */
+    Optional<Beer> applyQuantityDelta(Long id, int delta);
+
+    /**
+     * Applies every movement with the same conditional UPDATE as the single increment/decrement, sent as one JDBC
+     * batch in the given order.
+     *
+     * The driver has to report the row count of each batched statement, as H2, PostgreSQL and MySQL Connector/J do.
+     * Drivers answering {@link java.sql.Statement#SUCCESS_NO_INFO}, such as Oracle's before 12c, aren't supported.
+     *
+     * @return the affected row count of each movement, 1 for the applied ones and 0 for the ones rejected by the
+     * max/0 bounds or a missing beer
+     * @throws org.springframework.dao.IncorrectUpdateSemanticsDataAccessException when the driver doesn't report a
+     *                                                                              row count
+     */
+    int[] applyQuantityDeltas(List<StockMovementDto> movements);
+
+    /**
+     * Seeks the beers matching the specification with an id above {@code afterId}, in id order, selecting the
+     * columns straight into {@link BeerDto} without loading entities.
+     */
+    List<BeerDto> search(Specification<Beer> specification, long afterId, int limit);
+}
@@ -0,0 +1,88 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+class BeerRepositoryImpl implements BeerRepositoryCustom {
+
+    private static final String APPLY_QUANTITY_DELTA = "update beer set quantity = quantity + ?, version = version + 1 " +
+            "where id = ? and quantity + ? between reserved and max";
+    private static final String APPLY_QUANTITY_DELTA_RETURNING = "select * from final table (" +
+            "update beer set quantity = quantity + :delta, version = version + 1 " +
+            "where id = :id and quantity + :delta between reserved and max)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final int batchSize;
+
+    @Autowired
+    BeerRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager,
+                       @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Clears the persistence context first, as a managed copy of the beer would be returned in place of the row.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<Beer> applyQuantityDelta(Long id, int delta) {
+        entityManager.flush();
+        entityManager.clear();
+        List<Beer> updated = entityManager.createNativeQuery(APPLY_QUANTITY_DELTA_RETURNING, Beer.class)
+                .setParameter("delta", delta)
+                .setParameter("id", id)
+                .getResultList();
+        return updated.stream().findFirst();
+    }
+
+    @Override
+    public int[] applyQuantityDeltas(List<StockMovementDto> movements) {
+        entityManager.flush();
+        int[][] counts = jdbcTemplate.batchUpdate(APPLY_QUANTITY_DELTA, movements, batchSize, (statement, movement) -> {
+            statement.setInt(1, movement.getDelta());
+            statement.setLong(2, movement.getId());
+            statement.setInt(3, movement.getDelta());
+        });
+        entityManager.clear();
+        int[] flattened = Arrays.stream(counts).flatMapToInt(Arrays::stream).toArray();
+        // a count the driver doesn't know can't tell an applied movement from one the bounds rejected
+        if (Arrays.stream(flattened).anyMatch(count -> count == Statement.SUCCESS_NO_INFO)) {
+            throw new IncorrectUpdateSemanticsDataAccessException("The JDBC driver doesn't report the row count of "
+                    + "each batched statement, so applied stock movements can't be told from rejected ones");
+        }
+        return flattened;
+    }
+
+    @Override
+    public List<BeerDto> search(Specification<Beer> specification, long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BeerDto> query = cb.createQuery(BeerDto.class);
+        Root<Beer> root = query.from(Beer.class);
+        Predicate seek = cb.greaterThan(root.get("id"), afterId);
+        Predicate filter = specification.toPredicate(root, query, cb);
+        query.select(cb.construct(BeerDto.class, root.get("id"), root.get("name"), root.get("brand"),
+                        root.get("max"), root.get("quantity"), root.get("type")))
+                .where(filter == null ? seek : cb.and(filter, seek))
+                .orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,56 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.dto.BeerSearchDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.BeerType;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Expression;
+
+/**
+ * Search predicates on {@link Beer}. A null argument leaves the predicate out, so unset filters don't constrain the
+ * query. The equality filters come first to match the {@code brand, type, quantity} index.
+ */
+public final class BeerSpecifications {
+
+    private BeerSpecifications() {
+    }
+
+    public static Specification<Beer> matching(BeerSearchDto filter) {
+        return Specification.where(hasBrand(filter.getBrand()))
+                .and(hasType(filter.getType()))
+                .and(quantityBetween(filter.getMinQuantity(), filter.getMaxQuantity()))
+                .and(fillPercentBetween(filter.getMinFillPercent(), filter.getMaxFillPercent()));
+    }
+
+    public static Specification<Beer> hasBrand(String brand) {
+        return (root, query, cb) -> brand == null ? null : cb.equal(root.get("brand"), brand);
+    }
+
+    public static Specification<Beer> hasType(BeerType type) {
+        return (root, query, cb) -> type == null ? null : cb.equal(root.get("type"), type);
+    }
+
+    public static Specification<Beer> quantityBetween(Integer min, Integer max) {
+        return (root, query, cb) -> {
+            if (min != null && max != null) return cb.between(root.get("quantity"), min, max);
+            if (min != null) return cb.greaterThanOrEqualTo(root.get("quantity"), min);
+            if (max != null) return cb.lessThanOrEqualTo(root.get("quantity"), max);
+            return null;
+        };
+    }
+
+    /**
+     * Compares {@code quantity * 100} with {@code max * percent} so the ratio stays in integer arithmetic.
+     */
+    public static Specification<Beer> fillPercentBetween(Integer minPercent, Integer maxPercent) {
+        return (root, query, cb) -> {
+            if (minPercent == null && maxPercent == null) return null;
+            Expression<Integer> scaledQuantity = cb.prod(root.<Integer>get("quantity"), 100);
+            if (minPercent == null) return cb.le(scaledQuantity, cb.prod(root.<Integer>get("max"), maxPercent));
+            if (maxPercent == null) return cb.ge(scaledQuantity, cb.prod(root.<Integer>get("max"), minPercent));
+            return cb.and(cb.ge(scaledQuantity, cb.prod(root.<Integer>get("max"), minPercent)),
+                    cb.le(scaledQuantity, cb.prod(root.<Integer>get("max"), maxPercent)));
+        };
+    }
+}
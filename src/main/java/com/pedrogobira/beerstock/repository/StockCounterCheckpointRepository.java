@@ -0,0 +1,7 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.entity.StockCounterCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface StockCounterCheckpointRepository extends JpaRepository<StockCounterCheckpoint, Long> {
+}
@@ -0,0 +1,32 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.entity.StockHold;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import javax.persistence.LockModeType;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface StockHoldRepository extends JpaRepository<StockHold, Long> {
+
+    /**
+     * Locks the hold, so a confirmation, a release and its expiry can't settle it twice.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<StockHold> findByIdAndBeerId(Long id, Long beerId);
+
+    /**
+     * Locks the holds still there among the given ones.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<StockHold> findByIdIn(Collection<Long> ids);
+
+    /**
+     * Reads, without locking, the holds that expired before the given time, oldest first.
+     */
+    List<StockHold> findByExpiresAtBeforeOrderByExpiresAt(Instant expiresAt, Pageable pageable);
+}
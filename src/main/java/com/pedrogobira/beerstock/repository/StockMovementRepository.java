@@ -0,0 +1,33 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.entity.StockMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long>, StockMovementRepositoryCustom {
+
+    boolean existsByBeerId(Long beerId);
+
+    /**
+     * Sums the beer's movements with an id above {@code afterId} created up to {@code upTo}, a range scan of the
+     * (beer_id, id) index.
+     */
+    @Query("select coalesce(sum(m.delta), 0) from StockMovement m " +
+            "where m.beerId = :beerId and m.id > :afterId and m.createdAt <= :upTo")
+    long sumDeltas(@Param("beerId") Long beerId, @Param("afterId") long afterId, @Param("upTo") Instant upTo);
+
+    /**
+     * Deletes every movement folded into the beer's newest snapshot taken at or before the horizon.
+     *
+     * @return the number of deleted movements
+     */
+    @Modifying
+    @Query(value = "delete from stock_movement m where m.id <= (select s.last_movement_id from stock_snapshot s " +
+            "where s.beer_id = m.beer_id and s.as_of = (select max(l.as_of) from stock_snapshot l " +
+            "where l.beer_id = m.beer_id and l.as_of <= :horizon))", nativeQuery = true)
+    int deleteCoveredBySnapshots(@Param("horizon") Instant horizon);
+}
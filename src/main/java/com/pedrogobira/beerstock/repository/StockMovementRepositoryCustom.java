@@ -0,0 +1,13 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.entity.StockMovement;
+
+import java.util.List;
+
+public interface StockMovementRepositoryCustom {
+
+    /**
+     * Inserts the movements as one JDBC batch, which Hibernate can't do for identity ids.
+     */
+    void append(List<StockMovement> movements);
+}
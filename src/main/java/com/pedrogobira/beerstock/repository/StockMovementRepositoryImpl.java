@@ -0,0 +1,34 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.entity.StockMovement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+class StockMovementRepositoryImpl implements StockMovementRepositoryCustom {
+
+    private static final String APPEND = "insert into stock_movement (beer_id, delta, type, created_at) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    @Autowired
+    StockMovementRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void append(List<StockMovement> movements) {
+        jdbcTemplate.batchUpdate(APPEND, movements, batchSize, (statement, movement) -> {
+            statement.setLong(1, movement.getBeerId());
+            statement.setInt(2, movement.getDelta());
+            statement.setString(3, movement.getType().name());
+            statement.setTimestamp(4, Timestamp.from(movement.getCreatedAt()));
+        });
+    }
+}
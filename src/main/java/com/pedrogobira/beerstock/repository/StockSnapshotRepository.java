@@ -0,0 +1,59 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.entity.StockSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+
+    Optional<StockSnapshot> findFirstByBeerIdAndAsOfLessThanEqualOrderByAsOfDesc(Long beerId, Instant asOf);
+
+    boolean existsByBeerIdAndCompactedTrue(Long beerId);
+
+    @Query("select max(s.asOf) from StockSnapshot s")
+    Optional<Instant> findLatestAsOf();
+
+    /**
+     * @return the highest movement id folded by the newest snapshots taken before the given time
+     */
+    @Query("select max(s.lastMovementId) from StockSnapshot s where s.asOf = " +
+            "(select max(p.asOf) from StockSnapshot p where p.asOf < :before)")
+    Optional<Long> findLastMovementIdBefore(@Param("before") Instant before);
+
+    /**
+     * Snapshots every beer with movements created up to {@code asOf} that its newest snapshot didn't fold, adding them
+     * to that snapshot. Movements with an id up to {@code fromId} are taken as folded, so only the newer ones are
+     * read, through the primary key.
+     *
+     * @return the number of snapshots taken
+     */
+    @Modifying
+    @Query(value = "insert into stock_snapshot (beer_id, quantity, as_of, compacted, last_movement_id) " +
+            "select m.beer_id, coalesce(l.quantity, 0) + sum(m.delta), :asOf, false, max(m.id) " +
+            "from stock_movement m left join stock_snapshot l on l.beer_id = m.beer_id " +
+            "and l.as_of = (select max(p.as_of) from stock_snapshot p where p.beer_id = m.beer_id) " +
+            "where m.id > :fromId and m.created_at <= :asOf and m.id > coalesce(l.last_movement_id, 0) " +
+            "group by m.beer_id, l.quantity", nativeQuery = true)
+    int takeSnapshots(@Param("fromId") long fromId, @Param("asOf") Instant asOf);
+
+    /**
+     * Deletes the snapshots older than the beer's newest one taken at or before the horizon.
+     */
+    @Modifying
+    @Query(value = "delete from stock_snapshot s where s.as_of < (select max(l.as_of) from stock_snapshot l " +
+            "where l.beer_id = s.beer_id and l.as_of <= :horizon)", nativeQuery = true)
+    int deleteSupersededBefore(@Param("horizon") Instant horizon);
+
+    /**
+     * Flags the beer's newest snapshot taken at or before the horizon as the start of its history.
+     */
+    @Modifying
+    @Query(value = "update stock_snapshot s set compacted = true where s.as_of = (select max(l.as_of) " +
+            "from stock_snapshot l where l.beer_id = s.beer_id and l.as_of <= :horizon)", nativeQuery = true)
+    int markCompactedAt(@Param("horizon") Instant horizon);
+}
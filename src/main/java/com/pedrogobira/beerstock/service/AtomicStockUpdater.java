@@ -0,0 +1,51 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Applies the delta and checks the bounds inside one conditional UPDATE, which returns the updated row, so no
+ * update is lost and no version check, retry or second read is needed. This is the default mode.
+ */
+@Component
+@Transactional
+@ConditionalOnProperty(prefix = "application.stock", name = "mode", havingValue = "atomic", matchIfMissing = true)
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class AtomicStockUpdater implements StockUpdater {
+
+    private final BeerRepository repository;
+    private final StockLedger stockLedger;
+
+    @Override
+    public Beer increment(Long id, int quantity) {
+        Beer beer = repository.applyQuantityDelta(id, quantity).orElseThrow(() -> {
+            verifyByIdIfBeerExists(id);
+            return BeerStockExceededException.INSTANCE;
+        });
+        stockLedger.record(id, quantity, StockMovementType.INCREMENT);
+        return beer;
+    }
+
+    @Override
+    public Beer decrement(Long id, int quantity) {
+        Beer beer = repository.applyQuantityDelta(id, -quantity).orElseThrow(() -> {
+            verifyByIdIfBeerExists(id);
+            return NegativeStockException.INSTANCE;
+        });
+        stockLedger.record(id, -quantity, StockMovementType.DECREMENT);
+        return beer;
+    }
+
+    private Beer verifyByIdIfBeerExists(Long id) {
+        return repository.findById(id).orElseThrow(() -> NotFoundException.INSTANCE);
+    }
+}
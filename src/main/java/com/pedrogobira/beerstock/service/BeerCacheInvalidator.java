@@ -0,0 +1,51 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.CacheConfig;
+import com.pedrogobira.beerstock.config.ReplicaProperties;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evicts the cached snapshot of a changed beer once the change is committed, under its previous and current name.
+ * Evicting rather than putting the new state keeps out-of-order events from caching a stale snapshot; the next read
+ * loads the committed row, and a read that started before the eviction doesn't put its older row back (see
+ * {@code GenerationCheckedCache}). Changes made outside a transaction, like the stock updaters' increments, are
+ * handled right away.
+ * <p>
+ * With replicas, a miss right after the change may load a replica's older copy, so the snapshot is evicted again
+ * after {@code max-lag}, when every replica that gets reads has the change.
+ */
+@Component
+public class BeerCacheInvalidator {
+
+    private final Cache beersByName;
+    private final Executor afterMaxLag;
+
+    @Autowired
+    public BeerCacheInvalidator(CacheManager cacheManager, ReplicaProperties replicaProperties) {
+        this.beersByName = Objects.requireNonNull(cacheManager.getCache(CacheConfig.BEERS_BY_NAME));
+        this.afterMaxLag = replicaProperties.isEnabled()
+                ? CompletableFuture.delayedExecutor(replicaProperties.getMaxLag().toMillis(), TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        evict(event);
+        if (afterMaxLag != null) afterMaxLag.execute(() -> evict(event));
+    }
+
+    private void evict(BeerChangedEvent event) {
+        if (event.getPreviousName() != null) beersByName.evict(event.getPreviousName());
+        if (event.getBeer() != null) beersByName.evict(event.getBeer().getName());
+    }
+}
@@ -0,0 +1,70 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The CSV form of beers, for imports and exports: a header naming the columns, then a beer per line, with fields
+ * quoted when they hold a comma, a quote or a line break, and quotes inside them doubled (RFC 4180). A quoted field
+ * can't span lines on import.
+ */
+public final class BeerCsv {
+
+    public static final String MEDIA_TYPE_VALUE = "text/csv";
+
+    static final List<String> COLUMNS = Arrays.asList("id", "name", "brand", "max", "quantity", "type");
+
+    private BeerCsv() {
+    }
+
+    public static String header() {
+        return String.join(",", COLUMNS) + "\n";
+    }
+
+    public static String format(BeerDto beer) {
+        return beer.getId() + "," + quote(beer.getName()) + "," + quote(beer.getBrand()) + "," + beer.getMax() + ","
+                + beer.getQuantity() + "," + beer.getType() + "\n";
+    }
+
+    /**
+     * @throws IllegalArgumentException when a quoted field isn't closed
+     */
+    static List<String> parse(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("A quoted field isn't closed");
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String quote(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,179 @@
+package com.pedrogobira.beerstock.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.exception.InvalidImportException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads the beers of an upload a line at a time, as they arrive. A line that can't be read as a beer becomes a row
+ * with an error, and reading goes on with the next one. Blank lines are skipped.
+ */
+public abstract class BeerImportReader {
+
+    private final BufferedReader reader;
+    private long line;
+
+    private BeerImportReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the header: it must name the {@code name}, {@code brand}, {@code max}, {@code quantity} and {@code type}
+     * columns, in any order. Other columns, such as the {@code id} of an export, are ignored.
+     *
+     * @throws InvalidImportException when a column is missing
+     */
+    public static BeerImportReader csv(BufferedReader reader) throws IOException {
+        return new Csv(reader);
+    }
+
+    /**
+     * One {@link BeerDto} as JSON per line, like the NDJSON export. Ids are ignored.
+     */
+    public static BeerImportReader ndjson(BufferedReader reader, ObjectMapper objectMapper) {
+        return new Ndjson(reader, objectMapper);
+    }
+
+    /**
+     * @return the next row, null at the end of the upload
+     */
+    Row next() throws IOException {
+        String text;
+        while ((text = readLine()) != null) {
+            if (!text.isBlank()) return parse(line, text);
+        }
+        return null;
+    }
+
+    abstract Row parse(long number, String text);
+
+    String readLine() throws IOException {
+        String text = reader.readLine();
+        if (text != null) line++;
+        return text;
+    }
+
+    static final class Row {
+
+        final long line;
+        final BeerDto beer;
+        final String error;
+
+        private Row(long line, BeerDto beer, String error) {
+            this.line = line;
+            this.beer = beer;
+            this.error = error;
+        }
+
+        String name() {
+            return beer == null ? null : beer.getName();
+        }
+    }
+
+    private static final class Csv extends BeerImportReader {
+
+        private static final List<String> REQUIRED = Arrays.asList("name", "brand", "max", "quantity", "type");
+
+        private final Map<String, Integer> columns = new HashMap<>();
+        private final int width;
+
+        private Csv(BufferedReader reader) throws IOException {
+            super(reader);
+            String header = readLine();
+            if (header != null && header.startsWith("\uFEFF")) header = header.substring(1);
+            List<String> names;
+            try {
+                names = header == null ? Collections.emptyList() : BeerCsv.parse(header);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidImportException("The CSV header can't be read: " + e.getMessage());
+            }
+            for (int index = 0; index < names.size(); index++) {
+                columns.putIfAbsent(names.get(index).trim().toLowerCase(Locale.ROOT), index);
+            }
+            this.width = names.size();
+            if (!columns.keySet().containsAll(REQUIRED)) {
+                throw new InvalidImportException("The CSV header must name the columns " + String.join(", ", REQUIRED));
+            }
+        }
+
+        @Override
+        Row parse(long number, String text) {
+            List<String> fields;
+            try {
+                fields = BeerCsv.parse(text);
+            } catch (IllegalArgumentException e) {
+                return new Row(number, null, e.getMessage());
+            }
+            if (fields.size() < width) {
+                return new Row(number, null, "Expected " + width + " columns, got " + fields.size());
+            }
+            BeerDto beer = new BeerDto(null, field(fields, "name"), field(fields, "brand"), null, null, null);
+            try {
+                beer.setMax(number(fields, "max"));
+                beer.setQuantity(number(fields, "quantity"));
+                beer.setType(type(fields));
+            } catch (IllegalArgumentException e) {
+                return new Row(number, beer, e.getMessage());
+            }
+            return new Row(number, beer, null);
+        }
+
+        private String field(List<String> fields, String column) {
+            String value = fields.get(columns.get(column)).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private BeerType type(List<String> fields) {
+            String value = field(fields, "type");
+            if (value == null) return null;
+            try {
+                return BeerType.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("type must be one of " + Arrays.toString(BeerType.values()) + ", not " + value);
+            }
+        }
+
+        private Integer number(List<String> fields, String column) {
+            String value = field(fields, column);
+            if (value == null) return null;
+            try {
+                return Integer.valueOf(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(column + " must be a whole number, not " + value);
+            }
+        }
+    }
+
+    private static final class Ndjson extends BeerImportReader {
+
+        private final ObjectMapper objectMapper;
+
+        private Ndjson(BufferedReader reader, ObjectMapper objectMapper) {
+            super(reader);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        Row parse(long number, String text) {
+            try {
+                BeerDto beer = objectMapper.readValue(text, BeerDto.class);
+                if (beer == null) return new Row(number, null, "Expected a beer, got null");
+                beer.setId(null);
+                return new Row(number, beer, null);
+            } catch (JsonProcessingException e) {
+                return new Row(number, null, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+}
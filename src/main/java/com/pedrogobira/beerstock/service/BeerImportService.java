@@ -0,0 +1,193 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.ImportProperties;
+import com.pedrogobira.beerstock.config.MetricsConfig;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerImportErrorDto;
+import com.pedrogobira.beerstock.dto.BeerImportProgressDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
+import com.pedrogobira.beerstock.exception.BeerAlreadyExistsException;
+import com.pedrogobira.beerstock.mapper.BeerMapper;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Loads a catalog from an upload, {@code chunk-size} rows at a time, so memory use doesn't grow with the upload.
+ * The rows of a chunk are validated like {@code POST /api/v1/beers}. Their names are checked against each other and,
+ * with one query per shard, against the beers already there. The new beers are then inserted in JDBC batches, which
+ * their sequence ids allow, in one transaction per shard with their ledger movements. Every rejected row, and the
+ * totals after each chunk, are handed to a {@link Listener} as the upload goes.
+ * <p>
+ * The name check can miss a beer of the same name saved meanwhile. Like a save, each insert claims its names in the
+ * {@link BeerNameDirectory} when there are several shards, and the unique constraint catches the rest on the same
+ * shard. A transaction failing either is inserted again one row at a time, to tell which rows failed.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BeerImportService {
+
+    public static final String ROWS_COUNTER = "beer.import.rows";
+
+    private final BeerRepository repository;
+    private final StockLedger stockLedger;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shards;
+    private final BeerNameDirectory names;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ImportProperties properties;
+    private final Counter importedRows;
+    private final Counter rejectedRows;
+    private final BeerMapper mapper = BeerMapper.INSTANCE;
+
+    @Autowired
+    public BeerImportService(BeerRepository repository, StockLedger stockLedger, ApplicationEventPublisher eventPublisher,
+                             ShardRouter shards, BeerNameDirectory names, PlatformTransactionManager transactionManager,
+                             Validator validator, ImportProperties properties, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.stockLedger = stockLedger;
+        this.eventPublisher = eventPublisher;
+        this.shards = shards;
+        this.names = names;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.properties = properties;
+        this.importedRows = meterRegistry.counter(ROWS_COUNTER, "outcome", "imported");
+        this.rejectedRows = meterRegistry.counter(ROWS_COUNTER, "outcome", "rejected");
+    }
+
+    /**
+     * @return the totals, also given to the listener as the last progress
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    public BeerImportProgressDto importBeers(BeerImportReader reader, Listener listener) throws IOException {
+        int chunkSize = Math.max(1, properties.getChunkSize());
+        List<BeerImportReader.Row> chunk = new ArrayList<>(chunkSize);
+        long rows = 0;
+        long imported = 0;
+        BeerImportReader.Row row;
+        do {
+            row = reader.next();
+            if (row != null) chunk.add(row);
+            if (chunk.size() == chunkSize || (row == null && !chunk.isEmpty())) {
+                rows += chunk.size();
+                imported += importChunk(chunk, listener);
+                chunk.clear();
+                if (row != null) listener.progress(new BeerImportProgressDto(rows, imported, rows - imported, false));
+            }
+        } while (row != null);
+        BeerImportProgressDto totals = new BeerImportProgressDto(rows, imported, rows - imported, true);
+        listener.progress(totals);
+        return totals;
+    }
+
+    /**
+     * @return the number of beers inserted
+     */
+    private int importChunk(List<BeerImportReader.Row> chunk, Listener listener) {
+        Map<String, BeerImportReader.Row> candidates = new LinkedHashMap<>();
+        for (BeerImportReader.Row row : chunk) {
+            String error = row.error != null ? row.error : violations(row);
+            if (error == null && candidates.putIfAbsent(row.name(), row) != null) {
+                error = new BeerAlreadyExistsException(row.name()).getMessage();
+            }
+            if (error != null) reject(row, error, listener);
+        }
+        if (candidates.isEmpty()) return 0;
+
+        Set<String> existing = new HashSet<>();
+        shards.gather(shard -> repository.findNamesIn(candidates.keySet())).forEach(existing::addAll);
+        Map<Integer, List<BeerImportReader.Row>> rowsByShard = new TreeMap<>();
+        for (BeerImportReader.Row row : candidates.values()) {
+            if (existing.contains(row.name())) {
+                reject(row, new BeerAlreadyExistsException(row.name()).getMessage(), listener);
+            } else {
+                rowsByShard.computeIfAbsent(shards.shardOfBrand(row.beer.getBrand()), shard -> new ArrayList<>()).add(row);
+            }
+        }
+
+        int imported = 0;
+        for (Map.Entry<Integer, List<BeerImportReader.Row>> shard : rowsByShard.entrySet()) {
+            try {
+                imported += insert(shard.getKey(), shard.getValue());
+            } catch (DataIntegrityViolationException | BeerAlreadyExistsException e) {
+                for (BeerImportReader.Row row : shard.getValue()) {
+                    try {
+                        imported += insert(shard.getKey(), Collections.singletonList(row));
+                    } catch (DataIntegrityViolationException | BeerAlreadyExistsException rowError) {
+                        reject(row, new BeerAlreadyExistsException(row.name()).getMessage(), listener);
+                    }
+                }
+            }
+        }
+        importedRows.increment(imported);
+        return imported;
+    }
+
+    /**
+     * Flushes before the commit, so a broken constraint surfaces as a {@link DataIntegrityViolationException}.
+     */
+    private int insert(int shard, List<BeerImportReader.Row> rows) {
+        return shards.on(shard, () -> transactionTemplate.execute(status -> {
+            rows.forEach(row -> names.claim(row.name()));
+            List<Beer> beers = rows.stream().map(row -> mapper.toEntity(row.beer)).collect(Collectors.toList());
+            repository.saveAll(beers);
+            repository.flush();
+            stockLedger.record(beers.stream()
+                    .map(beer -> new StockMovementDto(beer.getId(), beer.getQuantity()))
+                    .collect(Collectors.toList()), StockMovementType.CREATED);
+            beers.forEach(beer -> eventPublisher.publishEvent(new BeerChangedEvent(beer.getId(), null, null, mapper.toDto(beer))));
+            return beers.size();
+        }));
+    }
+
+    private String violations(BeerImportReader.Row row) {
+        Set<ConstraintViolation<BeerDto>> violations = validator.validate(row.beer);
+        if (violations.isEmpty()) return null;
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted(Comparator.naturalOrder())
+                .collect(Collectors.joining(", "));
+    }
+
+    private void reject(BeerImportReader.Row row, String error, Listener listener) {
+        rejectedRows.increment();
+        listener.rejected(new BeerImportErrorDto(row.line, row.name(), error));
+    }
+
+    /**
+     * Receives an import's results as it goes, on the thread running it.
+     */
+    public interface Listener {
+
+        void rejected(BeerImportErrorDto error);
+
+        void progress(BeerImportProgressDto progress);
+    }
+}
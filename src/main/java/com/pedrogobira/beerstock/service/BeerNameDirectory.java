@@ -0,0 +1,71 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.ShardRoutingDataSource;
+import com.pedrogobira.beerstock.entity.BeerName;
+import com.pedrogobira.beerstock.exception.BeerAlreadyExistsException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Keeps beer names unique across the shards, as a {@link BeerName} row on shard 0 per name. A beer's name is claimed
+ * before the beer is written, in the transaction of whichever shard it lives on, and released once that transaction
+ * has deleted or renamed it. The directory is written through its own auto-committed connection to shard 0, since a
+ * transaction stays on the shard it started on; a claim made for a transaction that rolls back is released after it.
+ * <p>
+ * A process stopping between a claim and its release leaves the name claimed without a beer. With one shard the
+ * directory is off, the unique constraint on the beer table being enough.
+ */
+@Component
+public class BeerNameDirectory {
+
+    private final JdbcTemplate directory;
+
+    @Autowired
+    public BeerNameDirectory(ObjectProvider<ShardRoutingDataSource> shardedDataSource, ShardRouter shards) {
+        ShardRoutingDataSource dataSource = shardedDataSource.getIfAvailable();
+        this.directory = dataSource != null && shards.count() > 1 ? new JdbcTemplate(dataSource.shard(0)) : null;
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Claims the name for the current transaction, until it rolls back.
+     *
+     * @throws BeerAlreadyExistsException if the name is claimed already
+     */
+    public void claim(String name) {
+        if (directory == null) return;
+        try {
+            directory.update("insert into beer_name (name) values (?)", name);
+        } catch (DuplicateKeyException e) {
+            throw new BeerAlreadyExistsException(name);
+        }
+        afterCompletion(status -> status != TransactionSynchronization.STATUS_COMMITTED, name);
+    }
+
+    /**
+     * Releases the name once the current transaction commits.
+     */
+    public void releaseOnCommit(String name) {
+        if (directory == null) return;
+        afterCompletion(status -> status == TransactionSynchronization.STATUS_COMMITTED, name);
+    }
+
+    private void afterCompletion(IntPredicate release, String name) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (release.test(status)) directory.update("delete from beer_name where name = ?", name);
+            }
+        });
+    }
+}
@@ -1,100 +1,279 @@
 package com.pedrogobira.beerstock.service;
 
+import com.pedrogobira.beerstock.config.CacheConfig;
+import com.pedrogobira.beerstock.config.MetricsConfig;
+import com.pedrogobira.beerstock.config.PaginationProperties;
+import com.pedrogobira.beerstock.config.ReadAfterWrite;
 import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerPageDto;
+import com.pedrogobira.beerstock.dto.BeerSearchDto;
 import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.dto.StockMovementResultDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.dto.StockQuantityDto;
 import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.StockMovementMode;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
+import com.pedrogobira.beerstock.enums.StockMovementStatus;
 import com.pedrogobira.beerstock.exception.BeerAlreadyExistsException;
-import com.pedrogobira.beerstock.exception.BeerStockExceededException;
 import com.pedrogobira.beerstock.exception.NegativeStockException;
 import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.exception.StockMovementsRejectedException;
 import com.pedrogobira.beerstock.mapper.BeerMapper;
 import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.repository.BeerSpecifications;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class BeerService {
 
     private final BeerRepository repository;
+    private final StockUpdater stockUpdater;
+    private final StockLedger stockLedger;
+    private final PaginationProperties paginationProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shards;
+    private final BeerNameDirectory names;
     private final BeerMapper mapper = BeerMapper.INSTANCE;
 
+    @Timed(MetricsConfig.SERVICE_TIMER)
     @Transactional
     public BeerDto save(BeerDto dto) {
         verifyIfBeerIsAlreadyRegistered(dto.getName());
         Beer beer = mapper.toEntity(dto);
         beer = repository.save(beer);
-        return mapper.toDto(beer);
+        BeerDto saved = mapper.toDto(beer);
+        stockLedger.record(saved.getId(), saved.getQuantity(), StockMovementType.CREATED);
+        eventPublisher.publishEvent(new BeerChangedEvent(saved.getId(), null, null, saved));
+        return saved;
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Served from the {@link CacheConfig#BEERS_BY_NAME} cache when possible, without opening a transaction. Only the
+     * misses reach the timer; the hits show in the cache metrics. A miss looks the name up on every shard. A lookup
+     * that must read after a write ({@link ReadAfterWrite}) skips the cache, which may hold a replica's older copy.
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Cacheable(cacheNames = CacheConfig.BEERS_BY_NAME,
+            condition = "T(com.pedrogobira.beerstock.config.ReadAfterWrite).required() == null")
     public BeerDto findByName(String name) {
-        return mapper.toDto(verifyByNameIfBeerExists(name));
+        return shards.gather(shard -> repository.findByName(name).map(mapper::toDto)).stream()
+                .flatMap(Optional::stream)
+                .findFirst()
+                .orElseThrow(() -> NotFoundException.INSTANCE);
     }
 
-    @Transactional(readOnly = true)
-    public List<BeerDto> findAll() {
-        return repository.findAll().stream().map(mapper::toDto).collect(Collectors.toList());
+    /**
+     * Returns the page of beers following the cursor, in id order. Seeking by id keeps every page as cheap as the
+     * first one, unlike an offset. Every shard is asked for a page in parallel, and the pages are merged.
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    public BeerPageDto findAll(String cursor, Integer size) {
+        int pageSize = paginationProperties.pageSize(size);
+        long afterId = PageCursor.decode(cursor);
+        List<List<BeerDto>> pages = shards.gather(shard -> repository.findByIdGreaterThanOrderByIdAsc(afterId,
+                PageRequest.of(0, pageSize + 1)).stream().map(mapper::toDto).collect(Collectors.toList()));
+        return page(merge(pages, pageSize + 1), pageSize);
     }
 
+    /**
+     * Returns the page of beers matching the filter following the cursor, in id order, gathered from the shards like
+     * {@link #findAll}.
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    public BeerPageDto search(BeerSearchDto filter, String cursor, Integer size) {
+        int pageSize = paginationProperties.pageSize(size);
+        long afterId = PageCursor.decode(cursor);
+        Specification<Beer> specification = BeerSpecifications.matching(filter);
+        List<List<BeerDto>> pages = shards.gather(shard -> repository.search(specification, afterId, pageSize + 1));
+        return page(merge(pages, pageSize + 1), pageSize);
+    }
+
+    /**
+     * Hands every beer to the consumer as it is read from a forward-only cursor, so memory use doesn't grow with the
+     * table. The shards are read one after the other, which keeps the id order: a shard's ids are all above the
+     * previous shard's.
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    public void streamAll(Consumer<BeerDto> consumer) {
+        shards.scan(shard -> {
+            try (Stream<BeerDto> beers = repository.streamAllAsDto()) {
+                beers.forEach(consumer);
+            }
+            return null;
+        });
+    }
+
+    @Timed(MetricsConfig.SERVICE_TIMER)
     @Transactional
     public void delete(Long id) {
-        repository.delete(verifyByIdIfBeerExists(id));
+        stockUpdater.release(id);
+        Beer beer = verifyByIdIfBeerExists(id);
+        repository.delete(beer);
+        names.releaseOnCommit(beer.getName());
+        stockLedger.record(id, -beer.getQuantity(), StockMovementType.DELETED);
+        eventPublisher.publishEvent(new BeerChangedEvent(id, beer.getName(), beer.getQuantity(), null));
     }
 
+    @Timed(MetricsConfig.SERVICE_TIMER)
     @Transactional
     public void update(Long id, BeerDto dto) {
-        verifyByIdIfBeerExists(id);
-        dto.setId(id);
-        Beer beer = mapper.toEntity(dto);
+        stockUpdater.release(id);
+        Beer beer = verifyByIdIfBeerExists(id);
+        String previousName = beer.getName();
+        Integer previousQuantity = beer.getQuantity();
+        if (dto.getQuantity() < beer.getReserved()) throw NegativeStockException.INSTANCE;
+        if (!previousName.equals(dto.getName())) {
+            names.claim(dto.getName());
+            names.releaseOnCommit(previousName);
+        }
+        mapper.updateEntity(dto, beer);
         repository.save(beer);
+        stockLedger.record(id, beer.getQuantity() - previousQuantity, StockMovementType.UPDATED);
+        eventPublisher.publishEvent(new BeerChangedEvent(id, previousName, previousQuantity, mapper.toDto(beer)));
     }
 
-    @Transactional
+    /**
+     * Replays the stock ledger up to the given time, or up to now without one.
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    public StockQuantityDto findQuantityAt(Long id, Instant at) {
+        Instant time = at == null ? Instant.now() : at;
+        return new StockQuantityDto(id, stockLedger.quantityAt(id, time), time);
+    }
+
+    /**
+     * Runs in the transaction of the configured {@link StockUpdater}, if it uses one.
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
     public BeerDto increment(Long id, QuantityDto dto) {
-        Beer beer = verifyByIdIfBeerExists(id);
-        int newQuantity = beer.getQuantity() + dto.getQuantity();
-        if (newQuantity <= beer.getMax()) {
-            return mapper.toDto(setNewStockQuantity(beer, newQuantity));
-        } else {
-            throw new BeerStockExceededException();
-        }
+        return stockChanged(mapper.toDto(stockUpdater.increment(id, dto.getQuantity())), dto.getQuantity());
     }
 
-    @Transactional
+    @Timed(MetricsConfig.SERVICE_TIMER)
     public BeerDto decrement(Long id, QuantityDto dto) {
-        Beer beer = verifyByIdIfBeerExists(id);
-        int newQuantity = beer.getQuantity() - dto.getQuantity();
-        if (newQuantity >= 0) {
-            return mapper.toDto(setNewStockQuantity(beer, newQuantity));
-        } else {
-            throw new NegativeStockException();
-        }
+        return stockChanged(mapper.toDto(stockUpdater.decrement(id, dto.getQuantity())), -dto.getQuantity());
     }
 
+    private BeerDto stockChanged(BeerDto beer, int delta) {
+        eventPublisher.publishEvent(new BeerChangedEvent(beer.getId(), beer.getName(), beer.getQuantity() - delta, beer));
+        return beer;
+    }
+
+    /**
+     * Applies all movements in one transaction, ordered by beer id so concurrent batches lock rows in the same order.
+     * Movements for the same beer keep their relative order, and the results follow the order of the request.
+     *
+     * @throws StockMovementsRejectedException in {@link StockMovementMode#ALL_OR_NOTHING} mode when any movement is
+     *                                         rejected, after rolling back the others
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
     @Transactional
-    private Beer setNewStockQuantity(Beer beer, int newQuantity) {
-        beer.setQuantity(newQuantity);
-        return repository.save(beer);
+    public List<StockMovementResultDto> move(StockMovementsDto dto) {
+        List<StockMovementDto> requested = dto.getMovements();
+        requested.stream().map(StockMovementDto::getId).distinct().forEach(stockUpdater::release);
+        List<Integer> order = IntStream.range(0, requested.size()).boxed()
+                .sorted(Comparator.comparing(index -> requested.get(index).getId()))
+                .collect(Collectors.toList());
+        int[] counts = repository.applyQuantityDeltas(order.stream().map(requested::get).collect(Collectors.toList()));
+
+        Set<Long> ids = requested.stream().map(StockMovementDto::getId).collect(Collectors.toSet());
+        Map<Long, Beer> beers = repository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Beer::getId, Function.identity()));
+        boolean rejected = false;
+        StockMovementResultDto[] results = new StockMovementResultDto[requested.size()];
+        for (int i = 0; i < order.size(); i++) {
+            StockMovementDto movement = requested.get(order.get(i));
+            Beer beer = beers.get(movement.getId());
+            StockMovementStatus status;
+            if (counts[i] == 1) status = StockMovementStatus.APPLIED;
+            else if (beer == null) status = StockMovementStatus.NOT_FOUND;
+            else if (movement.getDelta() > 0) status = StockMovementStatus.STOCK_EXCEEDED;
+            else status = StockMovementStatus.NEGATIVE_STOCK;
+            rejected |= status != StockMovementStatus.APPLIED;
+            results[order.get(i)] = new StockMovementResultDto(movement.getId(), movement.getDelta(), status,
+                    status == StockMovementStatus.APPLIED ? beer.getQuantity() : null);
+        }
+
+        if (rejected && dto.getMode() == StockMovementMode.ALL_OR_NOTHING) {
+            Arrays.stream(results)
+                    .filter(result -> result.getStatus() == StockMovementStatus.APPLIED)
+                    .forEach(result -> {
+                        result.setStatus(StockMovementStatus.ROLLED_BACK);
+                        result.setQuantity(null);
+                    });
+            throw new StockMovementsRejectedException(Arrays.asList(results));
+        }
+        List<StockMovementDto> applied = Arrays.stream(results)
+                .filter(result -> result.getStatus() == StockMovementStatus.APPLIED)
+                .map(result -> new StockMovementDto(result.getId(), result.getDelta()))
+                .collect(Collectors.toList());
+        stockLedger.record(applied, StockMovementType.BATCH);
+        Map<Long, Integer> appliedDeltas = applied.stream()
+                .collect(Collectors.toMap(StockMovementDto::getId, StockMovementDto::getDelta, Integer::sum, LinkedHashMap::new));
+        appliedDeltas.forEach((id, delta) -> {
+            Beer beer = beers.get(id);
+            eventPublisher.publishEvent(new BeerChangedEvent(id, beer.getName(), beer.getQuantity() - delta, mapper.toDto(beer)));
+        });
+        return Arrays.asList(results);
     }
 
+    /**
+     * With several shards the name is claimed in the {@link BeerNameDirectory}, which keeps it unique across them.
+     */
     private void verifyIfBeerIsAlreadyRegistered(String name) {
-        Optional<Beer> optionalBeer = repository.findByName(name);
-        if (optionalBeer.isPresent()) throw new BeerAlreadyExistsException(name);
+        if (names.isEnabled()) names.claim(name);
+        else if (repository.findByName(name).isPresent()) throw new BeerAlreadyExistsException(name);
+    }
+
+    private Beer verifyByIdIfBeerExists(Long id) {
+        return repository.findById(id).orElseThrow(() -> NotFoundException.INSTANCE);
     }
 
-    private Beer verifyByNameIfBeerExists(String name) {
-        return repository.findByName(name).orElseThrow(NotFoundException::new);
+    /**
+     * @return the first {@code limit} beers of the shards' id-ordered lists, in id order
+     */
+    private static List<BeerDto> merge(List<List<BeerDto>> beersByShard, int limit) {
+        if (beersByShard.size() == 1) return beersByShard.get(0);
+        return beersByShard.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(BeerDto::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
     }
 
-    private Beer verifyByIdIfBeerExists(Long id) {
-        return repository.findById(id).orElseThrow(NotFoundException::new);
+    /**
+     * @param beers up to one more beer than the page holds, telling whether there's a next page
+     */
+    private static BeerPageDto page(List<BeerDto> beers, int pageSize) {
+        List<BeerDto> content = beers.size() > pageSize ? beers.subList(0, pageSize) : beers;
+        String nextCursor = beers.size() > pageSize ? PageCursor.encode(content.get(pageSize - 1).getId()) : null;
+        return new BeerPageDto(content, nextCursor);
     }
 
 }
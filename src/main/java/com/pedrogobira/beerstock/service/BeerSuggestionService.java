@@ -0,0 +1,173 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.MetricsConfig;
+import com.pedrogobira.beerstock.config.SearchProperties;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerSuggestionDto;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Typo-tolerant autocomplete over beer names and brands, answered from a {@link TrigramIndex} in memory rather than
+ * by the database.
+ * <p>
+ * The index is loaded from every shard once the application is ready, and then follows the committed
+ * {@link BeerChangedEvent}s of this instance. Changes made by other instances show at the next reload, every
+ * {@code rebuild-interval}. A reload fills a new index while the current one keeps answering, and replays the changes
+ * committed meanwhile before taking its place. {@code beer.search.index.beers} shows its size and
+ * {@code beer.search.index.bytes} its memory footprint, measured once per reload since that walks the whole index.
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BeerSuggestionService {
+
+    public static final String INDEX_BEERS_GAUGE = "beer.search.index.beers";
+    public static final String INDEX_BYTES_GAUGE = "beer.search.index.bytes";
+
+    private final BeerRepository repository;
+    private final ShardRouter shards;
+    private final TransactionTemplate transactionTemplate;
+    private final SearchProperties properties;
+    private final Lock updateLock = new ReentrantLock();
+    private volatile TrigramIndex index = new TrigramIndex();
+    private volatile long indexBytes;
+    private List<BeerChangedEvent> changedWhileRebuilding;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public BeerSuggestionService(BeerRepository repository, ShardRouter shards,
+                                 PlatformTransactionManager transactionManager, SearchProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        Gauge.builder(INDEX_BEERS_GAUGE, this, service -> service.index.size()).register(meterRegistry);
+        Gauge.builder(INDEX_BYTES_GAUGE, this, service -> service.indexBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the index once the application is ready, which is after every shard's schema is created, the replicated
+     * ones included. A first load that fails leaves the index empty until the next reload rather than stopping the
+     * application: suggestions are a convenience the rest of the API doesn't depend on.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuildQuietly();
+        long interval = properties.getRebuildInterval().toMillis();
+        if (interval <= 0) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("beer-search-index-"));
+        scheduler.scheduleWithFixedDelay(this::rebuildQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * @return the beers whose name and brand best match the query, typos included, best first
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    public List<BeerSuggestionDto> suggest(String query, Integer size) {
+        return index.search(query, properties.size(size), properties.getMinScore()).stream()
+                .map(match -> new BeerSuggestionDto(match.getId(), match.getName(), match.getBrand(), match.getScore()))
+                .collect(Collectors.toList());
+    }
+
+    public TrigramIndex.Footprint footprint() {
+        return index.footprint();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        updateLock.lock();
+        try {
+            apply(index, event);
+            if (changedWhileRebuilding != null) changedWhileRebuilding.add(event);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Reloads the index. The beers are read in read-write transactions, which go to the primaries, so the reload
+     * can't miss a change whose event came before it started.
+     */
+    public void rebuild() {
+        updateLock.lock();
+        try {
+            changedWhileRebuilding = new ArrayList<>();
+        } finally {
+            updateLock.unlock();
+        }
+        TrigramIndex rebuilt = new TrigramIndex();
+        boolean loaded = false;
+        try {
+            shards.each(shard -> transactionTemplate.execute(status -> {
+                try (Stream<BeerDto> beers = repository.streamAllAsDto()) {
+                    beers.forEach(beer -> rebuilt.put(beer.getId(), beer.getName(), beer.getBrand()));
+                }
+                return null;
+            }));
+            loaded = true;
+        } finally {
+            updateLock.lock();
+            try {
+                if (loaded) {
+                    changedWhileRebuilding.forEach(event -> apply(rebuilt, event));
+                    index = rebuilt;
+                }
+                changedWhileRebuilding = null;
+            } finally {
+                updateLock.unlock();
+            }
+        }
+        TrigramIndex.Footprint footprint = rebuilt.footprint();
+        indexBytes = footprint.getTotalBytes();
+        log.debug("Search index rebuilt: {}", footprint);
+    }
+
+    private static void apply(TrigramIndex index, BeerChangedEvent event) {
+        if (event.getBeer() == null) index.remove(event.getId());
+        else index.put(event.getId(), event.getBeer().getName(), event.getBeer().getBrand());
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Search index rebuild failed, keeping the current one until the next", e);
+        }
+    }
+}
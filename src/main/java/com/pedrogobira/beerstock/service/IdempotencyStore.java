@@ -0,0 +1,146 @@
+package com.pedrogobira.beerstock.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pedrogobira.beerstock.config.IdempotencyProperties;
+import com.pedrogobira.beerstock.entity.IdempotencyRecord;
+import com.pedrogobira.beerstock.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the response to each idempotency key for {@code application.idempotency.ttl}, so a retried request is
+ * answered without running it again.
+ * <p>
+ * The first request with a key runs; duplicates arriving while it runs wait for its outcome instead of running
+ * alongside it. Only the responses the action returns are kept: when it returns null or throws, the key is
+ * released and the next duplicate, waiting or not, runs as a new request. The requests running are tracked apart from
+ * the kept responses, so evicting responses never lets a duplicate run alongside the request it duplicates. Responses
+ * live in a bounded Caffeine cache and, when {@code persistent} is on, in the {@code idempotency_record} table, which
+ * is only read when memory misses.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private final IdempotencyRecordRepository repository;
+    private final IdempotencyProperties properties;
+    private final Cache<String, IdempotencyRecord> responses;
+    private final ConcurrentMap<String, CompletableFuture<IdempotencyRecord>> running = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public IdempotencyStore(IdempotencyRecordRepository repository, IdempotencyProperties properties) {
+        this.repository = repository;
+        this.properties = properties;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isPersistent()) return;
+        long interval = properties.getPurgeInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("idempotency-purge-"));
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param action runs the request, returning the response to keep or null when it shouldn't be replayed
+     * @return the response kept for the key by an earlier request, empty when the action ran for this one
+     */
+    public Optional<IdempotencyRecord> execute(String key, Supplier<IdempotencyRecord> action) {
+        while (true) {
+            IdempotencyRecord kept = responses.getIfPresent(key);
+            if (kept != null) return Optional.of(kept);
+            CompletableFuture<IdempotencyRecord> execution = new CompletableFuture<>();
+            CompletableFuture<IdempotencyRecord> previous = running.putIfAbsent(key, execution);
+            if (previous == null) return run(key, execution, action);
+            IdempotencyRecord response = previous.join();
+            if (response != null) return Optional.of(response);
+        }
+    }
+
+    /**
+     * Deletes the persisted responses older than the ttl.
+     *
+     * @return the number of deleted responses
+     */
+    public int purge() {
+        return repository.deleteCreatedBefore(Instant.now().minus(properties.getTtl()));
+    }
+
+    private Optional<IdempotencyRecord> run(String key, CompletableFuture<IdempotencyRecord> execution,
+                                            Supplier<IdempotencyRecord> action) {
+        IdempotencyRecord response = null;
+        try {
+            // the request this one duplicates may have completed since the lookup in execute
+            IdempotencyRecord kept = responses.getIfPresent(key);
+            if (kept != null) {
+                response = kept;
+                return Optional.of(kept);
+            }
+            Optional<IdempotencyRecord> persisted = findPersisted(key);
+            if (persisted.isPresent()) {
+                response = persisted.get();
+                return persisted;
+            }
+            response = action.get();
+            if (response != null && properties.isPersistent()) persist(response);
+            return Optional.empty();
+        } finally {
+            // kept before the key is released, so a duplicate finds either the running request or its response
+            if (response != null) responses.put(key, response);
+            running.remove(key, execution);
+            execution.complete(response);
+        }
+    }
+
+    private Optional<IdempotencyRecord> findPersisted(String key) {
+        if (!properties.isPersistent()) return Optional.empty();
+        Instant horizon = Instant.now().minus(properties.getTtl());
+        return repository.findById(key).filter(record -> record.getCreatedAt().isAfter(horizon));
+    }
+
+    /**
+     * The request already ran, so a failure here only costs the replay after a restart or an eviction.
+     */
+    private void persist(IdempotencyRecord response) {
+        try {
+            repository.save(response);
+        } catch (RuntimeException e) {
+            log.warn("Could not persist the response to idempotency key {}", response.getRequestKey(), e);
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            log.debug("Purged {} expired idempotency records", purge());
+        } catch (RuntimeException e) {
+            log.error("Idempotency record purge failed, retrying on the next one", e);
+        }
+    }
+}
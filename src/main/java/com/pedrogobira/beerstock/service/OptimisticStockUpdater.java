@@ -0,0 +1,107 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.StockProperties;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.ConcurrentStockUpdateException;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reads the beer, checks the bounds in Java and writes the new quantity only if the version it read is still
+ * current. A conflicting write is retried with exponential backoff and jitter, and a mutation that keeps
+ * conflicting after {@code application.stock.retry.max-attempts} fails with {@link ConcurrentStockUpdateException}.
+ * <p>
+ * Every attempt runs in a transaction of its own, so the next one reads the competing commit under any isolation
+ * level, and the backoff sleeps between transactions without holding a connection. {@link BeerService} calls it
+ * outside a transaction; called inside one, the attempts would join it.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.stock", name = "mode", havingValue = "optimistic")
+public class OptimisticStockUpdater implements StockUpdater {
+
+    private final BeerRepository repository;
+    private final StockLedger stockLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final StockProperties.Retry retry;
+    private final Counter conflicts;
+    private final Counter retries;
+    private final Counter exhausted;
+
+    @Autowired
+    public OptimisticStockUpdater(BeerRepository repository, StockLedger stockLedger,
+                                  PlatformTransactionManager transactionManager, StockProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.stockLedger = stockLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retry = properties.getRetry();
+        this.conflicts = meterRegistry.counter("beer.stock.optimistic.conflicts");
+        this.retries = meterRegistry.counter("beer.stock.optimistic.retries");
+        this.exhausted = meterRegistry.counter("beer.stock.optimistic.exhausted");
+    }
+
+    @Override
+    public Beer increment(Long id, int quantity) {
+        return updateQuantity(id, quantity, StockMovementType.INCREMENT);
+    }
+
+    @Override
+    public Beer decrement(Long id, int quantity) {
+        return updateQuantity(id, -quantity, StockMovementType.DECREMENT);
+    }
+
+    private Beer updateQuantity(Long id, int delta, StockMovementType type) {
+        for (int attempt = 1; ; attempt++) {
+            Beer updated = transactionTemplate.execute(status -> tryUpdateQuantity(id, delta, type));
+            if (updated != null) return updated;
+
+            conflicts.increment();
+            if (attempt >= retry.getMaxAttempts()) {
+                exhausted.increment();
+                throw ConcurrentStockUpdateException.INSTANCE;
+            }
+            retries.increment();
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * @return the updated beer, or null if another write changed its version since it was read
+     */
+    private Beer tryUpdateQuantity(Long id, int delta, StockMovementType type) {
+        Beer beer = repository.findById(id).orElseThrow(() -> NotFoundException.INSTANCE);
+        int newQuantity = beer.getQuantity() + delta;
+        if (newQuantity > beer.getMax()) throw BeerStockExceededException.INSTANCE;
+        if (newQuantity < beer.getReserved()) throw NegativeStockException.INSTANCE;
+
+        if (repository.updateQuantityIfVersionMatches(id, newQuantity, beer.getVersion()) != 1) return null;
+        beer.setQuantity(newQuantity);
+        beer.setVersion(beer.getVersion() + 1);
+        stockLedger.record(id, delta, type);
+        return beer;
+    }
+
+    private void backOff(int attempt) {
+        double backoff = retry.getInitialBackoff().toMillis() * Math.pow(retry.getMultiplier(), attempt - 1);
+        long maxMillis = (long) Math.min(backoff, retry.getMaxBackoff().toMillis());
+        if (maxMillis <= 0) return;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxMillis / 2, maxMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ConcurrentStockUpdateException.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the keyset position of a page, the id of its last beer, as an opaque URL-safe token.
+ */
+final class PageCursor {
+
+    private PageCursor() {
+    }
+
+    static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return the id to seek after, 0 for the first page
+     * @throws InvalidCursorException if the token wasn't produced by {@link #encode}
+     */
+    static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) return 0L;
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw InvalidCursorException.INSTANCE;
+        }
+    }
+}
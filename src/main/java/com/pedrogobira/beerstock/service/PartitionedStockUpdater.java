@@ -0,0 +1,289 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.StockProperties;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.ConcurrentStockUpdateException;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.exception.StockUpdatesBusyException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Hands the increments and decrements of each beer to one of {@code count} shared writer threads, picked by id modulo
+ * {@code count}, so a beer's mutations run one after the other instead of queueing on its row lock, and the other beers' writers carry on. A
+ * writer takes what is queued, up to {@code max-batch-size} mutations, reads their beers in one query and checks each
+ * mutation in order against the quantity the ones before it left. The accepted mutations of a beer are written as one
+ * versioned UPDATE, in one transaction per shard with their ledger movements, and their callers wait for its commit.
+ * The hotter a beer, the more mutations share a write.
+ * <p>
+ * Full updates, holds, batches and other instances still write the beers directly. Their version bump makes the
+ * writer's UPDATE miss, and it reads the beer and checks its mutations again, up to
+ * {@code application.stock.retry.max-attempts} times before they fail with {@link ConcurrentStockUpdateException}.
+ * The write doesn't join a transaction of the caller.
+ * <p>
+ * Each queue holds up to {@code queue-capacity} mutations. When it is full a caller waits up to
+ * {@code enqueue-timeout} for room and then gets {@link StockUpdatesBusyException}. {@code beer.stock.partition.queue}
+ * shows each queue's depth, and {@code beer.stock.partition.mutations} over {@code beer.stock.partition.writes} how
+ * many mutations a write merged.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.stock", name = "mode", havingValue = "partitioned")
+public class PartitionedStockUpdater implements StockUpdater {
+
+    public static final String QUEUE_GAUGE = "beer.stock.partition.queue";
+    public static final String MUTATIONS_COUNTER = "beer.stock.partition.mutations";
+    public static final String WRITES_COUNTER = "beer.stock.partition.writes";
+    public static final String REFUSED_COUNTER = "beer.stock.partition.refused";
+    public static final String CONFLICTS_COUNTER = "beer.stock.partition.conflicts";
+
+    private static final long POLL_MILLIS = 100;
+
+    private final BeerRepository repository;
+    private final StockLedger stockLedger;
+    private final ShardRouter shards;
+    private final TransactionTemplate transactionTemplate;
+    private final StockProperties.Partitions properties;
+    private final int maxAttempts;
+    private final List<BlockingQueue<Mutation>> queues = new ArrayList<>();
+    private final Counter mutations;
+    private final Counter writes;
+    private final Counter refused;
+    private final Counter conflicts;
+    private volatile boolean stopped;
+    private ExecutorService writers;
+
+    @Autowired
+    public PartitionedStockUpdater(BeerRepository repository, StockLedger stockLedger, ShardRouter shards,
+                                   PlatformTransactionManager transactionManager, StockProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.stockLedger = stockLedger;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties.getPartitions();
+        this.maxAttempts = properties.getRetry().getMaxAttempts();
+        if (this.properties.getCount() < 1 || this.properties.getQueueCapacity() < 1 || this.properties.getMaxBatchSize() < 1) {
+            throw new IllegalStateException("application.stock.partitions needs a count, queue capacity and max batch size of at least 1");
+        }
+        for (int partition = 0; partition < this.properties.getCount(); partition++) {
+            BlockingQueue<Mutation> queue = new ArrayBlockingQueue<>(this.properties.getQueueCapacity());
+            queues.add(queue);
+            Gauge.builder(QUEUE_GAUGE, queue, BlockingQueue::size)
+                    .tag("partition", String.valueOf(partition))
+                    .register(meterRegistry);
+        }
+        this.mutations = meterRegistry.counter(MUTATIONS_COUNTER);
+        this.writes = meterRegistry.counter(WRITES_COUNTER);
+        this.refused = meterRegistry.counter(REFUSED_COUNTER);
+        this.conflicts = meterRegistry.counter(CONFLICTS_COUNTER);
+    }
+
+    @PostConstruct
+    void start() {
+        writers = Executors.newFixedThreadPool(queues.size(), new CustomizableThreadFactory("stock-partition-"));
+        queues.forEach(queue -> writers.execute(() -> drain(queue)));
+    }
+
+    /**
+     * Lets the writers apply what is queued, then refuses the mutations queued as they stopped.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        stopped = true;
+        writers.shutdown();
+        writers.awaitTermination(1, TimeUnit.MINUTES);
+        for (BlockingQueue<Mutation> queue : queues) {
+            Mutation mutation;
+            while ((mutation = queue.poll()) != null) {
+                mutation.result.completeExceptionally(StockUpdatesBusyException.INSTANCE);
+            }
+        }
+    }
+
+    /**
+     * @throws StockUpdatesBusyException when the beer's queue stays full for the enqueue timeout
+     */
+    @Override
+    public Beer increment(Long id, int quantity) {
+        return submit(id, quantity);
+    }
+
+    /**
+     * @throws StockUpdatesBusyException when the beer's queue stays full for the enqueue timeout
+     */
+    @Override
+    public Beer decrement(Long id, int quantity) {
+        return submit(id, -quantity);
+    }
+
+    private Beer submit(Long id, int delta) {
+        if (stopped) throw StockUpdatesBusyException.INSTANCE;
+        BlockingQueue<Mutation> queue = queues.get((int) Math.floorMod(id, (long) queues.size()));
+        Mutation mutation = new Mutation(id, delta);
+        try {
+            if (!queue.offer(mutation, properties.getEnqueueTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                refused.increment();
+                throw StockUpdatesBusyException.INSTANCE;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw StockUpdatesBusyException.INSTANCE;
+        }
+        // queued after the writers stopped: no one would take it
+        if (stopped && queue.remove(mutation)) throw StockUpdatesBusyException.INSTANCE;
+        try {
+            return mutation.result.join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private void drain(BlockingQueue<Mutation> queue) {
+        List<Mutation> batch = new ArrayList<>();
+        while (!stopped || !queue.isEmpty()) {
+            try {
+                Mutation first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, properties.getMaxBatchSize() - 1);
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes the beers in id order, the order stock-movement batches lock them in. A transaction that fails fails all
+     * its mutations.
+     */
+    private void apply(List<Mutation> batch) {
+        mutations.increment(batch.size());
+        Map<Integer, Map<Long, List<Mutation>>> byShard = batch.stream().collect(Collectors.groupingBy(
+                mutation -> ShardRouter.shardOfId(mutation.id), TreeMap::new,
+                Collectors.groupingBy(mutation -> mutation.id, TreeMap::new, Collectors.toList())));
+        byShard.forEach((shard, byBeer) -> {
+            try {
+                shards.on(shard, () -> transactionTemplate.execute(status -> write(byBeer)));
+            } catch (RuntimeException e) {
+                byBeer.values().forEach(mutationsOfBeer -> mutationsOfBeer.forEach(mutation -> mutation.reject(e)));
+            }
+            byBeer.values().forEach(mutationsOfBeer -> mutationsOfBeer.forEach(Mutation::complete));
+        });
+    }
+
+    private Void write(Map<Long, List<Mutation>> byBeer) {
+        Map<Long, Beer> beers = repository.findAllById(byBeer.keySet()).stream()
+                .collect(Collectors.toMap(Beer::getId, Function.identity()));
+        List<StockMovementDto> increments = new ArrayList<>();
+        List<StockMovementDto> decrements = new ArrayList<>();
+        for (Map.Entry<Long, List<Mutation>> entry : byBeer.entrySet()) {
+            List<Mutation> mutationsOfBeer = entry.getValue();
+            Beer beer = beers.get(entry.getKey());
+            for (int attempt = 1; ; attempt++) {
+                if (beer == null) {
+                    mutationsOfBeer.forEach(mutation -> mutation.reject(NotFoundException.INSTANCE));
+                    break;
+                }
+                if (tryWrite(beer, mutationsOfBeer)) break;
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    mutationsOfBeer.forEach(mutation -> mutation.reject(ConcurrentStockUpdateException.INSTANCE));
+                    break;
+                }
+                beer = repository.findById(entry.getKey()).orElse(null);
+            }
+            for (Mutation mutation : mutationsOfBeer) {
+                if (mutation.beer == null) continue;
+                (mutation.delta > 0 ? increments : decrements).add(new StockMovementDto(mutation.id, mutation.delta));
+            }
+        }
+        stockLedger.record(increments, StockMovementType.INCREMENT);
+        stockLedger.record(decrements, StockMovementType.DECREMENT);
+        return null;
+    }
+
+    /**
+     * @return false when the beer changed since it was read, and nothing was written
+     */
+    private boolean tryWrite(Beer beer, List<Mutation> mutationsOfBeer) {
+        int quantity = beer.getQuantity();
+        boolean accepted = false;
+        for (Mutation mutation : mutationsOfBeer) {
+            int updated = quantity + mutation.delta;
+            if (updated > beer.getMax()) {
+                mutation.reject(BeerStockExceededException.INSTANCE);
+            } else if (updated < beer.getReserved()) {
+                mutation.reject(NegativeStockException.INSTANCE);
+            } else {
+                quantity = updated;
+                mutation.accept(new Beer(beer.getId(), beer.getName(), beer.getBrand(), beer.getMax(), quantity,
+                        beer.getReserved(), beer.getType(), beer.getVersion() + 1));
+                accepted = true;
+            }
+        }
+        if (!accepted) return true;
+        if (repository.updateQuantityIfVersionMatches(beer.getId(), quantity, beer.getVersion()) == 0) return false;
+        writes.increment();
+        return true;
+    }
+
+    private static final class Mutation {
+
+        private final Long id;
+        private final int delta;
+        private final CompletableFuture<Beer> result = new CompletableFuture<>();
+        private Beer beer;
+        private RuntimeException error;
+
+        private Mutation(Long id, int delta) {
+            this.id = id;
+            this.delta = delta;
+        }
+
+        private void accept(Beer beer) {
+            this.beer = beer;
+            this.error = null;
+        }
+
+        private void reject(RuntimeException error) {
+            this.beer = null;
+            this.error = error;
+        }
+
+        private void complete() {
+            if (error != null) result.completeExceptionally(error);
+            else result.complete(beer);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.CoalescingProperties;
+import com.pedrogobira.beerstock.config.ReadAfterWrite;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for reads: a call made while an identical one is running waits for it and shares its result or
+ * exception, so a burst of requests for the same beer or page costs one query.
+ * <p>
+ * Calls only join a read that is still running, and every committed change detaches the running reads, so callers
+ * arriving after a change start a new one and never see state older than their request. Each group counts its
+ * calls in {@code beer.coalescing.calls}, tagged {@code role=leader} for those that ran and {@code role=follower} for
+ * those that shared a result; their ratio is the load taken off the database.
+ * <p>
+ * A call that must read after a write ({@link ReadAfterWrite}) runs on its own, as a running read may come from a
+ * replica that hasn't caught up with the write.
+ */
+@Component
+public class RequestCoalescer {
+
+    public static final String CALLS_COUNTER = "beer.coalescing.calls";
+    public static final String BEERS_BY_NAME = "beers-by-name";
+    public static final String BEER_PAGES = "beer-pages";
+
+    private final CoalescingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RequestCoalescer(CoalescingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param key identifies identical calls within the group, compared with {@code equals}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String group, Object key, Supplier<T> call) {
+        if (!properties.isEnabled() || ReadAfterWrite.required() != null) return call.get();
+        Group flights = groups.computeIfAbsent(group, Group::new);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = flights.inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            flights.followers.increment();
+            return (T) join(leader);
+        }
+        flights.leaders.increment();
+        try {
+            T result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.inFlight.remove(key, flight);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        groups.values().forEach(group -> group.inFlight.clear());
+    }
+
+    private static Object join(CompletableFuture<Object> leader) {
+        try {
+            return leader.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    private final class Group {
+
+        private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+        private final Counter leaders;
+        private final Counter followers;
+
+        private Group(String name) {
+            leaders = meterRegistry.counter(CALLS_COUNTER, "group", name, "role", "leader");
+            followers = meterRegistry.counter(CALLS_COUNTER, "group", name, "role", "follower");
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.ShardingProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Places beers on the shards of {@link ShardingProperties} and binds the shard a call works on to its thread, where
+ * the {@link com.pedrogobira.beerstock.config.ShardRoutingDataSource} looks it up. With sharding off there is one
+ * shard, 0, and the work always runs on the calling thread.
+ * <p>
+ * A new beer goes to the shard its brand is mapped to, or else to the shard of the brand's hash. Each shard numbers
+ * its beers from {@link #firstId} up to {@link #lastId}, so a beer's id tells its shard without a lookup, and the beer stays there when its
+ * brand changes or shards are added. A transaction is pinned to the shard it started on: binding another one while it
+ * is active fails.
+ */
+@Component
+public class ShardRouter {
+
+    /**
+     * Low bits of a beer id, numbering the beers of a shard. The bits above hold the shard index.
+     */
+    public static final int SHARD_ID_BITS = 48;
+    public static final int MAX_SHARDS = 1 << (Long.SIZE - 1 - SHARD_ID_BITS);
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final int count;
+    private final Map<String, Integer> brands;
+    private final TransactionTemplate readOnly;
+    private final ExecutorService gatherExecutor;
+
+    @Autowired
+    public ShardRouter(ShardingProperties properties, PlatformTransactionManager transactionManager) {
+        this.count = properties.isEnabled() ? properties.getShards().size() : 1;
+        if (count == 0 || count > MAX_SHARDS) {
+            throw new IllegalStateException("application.sharding.shards must list 1 to " + MAX_SHARDS + " datasources");
+        }
+        this.brands = properties.isEnabled() ? new HashMap<>(properties.getBrands()) : Collections.emptyMap();
+        brands.forEach((brand, shard) -> {
+            if (shard < 0 || shard >= count) {
+                throw new IllegalStateException("Brand " + brand + " is mapped to shard " + shard + ", which doesn't exist");
+            }
+        });
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.gatherExecutor = count == 1 ? null
+                : Executors.newFixedThreadPool(properties.getGatherThreads(), new CustomizableThreadFactory("shard-gather-"));
+    }
+
+    @PreDestroy
+    void stop() {
+        if (gatherExecutor != null) gatherExecutor.shutdownNow();
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int shardOfBrand(String brand) {
+        Integer mapped = brands.get(brand);
+        return mapped != null ? mapped : Math.floorMod(brand.hashCode(), count);
+    }
+
+    public static int shardOfId(long id) {
+        return (int) (id >>> SHARD_ID_BITS);
+    }
+
+    public static long firstId(int shard) {
+        return ((long) shard << SHARD_ID_BITS) + 1;
+    }
+
+    /**
+     * The last id of the shard's block, one below the ids whose high bits hold the next shard.
+     */
+    public static long lastId(int shard) {
+        return ((long) (shard + 1) << SHARD_ID_BITS) - 1;
+    }
+
+    /**
+     * @return the shard bound to the current thread, null when none is
+     */
+    public static Integer currentShard() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the work with the shard bound to the current thread, so the transactions it starts run on that shard.
+     *
+     * @throws IllegalStateException if the thread is in a transaction on another shard
+     */
+    public <T> T on(int shard, Supplier<T> work) {
+        Integer previous = bind(shard);
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * {@link #on} for callers whose work can't be a {@link Supplier}, to be paired with {@link #restore} in a finally
+     * block.
+     *
+     * @return the shard bound before, null if none was
+     * @throws IllegalStateException if the thread is in a transaction on another shard
+     */
+    public Integer bind(int shard) {
+        Integer previous = CURRENT.get();
+        int active = previous == null ? 0 : previous;
+        if (active != shard && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("A transaction on shard " + active + " can't reach shard " + shard);
+        }
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    public void restore(Integer previous) {
+        if (previous == null) CURRENT.remove();
+        else CURRENT.set(previous);
+    }
+
+    /**
+     * Runs the query on every shard in parallel, each in a read-only transaction of its own.
+     *
+     * @return the results, by shard index
+     */
+    public <T> List<T> gather(IntFunction<T> query) {
+        if (count == 1) return Collections.singletonList(read(0, query));
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int target = shard;
+            futures.add(gatherExecutor.submit(() -> read(target, query)));
+        }
+        List<T> results = new ArrayList<>(count);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Runs the query on each shard in turn, in shard order, each in a read-only transaction of its own.
+     *
+     * @return the results, by shard index
+     */
+    public <T> List<T> scan(IntFunction<T> query) {
+        List<T> results = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            results.add(read(shard, query));
+        }
+        return results;
+    }
+
+    /**
+     * Runs the work on each shard in turn, leaving the transactions to it.
+     *
+     * @return the results, by shard index
+     */
+    public <T> List<T> each(IntFunction<T> work) {
+        List<T> results = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int target = shard;
+            results.add(on(target, () -> work.apply(target)));
+        }
+        return results;
+    }
+
+    private <T> T read(int shard, IntFunction<T> query) {
+        return on(shard, () -> readOnly.execute(status -> query.apply(shard)));
+    }
+}
@@ -0,0 +1,69 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.exception.CrossShardMovementsException;
+import lombok.AllArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binds the shard a {@link BeerService} call works on before the call's transaction starts, so the transaction runs
+ * on that shard: calls taking a beer id, {@link StockHoldService}'s too, go to the id's shard, saves to the shard of the brand and stock-movement
+ * batches to the shard of their beers. The reads spanning every shard gather from them in {@link BeerService}.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "application.sharding", name = "enabled", havingValue = "true")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class ShardRoutingAspect {
+
+    private final ShardRouter shards;
+
+    // the arguments are read from the join point rather than bound with args(): the binding isn't available to advice
+    // running ahead of every other interceptor
+    @Around("execution(public * com.pedrogobira.beerstock.service.BeerService.*(Long, ..)) " +
+            "|| execution(public * com.pedrogobira.beerstock.service.StockHoldService.*(Long, ..))")
+    public Object onShardOfId(ProceedingJoinPoint call) throws Throwable {
+        Long id = (Long) call.getArgs()[0];
+        return proceedOn(ShardRouter.shardOfId(id), call);
+    }
+
+    @Around("execution(public * com.pedrogobira.beerstock.service.BeerService.save(com.pedrogobira.beerstock.dto.BeerDto))")
+    public Object onShardOfBrand(ProceedingJoinPoint call) throws Throwable {
+        BeerDto dto = (BeerDto) call.getArgs()[0];
+        return proceedOn(shards.shardOfBrand(dto.getBrand()), call);
+    }
+
+    /**
+     * @throws CrossShardMovementsException when the movements span shards, as one transaction can't apply them all
+     */
+    @Around("execution(public * com.pedrogobira.beerstock.service.BeerService.move(com.pedrogobira.beerstock.dto.StockMovementsDto))")
+    public Object onShardOfMovements(ProceedingJoinPoint call) throws Throwable {
+        StockMovementsDto dto = (StockMovementsDto) call.getArgs()[0];
+        int[] shardsOfBeers = dto.getMovements().stream()
+                .map(StockMovementDto::getId)
+                .mapToInt(ShardRouter::shardOfId)
+                .distinct()
+                .toArray();
+        if (shardsOfBeers.length > 1) throw CrossShardMovementsException.INSTANCE;
+        return shardsOfBeers.length == 0 ? call.proceed() : proceedOn(shardsOfBeers[0], call);
+    }
+
+    private Object proceedOn(int shard, ProceedingJoinPoint call) throws Throwable {
+        Integer previous = shards.bind(shard);
+        try {
+            return call.proceed();
+        } finally {
+            shards.restore(previous);
+        }
+    }
+}
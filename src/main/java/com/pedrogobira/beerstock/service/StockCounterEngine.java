@@ -0,0 +1,357 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.StockProperties;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.entity.StockCounterCheckpoint;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.repository.StockCounterCheckpointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps each beer's quantity in an in-memory counter and writes the coalesced deltas behind to the database,
+ * so increments and decrements don't touch the database once a beer's counter is loaded.
+ * <p>
+ * Counters are guarded by striped locks, one per group of beer ids. Under its stripe's lock a delta is checked against
+ * the max/non-negative bounds and appended to a {@link StockWriteAheadLog} before the counter is updated, so no other
+ * request sees a quantity whose delta is not in the log. The delta is synced to disk after the lock is released and
+ * before it is acknowledged; a request acknowledged on top of it syncs it too. A flush swaps out the pending deltas
+ * and rotates the log under every stripe's lock, which never waits for the disk. It then writes the deltas and a
+ * {@link StockCounterCheckpoint} in one transaction and drops the flushed segments. A beer whose delta the database
+ * rejects has its counter reloaded, keeping the deltas accepted since. On startup, segments newer than the
+ * checkpoint are replayed into the database.
+ * <p>
+ * Reads ({@code findByName}, {@code findAll}) still go to the database and lag by up to one flush interval. The
+ * engine assumes it is the only writer of the quantity column. Full updates, deletes and stock-movement batches
+ * {@link #release} the beer first, which flushes and drops its counter. The {@link StockLedger} gets one
+ * {@link StockMovementType#WRITE_BEHIND} movement per beer and flush, written with the deltas.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "application.stock", name = "mode", havingValue = "counter")
+public class StockCounterEngine implements StockUpdater {
+
+    private static final long CHECKPOINT_ID = 1L;
+    private static final int STRIPES = 64;
+
+    private final BeerRepository repository;
+    private final StockCounterCheckpointRepository checkpointRepository;
+    private final StockLedger stockLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final StockProperties.Counter properties;
+    private final Map<Long, StockCounter> counters = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> carried = new ConcurrentHashMap<>();
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final Lock flushMutex = new ReentrantLock();
+    private final AtomicInteger unflushed = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private StockWriteAheadLog writeAheadLog;
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public StockCounterEngine(BeerRepository repository, StockCounterCheckpointRepository checkpointRepository,
+                              StockLedger stockLedger, PlatformTransactionManager transactionManager,
+                              StockProperties properties) {
+        this.repository = repository;
+        this.checkpointRepository = checkpointRepository;
+        this.stockLedger = stockLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = properties.getCounter();
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        writeAheadLog = new StockWriteAheadLog(properties.getWalDirectory(), properties.isFsync());
+        long lastSegment = recover();
+        writeAheadLog.open(lastSegment + 1);
+
+        long interval = properties.getFlushInterval().toMillis();
+        flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("stock-counter-flush-"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws IOException, InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(properties.getFlushInterval().toMillis() * 2, TimeUnit.MILLISECONDS);
+        try {
+            flush();
+        } finally {
+            writeAheadLog.close();
+        }
+    }
+
+    @Override
+    public Beer increment(Long id, int quantity) {
+        return apply(id, quantity);
+    }
+
+    @Override
+    public Beer decrement(Long id, int quantity) {
+        return apply(id, -quantity);
+    }
+
+    @Override
+    public void release(Long id) {
+        flush(id);
+    }
+
+    /**
+     * Writes every pending delta to the database and drops the log segments they came from.
+     */
+    public void flush() {
+        flush(null);
+    }
+
+    /**
+     * Drops the counter of {@code released} with the deltas it is flushed, under every stripe's lock, so no delta can
+     * be acknowledged on it once it is drained. It is put back if the write fails, to keep its deltas pending.
+     */
+    private void flush(Long released) {
+        flushMutex.lock();
+        try {
+            flushRequested.set(false);
+            Map<Long, Integer> drained = new TreeMap<>();
+            long segment;
+            StockCounter releasedCounter;
+            lockAll();
+            try {
+                counters.forEach((id, counter) -> {
+                    if (counter.pending != 0) drained.put(id, counter.pending);
+                    counter.pending = 0;
+                });
+                carried.forEach((id, delta) -> drained.merge(id, delta, Integer::sum));
+                carried.clear();
+                unflushed.set(0);
+                releasedCounter = released == null ? null : counters.remove(released);
+                if (drained.isEmpty()) return;
+                segment = writeAheadLog.rotate();
+            } finally {
+                unlockAll();
+            }
+
+            List<StockMovementDto> deltas = drained.entrySet().stream()
+                    .map(entry -> new StockMovementDto(entry.getKey(), entry.getValue()))
+                    .collect(Collectors.toList());
+            List<StockMovementDto> rejected;
+            try {
+                rejected = write(deltas, segment);
+            } catch (RuntimeException e) {
+                // the deltas stay in the not yet checkpointed segments, so they go out with the next flush
+                if (releasedCounter != null) withStripe(released, () -> counters.putIfAbsent(released, releasedCounter));
+                deltas.forEach(delta -> withStripe(delta.getId(), () -> carry(delta.getId(), delta.getDelta())));
+                throw e;
+            }
+            rejected.forEach(delta -> withStripe(delta.getId(), () -> evict(delta.getId())));
+            writeAheadLog.deleteUpTo(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            flushMutex.unlock();
+        }
+    }
+
+    /**
+     * Checks and logs the delta, then publishes it, under the beer's stripe lock; it is synced once the lock is released.
+     * If the sync fails, the delta stays applied and goes out with the next flush, like one whose acknowledgement was
+     * lost.
+     */
+    private Beer apply(Long id, int delta) {
+        Beer snapshot;
+        long sequence;
+        Lock lock = stripe(id);
+        lock.lock();
+        try {
+            StockCounter counter = counters.computeIfAbsent(id, this::load);
+            int updated = counter.quantity + delta;
+            if (updated > counter.beer.getMax()) throw BeerStockExceededException.INSTANCE;
+            if (updated < counter.beer.getReserved()) throw NegativeStockException.INSTANCE;
+
+            try {
+                sequence = writeAheadLog.append(id, delta);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            counter.quantity = updated;
+            counter.pending += delta;
+            snapshot = counter.snapshot(updated);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writeAheadLog.sync(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (unflushed.incrementAndGet() >= properties.getFlushThreshold() && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Loads the counter from the database, on top of which the deltas of an evicted counter still pending are kept.
+     */
+    private StockCounter load(Long id) {
+        StockCounter counter = repository.findById(id).map(StockCounter::new).orElseThrow(() -> NotFoundException.INSTANCE);
+        Integer delta = carried.remove(id);
+        if (delta != null) {
+            counter.quantity += delta;
+            counter.pending += delta;
+        }
+        return counter;
+    }
+
+    /**
+     * Puts a delta back into the beer's counter, or keeps it for the next flush if there is none. Called under the
+     * beer's stripe lock.
+     */
+    private void carry(Long id, int delta) {
+        StockCounter counter = counters.get(id);
+        if (counter != null) {
+            counter.pending += delta;
+        } else {
+            carried.merge(id, delta, Integer::sum);
+        }
+    }
+
+    /**
+     * Drops a counter whose delta the database rejected, so it is reloaded from the row. Called under the beer's
+     * stripe lock.
+     */
+    private void evict(Long id) {
+        StockCounter counter = counters.remove(id);
+        if (counter != null && counter.pending != 0) carried.merge(id, counter.pending, Integer::sum);
+    }
+
+    private Lock stripe(Long id) {
+        return stripes[(int) Math.floorMod(id, (long) STRIPES)];
+    }
+
+    private void withStripe(Long id, Runnable action) {
+        Lock lock = stripe(id);
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lockAll() {
+        for (Lock lock : stripes) lock.lock();
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) stripes[i].unlock();
+    }
+
+    /**
+     * Replays the segments written after the last checkpoint, which hold deltas acknowledged but never flushed.
+     *
+     * @return the id of the newest segment on disk, or of the checkpoint if there is none
+     */
+    private long recover() throws IOException {
+        long checkpoint = checkpointRepository.findById(CHECKPOINT_ID).map(StockCounterCheckpoint::getSegment).orElse(0L);
+        List<Long> segments = writeAheadLog.segments().stream().filter(segment -> segment > checkpoint).collect(Collectors.toList());
+        if (segments.isEmpty()) {
+            writeAheadLog.deleteUpTo(checkpoint);
+            return checkpoint;
+        }
+
+        Map<Long, Integer> replayed = new TreeMap<>();
+        for (long segment : segments) {
+            writeAheadLog.read(segment).forEach((id, delta) -> replayed.merge(id, delta, Integer::sum));
+        }
+        long lastSegment = segments.get(segments.size() - 1);
+        write(replayed.entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(entry -> new StockMovementDto(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList()), lastSegment);
+        writeAheadLog.deleteUpTo(lastSegment);
+        return lastSegment;
+    }
+
+    /**
+     * @return the deltas the database rejected, which are dropped with the segment
+     */
+    private List<StockMovementDto> write(List<StockMovementDto> deltas, long segment) {
+        return transactionTemplate.execute(status -> {
+            int[] counts = deltas.isEmpty() ? new int[0] : repository.applyQuantityDeltas(deltas);
+            List<StockMovementDto> applied = new ArrayList<>();
+            List<StockMovementDto> rejected = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 1) {
+                    log.warn("Flushed delta {} of beer {} was rejected by the database, the beer was changed or "
+                            + "removed outside the stock counter engine", deltas.get(i).getDelta(), deltas.get(i).getId());
+                    rejected.add(deltas.get(i));
+                } else {
+                    applied.add(deltas.get(i));
+                }
+            }
+            stockLedger.record(applied, StockMovementType.WRITE_BEHIND);
+            checkpointRepository.save(new StockCounterCheckpoint(CHECKPOINT_ID, segment));
+            return rejected;
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Stock counter flush failed, retrying on the next one", e);
+        }
+    }
+
+    /**
+     * Guarded by the stripe lock of its beer.
+     */
+    private static final class StockCounter {
+
+        private final Beer beer;
+        private int quantity;
+        private int pending;
+
+        private StockCounter(Beer beer) {
+            this.beer = beer;
+            this.quantity = beer.getQuantity();
+        }
+
+        private Beer snapshot(int quantity) {
+            return new Beer(beer.getId(), beer.getName(), beer.getBrand(), beer.getMax(), quantity, beer.getReserved(), beer.getType(),
+                    beer.getVersion());
+        }
+    }
+}
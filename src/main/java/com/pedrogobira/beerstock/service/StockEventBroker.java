@@ -0,0 +1,182 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.StockEventProperties;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.StockEventDto;
+import com.pedrogobira.beerstock.enums.StockEventType;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes committed stock changes to Server-Sent Events subscribers. Every change is tagged with the threshold it
+ * crossed, if any, using the {@code application.stock-events} low-stock and near-max percentages.
+ * <p>
+ * Publishing never blocks: each subscriber has its own bounded buffer, drained by a small dispatcher pool only while
+ * it holds events, so idle subscribers cost an open connection and no thread. A subscriber whose buffer fills up is
+ * dropped as a slow consumer; its connection is completed, and it should reconnect and resync with a read.
+ */
+@Slf4j
+@Component
+public class StockEventBroker {
+
+    private static final StockEventDto HEARTBEAT = new StockEventDto();
+
+    private final StockEventProperties properties;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter dropped;
+    private ExecutorService dispatcher;
+    private ScheduledExecutorService heartbeat;
+
+    @Autowired
+    public StockEventBroker(StockEventProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.dropped = meterRegistry.counter("beer.stock.events.dropped");
+        meterRegistry.gauge("beer.stock.events.subscribers", subscribers, Set::size);
+    }
+
+    @PostConstruct
+    void start() {
+        dispatcher = Executors.newFixedThreadPool(properties.getDispatcherThreads(),
+                new CustomizableThreadFactory("stock-events-"));
+        heartbeat = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("stock-events-heartbeat-"));
+        long interval = properties.getHeartbeatInterval().toMillis();
+        heartbeat.scheduleWithFixedDelay(() -> subscribers.forEach(subscriber -> subscriber.offer(HEARTBEAT)),
+                interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        heartbeat.shutdownNow();
+        dispatcher.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    /**
+     * @param types the event types to receive, every type when null or empty
+     */
+    public SseEmitter subscribe(Set<StockEventType> types) {
+        SseEmitter emitter = new SseEmitter(0L);
+        subscribe(emitter, types);
+        return emitter;
+    }
+
+    void subscribe(SseEmitter emitter, Set<StockEventType> types) {
+        Subscriber subscriber = new Subscriber(emitter,
+                types == null || types.isEmpty() ? EnumSet.allOf(StockEventType.class) : EnumSet.copyOf(types));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBeerChanged(BeerChangedEvent event) {
+        BeerDto beer = event.getBeer();
+        Integer previousQuantity = event.getPreviousQuantity();
+        if (beer == null || previousQuantity == null || previousQuantity.equals(beer.getQuantity())) return;
+
+        StockEventDto stockEvent = new StockEventDto(sequence.incrementAndGet(), type(previousQuantity, beer),
+                beer.getId(), beer.getName(), previousQuantity, beer.getQuantity(), beer.getMax());
+        subscribers.forEach(subscriber -> subscriber.offer(stockEvent));
+    }
+
+    private StockEventType type(int previousQuantity, BeerDto beer) {
+        int lowStock = beer.getMax() * properties.getLowStockPercent();
+        int nearMax = beer.getMax() * properties.getNearMaxPercent();
+        if (beer.getQuantity() * 100 <= lowStock && previousQuantity * 100 > lowStock) return StockEventType.LOW_STOCK;
+        if (beer.getQuantity() * 100 >= nearMax && previousQuantity * 100 < nearMax) return StockEventType.NEAR_MAX;
+        return StockEventType.STOCK_CHANGED;
+    }
+
+    private void drop(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) return;
+        dropped.increment();
+        log.debug("Dropped a stock events subscriber with {} pending events", subscriber.pending.size());
+        subscriber.pending.clear();
+        subscriber.emitter.complete();
+    }
+
+    private final class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+        private final Set<StockEventType> types;
+        private final BlockingQueue<StockEventDto> pending = new LinkedBlockingQueue<>(properties.getBufferSize());
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter, Set<StockEventType> types) {
+            this.emitter = emitter;
+            this.types = types;
+        }
+
+        private void offer(StockEventDto event) {
+            if (event != HEARTBEAT && !types.contains(event.getType())) return;
+            if (!pending.offer(event)) {
+                drop(this);
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) return;
+            try {
+                dispatcher.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                StockEventDto event;
+                while ((event = pending.poll()) != null) {
+                    emitter.send(event == HEARTBEAT
+                            ? SseEmitter.event().comment("heartbeat")
+                            : SseEmitter.event()
+                            .id(event.getSequence().toString())
+                            .name(event.getType().name())
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // the client went away or the emitter was completed
+                subscribers.remove(this);
+                pending.clear();
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            if (!pending.isEmpty()) schedule();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.MetricsConfig;
+import com.pedrogobira.beerstock.config.StockProperties;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockHoldDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.entity.StockHold;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.exception.StockHoldExpiredException;
+import com.pedrogobira.beerstock.mapper.BeerMapper;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.repository.StockHoldRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Holds stock of a beer for a cart until checkout. A hold adds its quantity to the beer's {@code reserved} stock,
+ * which no decrement, update or other hold can take, so what is left to sell is {@code quantity - reserved}.
+ * Confirming the hold sells its stock; releasing it, or letting it expire after {@code ttl}, makes the stock available
+ * again. Reserving is a single conditional UPDATE, like the atomic decrement, so concurrent holds of a beer never
+ * oversell it.
+ * <p>
+ * Holds are rows on the beer's shard, so any instance can confirm or release them. Expiry doesn't poll those rows:
+ * each hold is scheduled on a {@link TimingWheel}, and every {@code tick} the holds due are released in bulk, one
+ * transaction per shard and batch with one UPDATE per beer and one DELETE. Holds confirmed or released meanwhile are
+ * gone and skipped. A wheel only holds the holds its instance made or found on startup, so every
+ * {@code sweep-interval} each instance also releases the holds overdue by more than that interval, found through the
+ * {@code expires_at} index: those of instances that stopped. A confirmation or release that finds its hold overdue
+ * releases it on the spot.
+ * <p>
+ * The counter stock mode keeps quantities in memory, out of reach of the database's reservation check, so it has no
+ * holds.
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnExpression("'${application.stock.mode:atomic}' != 'counter'")
+public class StockHoldService {
+
+    public static final String HOLDS_COUNTER = "beer.stock.holds";
+    public static final String SCHEDULED_GAUGE = "beer.stock.holds.scheduled";
+
+    private final BeerRepository beerRepository;
+    private final StockHoldRepository holdRepository;
+    private final StockLedger stockLedger;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shards;
+    private final TransactionTemplate transactionTemplate;
+    private final StockProperties.Holds properties;
+    private final TimingWheel<StockHold> expiries;
+    private final Counter reserved;
+    private final Counter confirmed;
+    private final Counter released;
+    private final Counter expired;
+    private final BeerMapper mapper = BeerMapper.INSTANCE;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public StockHoldService(BeerRepository beerRepository, StockHoldRepository holdRepository, StockLedger stockLedger,
+                            ApplicationEventPublisher eventPublisher, ShardRouter shards,
+                            PlatformTransactionManager transactionManager, StockProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.beerRepository = beerRepository;
+        this.holdRepository = holdRepository;
+        this.stockLedger = stockLedger;
+        this.eventPublisher = eventPublisher;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties.getHolds();
+        this.expiries = new TimingWheel<>(this.properties.getTick(), System.currentTimeMillis());
+        this.reserved = meterRegistry.counter(HOLDS_COUNTER, "outcome", "reserved");
+        this.confirmed = meterRegistry.counter(HOLDS_COUNTER, "outcome", "confirmed");
+        this.released = meterRegistry.counter(HOLDS_COUNTER, "outcome", "released");
+        this.expired = meterRegistry.counter(HOLDS_COUNTER, "outcome", "expired");
+        Gauge.builder(SCHEDULED_GAUGE, expiries, TimingWheel::size).register(meterRegistry);
+    }
+
+    /**
+     * Schedules the holds already there, then starts expiring them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        int recovered = recover();
+        if (recovered > 0) log.info("Scheduled the expiry of {} stock holds", recovered);
+        long tick = properties.getTick().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("stock-hold-expiry-"));
+        scheduler.scheduleWithFixedDelay(this::expireQuietly, tick, tick, TimeUnit.MILLISECONDS);
+        long sweep = properties.getSweepInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::sweepQuietly, sweep, sweep, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * @throws NegativeStockException when less than the quantity is available
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Transactional
+    public StockHoldDto reserve(Long id, QuantityDto dto) {
+        int quantity = dto.getQuantity();
+        if (quantity < 0) throw NegativeStockException.INSTANCE;
+        if (beerRepository.reserve(id, quantity) == 0) {
+            verifyIfBeerExists(id);
+            throw NegativeStockException.INSTANCE;
+        }
+        Beer beer = verifyIfBeerExists(id);
+        StockHold hold = holdRepository.save(new StockHold(null, id, quantity,
+                Instant.now().plus(properties.getTtl())));
+        expiries.schedule(hold, hold.getExpiresAt().toEpochMilli());
+        reserved.increment();
+        return new StockHoldDto(hold.getId(), id, quantity, hold.getExpiresAt(), beer.getQuantity() - beer.getReserved());
+    }
+
+    /**
+     * Sells the stock on hold.
+     *
+     * @throws NotFoundException when the hold was already confirmed, released or expired
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Transactional(noRollbackFor = StockHoldExpiredException.class)
+    public BeerDto confirm(Long id, Long holdId) {
+        StockHold hold = settle(id, holdId);
+        if (beerRepository.confirmReserved(id, hold.getQuantity()) == 0) throw NotFoundException.INSTANCE;
+        BeerDto beer = mapper.toDto(verifyIfBeerExists(id));
+        stockLedger.record(id, -hold.getQuantity(), StockMovementType.HOLD_CONFIRMED);
+        eventPublisher.publishEvent(new BeerChangedEvent(id, beer.getName(), beer.getQuantity() + hold.getQuantity(), beer));
+        confirmed.increment();
+        return beer;
+    }
+
+    /**
+     * Gives the stock on hold back before the hold expires.
+     *
+     * @throws NotFoundException when the hold was already confirmed, released or expired
+     */
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Transactional(noRollbackFor = StockHoldExpiredException.class)
+    public void release(Long id, Long holdId) {
+        StockHold hold = settle(id, holdId);
+        beerRepository.releaseReserved(id, hold.getQuantity());
+        released.increment();
+    }
+
+    /**
+     * Releases the holds due by the given time, those still there. A batch that fails is scheduled again for the next
+     * tick.
+     *
+     * @return the number of holds released
+     */
+    int expire(long nowMillis) {
+        List<StockHold> due = expiries.advance(nowMillis);
+        if (due.isEmpty()) return 0;
+        Map<Integer, List<StockHold>> dueByShard = due.stream().collect(Collectors.groupingBy(
+                hold -> ShardRouter.shardOfId(hold.getBeerId()), TreeMap::new, Collectors.toList()));
+        int count = 0;
+        for (Map.Entry<Integer, List<StockHold>> shard : dueByShard.entrySet()) {
+            List<StockHold> holds = shard.getValue();
+            for (int from = 0; from < holds.size(); from += properties.getExpiryBatchSize()) {
+                List<StockHold> batch = holds.subList(from, Math.min(holds.size(), from + properties.getExpiryBatchSize()));
+                try {
+                    count += shards.on(shard.getKey(), () -> transactionTemplate.execute(status -> releaseExpired(batch)));
+                } catch (RuntimeException e) {
+                    log.error("Releasing {} expired stock holds failed, retrying on the next tick", batch.size(), e);
+                    batch.forEach(hold -> expiries.schedule(hold, nowMillis));
+                }
+            }
+        }
+        expired.increment(count);
+        return count;
+    }
+
+    /**
+     * Releases, on every shard, the holds that expired before {@code sweep-interval} ago, in batches of
+     * {@code expiry-batch-size}. Instances running the sweep together skip each other's holds like the wheel does.
+     *
+     * @return the number of holds released
+     */
+    int sweep(Instant now) {
+        Instant overdue = now.minus(properties.getSweepInterval());
+        PageRequest batch = PageRequest.of(0, properties.getExpiryBatchSize());
+        int count = shards.each(shard -> {
+            int released = 0;
+            List<StockHold> due;
+            do {
+                due = transactionTemplate.execute(status -> holdRepository.findByExpiresAtBeforeOrderByExpiresAt(overdue, batch));
+                List<StockHold> holds = due;
+                released += transactionTemplate.execute(status -> releaseExpired(holds));
+            } while (due.size() == batch.getPageSize());
+            return released;
+        }).stream().mapToInt(Integer::intValue).sum();
+        expired.increment(count);
+        return count;
+    }
+
+    /**
+     * Locks the holds before the beers, like {@link #settle}, and the beers in id order, so expiries, confirmations and
+     * releases running together can't deadlock.
+     */
+    private int releaseExpired(List<StockHold> due) {
+        List<StockHold> holds = holdRepository.findByIdIn(due.stream().map(StockHold::getId).collect(Collectors.toList()));
+        if (holds.isEmpty()) return 0;
+        holdRepository.deleteAllInBatch(holds);
+        Map<Long, Integer> quantityByBeer = holds.stream().collect(Collectors.groupingBy(
+                StockHold::getBeerId, TreeMap::new, Collectors.summingInt(StockHold::getQuantity)));
+        quantityByBeer.forEach(beerRepository::releaseReserved);
+        return holds.size();
+    }
+
+    /**
+     * Reads the holds on the primaries, as a replica could miss the newest ones and leave them on hold for good.
+     */
+    private int recover() {
+        List<StockHold> holds = new ArrayList<>();
+        shards.each(shard -> transactionTemplate.execute(status -> holds.addAll(holdRepository.findAll())));
+        holds.sort(Comparator.comparing(StockHold::getExpiresAt));
+        holds.forEach(hold -> expiries.schedule(hold, hold.getExpiresAt().toEpochMilli()));
+        return holds.size();
+    }
+
+    /**
+     * Removes the hold. One that already expired is released instead, whether or not its expiry is due to run.
+     *
+     * @throws StockHoldExpiredException when the hold expired, committing its release
+     */
+    private StockHold settle(Long id, Long holdId) {
+        StockHold hold = holdRepository.findByIdAndBeerId(holdId, id).orElseThrow(() -> NotFoundException.INSTANCE);
+        holdRepository.delete(hold);
+        if (!hold.getExpiresAt().isAfter(Instant.now())) {
+            beerRepository.releaseReserved(id, hold.getQuantity());
+            expired.increment();
+            throw StockHoldExpiredException.INSTANCE;
+        }
+        return hold;
+    }
+
+    private Beer verifyIfBeerExists(Long id) {
+        return beerRepository.findById(id).orElseThrow(() -> NotFoundException.INSTANCE);
+    }
+
+    private void sweepQuietly() {
+        try {
+            int count = sweep(Instant.now());
+            if (count > 0) log.info("Released {} overdue stock holds", count);
+        } catch (RuntimeException e) {
+            log.error("Stock hold sweep failed, retrying on the next one", e);
+        }
+    }
+
+    private void expireQuietly() {
+        try {
+            int count = expire(System.currentTimeMillis());
+            if (count > 0) log.debug("Released {} expired stock holds", count);
+        } catch (RuntimeException e) {
+            log.error("Stock hold expiry failed, retrying on the next tick", e);
+        }
+    }
+}
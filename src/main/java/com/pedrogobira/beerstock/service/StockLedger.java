@@ -0,0 +1,187 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.StockProperties;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.entity.StockMovement;
+import com.pedrogobira.beerstock.entity.StockSnapshot;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.exception.StockHistoryCompactedException;
+import com.pedrogobira.beerstock.repository.StockMovementRepository;
+import com.pedrogobira.beerstock.repository.StockSnapshotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only history of every quantity change, recorded in the transaction that applies the change, so the
+ * quantity column can always be reconciled against it.
+ * <p>
+ * A beer's quantity at any time is its newest {@link StockSnapshot} up to that time plus the movements created up to
+ * that time after the last one it folded, so a query replays about one snapshot interval of movements whatever the
+ * size of the ledger. Snapshots are taken {@code settle-lag} behind now, because a movement is stamped before its
+ * transaction commits. A movement stamped before a snapshot but committed after it has a higher id than the beer's
+ * movements the snapshot folded, so it is counted on top of it and folded into the next one. The next one reads the
+ * movements above the highest id folded by the snapshots before the newest, which is enough for transactions that
+ * commit within a snapshot interval. Compaction deletes the movements and snapshots older than the retention, keeping
+ * the newest snapshot before it as the start of each beer's history.
+ * <p>
+ * With sharding, the ledger of a beer is kept on the beer's shard, in the transactions of that shard, and the snapshot
+ * and compaction jobs go through the shards one after the other.
+ */
+@Slf4j
+@Component
+public class StockLedger {
+
+    private final StockMovementRepository movementRepository;
+    private final StockSnapshotRepository snapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shards;
+    private final StockProperties.Ledger properties;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public StockLedger(StockMovementRepository movementRepository, StockSnapshotRepository snapshotRepository,
+                       PlatformTransactionManager transactionManager, ShardRouter shards, StockProperties properties) {
+        this.movementRepository = movementRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.properties = properties.getLedger();
+    }
+
+    @PostConstruct
+    void start() {
+        long snapshotInterval = properties.getSnapshotInterval().toMillis();
+        long compactionInterval = properties.getCompactionInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("stock-ledger-"));
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::compactQuietly, compactionInterval, compactionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long beerId, int delta, StockMovementType type) {
+        record(Collections.singletonList(new StockMovementDto(beerId, delta)), type);
+    }
+
+    /**
+     * Appends the movements in one batch. Must join the transaction that applied them, so neither commits without
+     * the other.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(List<StockMovementDto> movements, StockMovementType type) {
+        Instant now = truncate(Instant.now());
+        List<StockMovement> entries = movements.stream()
+                .filter(movement -> movement.getDelta() != 0)
+                .map(movement -> new StockMovement(null, movement.getId(), movement.getDelta(), type, now))
+                .collect(Collectors.toList());
+        if (!entries.isEmpty()) movementRepository.append(entries);
+    }
+
+    /**
+     * @return the beer's quantity after every movement created up to the given time
+     * @throws StockHistoryCompactedException when the movements before that time were compacted
+     * @throws NotFoundException              when the ledger has nothing on the beer
+     */
+    @Transactional(readOnly = true)
+    public int quantityAt(Long beerId, Instant time) {
+        Instant at = truncate(time);
+        Optional<StockSnapshot> snapshot = snapshotRepository.findFirstByBeerIdAndAsOfLessThanEqualOrderByAsOfDesc(beerId, at);
+        if (snapshot.isEmpty()) {
+            if (snapshotRepository.existsByBeerIdAndCompactedTrue(beerId)) throw StockHistoryCompactedException.INSTANCE;
+            if (!movementRepository.existsByBeerId(beerId)) throw NotFoundException.INSTANCE;
+        }
+        int base = snapshot.map(StockSnapshot::getQuantity).orElse(0);
+        long afterId = snapshot.map(StockSnapshot::getLastMovementId).orElse(0L);
+        return Math.toIntExact(base + movementRepository.sumDeltas(beerId, afterId, at));
+    }
+
+    /**
+     * Snapshots every beer with movements the last snapshots didn't fold, as of {@code settle-lag} ago.
+     *
+     * @return the number of snapshots taken
+     */
+    public int snapshot() {
+        return snapshot(Instant.now().minus(properties.getSettleLag()));
+    }
+
+    int snapshot(Instant time) {
+        Instant asOf = truncate(time);
+        return sum(shards.each(shard -> transactionTemplate.execute(status -> {
+            Instant previous = snapshotRepository.findLatestAsOf().orElse(Instant.EPOCH);
+            if (!asOf.isAfter(previous)) return 0;
+            long fromId = snapshotRepository.findLastMovementIdBefore(previous).orElse(0L);
+            return snapshotRepository.takeSnapshots(fromId, asOf);
+        })));
+    }
+
+    /**
+     * Deletes the movements and snapshots older than the retention that a newer snapshot makes redundant.
+     *
+     * @return the number of deleted movements
+     */
+    public int compact() {
+        return compact(Instant.now().minus(properties.getRetention()));
+    }
+
+    int compact(Instant time) {
+        Instant horizon = truncate(time);
+        return sum(shards.each(shard -> transactionTemplate.execute(status -> {
+            int movements = movementRepository.deleteCoveredBySnapshots(horizon);
+            snapshotRepository.deleteSupersededBefore(horizon);
+            snapshotRepository.markCompactedAt(horizon);
+            return movements;
+        })));
+    }
+
+    /**
+     * The timestamp columns keep microseconds and the database rounds finer values, which could move a time past the
+     * bound it is compared with.
+     */
+    private static Instant truncate(Instant time) {
+        return time.truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private static int sum(List<Integer> counts) {
+        return counts.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            log.debug("Took {} stock snapshots", snapshot());
+        } catch (RuntimeException e) {
+            log.error("Stock snapshot failed, retrying on the next one", e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            log.debug("Compacted {} stock movements", compact());
+        } catch (RuntimeException e) {
+            log.error("Stock ledger compaction failed, retrying on the next one", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.entity.Beer;
+
+/**
+ * Writes stock increments and decrements for {@link BeerService}. The implementation is picked by
+ * {@code application.stock.mode}.
+ */
+public interface StockUpdater {
+
+    /**
+     * @return the beer with its updated quantity
+     * @throws com.pedrogobira.beerstock.exception.NotFoundException           if there's no beer with the given id
+     * @throws com.pedrogobira.beerstock.exception.BeerStockExceededException if the result would exceed the max
+     */
+    Beer increment(Long id, int quantity);
+
+    /**
+     * @return the beer with its updated quantity
+     * @throws com.pedrogobira.beerstock.exception.NotFoundException      if there's no beer with the given id
+     * @throws com.pedrogobira.beerstock.exception.NegativeStockException if the result would be negative
+     */
+    Beer decrement(Long id, int quantity);
+
+    /**
+     * Called before the beer is replaced, deleted or moved by a batch, so an implementation holding its own copy of
+     * the stock can write it out and drop it.
+     */
+    default void release(Long id) {
+    }
+}
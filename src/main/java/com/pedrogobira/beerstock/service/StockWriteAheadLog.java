@@ -0,0 +1,210 @@
+package com.pedrogobira.beerstock.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of stock deltas used by {@link StockCounterEngine}, split into numbered segments so the flushed
+ * part can be dropped. Each record is the beer id, the delta and a CRC32 of both; a torn or corrupt record ends the
+ * segment when it is read back.
+ * <p>
+ * {@link #append} only writes the record and returns its sequence number; {@link #sync} makes it durable. Appends and
+ * rotations may run concurrently. With fsync on, concurrent syncs share one {@link FileChannel#force} (group commit):
+ * whoever syncs covers every record appended before it, rotated segments included, so a record is never durable
+ * before the ones appended ahead of it.
+ */
+class StockWriteAheadLog implements Closeable {
+
+    private static final int RECORD_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("stock-(\\d+)\\.wal");
+
+    private final Path directory;
+    private final boolean fsync;
+    private final Lock appendLock = new ReentrantLock();
+    private final Lock syncLock = new ReentrantLock();
+    private final List<FileChannel> rotated = new ArrayList<>();
+    private long segment;
+    private FileChannel channel;
+    private long appended;
+    private volatile long synced;
+
+    StockWriteAheadLog(Path directory, boolean fsync) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.fsync = fsync;
+    }
+
+    /**
+     * @return the ids of the segments on disk, oldest first
+     */
+    List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return the net delta per beer id recorded in the segment
+     */
+    Map<Long, Integer> read(long segment) throws IOException {
+        Map<Long, Integer> deltas = new HashMap<>();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        try (FileChannel segmentChannel = FileChannel.open(path(segment), StandardOpenOption.READ)) {
+            while (readFully(segmentChannel, record)) {
+                record.flip();
+                long beerId = record.getLong();
+                int delta = record.getInt();
+                if (record.getInt() != checksum(beerId, delta)) break;
+                deltas.merge(beerId, delta, Integer::sum);
+                record.clear();
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Starts appending to a new, empty segment.
+     */
+    void open(long segment) throws IOException {
+        appendLock.lock();
+        try {
+            this.segment = segment;
+            this.channel = FileChannel.open(path(segment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the record to the current segment without forcing it to disk.
+     *
+     * @return the sequence number to {@link #sync} on
+     */
+    long append(long beerId, int delta) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE)
+                .putLong(beerId)
+                .putInt(delta)
+                .putInt(checksum(beerId, delta));
+        record.flip();
+        appendLock.lock();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            return ++appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Returns once the record with the given sequence number, and every one before it, is on disk.
+     */
+    void sync(long sequence) throws IOException {
+        if (!fsync || synced >= sequence) return;
+        syncLock.lock();
+        try {
+            if (synced >= sequence) return;
+            List<FileChannel> closing;
+            FileChannel current;
+            long last;
+            appendLock.lock();
+            try {
+                closing = new ArrayList<>(rotated);
+                rotated.clear();
+                current = channel;
+                last = appended;
+            } finally {
+                appendLock.unlock();
+            }
+            for (FileChannel closed : closing) {
+                closed.force(false);
+                closed.close();
+            }
+            current.force(false);
+            synced = last;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Continues in the next segment. With fsync on, the closed segment is forced and closed by the next
+     * {@link #sync}, so rotating never waits for the disk.
+     *
+     * @return the id of the closed segment
+     */
+    long rotate() throws IOException {
+        appendLock.lock();
+        try {
+            long closed = segment;
+            FileChannel closedChannel = channel;
+            open(closed + 1);
+            if (fsync) {
+                rotated.add(closedChannel);
+            } else {
+                closedChannel.close();
+            }
+            return closed;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    void deleteUpTo(long segment) throws IOException {
+        for (long id : segments()) {
+            if (id <= segment) Files.deleteIfExists(path(id));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            for (FileChannel closed : rotated) {
+                closed.close();
+            }
+            rotated.clear();
+            if (channel != null) channel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private Path path(long segment) {
+        return directory.resolve("stock-" + segment + ".wal");
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) return false;
+        }
+        return true;
+    }
+
+    private static int checksum(long beerId, int delta) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES + Integer.BYTES).putLong(beerId).putInt(delta).array());
+        return (int) crc.getValue();
+    }
+}
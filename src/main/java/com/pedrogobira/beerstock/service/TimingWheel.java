@@ -0,0 +1,130 @@
+package com.pedrogobira.beerstock.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical timing wheel: {@value #LEVELS} wheels of {@value #SLOTS} slots, where a slot of each wheel spans a
+ * whole turn of the wheel below. An item due within {@value #SLOTS} ticks goes to the slot of its tick on the first
+ * wheel, a later one to the slot of the first wheel coarse enough to tell its tick apart, and it moves down a wheel
+ * when the wheel below turns to it. Scheduling and expiring cost the same however many items are pending, and each
+ * item moves at most {@code LEVELS - 1} times. Items due beyond the last wheel's span wait in it, moved again on each
+ * of its turns.
+ * <p>
+ * Items can't be cancelled: whoever receives them ignores the ones settled in the meantime.
+ */
+class TimingWheel<T> {
+
+    static final int SLOT_BITS = 6;
+    static final int SLOTS = 1 << SLOT_BITS;
+    static final int LEVELS = 4;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    private final List<Entry<T>>[][] wheels;
+    private final Lock lock = new ReentrantLock();
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(Duration tick, long nowMillis) {
+        if (tick.toMillis() <= 0) throw new IllegalArgumentException("The tick must be at least a millisecond");
+        this.tickMillis = tick.toMillis();
+        this.currentTick = nowMillis / tickMillis;
+        this.wheels = new List[LEVELS][SLOTS];
+        for (List<Entry<T>>[] wheel : wheels) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheel[slot] = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * Schedules the item for the first {@link #advance} at or after its deadline, the next one if the deadline
+     * already passed.
+     */
+    void schedule(T item, long deadlineMillis) {
+        long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        lock.lock();
+        try {
+            place(new Entry<>(Math.max(deadlineTick, currentTick + 1), item));
+            size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Turns the wheels up to the given time.
+     *
+     * @return the items due by then, in deadline order
+     */
+    List<T> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<T> due = new ArrayList<>();
+        lock.lock();
+        try {
+            if (size == 0 && targetTick > currentTick) currentTick = targetTick;
+            while (currentTick < targetTick) {
+                currentTick++;
+                for (int level = LEVELS - 1; level > 0; level--) {
+                    if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) cascade(level);
+                }
+                List<Entry<T>> slot = wheels[0][(int) currentTick & SLOT_MASK];
+                for (Entry<T> entry : slot) {
+                    due.add(entry.item);
+                }
+                size -= slot.size();
+                slot.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return due;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the items of the slot the wheel just turned to down to the wheels below.
+     */
+    private void cascade(int level) {
+        List<Entry<T>> slot = wheels[level][(int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK];
+        List<Entry<T>> entries = new ArrayList<>(slot);
+        slot.clear();
+        entries.forEach(this::place);
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        long tick = level == LEVELS - 1 ? Math.min(entry.tick, currentTick + SPAN - 1) : entry.tick;
+        wheels[level][(int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK].add(entry);
+    }
+
+    private static final class Entry<T> {
+
+        private final long tick;
+        private final T item;
+
+        private Entry(long tick, T item) {
+            this.tick = tick;
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package com.pedrogobira.beerstock.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory trigram inverted index over the names and brands of beers, for typo-tolerant autocomplete.
+ * <p>
+ * Text is lower-cased and stripped of accents, and each word is padded with two spaces before and one after, as
+ * PostgreSQL's {@code pg_trgm} does, so short words and word starts get trigrams of their own. The last word of a query
+ * isn't padded after, so a prefix matches the word it starts. Characters are folded into a 6-bit alphabet, which makes
+ * a trigram an 18-bit number: postings are found by indexing an array rather than hashing.
+ * <p>
+ * Each beer gets an ordinal, and each trigram a list of the ordinals of the beers having it, in ascending order. A
+ * query needing at least {@code m} of its {@code q} trigrams only takes candidates from its {@code q - m + 1} shortest
+ * lists, since a beer missing from all of them can't have {@code m}, and checks the other lists by binary search. A
+ * selective query so reads a few short lists whatever the size of the catalog.
+ * <p>
+ * Ordinals only grow, so appending keeps the lists sorted. Removed beers leave their ordinal unused until the index
+ * is compacted, which happens once they are as many as the beers left.
+ */
+public class TrigramIndex {
+
+    static final int ALPHABET_BITS = 6;
+    static final int TRIGRAMS = 1 << (ALPHABET_BITS * 3);
+
+    private static final int SPACE = 0;
+    private static final int OTHER = 37;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int[][] postings = new int[TRIGRAMS][];
+    private final int[] postingSizes = new int[TRIGRAMS];
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private String[] brands = new String[INITIAL_CAPACITY];
+    private int[] trigramCounts = new int[INITIAL_CAPACITY];
+    private int ordinals;
+    private int live;
+    private final OrdinalsById ordinalsById = new OrdinalsById();
+
+    /**
+     * Indexes the beer, or reindexes it when its name or brand changed.
+     */
+    public void put(long id, String name, String brand) {
+        int[] trigrams = trigrams(name + ' ' + brand, false);
+        lock.writeLock().lock();
+        try {
+            int existing = ordinalsById.get(id);
+            if (existing >= 0) {
+                if (names[existing].equals(name) && brands[existing].equals(brand)) return;
+                removeOrdinal(existing, id);
+            }
+            int ordinal = ordinals++;
+            ensureCapacity(ordinals);
+            ids[ordinal] = id;
+            ordinalsById.put(id, ordinal);
+            names[ordinal] = name;
+            brands[ordinal] = brand;
+            trigramCounts[ordinal] = trigrams.length;
+            for (int trigram : trigrams) {
+                append(trigram, ordinal);
+            }
+            live++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinalsById.get(id);
+            if (ordinal >= 0) removeOrdinal(ordinal, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the beers by the share of the query's trigrams they have, then by how close their length is to the
+     * query's, then by name.
+     *
+     * @param minScore share of the query's trigrams a beer needs, from 0 (exclusive) to 1
+     * @return the best {@code limit} beers scoring at least {@code minScore}, best first
+     */
+    public List<Match> search(String query, int limit, double minScore) {
+        int[] trigrams = trigrams(query, true);
+        if (trigrams.length == 0 || limit <= 0) return List.of();
+        int needed = Math.max(1, (int) Math.ceil(trigrams.length * minScore - 1e-9));
+        lock.readLock().lock();
+        try {
+            int[][] lists = new int[trigrams.length][];
+            int[] sizes = new int[trigrams.length];
+            Integer[] order = new Integer[trigrams.length];
+            for (int i = 0; i < trigrams.length; i++) {
+                lists[i] = postings[trigrams[i]];
+                sizes[i] = postingSizes[trigrams[i]];
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> sizes[i]));
+
+            int generators = trigrams.length - needed + 1;
+            int[] cursors = new int[trigrams.length];
+            PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, Match.RANKING.reversed());
+            while (true) {
+                int ordinal = Integer.MAX_VALUE;
+                for (int g = 0; g < generators; g++) {
+                    int list = order[g];
+                    if (cursors[list] < sizes[list] && lists[list][cursors[list]] < ordinal) {
+                        ordinal = lists[list][cursors[list]];
+                    }
+                }
+                if (ordinal == Integer.MAX_VALUE) break;
+                int shared = 0;
+                for (int g = 0; g < generators; g++) {
+                    int list = order[g];
+                    if (cursors[list] < sizes[list] && lists[list][cursors[list]] == ordinal) {
+                        cursors[list]++;
+                        shared++;
+                    }
+                }
+                int bound = shared + trigrams.length - generators;
+                if (bound < needed) continue;
+                if (best.size() == limit && !best.peek().isWorseThan((double) bound / trigrams.length,
+                        2.0 * bound / (trigrams.length + trigramCounts[ordinal]))) continue;
+                for (int c = generators; c < trigrams.length && shared + trigrams.length - c >= needed; c++) {
+                    int list = order[c];
+                    cursors[list] = seek(lists[list], cursors[list], sizes[list], ordinal);
+                    if (cursors[list] < sizes[list] && lists[list][cursors[list]] == ordinal) shared++;
+                }
+                if (shared < needed) continue;
+                double score = (double) shared / trigrams.length;
+                double similarity = 2.0 * shared / (trigrams.length + trigramCounts[ordinal]);
+                if (best.size() == limit && !best.peek().isWorseThan(score, similarity)) continue;
+                best.add(new Match(ids[ordinal], names[ordinal], brands[ordinal], score, similarity));
+                if (best.size() > limit) best.poll();
+            }
+            List<Match> matches = new ArrayList<>(best);
+            matches.sort(Match.RANKING);
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates the heap taken by the index, assuming compressed object pointers and compact Latin-1 strings.
+     */
+    public Footprint footprint() {
+        lock.readLock().lock();
+        try {
+            long postingBytes = arrayBytes(TRIGRAMS, 4) * 2;
+            long entries = 0;
+            int trigrams = 0;
+            for (int trigram = 0; trigram < TRIGRAMS; trigram++) {
+                if (postings[trigram] == null) continue;
+                trigrams++;
+                entries += postingSizes[trigram];
+                postingBytes += arrayBytes(postings[trigram].length, 4);
+            }
+            long beerBytes = arrayBytes(ids.length, 8) + arrayBytes(trigramCounts.length, 4)
+                    + arrayBytes(names.length, 4) + arrayBytes(brands.length, 4);
+            for (int ordinal = 0; ordinal < ordinals; ordinal++) {
+                if (names[ordinal] != null) beerBytes += stringBytes(names[ordinal]) + stringBytes(brands[ordinal]);
+            }
+            return new Footprint(live, trigrams, entries, postingBytes, beerBytes, ordinalsById.bytes());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the distinct trigrams of the text, in ascending order
+     */
+    static int[] trigrams(String text, boolean prefix) {
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        int[] codes = new int[folded.length() * 2 + 3];
+        int length = 0;
+        boolean inWord = false;
+        for (int i = 0; i < folded.length(); i++) {
+            int code = code(folded.charAt(i));
+            if (code == SPACE) {
+                if (inWord) codes[length++] = SPACE;
+                inWord = false;
+            } else {
+                if (!inWord) {
+                    codes[length++] = SPACE;
+                    codes[length++] = SPACE;
+                }
+                codes[length++] = code;
+                inWord = true;
+            }
+        }
+        if (inWord && !prefix) codes[length++] = SPACE;
+        if (length < 3) return new int[0];
+        int[] trigrams = new int[length - 2];
+        int count = 0;
+        for (int i = 0; i + 2 < length; i++) {
+            if (codes[i + 2] == SPACE && codes[i + 1] == SPACE) continue;
+            trigrams[count++] = codes[i] << (ALPHABET_BITS * 2) | codes[i + 1] << ALPHABET_BITS | codes[i + 2];
+        }
+        return Arrays.stream(trigrams, 0, count).sorted().distinct().toArray();
+    }
+
+    private static int code(char c) {
+        if (c >= 'a' && c <= 'z') return 1 + c - 'a';
+        if (c >= '0' && c <= '9') return 27 + c - '0';
+        return Character.isLetterOrDigit(c) ? OTHER : SPACE;
+    }
+
+    /**
+     * Gallops forward from the cursor, as the candidates come in ascending order.
+     *
+     * @return the position of the first ordinal not below the target, {@code size} if none
+     */
+    private static int seek(int[] list, int from, int size, int target) {
+        if (from >= size || list[from] >= target) return from;
+        int step = 1;
+        int low = from;
+        int high = from + 1;
+        while (high < size && list[high] < target) {
+            low = high;
+            step <<= 1;
+            high = low + step;
+        }
+        int at = Arrays.binarySearch(list, low + 1, Math.min(high + 1, size), target);
+        return at >= 0 ? at : -at - 1;
+    }
+
+    private void append(int trigram, int ordinal) {
+        int[] list = postings[trigram];
+        int size = postingSizes[trigram];
+        if (list == null) list = postings[trigram] = new int[4];
+        else if (size == list.length) list = postings[trigram] = Arrays.copyOf(list, size + (size >> 1) + 1);
+        list[size] = ordinal;
+        postingSizes[trigram] = size + 1;
+    }
+
+    private void removeOrdinal(int ordinal, long id) {
+        for (int trigram : trigrams(names[ordinal] + ' ' + brands[ordinal], false)) {
+            int[] list = postings[trigram];
+            int size = postingSizes[trigram];
+            int at = Arrays.binarySearch(list, 0, size, ordinal);
+            if (at < 0) continue;
+            System.arraycopy(list, at + 1, list, at, size - at - 1);
+            postingSizes[trigram] = size - 1;
+            if (size == 1) postings[trigram] = null;
+        }
+        names[ordinal] = null;
+        brands[ordinal] = null;
+        ordinalsById.remove(id);
+        live--;
+        if (ordinals - live > Math.max(live, INITIAL_CAPACITY)) compact();
+    }
+
+    /**
+     * Renumbers the beers left from 0. Ordinals keep their order, so the lists stay sorted.
+     */
+    private void compact() {
+        int[] renumbered = new int[ordinals];
+        int next = 0;
+        for (int ordinal = 0; ordinal < ordinals; ordinal++) {
+            if (names[ordinal] == null) {
+                renumbered[ordinal] = -1;
+                continue;
+            }
+            renumbered[ordinal] = next;
+            ids[next] = ids[ordinal];
+            names[next] = names[ordinal];
+            brands[next] = brands[ordinal];
+            trigramCounts[next] = trigramCounts[ordinal];
+            next++;
+        }
+        Arrays.fill(names, next, ordinals, null);
+        Arrays.fill(brands, next, ordinals, null);
+        for (int trigram = 0; trigram < TRIGRAMS; trigram++) {
+            int[] list = postings[trigram];
+            if (list == null) continue;
+            int size = 0;
+            for (int i = 0; i < postingSizes[trigram]; i++) {
+                int ordinal = renumbered[list[i]];
+                if (ordinal >= 0) list[size++] = ordinal;
+            }
+            postingSizes[trigram] = size;
+        }
+        ordinals = next;
+        ordinalsById.rebuild(ids, ordinals);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) return;
+        int grown = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, grown);
+        names = Arrays.copyOf(names, grown);
+        brands = Arrays.copyOf(brands, grown);
+        trigramCounts = Arrays.copyOf(trigramCounts, grown);
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return align(16L + (long) length * elementBytes);
+    }
+
+    private static long stringBytes(String value) {
+        return 24 + arrayBytes(value.length(), 1);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Open-addressing map from beer id to ordinal, holding only the ordinal: the id is read back from {@code ids}.
+     * Saves the boxed keys and entries a {@code HashMap} would keep for every beer.
+     */
+    private final class OrdinalsById {
+
+        private static final int EMPTY = -1;
+        private static final int REMOVED = -2;
+
+        private int[] slots = filled(INITIAL_CAPACITY * 2);
+        private int used;
+
+        int get(long id) {
+            int mask = slots.length - 1;
+            for (int slot = hash(id) & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+                int ordinal = slots[slot];
+                if (ordinal >= 0 && ids[ordinal] == id) return ordinal;
+            }
+            return -1;
+        }
+
+        void put(long id, int ordinal) {
+            if ((used + 1) * 2 > slots.length) rebuild(ids, ordinals);
+            int mask = slots.length - 1;
+            int slot = hash(id) & mask;
+            while (slots[slot] != EMPTY) slot = (slot + 1) & mask;
+            slots[slot] = ordinal;
+            used++;
+        }
+
+        void remove(long id) {
+            int mask = slots.length - 1;
+            for (int slot = hash(id) & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+                int ordinal = slots[slot];
+                if (ordinal >= 0 && ids[ordinal] == id) {
+                    slots[slot] = REMOVED;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Keeps the removed slots as markers, which {@link #put} doesn't reuse, until the next rebuild. Only the beers
+         * with a name are added, so a beer being put is added by {@link #put} alone.
+         */
+        void rebuild(long[] ids, int ordinals) {
+            int capacity = Integer.highestOneBit(Math.max(INITIAL_CAPACITY, live) * 4 - 1) << 1;
+            slots = filled(capacity);
+            used = 0;
+            int mask = capacity - 1;
+            for (int ordinal = 0; ordinal < ordinals; ordinal++) {
+                if (names[ordinal] == null) continue;
+                int slot = hash(ids[ordinal]) & mask;
+                while (slots[slot] != EMPTY) slot = (slot + 1) & mask;
+                slots[slot] = ordinal;
+                used++;
+            }
+        }
+
+        long bytes() {
+            return arrayBytes(slots.length, 4);
+        }
+
+        private int[] filled(int capacity) {
+            int[] empty = new int[capacity];
+            Arrays.fill(empty, EMPTY);
+            return empty;
+        }
+
+        private int hash(long id) {
+            long mixed = id * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+
+    public static final class Match {
+
+        static final Comparator<Match> RANKING = Comparator.comparingDouble(Match::getScore).reversed()
+                .thenComparing(Comparator.comparingDouble((Match match) -> match.similarity).reversed())
+                .thenComparing(Match::getName)
+                .thenComparingLong(Match::getId);
+
+        private final long id;
+        private final String name;
+        private final String brand;
+        private final double score;
+        private final double similarity;
+
+        private Match(long id, String name, String brand, double score, double similarity) {
+            this.id = id;
+            this.name = name;
+            this.brand = brand;
+            this.score = score;
+            this.similarity = similarity;
+        }
+
+        /**
+         * Ranks like {@link #RANKING} without building the other match, unless both would tie before their names.
+         */
+        private boolean isWorseThan(double otherScore, double otherSimilarity) {
+            if (score != otherScore) return score < otherScore;
+            return similarity < otherSimilarity;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getBrand() {
+            return brand;
+        }
+
+        /**
+         * Share of the query's trigrams the beer has.
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    public static final class Footprint {
+
+        private final int beers;
+        private final int trigrams;
+        private final long postings;
+        private final long postingBytes;
+        private final long beerBytes;
+        private final long idTableBytes;
+
+        private Footprint(int beers, int trigrams, long postings, long postingBytes, long beerBytes, long idTableBytes) {
+            this.beers = beers;
+            this.trigrams = trigrams;
+            this.postings = postings;
+            this.postingBytes = postingBytes;
+            this.beerBytes = beerBytes;
+            this.idTableBytes = idTableBytes;
+        }
+
+        public int getBeers() {
+            return beers;
+        }
+
+        /**
+         * Distinct trigrams having at least one beer.
+         */
+        public int getTrigrams() {
+            return trigrams;
+        }
+
+        /**
+         * Entries of all the trigram lists.
+         */
+        public long getPostings() {
+            return postings;
+        }
+
+        public long getPostingBytes() {
+            return postingBytes;
+        }
+
+        /**
+         * The ids, names and brands of the beers.
+         */
+        public long getBeerBytes() {
+            return beerBytes;
+        }
+
+        public long getIdTableBytes() {
+            return idTableBytes;
+        }
+
+        public long getTotalBytes() {
+            return postingBytes + beerBytes + idTableBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d beers, %d trigrams, %d postings: %.1f MiB (postings %.1f MiB, beers %.1f MiB, "
+                            + "id table %.1f MiB)", beers, trigrams, postings, mib(getTotalBytes()), mib(postingBytes),
+                    mib(beerBytes), mib(idTableBytes));
+        }
+
+        private static double mib(long bytes) {
+            return bytes / (1024.0 * 1024.0);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.pedrogobira.beerstock.controller;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.CacheConfig;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockQuantityDto;
+import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+public class ReactiveBeerControllerTest {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+        cacheManager.getCache(CacheConfig.BEERS_BY_NAME).clear();
+    }
+
+    @Test
+    void whenABeerIsSavedThenItIsFoundByName() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().id(null).build().toBeerDto();
+
+        // When
+        BeerDto saved = save(dto);
+
+        // Then
+        webTestClient.get().uri(BEER_API_URL_PATH + "/" + dto.getName())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(saved.getId().intValue())
+                .jsonPath("$.name").isEqualTo(dto.getName())
+                .jsonPath("$.quantity").isEqualTo(dto.getQuantity());
+    }
+
+    @Test
+    void whenABeerWithTheSameNameIsSavedThenBadRequestIsReturned() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().id(null).build().toBeerDto();
+        save(dto);
+
+        // Then
+        webTestClient.post().uri(BEER_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void whenIncrementAndDecrementAreCalledThenTheStockAndLedgerAreUpdated() {
+        // Given
+        BeerDto beer = save(BeerDtoBuilder.builder().id(null).max(50).quantity(10).build().toBeerDto());
+
+        // When
+        patch(beer.getId(), "/increment", 15).expectStatus().isOk()
+                .expectBody().jsonPath("$.quantity").isEqualTo(25);
+        patch(beer.getId(), "/decrement", 5).expectStatus().isOk()
+                .expectBody().jsonPath("$.quantity").isEqualTo(20);
+
+        // Then
+        assertThat(repository.findById(beer.getId()).orElseThrow().getQuantity(), is(equalTo(20)));
+        StockQuantityDto quantity = webTestClient.get().uri(BEER_API_URL_PATH + "/" + beer.getId() + "/quantity")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(StockQuantityDto.class)
+                .returnResult().getResponseBody();
+        assertThat(quantity.getQuantity(), is(equalTo(20)));
+    }
+
+    @Test
+    void whenAStockBoundIsCrossedThenTheMutationIsRejected() {
+        // Given
+        BeerDto beer = save(BeerDtoBuilder.builder().id(null).max(50).quantity(10).build().toBeerDto());
+
+        // Then
+        patch(beer.getId(), "/increment", 41).expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY)
+                .expectBody().jsonPath("$.message").isEqualTo(BeerStockExceededException.INSTANCE.getMessage());
+        patch(beer.getId(), "/decrement", 11).expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY)
+                .expectBody().jsonPath("$.message").isEqualTo(NegativeStockException.INSTANCE.getMessage());
+        patch(Long.MAX_VALUE, "/increment", 1).expectStatus().isNotFound()
+                .expectBody().jsonPath("$.message").isEqualTo(NotFoundException.INSTANCE.getMessage());
+        assertThat(repository.findById(beer.getId()).orElseThrow().getQuantity(), is(equalTo(10)));
+    }
+
+    @Test
+    void whenFindAllIsCalledThenPagesFollowTheCursor() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            save(BeerDtoBuilder.builder().id(null).name("Paged-" + i).build().toBeerDto());
+        }
+
+        // When
+        WebTestClient.ResponseSpec first = webTestClient.get().uri(BEER_API_URL_PATH + "?size=2").exchange();
+        String cursor = first.returnResult(BeerDto.class).getResponseHeaders().getFirst(BeerController.NEXT_CURSOR_HEADER);
+        List<BeerDto> rest = webTestClient.get().uri(BEER_API_URL_PATH + "?size=2&cursor=" + cursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(BeerController.NEXT_CURSOR_HEADER)
+                .expectBodyList(BeerDto.class)
+                .returnResult().getResponseBody();
+
+        // Then
+        assertThat(cursor, is(notNullValue()));
+        assertThat(rest, hasSize(1));
+        assertThat(rest.get(0).getName(), is(equalTo("Paged-2")));
+    }
+
+    @Test
+    void whenNdjsonIsAcceptedThenEveryBeerIsStreamed() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            save(BeerDtoBuilder.builder().id(null).name("Streamed-" + i).build().toBeerDto());
+        }
+
+        // When
+        List<BeerDto> beers = webTestClient.get().uri(BEER_API_URL_PATH)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BeerDto.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(beers, hasSize(3));
+    }
+
+    private BeerDto save(BeerDto dto) {
+        return webTestClient.post().uri(BEER_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(BeerDto.class)
+                .returnResult().getResponseBody();
+    }
+
+    private WebTestClient.ResponseSpec patch(Long id, String path, int quantity) {
+        return webTestClient.patch().uri(BEER_API_URL_PATH + "/" + id + path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new QuantityDto(quantity))
+                .exchange();
+    }
+}
@@ -0,0 +1,20 @@
+package com.pedrogobira.beerstock.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Runs the {@link BeerApiLoadTest} scenarios against the WebFlux and R2DBC stack of the {@code reactive} profile.
+ */
+@Tag("load-test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+public class ReactiveBeerApiLoadTest extends BeerApiLoadTest {
+
+    @Override
+    protected String stack() {
+        return "reactive";
+    }
+}
@@ -0,0 +1,22 @@
+package com.pedrogobira.beerstock.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Serves the reactive stack on Reactor Netty. Spring Boot picks Tomcat first when both are on the class path, as the
+ * servlet stack keeps it there, and WebFlux on Tomcat writes a response on the thread that emits it. Emitted from the
+ * bounded elastic scheduler, a write could then be interrupted when the worker's task is cancelled, which closed the
+ * connection without a response. The {@code server.*} properties are applied to this factory as to Boot's own.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class NettyServerConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,61 @@
+package com.pedrogobira.beerstock.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * The R2DBC side of the reactive stack: a pool of {@code spring.r2dbc} connections, behind a {@link DatabaseClient}
+ * and a {@link TransactionalOperator}.
+ * <p>
+ * The pool and its transaction manager aren't beans, which is why Spring Boot's R2DBC auto-configuration is excluded
+ * by {@link com.pedrogobira.beerstock.BeerStockApplication}: a {@code ConnectionFactory} bean makes the JDBC
+ * datasource back off, and an R2DBC transaction manager bean the JPA one, while JPA still creates the schema and
+ * serves what the reactive stack delegates to {@link com.pedrogobira.beerstock.service.BeerService}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class R2dbcConfig {
+
+    private final ConnectionPool pool;
+
+    @Autowired
+    public R2dbcConfig(R2dbcProperties properties) {
+        ConnectionFactoryBuilder connections = ConnectionFactoryBuilder.withUrl(properties.getUrl());
+        if (properties.getUsername() != null) connections.username(properties.getUsername());
+        if (properties.getPassword() != null) connections.password(properties.getPassword());
+        R2dbcProperties.Pool pool = properties.getPool();
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(connections.build())
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .build());
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.dispose();
+    }
+
+    @Bean
+    public DatabaseClient databaseClient() {
+        return DatabaseClient.create(pool);
+    }
+
+    @Bean
+    public TransactionalOperator transactionalOperator() {
+        return TransactionalOperator.create(new R2dbcTransactionManager(pool));
+    }
+}
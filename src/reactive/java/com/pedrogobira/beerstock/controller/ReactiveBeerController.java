@@ -0,0 +1,114 @@
+package com.pedrogobira.beerstock.controller;
+
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerPageDto;
+import com.pedrogobira.beerstock.dto.BeerSearchDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementResultDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.dto.StockQuantityDto;
+import com.pedrogobira.beerstock.service.ReactiveBeerService;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * {@link BeerController} on WebFlux, with the same paths, bodies, headers and error statuses. Stock events are only
+ * served by the servlet stack, as {@link com.pedrogobira.beerstock.service.StockEventBroker} writes to
+ * {@code SseEmitter}s.
+ */
+@RestController
+@RequestMapping("api/v1/beers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class ReactiveBeerController {
+
+    private final ReactiveBeerService service;
+
+    @PostMapping
+    public Mono<ResponseEntity<BeerDto>> save(@RequestBody @Valid BeerDto dto) {
+        return service.save(dto).map(saved -> ResponseEntity.status(HttpStatus.CREATED).body(saved));
+    }
+
+    @GetMapping("/{name}")
+    public Mono<ResponseEntity<BeerDto>> findByName(@PathVariable String name) {
+        return service.findByName(name).map(beer -> ResponseEntity.status(HttpStatus.OK).body(beer));
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<List<BeerDto>>> findAll(@RequestParam(required = false) String cursor,
+                                                       @RequestParam(required = false) Integer size,
+                                                       ServerHttpRequest request) {
+        return service.findAll(cursor, size).map(page -> page(page, request));
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<BeerDto>>> search(@Valid BeerSearchDto filter,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer size,
+                                                      ServerHttpRequest request) {
+        return service.search(filter, cursor, size).map(page -> page(page, request));
+    }
+
+    @GetMapping("/{id}/quantity")
+    public Mono<ResponseEntity<StockQuantityDto>> quantityAt(@PathVariable Long id,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        return service.findQuantityAt(id, at).map(quantity -> ResponseEntity.status(HttpStatus.OK).body(quantity));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BeerDto> streamAll() {
+        return service.streamAll();
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> delete(@PathVariable Long id) {
+        return service.delete(id).thenReturn(ResponseEntity.status(HttpStatus.NO_CONTENT).<Void>build());
+    }
+
+    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Void>> fullUpdate(@PathVariable Long id, @RequestBody @Valid BeerDto dto) {
+        return service.update(id, dto).thenReturn(ResponseEntity.status(HttpStatus.OK).<Void>build());
+    }
+
+    @PatchMapping("/{id}/increment")
+    public Mono<ResponseEntity<BeerDto>> increment(@PathVariable Long id, @RequestBody @Valid QuantityDto dto) {
+        return service.increment(id, dto).map(beer -> ResponseEntity.status(HttpStatus.OK).body(beer));
+    }
+
+    @PatchMapping("/{id}/decrement")
+    public Mono<ResponseEntity<BeerDto>> decrement(@PathVariable Long id, @RequestBody @Valid QuantityDto dto) {
+        return service.decrement(id, dto).map(beer -> ResponseEntity.status(HttpStatus.OK).body(beer));
+    }
+
+    @PostMapping("/stock-movements")
+    public Mono<ResponseEntity<List<StockMovementResultDto>>> move(@RequestBody @Valid StockMovementsDto dto) {
+        return service.move(dto).map(results -> ResponseEntity.status(HttpStatus.OK).body(results));
+    }
+
+    private static ResponseEntity<List<BeerDto>> page(BeerPageDto page, ServerHttpRequest request) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        if (page.getNextCursor() != null) {
+            String next = UriComponentsBuilder.fromHttpRequest(request)
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .toUriString();
+            response.header(BeerController.NEXT_CURSOR_HEADER, page.getNextCursor())
+                    .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page.getContent());
+    }
+}
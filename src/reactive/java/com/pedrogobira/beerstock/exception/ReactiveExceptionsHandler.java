@@ -0,0 +1,99 @@
+package com.pedrogobira.beerstock.exception;
+
+import com.pedrogobira.beerstock.config.MetricsConfig;
+import com.pedrogobira.beerstock.dto.StockMovementResultDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+
+import java.util.List;
+
+/**
+ * The {@link ExceptionsHandler} mapping for the reactive stack: same statuses, same cached bodies and the same
+ * {@code beer.exceptions} counter.
+ */
+@RestControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class ReactiveExceptionsHandler {
+
+    private final MeterRegistry meterRegistry;
+
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<ExceptionResponse> handleException(NotFoundException exception, ServerWebExchange exchange) {
+        count(exception, exchange);
+        return ExceptionsHandler.NOT_FOUND;
+    }
+
+    @ExceptionHandler(BeerAlreadyExistsException.class)
+    public ResponseEntity<ExceptionResponse> handleException(BeerAlreadyExistsException exception, ServerWebExchange exchange) {
+        count(exception, exchange);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ExceptionResponse(exception.getMessage()));
+    }
+
+    @ExceptionHandler(BeerStockExceededException.class)
+    public ResponseEntity<ExceptionResponse> handleException(BeerStockExceededException exception, ServerWebExchange exchange) {
+        count(exception, exchange);
+        return ExceptionsHandler.STOCK_EXCEEDED;
+    }
+
+    @ExceptionHandler(NegativeStockException.class)
+    public ResponseEntity<ExceptionResponse> handleException(NegativeStockException exception, ServerWebExchange exchange) {
+        count(exception, exchange);
+        return ExceptionsHandler.NEGATIVE_STOCK;
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ExceptionResponse> handleException(InvalidCursorException exception, ServerWebExchange exchange) {
+        count(exception, exchange);
+        return ExceptionsHandler.INVALID_CURSOR;
+    }
+
+    @ExceptionHandler(StockHistoryCompactedException.class)
+    public ResponseEntity<ExceptionResponse> handleException(StockHistoryCompactedException exception, ServerWebExchange exchange) {
+        count(exception, exchange);
+        return ExceptionsHandler.HISTORY_COMPACTED;
+    }
+
+    @ExceptionHandler(ConcurrentStockUpdateException.class)
+    public ResponseEntity<ExceptionResponse> handleException(ConcurrentStockUpdateException exception, ServerWebExchange exchange) {
+        count(exception, exchange);
+        return ExceptionsHandler.CONCURRENT_UPDATE;
+    }
+
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<ExceptionResponse> handleException(ObjectOptimisticLockingFailureException exception, ServerWebExchange exchange) {
+        count(exception, exchange);
+        return ExceptionsHandler.CONCURRENT_UPDATE;
+    }
+
+    @ExceptionHandler(StockMovementsRejectedException.class)
+    public ResponseEntity<List<StockMovementResultDto>> handleException(StockMovementsRejectedException exception, ServerWebExchange exchange) {
+        count(exception, exchange);
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(exception.getResults());
+    }
+
+    private void count(Exception exception, ServerWebExchange exchange) {
+        meterRegistry.counter(ExceptionsHandler.EXCEPTIONS_COUNTER,
+                "exception", exception.getClass().getSimpleName(),
+                "method", exchange.getRequest().getMethodValue(),
+                "uri", uri(exchange)).increment();
+    }
+
+    /**
+     * @return the uri template the request was mapped to, as {@link MetricsConfig#uri} for the servlet stack
+     */
+    private static String uri(ServerWebExchange exchange) {
+        PathPattern pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "UNKNOWN" : pattern.getPatternString();
+    }
+}
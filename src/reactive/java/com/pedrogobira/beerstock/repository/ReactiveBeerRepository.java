@@ -0,0 +1,141 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.BeerType;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC access to the {@code beer} table for the reactive stack, mirroring the queries of {@link BeerRepository}.
+ * The schema is still created from the JPA entities, and the statements use the {@code $n} bind markers of H2 and
+ * PostgreSQL. Statements join the R2DBC transaction of the subscriber, if any.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveBeerRepository {
+
+    private static final String SELECT = "select b.id, b.name, b.brand, b.max, b.quantity, b.reserved, b.type, b.version from beer b ";
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public ReactiveBeerRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Beer> findById(Long id) {
+        return databaseClient.sql(SELECT + "where b.id = $1")
+                .bind(0, id)
+                .map(ReactiveBeerRepository::toBeer)
+                .one();
+    }
+
+    public Mono<Beer> findByName(String name) {
+        return databaseClient.sql(SELECT + "where b.name = $1")
+                .bind(0, name)
+                .map(ReactiveBeerRepository::toBeer)
+                .one();
+    }
+
+    /**
+     * @return up to {@code limit} beers with an id greater than the given one, in id order
+     */
+    public Flux<Beer> findPage(long afterId, int limit) {
+        return databaseClient.sql(SELECT + "where b.id > $1 order by b.id limit $2")
+                .bind(0, afterId)
+                .bind(1, limit)
+                .map(ReactiveBeerRepository::toBeer)
+                .all();
+    }
+
+    /**
+     * Emits every beer in id order as rows arrive, at the pace the subscriber requests them.
+     */
+    public Flux<Beer> findAll() {
+        return databaseClient.sql(SELECT + "order by b.id")
+                .map(ReactiveBeerRepository::toBeer)
+                .all();
+    }
+
+    /**
+     * Takes the id from {@code beer_seq} first, as JPA does, so the beers saved by both get distinct ids.
+     *
+     * @return the beer, with its generated id and initial version set
+     */
+    public Mono<Beer> insert(Beer beer) {
+        return databaseClient.sql("select next value for beer_seq")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(id -> databaseClient.sql("insert into beer (id, name, brand, max, quantity, type, version) " +
+                                "values ($1, $2, $3, $4, $5, $6, 0)")
+                        .bind(0, id)
+                        .bind(1, beer.getName())
+                        .bind(2, beer.getBrand())
+                        .bind(3, beer.getMax())
+                        .bind(4, beer.getQuantity())
+                        .bind(5, beer.getType().name())
+                        .fetch()
+                        .rowsUpdated()
+                        .map(count -> {
+                            beer.setId(id);
+                            beer.setVersion(0L);
+                            return beer;
+                        }));
+    }
+
+    /**
+     * Writes every column of the beer only if nobody changed it since its version was read.
+     *
+     * @return 1 when the beer was written, 0 when the version no longer matches (or the beer is gone)
+     */
+    public Mono<Integer> updateIfVersionMatches(Beer beer) {
+        return databaseClient.sql("update beer set name = $1, brand = $2, max = $3, quantity = $4, type = $5, " +
+                        "version = version + 1 where id = $6 and version = $7")
+                .bind(0, beer.getName())
+                .bind(1, beer.getBrand())
+                .bind(2, beer.getMax())
+                .bind(3, beer.getQuantity())
+                .bind(4, beer.getType().name())
+                .bind(5, beer.getId())
+                .bind(6, beer.getVersion())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * @return 1 when the beer was deleted, 0 when the version no longer matches (or the beer is gone)
+     */
+    public Mono<Integer> deleteIfVersionMatches(Long id, long version) {
+        return databaseClient.sql("delete from beer where id = $1 and version = $2")
+                .bind(0, id)
+                .bind(1, version)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * @return the updated beer, empty when the beer doesn't exist or the result would leave the range from the stock
+     * on hold to the max
+     * @see BeerRepository#applyQuantityDelta
+     */
+    public Mono<Beer> applyQuantityDelta(Long id, int delta) {
+        return databaseClient.sql("select b.id, b.name, b.brand, b.max, b.quantity, b.reserved, b.type, b.version " +
+                        "from final table (update beer set quantity = quantity + $1, version = version + 1 " +
+                        "where id = $2 and quantity + $1 between reserved and max) b")
+                .bind(0, delta)
+                .bind(1, id)
+                .map(ReactiveBeerRepository::toBeer)
+                .one();
+    }
+
+    private static Beer toBeer(Row row) {
+        return new Beer(row.get(0, Long.class), row.get(1, String.class), row.get(2, String.class),
+                row.get(3, Integer.class), row.get(4, Integer.class), row.get(5, Integer.class), BeerType.valueOf(row.get(6, String.class)),
+                row.get(7, Long.class));
+    }
+}
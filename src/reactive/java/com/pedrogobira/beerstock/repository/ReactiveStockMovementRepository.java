@@ -0,0 +1,41 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Appends to the stock ledger from the reactive stack, in the R2DBC transaction that applied the movement. The
+ * snapshots, compaction and queries stay with {@link com.pedrogobira.beerstock.service.StockLedger}.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveStockMovementRepository {
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public ReactiveStockMovementRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * Stores the time in the JVM zone, like the JDBC timestamps {@link StockMovementRepositoryImpl} writes, so both
+     * stacks can share the ledger.
+     */
+    public Mono<Void> append(Long beerId, int delta, StockMovementType type, Instant createdAt) {
+        return databaseClient.sql("insert into stock_movement (beer_id, delta, type, created_at) values ($1, $2, $3, $4)")
+                .bind(0, beerId)
+                .bind(1, delta)
+                .bind(2, type.name())
+                .bind(3, LocalDateTime.ofInstant(createdAt, ZoneId.systemDefault()))
+                .then();
+    }
+}
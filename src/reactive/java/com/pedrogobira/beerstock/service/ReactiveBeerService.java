@@ -0,0 +1,261 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.CacheConfig;
+import com.pedrogobira.beerstock.config.MetricsConfig;
+import com.pedrogobira.beerstock.config.PaginationProperties;
+import com.pedrogobira.beerstock.config.StockProperties;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerPageDto;
+import com.pedrogobira.beerstock.dto.BeerSearchDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementResultDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.dto.StockQuantityDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
+import com.pedrogobira.beerstock.exception.BeerAlreadyExistsException;
+import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.ConcurrentStockUpdateException;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.mapper.BeerMapper;
+import com.pedrogobira.beerstock.repository.ReactiveBeerRepository;
+import com.pedrogobira.beerstock.repository.ReactiveStockMovementRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+/**
+ * Non-blocking counterpart of {@link BeerService}, serving the API of the {@code reactive} profile. Reads and
+ * single-beer writes run on R2DBC, in R2DBC transactions that also append to the stock ledger, and publish the same
+ * {@link BeerChangedEvent}s once committed. Filtered search, batched stock movements and ledger queries are built on
+ * JPA, so they run {@link BeerService} on the bounded elastic scheduler instead of an event loop.
+ * <p>
+ * Increments and decrements are the conditional UPDATEs of the {@code atomic} stock mode; the other modes keep
+ * state the R2DBC reads wouldn't see, so they are rejected at startup.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveBeerService {
+
+    private final ReactiveBeerRepository repository;
+    private final ReactiveStockMovementRepository movementRepository;
+    private final BeerService blockingService;
+    private final TransactionalOperator transactionalOperator;
+    private final PaginationProperties paginationProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache beersByName;
+    private final MeterRegistry meterRegistry;
+    private final BeerMapper mapper = BeerMapper.INSTANCE;
+
+    /**
+     * The operator runs on the R2DBC transaction manager of {@link com.pedrogobira.beerstock.config.R2dbcConfig}, which
+     * isn't a bean, so {@code @Transactional} keeps resolving to the JPA one.
+     */
+    @Autowired
+    public ReactiveBeerService(ReactiveBeerRepository repository, ReactiveStockMovementRepository movementRepository,
+                               BeerService blockingService, TransactionalOperator transactionalOperator,
+                               PaginationProperties paginationProperties, StockProperties stockProperties,
+                               ApplicationEventPublisher eventPublisher, CacheManager cacheManager,
+                               MeterRegistry meterRegistry) {
+        if (!"atomic".equals(stockProperties.getMode())) {
+            throw new IllegalStateException("The reactive stack requires application.stock.mode=atomic, not "
+                    + stockProperties.getMode());
+        }
+        this.repository = repository;
+        this.movementRepository = movementRepository;
+        this.blockingService = blockingService;
+        this.transactionalOperator = transactionalOperator;
+        this.paginationProperties = paginationProperties;
+        this.eventPublisher = eventPublisher;
+        this.beersByName = Objects.requireNonNull(cacheManager.getCache(CacheConfig.BEERS_BY_NAME));
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Mono<BeerDto> save(BeerDto dto) {
+        return timed("save", repository.findByName(dto.getName())
+                .flatMap(existing -> Mono.<Beer>error(new BeerAlreadyExistsException(dto.getName())))
+                .switchIfEmpty(Mono.defer(() -> repository.insert(mapper.toEntity(dto))))
+                .flatMap(beer -> record(beer.getId(), beer.getQuantity(), StockMovementType.CREATED).thenReturn(mapper.toDto(beer)))
+                .as(transactionalOperator::transactional)
+                .doOnNext(saved -> eventPublisher.publishEvent(new BeerChangedEvent(saved.getId(), null, null, saved))));
+    }
+
+    /**
+     * Shares the {@link CacheConfig#BEERS_BY_NAME} cache with {@link BeerService#findByName}, which
+     * {@link BeerCacheInvalidator} evicts on every change. Hits are served without touching the database.
+     */
+    public Mono<BeerDto> findByName(String name) {
+        return Mono.defer(() -> {
+            BeerDto cached = beersByName.get(name, BeerDto.class);
+            if (cached != null) return Mono.just(cached);
+            return timed("findByName", verifyByNameIfBeerExists(name)
+                    .map(mapper::toDto)
+                    .doOnNext(beer -> beersByName.put(name, beer)));
+        });
+    }
+
+    /**
+     * @see BeerService#findAll
+     */
+    public Mono<BeerPageDto> findAll(String cursor, Integer size) {
+        return timed("findAll", Mono.defer(() -> {
+            int pageSize = paginationProperties.pageSize(size);
+            return repository.findPage(PageCursor.decode(cursor), pageSize + 1)
+                    .map(mapper::toDto)
+                    .collectList()
+                    .map(beers -> page(beers, pageSize));
+        }));
+    }
+
+    public Mono<BeerPageDto> search(BeerSearchDto filter, String cursor, Integer size) {
+        return blocking(() -> blockingService.search(filter, cursor, size));
+    }
+
+    /**
+     * Emits every beer as it is read, so memory use doesn't grow with the table and a slow client slows the query
+     * down rather than filling a buffer.
+     */
+    public Flux<BeerDto> streamAll() {
+        return timed("streamAll", repository.findAll().map(mapper::toDto));
+    }
+
+    public Mono<Void> delete(Long id) {
+        return timed("delete", verifyByIdIfBeerExists(id)
+                .flatMap(beer -> repository.deleteIfVersionMatches(id, beer.getVersion())
+                        .flatMap(deleted -> deleted == 0
+                                ? Mono.<Void>error(ConcurrentStockUpdateException.INSTANCE)
+                                : record(id, -beer.getQuantity(), StockMovementType.DELETED))
+                        .thenReturn(new BeerChangedEvent(id, beer.getName(), beer.getQuantity(), null)))
+                .as(transactionalOperator::transactional)
+                .doOnNext(eventPublisher::publishEvent)
+                .then());
+    }
+
+    /**
+     * Fails with {@link ConcurrentStockUpdateException} when the beer changes between the read and the write, like
+     * the versioned JPA update of {@link BeerService#update}.
+     */
+    public Mono<Void> update(Long id, BeerDto dto) {
+        return timed("update", verifyByIdIfBeerExists(id)
+                .flatMap(beer -> {
+                    String previousName = beer.getName();
+                    Integer previousQuantity = beer.getQuantity();
+                    mapper.updateEntity(dto, beer);
+                    return repository.updateIfVersionMatches(beer)
+                            .flatMap(updated -> updated == 0
+                                    ? Mono.<Void>error(ConcurrentStockUpdateException.INSTANCE)
+                                    : record(id, beer.getQuantity() - previousQuantity, StockMovementType.UPDATED))
+                            .thenReturn(new BeerChangedEvent(id, previousName, previousQuantity, mapper.toDto(beer)));
+                })
+                .as(transactionalOperator::transactional)
+                .doOnNext(eventPublisher::publishEvent)
+                .then());
+    }
+
+    public Mono<StockQuantityDto> findQuantityAt(Long id, Instant at) {
+        return blocking(() -> blockingService.findQuantityAt(id, at));
+    }
+
+    /**
+     * @see AtomicStockUpdater#increment
+     */
+    public Mono<BeerDto> increment(Long id, QuantityDto dto) {
+        int quantity = dto.getQuantity();
+        return timed("increment", repository.applyQuantityDelta(id, quantity)
+                .switchIfEmpty(Mono.defer(() -> verifyByIdIfBeerExists(id).then(Mono.error(BeerStockExceededException.INSTANCE))))
+                .flatMap(beer -> record(id, quantity, StockMovementType.INCREMENT).thenReturn(beer))
+                .as(transactionalOperator::transactional)
+                .map(beer -> stockChanged(mapper.toDto(beer), quantity)));
+    }
+
+    /**
+     * @see AtomicStockUpdater#decrement
+     */
+    public Mono<BeerDto> decrement(Long id, QuantityDto dto) {
+        int quantity = dto.getQuantity();
+        return timed("decrement", repository.applyQuantityDelta(id, -quantity)
+                .switchIfEmpty(Mono.defer(() -> verifyByIdIfBeerExists(id).then(Mono.error(NegativeStockException.INSTANCE))))
+                .flatMap(beer -> record(id, -quantity, StockMovementType.DECREMENT).thenReturn(beer))
+                .as(transactionalOperator::transactional)
+                .map(beer -> stockChanged(mapper.toDto(beer), -quantity)));
+    }
+
+    public Mono<List<StockMovementResultDto>> move(StockMovementsDto dto) {
+        return blocking(() -> blockingService.move(dto));
+    }
+
+    private BeerDto stockChanged(BeerDto beer, int delta) {
+        eventPublisher.publishEvent(new BeerChangedEvent(beer.getId(), beer.getName(), beer.getQuantity() - delta, beer));
+        return beer;
+    }
+
+    /**
+     * @see StockLedger#record(Long, int, StockMovementType)
+     */
+    private Mono<Void> record(Long beerId, int delta, StockMovementType type) {
+        if (delta == 0) return Mono.empty();
+        return movementRepository.append(beerId, delta, type, Instant.now().truncatedTo(ChronoUnit.MICROS));
+    }
+
+    private Mono<Beer> verifyByNameIfBeerExists(String name) {
+        return repository.findByName(name).switchIfEmpty(Mono.error(NotFoundException.INSTANCE));
+    }
+
+    private Mono<Beer> verifyByIdIfBeerExists(Long id) {
+        return repository.findById(id).switchIfEmpty(Mono.error(NotFoundException.INSTANCE));
+    }
+
+    private static BeerPageDto page(List<BeerDto> beers, int pageSize) {
+        List<BeerDto> content = beers.size() > pageSize ? beers.subList(0, pageSize) : beers;
+        String nextCursor = beers.size() > pageSize ? PageCursor.encode(content.get(pageSize - 1).getId()) : null;
+        return new BeerPageDto(content, nextCursor);
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Records the subscription to completion in the {@link MetricsConfig#SERVICE_TIMER} timer, with the tags
+     * {@code TimedAspect} gives {@link BeerService}. The aspect can't be used here, as it would only time the
+     * assembly of the publisher.
+     */
+    private <T> Mono<T> timed(String method, Mono<T> mono) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return mono.doOnSuccess(value -> stop(sample, method, "none"))
+                    .doOnError(e -> stop(sample, method, e.getClass().getSimpleName()));
+        });
+    }
+
+    private <T> Flux<T> timed(String method, Flux<T> flux) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return flux.doOnComplete(() -> stop(sample, method, "none"))
+                    .doOnError(e -> stop(sample, method, e.getClass().getSimpleName()));
+        });
+    }
+
+    private void stop(Timer.Sample sample, String method, String exception) {
+        sample.stop(Timer.builder(MetricsConfig.SERVICE_TIMER)
+                .tags("class", ReactiveBeerService.class.getName(), "method", method, "exception", exception)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,222 @@
+package com.pedrogobira.beerstock;
+
+import com.pedrogobira.beerstock.config.StartupConfig;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Starts the application in a JVM of its own, {@code startup.runs} (5) times per {@link Configuration}, after one
+ * unmeasured start, and measures the time from launching the JVM until the application accepts traffic, then the
+ * latency of the first request, a page of beers, which pays for the beans lazy initialization skipped.
+ * {@code startup.configurations} (comma separated names, all by default) picks configurations.
+ * <p>
+ * The configurations using class data sharing need the archive of {@code mvn package -Pcds}. When it is there, every
+ * configuration runs the jar it was recorded with, so they are compared on the same class path; otherwise they run
+ * the test's class path and the CDS ones are skipped. Each run is appended to {@code target/startup-benchmark.csv}, so
+ * runs from different commits can be compared.
+ */
+@Tag("benchmark")
+public class StartupBenchmarkTest {
+
+    private static final int RUNS = Integer.getInteger("startup.runs", 5);
+    private static final String CONFIGURATIONS = System.getProperty("startup.configurations", "");
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final Path CDS_DIRECTORY = Paths.get("target", "cds");
+    private static final String CDS_ARCHIVE = "beer-stock.jsa";
+    private static final Path REPORT = Paths.get("target", "startup-benchmark.csv");
+    private static final String FIRST_REQUEST_PATH = "/api/v1/beers?size=1";
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    enum Configuration {
+
+        DEFAULT(false),
+        FAST_START(false, "-Dspring.profiles.active=fast-start"),
+        FAST_START_CDS(true, "-XX:SharedArchiveFile=" + CDS_ARCHIVE, "-Dspring.profiles.active=fast-start"),
+        // C1 compiles sooner and cheaper, which startup code that runs a few times benefits from
+        FAST_START_CDS_C1(true, "-XX:SharedArchiveFile=" + CDS_ARCHIVE, "-XX:TieredStopAtLevel=1",
+                "-Dspring.profiles.active=fast-start");
+
+        private final boolean cds;
+        private final List<String> jvmArguments;
+
+        Configuration(boolean cds, String... jvmArguments) {
+            this.cds = cds;
+            this.jvmArguments = Arrays.asList(jvmArguments);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Configuration.class)
+    void whenTheApplicationStartsThenItIsReadyAndAnswersItsFirstRequest(Configuration configuration) throws Exception {
+        assumeTrue(CONFIGURATIONS.isEmpty() || Arrays.asList(CONFIGURATIONS.split(",")).contains(configuration.name()));
+        Path cdsJar = cdsJar();
+        assumeTrue(!configuration.cds || cdsJar != null, "No CDS archive, run mvn package -Pcds first");
+
+        // Given
+        start(configuration, cdsJar);
+
+        // When
+        long[] ready = new long[RUNS];
+        long[] firstRequest = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            Startup startup = start(configuration, cdsJar);
+            ready[run] = startup.readyMillis;
+            firstRequest[run] = startup.firstRequestMillis;
+        }
+
+        // Then
+        report(configuration, cdsJar != null, ready, firstRequest);
+        assertThat(min(ready), is(greaterThan(0L)));
+    }
+
+    private Startup start(Configuration configuration, Path cdsJar) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(configuration.jvmArguments);
+        command.add("-Dserver.port=" + port);
+        command.add("-Dspring.devtools.restart.enabled=false");
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        if (cdsJar != null) {
+            // from where the archive was recorded, so the class path matches it
+            builder.directory(CDS_DIRECTORY.toFile()).command().addAll(Arrays.asList("-jar", cdsJar.getFileName().toString()));
+        } else {
+            builder.command().addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), BeerStockApplication.class.getName()));
+        }
+
+        long launched = System.nanoTime();
+        Process process = builder.start();
+        try {
+            CompletableFuture<Long> ready = new CompletableFuture<>();
+            Deque<String> output = new ConcurrentLinkedDeque<>();
+            Thread reader = new Thread(() -> read(process, ready, output), "startup-output");
+            reader.setDaemon(true);
+            reader.start();
+            long readyAt;
+            try {
+                readyAt = ready.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                throw new AssertionError(configuration + " wasn't ready within " + TIMEOUT + ":\n" + String.join("\n", output));
+            }
+
+            long sent = System.nanoTime();
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + FIRST_REQUEST_PATH))
+                    .timeout(TIMEOUT)
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            long answered = System.nanoTime();
+            assertThat(configuration + " first request", response.statusCode(), is(equalTo(200)));
+            return new Startup(TimeUnit.NANOSECONDS.toMillis(readyAt - launched), TimeUnit.NANOSECONDS.toMillis(answered - sent));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) process.destroyForcibly().waitFor();
+        }
+    }
+
+    /**
+     * Completes with the time the ready line was printed, and keeps the last lines for a start that times out.
+     */
+    private static void read(Process process, CompletableFuture<Long> ready, Deque<String> output) {
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (!ready.isDone() && line.contains(StartupConfig.READY_MESSAGE)) ready.complete(System.nanoTime());
+                output.addLast(line);
+                if (output.size() > 50) output.removeFirst();
+            }
+        } catch (IOException e) {
+            ready.completeExceptionally(e);
+        }
+        ready.completeExceptionally(new IllegalStateException("The application exited before it was ready"));
+    }
+
+    private static void report(Configuration configuration, boolean cdsJar, long[] ready, long[] firstRequest) throws IOException {
+        System.out.printf("%s: ready in %d ms (min %d, max %d), first request in %d ms (min %d, max %d), %d runs on the %s%n",
+                configuration, median(ready), min(ready), max(ready),
+                median(firstRequest), min(firstRequest), max(firstRequest), RUNS,
+                cdsJar ? "CDS jar" : "test class path");
+        StringBuilder lines = new StringBuilder();
+        if (!Files.exists(REPORT)) lines.append("time,configuration,class_path,run,ready_ms,first_request_ms\n");
+        Instant now = Instant.now();
+        for (int run = 0; run < ready.length; run++) {
+            lines.append(now).append(',').append(configuration).append(',').append(cdsJar ? "cds-jar" : "test")
+                    .append(',').append(run).append(',').append(ready[run]).append(',').append(firstRequest[run]).append('\n');
+        }
+        Files.createDirectories(REPORT.getParent());
+        Files.write(REPORT, lines.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static Path cdsJar() throws IOException {
+        if (!Files.exists(CDS_DIRECTORY.resolve(CDS_ARCHIVE))) return null;
+        try (DirectoryStream<Path> jars = Files.newDirectoryStream(CDS_DIRECTORY, "*-cds.jar")) {
+            for (Path jar : jars) return jar;
+        }
+        return null;
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long min(long[] values) {
+        return Arrays.stream(values).min().orElse(0);
+    }
+
+    private static long max(long[] values) {
+        return Arrays.stream(values).max().orElse(0);
+    }
+
+    private static final class Startup {
+
+        final long readyMillis;
+        final long firstRequestMillis;
+
+        private Startup(long readyMillis, long firstRequestMillis) {
+            this.readyMillis = readyMillis;
+            this.firstRequestMillis = firstRequestMillis;
+        }
+    }
+}
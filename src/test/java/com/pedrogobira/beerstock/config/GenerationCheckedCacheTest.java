@@ -0,0 +1,69 @@
+package com.pedrogobira.beerstock.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class GenerationCheckedCacheTest {
+
+    private static final String NAME = "Brahma";
+
+    private final GenerationCheckedCache cache = new GenerationCheckedCache(new ConcurrentMapCache(CacheConfig.BEERS_BY_NAME));
+
+    @Test
+    void whenAMissIsPutBackWithoutEvictionsThenItIsCached() {
+        // Given
+        assertThat(cache.get(NAME), is(nullValue()));
+
+        // When
+        cache.put(NAME, "loaded");
+
+        // Then
+        assertThat(cache.get(NAME).get(), is(equalTo("loaded")));
+    }
+
+    @Test
+    void whenTheKeyIsEvictedWhileItsMissIsReadThenThePutIsDropped() throws Exception {
+        // Given
+        assertThat(cache.get(NAME), is(nullValue()));
+
+        // When
+        CompletableFuture.runAsync(() -> cache.evict(NAME)).get();
+        cache.put(NAME, "stale");
+
+        // Then
+        assertThat(cache.get(NAME), is(nullValue()));
+        cache.put(NAME, "fresh");
+        assertThat(cache.get(NAME).get(), is(equalTo("fresh")));
+    }
+
+    @Test
+    void whenTheCacheIsClearedWhileAMissIsReadThenThePutIsDropped() {
+        // Given
+        assertThat(cache.get(NAME), is(nullValue()));
+
+        // When
+        cache.clear();
+        cache.put(NAME, "stale");
+
+        // Then
+        assertThat(cache.get(NAME), is(nullValue()));
+    }
+
+    @Test
+    void whenAnotherKeyIsEvictedThenThePutIsKept() {
+        // Given
+        assertThat(cache.get(NAME), is(nullValue()));
+
+        // When
+        cache.evict("Skol");
+        cache.put(NAME, "loaded");
+
+        // Then
+        assertThat(cache.get(NAME).get(), is(equalTo("loaded")));
+    }
+}
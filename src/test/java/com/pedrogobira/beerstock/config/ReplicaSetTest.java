@@ -0,0 +1,141 @@
+package com.pedrogobira.beerstock.config;
+
+import com.pedrogobira.beerstock.enums.ReplicaSelection;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ReplicaSetTest {
+
+    private static final Duration MAX_LAG = Duration.ofSeconds(1);
+
+    private final Instant now = Instant.now();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReplicaProperties properties;
+    private HikariDataSource primary;
+    private List<HikariDataSource> replicas;
+    private ReplicaSet replicaSet;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ReplicaProperties();
+        properties.setMaxLag(MAX_LAG);
+        primary = dataSource("replica-set-primary");
+        replicas = new ArrayList<>();
+        for (int replica = 0; replica < 3; replica++) {
+            replicas.add(dataSource("replica-set-replica" + replica));
+        }
+        replicaSet = new ReplicaSet(primary, replicas, properties);
+        replicaSet.bindTo(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        replicaSet.stop();
+        primary.close();
+    }
+
+    @Test
+    void whenReplicasHaveCaughtUpThenTheyAreUsedInTurn() {
+        // Given
+        for (int replica = 0; replica < replicas.size(); replica++) {
+            replicaSet.caughtUp(replica, now);
+        }
+
+        // When
+        List<Integer> selected = new ArrayList<>();
+        for (int read = 0; read < 6; read++) {
+            selected.add(replicaSet.select(null, now));
+        }
+
+        // Then
+        assertThat(selected, is(equalTo(Arrays.asList(0, 1, 2, 0, 1, 2))));
+    }
+
+    @Test
+    void whenAReplicaLagsTooFarBehindOrCantBeReadThenItGetsNoReads() {
+        // Given
+        replicaSet.caughtUp(0, now.minus(MAX_LAG).minusMillis(1));
+        replicaSet.caughtUp(1, null);
+        replicaSet.caughtUp(2, now.minus(MAX_LAG));
+
+        // Then
+        for (int read = 0; read < 3; read++) {
+            assertThat(replicaSet.select(null, now), is(equalTo(2)));
+        }
+        replicaSet.caughtUp(2, null);
+        assertThat(replicaSet.select(null, now), is(nullValue()));
+    }
+
+    @Test
+    void whenAReadMustFollowAWriteThenOnlyTheReplicasHoldingItAreUsed() {
+        // Given
+        Instant written = now.minusMillis(100);
+        replicaSet.caughtUp(0, written.minusMillis(1));
+        replicaSet.caughtUp(1, written);
+        replicaSet.caughtUp(2, written.minusMillis(50));
+
+        // Then
+        for (int read = 0; read < 3; read++) {
+            assertThat(replicaSet.select(written, now), is(equalTo(1)));
+        }
+        assertThat(replicaSet.select(now.plusMillis(1), now), is(nullValue()));
+    }
+
+    @Test
+    void whenSelectingTheLeastLoadedThenTheReplicaWithTheFewestConnectionsInUseIsUsed() throws Exception {
+        // Given
+        properties.setSelection(ReplicaSelection.LEAST_LOADED);
+        for (int replica = 0; replica < replicas.size(); replica++) {
+            replicaSet.caughtUp(replica, now);
+        }
+        try (Connection first = replicas.get(0).getConnection();
+             Connection second = replicas.get(1).getConnection();
+             Connection third = replicas.get(1).getConnection();
+             Connection fourth = replicas.get(0).getConnection()) {
+            // Then
+            assertThat(replicaSet.select(null, now), is(equalTo(2)));
+        }
+    }
+
+    @Test
+    void whenRoutingThenWritesGoToThePrimaryAndReadsAreCounted() {
+        // Given
+        replicaSet.caughtUp(1, Instant.now());
+
+        // When
+        Integer write = replicaSet.route(false);
+        Integer read = replicaSet.route(true);
+
+        // Then
+        assertThat(write, is(nullValue()));
+        assertThat(read, is(equalTo(1)));
+        assertThat(connections("primary", "false"), is(equalTo(1.0)));
+        assertThat(connections("replica-1", "true"), is(equalTo(1.0)));
+    }
+
+    private double connections(String target, String readOnly) {
+        return meterRegistry.get(ReplicaSet.CONNECTIONS_COUNTER).tag("target", target).tag("read-only", readOnly)
+                .functionCounter().count();
+    }
+
+    private static HikariDataSource dataSource(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(4);
+        return dataSource;
+    }
+}
@@ -0,0 +1,40 @@
+package com.pedrogobira.beerstock.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("fast-start")
+public class StartupConfigTest {
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void whenStartingFastThenRequestBeansWaitForTheFirstRequestAndBackgroundWorkStartsRightAway() throws Exception {
+        // Given
+        assertThat(beanFactory.containsSingleton("beerController"), is(false));
+        assertThat(beanFactory.containsSingleton("stockLedger"), is(true));
+        assertThat(beanFactory.containsSingleton("entityManagerFactory"), is(true));
+
+        // When
+        mockMvc.perform(get("/api/v1/beers")).andExpect(status().isOk());
+
+        // Then
+        assertThat(beanFactory.containsSingleton("beerController"), is(true));
+    }
+}
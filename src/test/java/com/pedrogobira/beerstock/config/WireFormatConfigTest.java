@@ -0,0 +1,60 @@
+package com.pedrogobira.beerstock.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.StockQuantityDto;
+import com.pedrogobira.beerstock.enums.BeerType;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class WireFormatConfigTest {
+
+    private final ObjectMapper json = bootBuilder().build();
+    private final ObjectMapper smile = WireFormatConfig.smileMapper(bootBuilder());
+
+    @Test
+    void whenADtoIsEncodedInSmileThenItDecodesToTheSameTreeAsItsJson() throws Exception {
+        // Given
+        StockQuantityDto quantity = new StockQuantityDto(1L, 7, Instant.parse("2021-07-01T12:00:00Z"));
+
+        // When
+        byte[] encoded = smile.writeValueAsBytes(quantity);
+
+        // Then
+        assertThat(smile.readTree(encoded), is(equalTo(json.readTree(json.writeValueAsBytes(quantity)))));
+        assertThat(smile.readValue(encoded, StockQuantityDto.class), is(equalTo(quantity)));
+    }
+
+    @Test
+    void whenAListOfBeersIsEncodedInSmileThenItIsSmallerThanItsJson() throws Exception {
+        // Given
+        List<BeerDto> beers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            beers.add(new BeerDto((long) i, "Beer " + i, "Brand " + i % 20, 100, i % 100, BeerType.LAGER));
+        }
+
+        // When
+        byte[] encoded = smile.writeValueAsBytes(beers);
+
+        // Then
+        assertThat(encoded.length, is(lessThan(json.writeValueAsBytes(beers).length)));
+        assertThat(smile.readValue(encoded, new TypeReference<List<BeerDto>>() {
+        }), is(equalTo(beers)));
+    }
+
+    /**
+     * A builder set up like Boot's default one.
+     */
+    private static Jackson2ObjectMapperBuilder bootBuilder() {
+        return Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+}
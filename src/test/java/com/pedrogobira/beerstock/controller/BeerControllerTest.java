@@ -1,34 +1,65 @@
 package com.pedrogobira.beerstock.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.CoalescingProperties;
+import com.pedrogobira.beerstock.config.WireFormatConfig;
 import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerImportErrorDto;
+import com.pedrogobira.beerstock.dto.BeerImportProgressDto;
+import com.pedrogobira.beerstock.dto.BeerPageDto;
+import com.pedrogobira.beerstock.dto.BeerSearchDto;
+import com.pedrogobira.beerstock.dto.BeerSuggestionDto;
 import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.dto.StockMovementResultDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.dto.StockQuantityDto;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.enums.StockEventType;
+import com.pedrogobira.beerstock.enums.StockMovementMode;
+import com.pedrogobira.beerstock.enums.StockMovementStatus;
 import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.InvalidCursorException;
 import com.pedrogobira.beerstock.exception.NegativeStockException;
 import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.exception.StockHistoryCompactedException;
+import com.pedrogobira.beerstock.exception.StockMovementsRejectedException;
+import com.pedrogobira.beerstock.service.BeerImportService;
 import com.pedrogobira.beerstock.service.BeerService;
+import com.pedrogobira.beerstock.service.BeerSuggestionService;
+import com.pedrogobira.beerstock.service.RequestCoalescer;
+import com.pedrogobira.beerstock.service.StockEventBroker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
+import java.time.Instant;
 import java.util.Collections;
+import java.util.function.Consumer;
 
 import static com.pedrogobira.beerstock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(MockitoExtension.class)
 public class BeerControllerTest {
@@ -38,12 +69,35 @@ public class BeerControllerTest {
     private static final long INVALID_BEER_ID = 2L;
     private static final String BEER_API_SUBPATH_INCREMENT_URL = "/increment";
     private static final String BEER_API_SUBPATH_DECREMENT_URL = "/decrement";
+    private static final String BEER_API_SUBPATH_STOCK_MOVEMENTS_URL = "/stock-movements";
+    private static final String BEER_API_SUBPATH_SEARCH_URL = "/search";
+    private static final String BEER_API_SUBPATH_SUGGESTIONS_URL = "/suggestions";
+    private static final String BEER_API_SUBPATH_STOCK_EVENTS_URL = "/stock-events";
+    private static final String BEER_API_SUBPATH_QUANTITY_URL = "/quantity";
+    private static final String BEER_API_SUBPATH_IMPORT_URL = "/import";
+
+    private static final ObjectMapper SMILE_MAPPER = WireFormatConfig.smileMapper(Jackson2ObjectMapperBuilder.json());
 
     private MockMvc mockMvc;
 
     @Mock
     private BeerService service;
 
+    @Mock
+    private StockEventBroker stockEventBroker;
+
+    @Mock
+    private BeerSuggestionService suggestionService;
+
+    @Mock
+    private BeerImportService importService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private RequestCoalescer coalescer = new RequestCoalescer(new CoalescingProperties(), new SimpleMeterRegistry());
+
     @InjectMocks
     private BeerController controller;
 
@@ -124,7 +178,7 @@ public class BeerControllerTest {
         BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
 
         // When
-        when(service.findAll()).thenReturn(Collections.singletonList(dto));
+        when(service.findAll(null, null)).thenReturn(new BeerPageDto(Collections.singletonList(dto), null));
 
         // Then
         mockMvc.perform(get(BEER_API_URL_PATH)
@@ -132,13 +186,179 @@ public class BeerControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].name", is(dto.getName())))
                 .andExpect(jsonPath("$[0].brand", is(dto.getBrand())))
-                .andExpect(jsonPath("$[0].type", is(dto.getType().toString())));
+                .andExpect(jsonPath("$[0].type", is(dto.getType().toString())))
+                .andExpect(header().doesNotExist(BeerController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void whenGETAllHasANextPageThenItsCursorIsReturnedInTheHeaders() throws Exception {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(service.findAll(null, 1)).thenReturn(new BeerPageDto(Collections.singletonList(dto), "MQ"));
+
+        // Then
+        mockMvc.perform(get(BEER_API_URL_PATH + "?size=1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(dto.getName())))
+                .andExpect(header().string(BeerController.NEXT_CURSOR_HEADER, "MQ"))
+                .andExpect(header().string(HttpHeaders.LINK, "<http://localhost/api/v1/beers?size=1&cursor=MQ>; rel=\"next\""));
+    }
+
+    @Test
+    void whenGETAllIsCalledWithAnInvalidCursorThenBadRequestStatusIsReturned() throws Exception {
+        // When
+        when(service.findAll("invalid", null)).thenThrow(InvalidCursorException.class);
+
+        // Then
+        mockMvc.perform(get(BEER_API_URL_PATH)
+                .param("cursor", "invalid")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGETSearchIsCalledThenTheFiltersArePassedToTheService() throws Exception {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().type(BeerType.IPA).build().toBeerDto();
+        BeerSearchDto filter = new BeerSearchDto(dto.getBrand(), BeerType.IPA, 5, null, null, 20);
+
+        // When
+        when(service.search(filter, null, null)).thenReturn(new BeerPageDto(Collections.singletonList(dto), null));
+
+        // Then
+        mockMvc.perform(get(BEER_API_URL_PATH + BEER_API_SUBPATH_SEARCH_URL)
+                .param("brand", dto.getBrand())
+                .param("type", "IPA")
+                .param("minQuantity", "5")
+                .param("maxFillPercent", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is(dto.getName())));
+    }
+
+    @Test
+    void whenGETSearchIsCalledWithAnInvalidFillPercentThenBadRequestStatusIsReturned() throws Exception {
+        // Then
+        mockMvc.perform(get(BEER_API_URL_PATH + BEER_API_SUBPATH_SEARCH_URL)
+                .param("maxFillPercent", "150"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGETSuggestionsIsCalledThenTheRankedSuggestionsAreReturned() throws Exception {
+        // Given
+        BeerSuggestionDto suggestion = new BeerSuggestionDto(VALID_BEER_ID, "Heineken", "Heineken", 0.8);
+
+        // When
+        when(suggestionService.suggest("heinkn", 5)).thenReturn(Collections.singletonList(suggestion));
+
+        // Then
+        mockMvc.perform(get(BEER_API_URL_PATH + BEER_API_SUBPATH_SUGGESTIONS_URL)
+                .param("q", "heinkn")
+                .param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is("Heineken")))
+                .andExpect(jsonPath("$[0].score", is(0.8)));
+    }
+
+    @Test
+    void whenGETStockEventsIsCalledThenAnEventStreamIsOpenedForTheRequestedTypes() throws Exception {
+        // When
+        when(stockEventBroker.subscribe(Collections.singleton(StockEventType.LOW_STOCK))).thenReturn(new SseEmitter(0L));
+
+        // Then
+        mockMvc.perform(get(BEER_API_URL_PATH + BEER_API_SUBPATH_STOCK_EVENTS_URL)
+                .param("types", "LOW_STOCK")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void whenGETAllAcceptsNdjsonThenBeersAreStreamedOnePerLine() throws Exception {
+        // Given
+        BeerDto first = BeerDtoBuilder.builder().build().toBeerDto();
+        BeerDto second = BeerDtoBuilder.builder().id(2L).name("Second").build().toBeerDto();
+
+        // When
+        doAnswer(invocation -> {
+            Consumer<BeerDto> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(service).streamAll(any());
+
+        // Then
+        MvcResult result = mockMvc.perform(get(BEER_API_URL_PATH)
+                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(asJsonString(first) + "\n" + asJsonString(second) + "\n"));
+    }
+
+    @Test
+    void whenGETAllAcceptsCsvThenBeersAreStreamedAfterTheHeader() throws Exception {
+        // Given
+        BeerDto first = BeerDtoBuilder.builder().build().toBeerDto();
+        BeerDto second = BeerDtoBuilder.builder().id(2L).name("Second, \"Reserve\"").build().toBeerDto();
+
+        // When
+        doAnswer(invocation -> {
+            Consumer<BeerDto> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(service).streamAll(any());
+
+        // Then
+        MvcResult result = mockMvc.perform(get(BEER_API_URL_PATH)
+                .accept("text/csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(content().string("id,name,brand,max,quantity,type\n"
+                        + "1," + first.getName() + "," + first.getBrand() + "," + first.getMax() + "," + first.getQuantity() + "," + first.getType() + "\n"
+                        + "2,\"Second, \"\"Reserve\"\"\"," + second.getBrand() + "," + second.getMax() + "," + second.getQuantity() + "," + second.getType() + "\n"));
+    }
+
+    @Test
+    void whenPOSTImportIsCalledWithCsvThenRejectedRowsAndProgressAreStreamed() throws Exception {
+        // Given
+        BeerImportErrorDto error = new BeerImportErrorDto(3L, "Brahma", "Beer Brahma already exists");
+        BeerImportProgressDto totals = new BeerImportProgressDto(2L, 1L, 1L, true);
+
+        // When
+        doAnswer(invocation -> {
+            BeerImportService.Listener listener = invocation.getArgument(1);
+            listener.rejected(error);
+            listener.progress(totals);
+            return totals;
+        }).when(importService).importBeers(any(), any());
+
+        // Then
+        MvcResult result = mockMvc.perform(post(BEER_API_URL_PATH + BEER_API_SUBPATH_IMPORT_URL)
+                .contentType("text/csv")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .content("name,brand,max,quantity,type\nSkol,Ambev,50,10,LAGER\nBrahma,Ambev,50,10,LAGER\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(asJsonString(error) + "\n" + asJsonString(totals) + "\n"));
     }
 
     @Test
     void whenGETAllIsCalledAndDatabaseIsEmptyThenOkStatusIsReturned() throws Exception {
         // When
-        when(service.findAll()).thenReturn(Collections.emptyList());
+        when(service.findAll(null, null)).thenReturn(new BeerPageDto(Collections.emptyList(), null));
 
         // Then
         mockMvc.perform(get(BEER_API_URL_PATH)
@@ -192,6 +412,27 @@ public class BeerControllerTest {
                 .andExpect(jsonPath("$.quantity", is(beerDto.getQuantity())));
     }
 
+    @Test
+    void whenPATCHIsCalledToIncrementInSmileThenTheBeerIsReturnedInSmile() throws Exception {
+        // Given
+        BeerDto beerDto = BeerDtoBuilder.builder().build().toBeerDto();
+        QuantityDto quantityDto = new QuantityDto(10);
+        beerDto.setQuantity(beerDto.getQuantity() + quantityDto.getQuantity());
+
+        // When
+        when(service.increment(VALID_BEER_ID, quantityDto)).thenReturn(beerDto);
+
+        // Then
+        MvcResult result = mockMvc.perform(patch(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_INCREMENT_URL)
+                        .contentType(WireFormatConfig.SMILE)
+                        .accept(WireFormatConfig.SMILE)
+                        .content(SMILE_MAPPER.writeValueAsBytes(quantityDto)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(WireFormatConfig.SMILE))
+                .andReturn();
+        assertThat(SMILE_MAPPER.readValue(result.getResponse().getContentAsByteArray(), BeerDto.class), is(beerDto));
+    }
+
     @Test
     void whenPATCHIsCalledToIncrementAndQuantityIsInvalidThenUnprocessableEntityStatusIsReturned() throws Exception {
         // Given
@@ -247,4 +488,90 @@ public class BeerControllerTest {
                 .andExpect(status().isUnprocessableEntity());
     }
 
+    @Test
+    void whenPOSTIsCalledWithStockMovementsThenOkStatusIsReturned() throws Exception {
+        // Given
+        StockMovementsDto movementsDto = new StockMovementsDto(
+                Collections.singletonList(new StockMovementDto(VALID_BEER_ID, 5)), StockMovementMode.BEST_EFFORT);
+        StockMovementResultDto resultDto = new StockMovementResultDto(VALID_BEER_ID, 5, StockMovementStatus.APPLIED, 15);
+
+        // When
+        when(service.move(movementsDto)).thenReturn(Collections.singletonList(resultDto));
+
+        // Then
+        mockMvc.perform(post(BEER_API_URL_PATH + BEER_API_SUBPATH_STOCK_MOVEMENTS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(movementsDto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is(StockMovementStatus.APPLIED.toString())))
+                .andExpect(jsonPath("$[0].quantity", is(15)));
+    }
+
+    @Test
+    void whenPOSTIsCalledWithoutStockMovementsThenBadRequestStatusIsReturned() throws Exception {
+        // Given
+        StockMovementsDto movementsDto = new StockMovementsDto(Collections.emptyList(), StockMovementMode.BEST_EFFORT);
+
+        // Then
+        mockMvc.perform(post(BEER_API_URL_PATH + BEER_API_SUBPATH_STOCK_MOVEMENTS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(movementsDto)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPOSTIsCalledWithRejectedStockMovementsThenUnprocessableEntityStatusIsReturned() throws Exception {
+        // Given
+        StockMovementsDto movementsDto = new StockMovementsDto(
+                Collections.singletonList(new StockMovementDto(VALID_BEER_ID, 100)), StockMovementMode.ALL_OR_NOTHING);
+
+        // When
+        when(service.move(movementsDto)).thenThrow(StockMovementsRejectedException.class);
+
+        // Then
+        mockMvc.perform(post(BEER_API_URL_PATH + BEER_API_SUBPATH_STOCK_MOVEMENTS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(movementsDto)))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void whenGETQuantityIsCalledWithATimeThenTheQuantityAtThatTimeIsReturned() throws Exception {
+        // Given
+        Instant at = Instant.parse("2021-07-01T12:00:00Z");
+
+        // When
+        when(service.findQuantityAt(VALID_BEER_ID, at)).thenReturn(new StockQuantityDto(VALID_BEER_ID, 7, at));
+
+        // Then
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_QUANTITY_URL
+                        + "?at=2021-07-01T12:00:00Z")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is((int) VALID_BEER_ID)))
+                .andExpect(jsonPath("$.quantity", is(7)));
+    }
+
+    @Test
+    void whenGETQuantityIsCalledWithACompactedTimeThenGoneStatusIsReturned() throws Exception {
+        // When
+        when(service.findQuantityAt(VALID_BEER_ID, Instant.EPOCH)).thenThrow(StockHistoryCompactedException.class);
+
+        // Then
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + VALID_BEER_ID + BEER_API_SUBPATH_QUANTITY_URL
+                        + "?at=1970-01-01T00:00:00Z")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    void whenGETQuantityIsCalledWithAnInvalidIdThenNotFoundStatusIsReturned() throws Exception {
+        // When
+        when(service.findQuantityAt(INVALID_BEER_ID, null)).thenThrow(NotFoundException.class);
+
+        // Then
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + INVALID_BEER_ID + BEER_API_SUBPATH_QUANTITY_URL)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
 }
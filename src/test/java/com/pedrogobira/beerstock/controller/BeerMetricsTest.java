@@ -0,0 +1,128 @@
+package com.pedrogobira.beerstock.controller;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.DatabaseCallMetrics;
+import com.pedrogobira.beerstock.config.MetricsConfig;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.exception.ExceptionsHandler;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.service.BeerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Optional;
+
+import static com.pedrogobira.beerstock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+public class BeerMetricsTest {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void whenServiceMethodsAreCalledThenTheyAreTimedPerMethod() throws Exception {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().id(null).name("Timed").build().toBeerDto();
+        long saves = serviceTimer("save").map(Timer::count).orElse(0L);
+
+        // When
+        mockMvc.perform(post(BEER_API_URL_PATH)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(dto)))
+                .andExpect(status().isCreated());
+
+        // Then
+        assertThat(serviceTimer("save").orElseThrow().count(), is(equalTo(saves + 1)));
+    }
+
+    @Test
+    void whenADomainExceptionIsHandledThenItIsCountedPerEndpoint() throws Exception {
+        // Given
+        double notFound = exceptions("NotFoundException", "PATCH", "/api/v1/beers/{id}/increment");
+
+        // When
+        mockMvc.perform(patch(BEER_API_URL_PATH + "/" + Long.MAX_VALUE + "/increment")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(new QuantityDto(10))))
+                .andExpect(status().isNotFound());
+
+        // Then
+        assertThat(exceptions("NotFoundException", "PATCH", "/api/v1/beers/{id}/increment"), is(equalTo(notFound + 1)));
+    }
+
+    @Test
+    void whenARequestIsHandledThenItsDatabaseStatementsAreRecorded() throws Exception {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().id(null).name("Counted").build().toBeerDto();
+        mockMvc.perform(post(BEER_API_URL_PATH)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(dto)))
+                .andExpect(status().isCreated());
+
+        // When
+        mockMvc.perform(get(BEER_API_URL_PATH + "/" + dto.getName() + "-missing")).andExpect(status().isNotFound());
+
+        // Then
+        DistributionSummary statements = meterRegistry.get(DatabaseCallMetrics.STATEMENTS_SUMMARY)
+                .tags("method", "GET", "uri", "/api/v1/beers/{name}").summary();
+        assertThat(statements.count(), is(greaterThanOrEqualTo(1L)));
+        assertThat(statements.max(), is(greaterThanOrEqualTo(1.0)));
+    }
+
+    @Test
+    void whenPrometheusIsScrapedThenServiceDatabaseAndPoolMetricsAreExported() throws Exception {
+        // Given
+        mockMvc.perform(get(BEER_API_URL_PATH)).andExpect(status().isOk());
+
+        // Then
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("beer_service_seconds_bucket")))
+                .andExpect(content().string(containsString("beer_db_statements_bucket")))
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("hibernate_statements_total")))
+                .andExpect(content().string(containsString("hikaricp_connections_active")));
+    }
+
+    private Optional<Timer> serviceTimer(String method) {
+        return Optional.ofNullable(meterRegistry.find(MetricsConfig.SERVICE_TIMER)
+                .tags("class", BeerService.class.getName(), "method", method).timer());
+    }
+
+    private double exceptions(String exception, String method, String uri) {
+        Counter counter = meterRegistry.find(ExceptionsHandler.EXCEPTIONS_COUNTER)
+                .tags("exception", exception, "method", method, "uri", uri).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
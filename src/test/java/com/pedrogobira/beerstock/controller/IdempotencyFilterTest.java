@@ -0,0 +1,133 @@
+package com.pedrogobira.beerstock.controller;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.WireFormatConfig;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.service.BeerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.UUID;
+
+import static com.pedrogobira.beerstock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class IdempotencyFilterTest {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BeerService service;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void whenAnIncrementIsRetriedWithTheSameKeyThenItIsAppliedOnce() throws Exception {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(50).quantity(10).build().toBeerDto());
+        String key = UUID.randomUUID().toString();
+
+        // When
+        increment(beer.getId(), key, 5)
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER))
+                .andExpect(jsonPath("$.quantity", is(15)));
+        increment(beer.getId(), key, 5)
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.quantity", is(15)));
+
+        // Then
+        assertThat(repository.findById(beer.getId()).orElseThrow().getQuantity(), is(equalTo(15)));
+    }
+
+    @Test
+    void whenAKeyIsReusedWithADifferentBodyThenUnprocessableEntityIsReturned() throws Exception {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(50).quantity(10).build().toBeerDto());
+        String key = UUID.randomUUID().toString();
+        increment(beer.getId(), key, 5).andExpect(status().isOk());
+
+        // Then
+        increment(beer.getId(), key, 6)
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.message", is(IdempotencyFilter.KEY_REUSED)));
+        assertThat(repository.findById(beer.getId()).orElseThrow().getQuantity(), is(equalTo(15)));
+    }
+
+    @Test
+    void whenARejectedRequestIsRetriedThenItRunsAgain() throws Exception {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(50).quantity(10).build().toBeerDto());
+        String key = UUID.randomUUID().toString();
+        increment(beer.getId(), key, 45).andExpect(status().isUnprocessableEntity());
+        service.decrement(beer.getId(), new QuantityDto(10));
+
+        // Then
+        increment(beer.getId(), key, 45).andExpect(status().isOk());
+        assertThat(repository.findById(beer.getId()).orElseThrow().getQuantity(), is(equalTo(45)));
+    }
+
+    @Test
+    void whenAKeyIsReusedAcceptingAnotherTypeThenTheResponseIsNotReplayed() throws Exception {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(50).quantity(10).build().toBeerDto());
+        String key = UUID.randomUUID().toString();
+        increment(beer.getId(), key, 5).andExpect(status().isOk());
+
+        // When
+        ResultActions smile = mockMvc.perform(patch(BEER_API_URL_PATH + "/" + beer.getId() + "/increment")
+                .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key)
+                .accept(WireFormatConfig.SMILE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new QuantityDto(5))));
+
+        // Then
+        smile.andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER))
+                .andExpect(content().contentType(WireFormatConfig.SMILE));
+        increment(beer.getId(), key, 5)
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void whenTheKeyIsTooLongThenBadRequestIsReturned() throws Exception {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).build().toBeerDto());
+
+        // Then
+        increment(beer.getId(), "k".repeat(IdempotencyFilter.MAX_KEY_LENGTH + 1), 1)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is(IdempotencyFilter.INVALID_KEY)));
+    }
+
+    private ResultActions increment(Long id, String key, int quantity) throws Exception {
+        return mockMvc.perform(patch(BEER_API_URL_PATH + "/" + id + "/increment")
+                .header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new QuantityDto(quantity))));
+    }
+}
@@ -0,0 +1,48 @@
+package com.pedrogobira.beerstock.controller;
+
+import com.pedrogobira.beerstock.config.ReplicaProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ReadAfterWriteFilterTest {
+
+    private static final Instant NOW = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    private final ReadAfterWriteFilter filter = new ReadAfterWriteFilter(new ReplicaProperties());
+
+    @Test
+    void whenTheLastWriteIsWithinTheMaxLagThenReadsWaitForIt() {
+        // Given
+        Instant lastWrite = NOW.minusMillis(500);
+
+        // When
+        Instant required = filter.lastWrite(Long.toString(lastWrite.toEpochMilli()), NOW);
+
+        // Then
+        assertThat(required, is(equalTo(lastWrite)));
+    }
+
+    @Test
+    void whenTheLastWriteIsInTheFutureThenItIsClampedToNow() {
+        // When
+        Instant required = filter.lastWrite(Long.toString(Long.MAX_VALUE / 2), NOW);
+
+        // Then
+        assertThat(required, is(equalTo(NOW)));
+    }
+
+    @Test
+    void whenTheLastWriteIsOlderThanTheMaxLagOrInvalidThenItIsIgnored() {
+        // When
+        Instant old = filter.lastWrite(Long.toString(NOW.minusSeconds(2).toEpochMilli()), NOW);
+        Instant invalid = filter.lastWrite("yesterday", NOW);
+
+        // Then
+        assertThat(old, is(nullValue()));
+        assertThat(invalid, is(nullValue()));
+    }
+}
@@ -0,0 +1,103 @@
+package com.pedrogobira.beerstock.controller;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.enums.StockMovementMode;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.service.BeerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.pedrogobira.beerstock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class StockMovementsBenchmarkTest {
+
+    private static final int MOVEMENTS = 1000;
+    private static final int BEERS = 10;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BeerService service;
+
+    @Autowired
+    private BeerRepository repository;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void whenMovementsAreSentAsOneBatchThenTheyAreFasterThanOneRequestEach() throws Exception {
+        // Given
+        List<Long> singleIds = saveBeers("Single");
+        List<Long> batchIds = saveBeers("Batch");
+        List<StockMovementDto> movements = new ArrayList<>();
+        for (int i = 0; i < MOVEMENTS; i++) {
+            movements.add(new StockMovementDto(batchIds.get(i % BEERS), 1));
+        }
+
+        // When
+        long singleStart = System.nanoTime();
+        for (int i = 0; i < MOVEMENTS; i++) {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/" + singleIds.get(i % BEERS) + "/increment"))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(asJsonString(new QuantityDto(1)))));
+            assertThat(response.statusCode(), is(equalTo(200)));
+        }
+        long singleNanos = System.nanoTime() - singleStart;
+
+        long batchStart = System.nanoTime();
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/stock-movements"))
+                .POST(HttpRequest.BodyPublishers.ofString(asJsonString(new StockMovementsDto(movements, StockMovementMode.ALL_OR_NOTHING)))));
+        long batchNanos = System.nanoTime() - batchStart;
+
+        // Then
+        assertThat(response.statusCode(), is(equalTo(200)));
+        System.out.printf("%d movements, one request each: %d ms%n", MOVEMENTS, singleNanos / 1_000_000);
+        System.out.printf("%d movements, single batch:     %d ms%n", MOVEMENTS, batchNanos / 1_000_000);
+        for (int i = 0; i < BEERS; i++) {
+            assertThat(service.findByName("Batch" + i).getQuantity(), is(equalTo(MOVEMENTS / BEERS)));
+            assertThat(service.findByName("Single" + i).getQuantity(), is(equalTo(MOVEMENTS / BEERS)));
+        }
+        assertThat(batchNanos, is(lessThan(singleNanos)));
+    }
+
+    private List<Long> saveBeers(String namePrefix) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < BEERS; i++) {
+            BeerDto dto = BeerDtoBuilder.builder().id(null).name(namePrefix + i).max(500).quantity(0).build().toBeerDto();
+            ids.add(service.save(dto).getId());
+        }
+        return ids;
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + "/api/v1/beers" + path);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return client.send(request.header("Content-Type", "application/json").build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,75 @@
+package com.pedrogobira.beerstock.exception;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ExceptionsHandlerTest {
+
+    private MeterRegistry meterRegistry;
+    private ExceptionsHandler handler;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        handler = new ExceptionsHandler(meterRegistry);
+        request = new MockHttpServletRequest("PATCH", "/api/v1/beers/1/decrement");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/beers/{id}/decrement");
+    }
+
+    @Test
+    void whenABusinessExceptionIsCreatedThenItHasNoStackTrace() {
+        assertThat(new NegativeStockException().getStackTrace(), is(emptyArray()));
+        assertThat(new BeerAlreadyExistsException("Brahma").getStackTrace(), is(emptyArray()));
+        assertThat(NotFoundException.INSTANCE.getStackTrace(), is(emptyArray()));
+    }
+
+    @Test
+    void whenAPreallocatedExceptionIsThrownRepeatedlyThenItStaysUnchanged() {
+        // Given
+        NegativeStockException exception = NegativeStockException.INSTANCE;
+
+        // When
+        exception.addSuppressed(new IllegalStateException());
+        exception.setStackTrace(new Thread().getStackTrace());
+
+        // Then
+        assertThat(exception.getSuppressed(), is(emptyArray()));
+        assertThat(exception.getStackTrace(), is(emptyArray()));
+        assertThat(exception.getCause(), is(nullValue()));
+    }
+
+    @Test
+    void whenARejectionIsHandledThenTheSameResponseIsReturnedAndCounted() {
+        // When
+        ResponseEntity<ExceptionResponse> first = handler.handleException(NegativeStockException.INSTANCE, request);
+        ResponseEntity<ExceptionResponse> second = handler.handleException(new NegativeStockException(), request);
+
+        // Then
+        assertThat(first.getStatusCode(), is(equalTo(HttpStatus.UNPROCESSABLE_ENTITY)));
+        assertThat(first.getBody().getMessage(), is(equalTo(NegativeStockException.INSTANCE.getMessage())));
+        assertThat(second, is(sameInstance(first)));
+        assertThat(meterRegistry.get(ExceptionsHandler.EXCEPTIONS_COUNTER)
+                .tags("exception", "NegativeStockException", "method", "PATCH", "uri", "/api/v1/beers/{id}/decrement")
+                .counter().count(), is(equalTo(2.0)));
+    }
+
+    @Test
+    void whenAnExceptionWithArgumentsIsHandledThenItsOwnMessageIsReturned() {
+        // When
+        ResponseEntity<ExceptionResponse> response = handler.handleException(new BeerAlreadyExistsException("Brahma"), request);
+
+        // Then
+        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.BAD_REQUEST)));
+        assertThat(response.getBody().getMessage(), is(equalTo("Beer Brahma already exists")));
+    }
+}
@@ -0,0 +1,374 @@
+package com.pedrogobira.beerstock.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.enums.StockMovementMode;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.service.BeerService;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Drives the HTTP API on a random port with concurrent closed-loop clients, records per-operation latency in
+ * HdrHistograms and checks every beer's final quantity against the ledger of acknowledged writes.
+ * <p>
+ * Tuned with system properties: {@code loadtest.scenarios} (comma separated {@link LoadScenario} names, all by
+ * default), {@code loadtest.clients} (32), {@code loadtest.duration} (10s), {@code loadtest.warmup} (2s),
+ * {@code loadtest.beers} (20) and {@code loadtest.seed} (42). Percentile distributions are written to
+ * {@code target/load-test/<stack>-<scenario>-<operation>.hgrm}. Closed-loop clients wait for each response before
+ * sending the next request, so the latencies don't account for coordinated omission.
+ * <p>
+ * To compare the cost of an in-flight request across stacks, the report also gives the live server threads after the
+ * run and the heap they allocated per request. Server threads are those whose name matches
+ * {@code loadtest.server-threads}, which covers Tomcat, Reactor Netty and the bounded elastic scheduler by default.
+ * Virtual threads are invisible to the thread MXBean, so they aren't counted.
+ */
+@Tag("load-test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class BeerApiLoadTest {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 32);
+    private static final Duration DURATION = DurationStyle.detectAndParse(System.getProperty("loadtest.duration", "10s"));
+    private static final Duration WARMUP = DurationStyle.detectAndParse(System.getProperty("loadtest.warmup", "2s"));
+    private static final int BEERS = Integer.getInteger("loadtest.beers", 20);
+    private static final long SEED = Long.getLong("loadtest.seed", 42L);
+    private static final String SCENARIOS = System.getProperty("loadtest.scenarios", "");
+    private static final int INITIAL_QUANTITY = 50;
+    private static final int MAX = 500;
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final Path REPORT_DIRECTORY = Paths.get("target", "load-test");
+    private static final Pattern SERVER_THREADS = Pattern.compile(
+            System.getProperty("loadtest.server-threads", "http-nio-.*|reactor-http-.*|boundedElastic-.*"));
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BeerService service;
+
+    @Autowired
+    private BeerRepository repository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    @ParameterizedTest
+    @EnumSource(LoadScenario.class)
+    void whenTheScenarioRunsThenFinalQuantitiesMatchTheLedger(LoadScenario scenario) throws Exception {
+        assumeTrue(SCENARIOS.isEmpty() || Arrays.asList(SCENARIOS.split(",")).contains(scenario.name()));
+
+        // Given
+        List<BeerDto> beers = new ArrayList<>();
+        for (int i = 0; i < BEERS; i++) {
+            beers.add(service.save(BeerDtoBuilder.builder().id(null).name("Load-" + scenario + "-" + i)
+                    .max(MAX).quantity(INITIAL_QUANTITY).build().toBeerDto()));
+        }
+
+        // When
+        LoadResult warmup = run(scenario, beers, WARMUP, SEED);
+        LoadResult result = run(scenario, beers, DURATION, SEED + CLIENTS);
+        report(stack(), scenario, result);
+
+        // Then
+        assertThat(warmup.errors, is(empty()));
+        assertThat(result.errors, is(empty()));
+        assertThat(result.total().getTotalCount(), is(greaterThan(0L)));
+        for (int i = 0; i < BEERS; i++) {
+            int expected = INITIAL_QUANTITY + (int) (warmup.ledger[i] + result.ledger[i]);
+            BeerDto beer = beers.get(i);
+            assertThat(beer.getName() + " in the database",
+                    repository.findById(beer.getId()).orElseThrow().getQuantity(), is(equalTo(expected)));
+            assertThat(beer.getName() + " through the API",
+                    read(beer.getName()).getQuantity(), is(equalTo(expected)));
+        }
+    }
+
+    private LoadResult run(LoadScenario scenario, List<BeerDto> beers, Duration duration, long seed) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<LoadResult>> clients = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                SplittableRandom random = new SplittableRandom(seed + i);
+                clients.add(executor.submit(() -> {
+                    start.await();
+                    return runClient(scenario, beers, System.nanoTime() + duration.toNanos(), random);
+                }));
+            }
+            Map<Long, Long> allocatedBefore = serverThreadAllocations();
+            long startNanos = System.nanoTime();
+            start.countDown();
+            LoadResult result = new LoadResult(beers.size());
+            for (Future<LoadResult> client : clients) {
+                result.add(client.get(duration.toMillis() + TimeUnit.MINUTES.toMillis(1), TimeUnit.MILLISECONDS));
+            }
+            result.elapsedNanos = System.nanoTime() - startNanos;
+            Map<Long, Long> allocatedAfter = serverThreadAllocations();
+            result.serverThreads = allocatedAfter.size();
+            allocatedAfter.forEach((id, bytes) -> result.serverAllocatedBytes += bytes - allocatedBefore.getOrDefault(id, 0L));
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private LoadResult runClient(LoadScenario scenario, List<BeerDto> beers, long deadline, SplittableRandom random) {
+        LoadResult result = new LoadResult(beers.size());
+        while (System.nanoTime() < deadline) {
+            LoadOperation operation = scenario.next(random);
+            int target = operation.isWrite() && scenario.isHotSku() ? 0 : random.nextInt(beers.size());
+            long start = System.nanoTime();
+            try {
+                execute(operation, beers, target, random, result);
+            } catch (IOException e) {
+                result.error(operation + " failed: " + e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            result.histograms.get(operation).recordValue(Math.min(System.nanoTime() - start, HIGHEST_TRACKABLE_NANOS));
+        }
+        return result;
+    }
+
+    private void execute(LoadOperation operation, List<BeerDto> beers, int target, SplittableRandom random,
+                         LoadResult result) throws IOException, InterruptedException {
+        BeerDto beer = beers.get(target);
+        switch (operation) {
+            case FIND_BY_NAME:
+                expectOk(operation, send(get("/" + beer.getName())), result);
+                break;
+            case FIND_PAGE:
+                expectOk(operation, send(get("?size=20")), result);
+                break;
+            case SEARCH:
+                expectOk(operation, send(get("/search?maxFillPercent=20")), result);
+                break;
+            case INCREMENT:
+            case DECREMENT: {
+                int quantity = 1 + random.nextInt(5);
+                String path = "/" + beer.getId() + (operation == LoadOperation.INCREMENT ? "/increment" : "/decrement");
+                HttpResponse<String> response = send(patch(path, new QuantityDto(quantity)));
+                if (accepted(operation, response, result)) {
+                    result.ledger[target] += operation == LoadOperation.INCREMENT ? quantity : -quantity;
+                }
+                break;
+            }
+            case STOCK_MOVEMENTS: {
+                int other = random.nextInt(beers.size());
+                int delta = 1 + random.nextInt(5);
+                StockMovementsDto movements = new StockMovementsDto(Arrays.asList(
+                        new StockMovementDto(beer.getId(), delta),
+                        new StockMovementDto(beers.get(other).getId(), -delta)), StockMovementMode.ALL_OR_NOTHING);
+                if (accepted(operation, send(post("/stock-movements", movements)), result)) {
+                    result.ledger[target] += delta;
+                    result.ledger[other] -= delta;
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(operation.toString());
+        }
+    }
+
+    /**
+     * @return whether the write was applied; stock-bound rejections and optimistic conflicts are expected under load
+     */
+    private static boolean accepted(LoadOperation operation, HttpResponse<String> response, LoadResult result) {
+        switch (response.statusCode()) {
+            case 200:
+                return true;
+            case 409:
+                result.conflicts++;
+                return false;
+            case 422:
+                result.rejected++;
+                return false;
+            default:
+                result.error(operation + " returned " + response.statusCode() + ": " + response.body());
+                return false;
+        }
+    }
+
+    private static void expectOk(LoadOperation operation, HttpResponse<String> response, LoadResult result) {
+        if (response.statusCode() != 200) {
+            result.error(operation + " returned " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private BeerDto read(String name) throws IOException, InterruptedException {
+        return objectMapper.readValue(send(get("/" + name)).body(), BeerDto.class);
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET().build();
+    }
+
+    private HttpRequest patch(String path, Object body) throws IOException {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private HttpRequest post(String path, Object body) throws IOException {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + BEER_API_URL_PATH + path);
+    }
+
+    /**
+     * @return the name of the web stack under test, which prefixes the report files
+     */
+    protected String stack() {
+        return "servlet";
+    }
+
+    /**
+     * Allocation of threads that exit during the run is lost, which only undercounts pools that shrink.
+     *
+     * @return the bytes allocated so far by each live server thread, by thread id
+     */
+    private static Map<Long, Long> serverThreadAllocations() {
+        Map<Long, Long> allocations = new HashMap<>();
+        for (ThreadInfo thread : THREADS.getThreadInfo(THREADS.getAllThreadIds())) {
+            if (thread == null || !SERVER_THREADS.matcher(thread.getThreadName()).matches()) continue;
+            long bytes = THREADS.getThreadAllocatedBytes(thread.getThreadId());
+            if (bytes >= 0) allocations.put(thread.getThreadId(), bytes);
+        }
+        return allocations;
+    }
+
+    private static void report(String stack, LoadScenario scenario, LoadResult result) throws IOException {
+        double seconds = result.elapsedNanos / 1e9;
+        Histogram total = result.total();
+        System.out.printf("%n%s %s: %d clients, %.1fs, %d requests, %.0f req/s, %d rejected by stock bounds, %d conflicts%n",
+                stack, scenario, CLIENTS, seconds, total.getTotalCount(), total.getTotalCount() / seconds,
+                result.rejected, result.conflicts);
+        System.out.printf("%d server threads, %.1f KiB allocated per request by server threads%n",
+                result.serverThreads, result.serverAllocatedBytes / 1024.0 / Math.max(1, total.getTotalCount()));
+        System.out.printf("%-16s %9s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        Files.createDirectories(REPORT_DIRECTORY);
+        Map<String, Histogram> rows = new LinkedHashMap<>();
+        result.histograms.forEach((operation, histogram) -> rows.put(operation.name(), histogram));
+        rows.put("TOTAL", total);
+        for (Map.Entry<String, Histogram> row : rows.entrySet()) {
+            Histogram histogram = row.getValue();
+            if (histogram.getTotalCount() == 0) continue;
+            System.out.printf("%-16s %9d %9.0f %9.2f %9.2f %9.2f %9.2f %9.2f%n", row.getKey(),
+                    histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+            Path file = REPORT_DIRECTORY.resolve(stack + "-" + scenario + "-" + row.getKey() + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                histogram.outputPercentileDistribution(out, 1e6);
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static final class LoadResult {
+
+        private final Map<LoadOperation, Histogram> histograms = new EnumMap<>(LoadOperation.class);
+        private final long[] ledger;
+        private final List<String> errors = new ArrayList<>();
+        private long rejected;
+        private long conflicts;
+        private long elapsedNanos;
+        private int serverThreads;
+        private long serverAllocatedBytes;
+
+        private LoadResult(int beers) {
+            for (LoadOperation operation : LoadOperation.values()) {
+                histograms.put(operation, new Histogram(HIGHEST_TRACKABLE_NANOS, 3));
+            }
+            ledger = new long[beers];
+        }
+
+        private void error(String message) {
+            // keep a sample, a broken endpoint would otherwise fill the heap
+            if (errors.size() < 10) errors.add(message);
+        }
+
+        private void add(LoadResult other) {
+            other.histograms.forEach((operation, histogram) -> histograms.get(operation).add(histogram));
+            for (int i = 0; i < ledger.length; i++) {
+                ledger[i] += other.ledger[i];
+            }
+            other.errors.forEach(this::error);
+            rejected += other.rejected;
+            conflicts += other.conflicts;
+        }
+
+        private Histogram total() {
+            Histogram total = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+            histograms.values().forEach(total::add);
+            return total;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.pedrogobira.beerstock.loadtest;
+
+public enum LoadOperation {
+
+    FIND_BY_NAME(false),
+    FIND_PAGE(false),
+    SEARCH(false),
+    INCREMENT(true),
+    DECREMENT(true),
+    STOCK_MOVEMENTS(true);
+
+    private final boolean write;
+
+    LoadOperation(boolean write) {
+        this.write = write;
+    }
+
+    public boolean isWrite() {
+        return write;
+    }
+}
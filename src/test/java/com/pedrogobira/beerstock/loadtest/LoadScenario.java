@@ -0,0 +1,53 @@
+package com.pedrogobira.beerstock.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Mix of operations each load-test client draws from, by weight.
+ */
+public enum LoadScenario {
+
+    READ_HEAVY(false, weights(40, 25, 25, 4, 4, 2)),
+    WRITE_HEAVY(false, weights(10, 5, 5, 35, 35, 10)),
+    /**
+     * Write-heavy, with every write on the same beer.
+     */
+    HOT_SKU(true, weights(10, 5, 5, 35, 35, 10));
+
+    private final boolean hotSku;
+    private final Map<LoadOperation, Integer> weights;
+    private final int totalWeight;
+
+    LoadScenario(boolean hotSku, Map<LoadOperation, Integer> weights) {
+        this.hotSku = hotSku;
+        this.weights = weights;
+        this.totalWeight = weights.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public boolean isHotSku() {
+        return hotSku;
+    }
+
+    public LoadOperation next(SplittableRandom random) {
+        int pick = random.nextInt(totalWeight);
+        for (Map.Entry<LoadOperation, Integer> weight : weights.entrySet()) {
+            pick -= weight.getValue();
+            if (pick < 0) return weight.getKey();
+        }
+        throw new IllegalStateException();
+    }
+
+    private static Map<LoadOperation, Integer> weights(int findByName, int findPage, int search,
+                                                       int increment, int decrement, int stockMovements) {
+        Map<LoadOperation, Integer> weights = new EnumMap<>(LoadOperation.class);
+        weights.put(LoadOperation.FIND_BY_NAME, findByName);
+        weights.put(LoadOperation.FIND_PAGE, findPage);
+        weights.put(LoadOperation.SEARCH, search);
+        weights.put(LoadOperation.INCREMENT, increment);
+        weights.put(LoadOperation.DECREMENT, decrement);
+        weights.put(LoadOperation.STOCK_MOVEMENTS, stockMovements);
+        return weights;
+    }
+}
@@ -0,0 +1,19 @@
+package com.pedrogobira.beerstock.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Runs the {@link BeerApiLoadTest} scenarios with servlet requests on virtual threads. Raise
+ * {@code -Dloadtest.clients} well past the Tomcat pool size of 200 to compare it with the platform threads.
+ */
+@Tag("load-test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "application.threads.virtual=true")
+public class VirtualThreadsBeerApiLoadTest extends BeerApiLoadTest {
+
+    @Override
+    protected String stack() {
+        return "virtual";
+    }
+}
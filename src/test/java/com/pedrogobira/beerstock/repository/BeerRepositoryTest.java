@@ -0,0 +1,223 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerSearchDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.mapper.BeerMapper;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.pedrogobira.beerstock.repository.BeerRepositoryTest$GeneratedSql")
+public class BeerRepositoryTest {
+
+    @Autowired
+    private BeerRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private BeerMapper mapper = BeerMapper.INSTANCE;
+
+    @Test
+    void whenAQuantityDeltaIsAppliedThenBothBoundsAreCheckedAndTheRowIsReturned() {
+        // Given
+        Beer beer = repository.save(mapper.toEntity(BeerDtoBuilder.builder().id(null).max(50).quantity(10).build().toBeerDto()));
+
+        // When
+        Beer incremented = repository.applyQuantityDelta(beer.getId(), 15).orElseThrow();
+
+        // Then
+        assertThat(incremented.getQuantity(), is(equalTo(25)));
+        assertThat(incremented.getVersion(), is(equalTo(beer.getVersion() + 1)));
+        assertThat(repository.applyQuantityDelta(beer.getId(), 26).isPresent(), is(false));
+        assertThat(repository.applyQuantityDelta(beer.getId(), -26).isPresent(), is(false));
+        assertThat(repository.applyQuantityDelta(beer.getId() + 1, 1).isPresent(), is(false));
+        assertThat(repository.findById(beer.getId()).orElseThrow().getQuantity(), is(equalTo(25)));
+    }
+
+    @Test
+    void whenQuantityDeltasAreAppliedThenOnlyTheOnesWithinBoundsAreWritten() {
+        // Given
+        Beer beer = repository.save(mapper.toEntity(BeerDtoBuilder.builder().id(null).max(50).quantity(10).build().toBeerDto()));
+
+        // When
+        int[] counts = repository.applyQuantityDeltas(Arrays.asList(
+                new StockMovementDto(beer.getId(), 30),
+                new StockMovementDto(beer.getId(), 20),
+                new StockMovementDto(beer.getId(), -35),
+                new StockMovementDto(beer.getId() + 1, 1)));
+
+        // Then
+        assertThat(counts, is(equalTo(new int[]{1, 0, 1, 0})));
+        Beer movedBeer = repository.findById(beer.getId()).orElseThrow();
+        assertThat(movedBeer.getQuantity(), is(equalTo(5)));
+        assertThat(movedBeer.getVersion(), is(equalTo(beer.getVersion() + 2)));
+    }
+
+    @Test
+    void whenTheDriverDoesNotReportRowCountsThenApplyingQuantityDeltasFails() {
+        // Given
+        JdbcTemplate noInfoJdbcTemplate = mock(JdbcTemplate.class);
+        when(noInfoJdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any()))
+                .thenReturn(new int[][]{{1, Statement.SUCCESS_NO_INFO}});
+        BeerRepositoryImpl noInfoRepository = new BeerRepositoryImpl(noInfoJdbcTemplate, entityManager, 50);
+
+        // When
+        List<StockMovementDto> movements = Arrays.asList(new StockMovementDto(1L, 1), new StockMovementDto(2L, 1));
+
+        // Then
+        assertThrows(IncorrectUpdateSemanticsDataAccessException.class, () -> noInfoRepository.applyQuantityDeltas(movements));
+    }
+
+    @Test
+    void whenSeekingPastAnIdThenTheFollowingBeersAreReturnedInIdOrder() {
+        // Given
+        Beer first = repository.save(mapper.toEntity(BeerDtoBuilder.builder().id(null).name("First").build().toBeerDto()));
+        Beer second = repository.save(mapper.toEntity(BeerDtoBuilder.builder().id(null).name("Second").build().toBeerDto()));
+        Beer third = repository.save(mapper.toEntity(BeerDtoBuilder.builder().id(null).name("Third").build().toBeerDto()));
+
+        // When
+        List<Beer> page = repository.findByIdGreaterThanOrderByIdAsc(first.getId(), PageRequest.of(0, 1));
+
+        // Then
+        assertThat(page, contains(second));
+        assertThat(repository.findByIdGreaterThanOrderByIdAsc(second.getId(), PageRequest.of(0, 2)), contains(third));
+    }
+
+    @Test
+    void whenAllBeersAreStreamedThenTheyAreReturnedAsDtosInIdOrder() {
+        // Given
+        Beer first = repository.save(mapper.toEntity(BeerDtoBuilder.builder().id(null).name("First").build().toBeerDto()));
+        Beer second = repository.save(mapper.toEntity(BeerDtoBuilder.builder().id(null).name("Second").build().toBeerDto()));
+
+        // When
+        List<BeerDto> streamed;
+        try (Stream<BeerDto> beers = repository.streamAllAsDto()) {
+            streamed = beers.collect(Collectors.toList());
+        }
+
+        // Then
+        assertThat(streamed, contains(mapper.toDto(first), mapper.toDto(second)));
+    }
+
+    @Test
+    void whenSearchingThenOnlyMatchingBeersAreReturnedAsDtos() {
+        // Given
+        Beer lowIpa = repository.save(beer("Low IPA", "Brand X", BeerType.IPA, 100, 10));
+        repository.save(beer("Full IPA", "Brand X", BeerType.IPA, 100, 90));
+        repository.save(beer("Low Lager", "Brand X", BeerType.LAGER, 100, 10));
+        repository.save(beer("Other IPA", "Brand Y", BeerType.IPA, 100, 10));
+
+        // When
+        List<BeerDto> found = repository.search(
+                BeerSpecifications.matching(new BeerSearchDto("Brand X", BeerType.IPA, null, null, null, 20)), 0L, 10);
+
+        // Then
+        assertThat(found, contains(mapper.toDto(lowIpa)));
+    }
+
+    @Test
+    void whenSearchingByQuantityAndFillRangesThenBoundsAreInclusive() {
+        // Given
+        Beer atMin = repository.save(beer("At Min", "Brand X", BeerType.IPA, 50, 10));
+        Beer atMax = repository.save(beer("At Max", "Brand X", BeerType.IPA, 40, 20));
+        repository.save(beer("Above", "Brand X", BeerType.IPA, 40, 21));
+
+        // When
+        List<BeerDto> byQuantity = repository.search(
+                BeerSpecifications.matching(new BeerSearchDto(null, null, 10, 20, null, null)), 0L, 10);
+        List<BeerDto> byFill = repository.search(
+                BeerSpecifications.matching(new BeerSearchDto(null, null, null, null, 20, 50)), atMin.getId(), 10);
+
+        // Then
+        assertThat(byQuantity, contains(mapper.toDto(atMin), mapper.toDto(atMax)));
+        assertThat(byFill, contains(mapper.toDto(atMax)));
+    }
+
+    @Test
+    void whenSearchingByBrandAndTypeThenTheCompositeIndexIsUsed() {
+        // Given
+        saveCatalog();
+
+        // When
+        String plan = explainSearch(new BeerSearchDto("Brand 3", BeerType.IPA, null, 20, null, null));
+
+        // Then
+        assertThat(plan, containsString("IDX_BEER_BRAND_TYPE_QUANTITY"));
+    }
+
+    @Test
+    void whenSearchingByTypeAndQuantityThenTheTypeIndexIsUsed() {
+        // Given
+        saveCatalog();
+
+        // When
+        String plan = explainSearch(new BeerSearchDto(null, BeerType.STOUT, 10, 20, null, null));
+
+        // Then
+        assertThat(plan, containsString("IDX_BEER_TYPE_QUANTITY"));
+    }
+
+    private void saveCatalog() {
+        BeerType[] types = BeerType.values();
+        for (int i = 0; i < 500; i++) {
+            repository.save(beer("Beer " + i, "Brand " + i % 20, types[i % types.length], 100, i % 100));
+        }
+        repository.flush();
+    }
+
+    /**
+     * Explains the query Hibernate generates for the filter, as {@link BeerRepository#search} sends it. H2 plans it
+     * with its bind parameters unset, as it does when it prepares the statement.
+     */
+    private String explainSearch(BeerSearchDto filter) {
+        GeneratedSql.STATEMENTS.clear();
+        repository.search(BeerSpecifications.matching(filter), 0L, 101);
+        String sql = GeneratedSql.STATEMENTS.stream().filter(statement -> statement.startsWith("select"))
+                .reduce((first, last) -> last)
+                .orElseThrow(() -> new AssertionError("No select was generated: " + GeneratedSql.STATEMENTS));
+        return String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class));
+    }
+
+    public static class GeneratedSql implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    private Beer beer(String name, String brand, BeerType type, int max, int quantity) {
+        return mapper.toEntity(new BeerDto(null, name, brand, max, quantity, type));
+    }
+}
@@ -0,0 +1,162 @@
+package com.pedrogobira.beerstock.repository;
+
+import com.pedrogobira.beerstock.entity.StockMovement;
+import com.pedrogobira.beerstock.entity.StockSnapshot;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@DataJpaTest
+public class StockMovementRepositoryTest {
+
+    private static final Instant START = Instant.parse("2021-07-01T00:00:00Z");
+
+    @Autowired
+    private StockMovementRepository movementRepository;
+
+    @Autowired
+    private StockSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void whenDeltasAreSummedThenOnlyTheBeersMovementsInTheRangeCount() {
+        // Given
+        movementRepository.append(Arrays.asList(
+                movement(1L, 10, 0),
+                movement(1L, 5, 10),
+                movement(2L, 7, 10),
+                movement(1L, -3, 20)));
+
+        // When
+        long first = firstMovementId();
+        long sum = movementRepository.sumDeltas(1L, first, START.plusSeconds(10));
+
+        // Then
+        assertThat(sum, is(equalTo(5L)));
+        assertThat(movementRepository.sumDeltas(1L, 0, START.plusSeconds(20)), is(equalTo(12L)));
+        assertThat(movementRepository.sumDeltas(3L, 0, START.plusSeconds(20)), is(equalTo(0L)));
+    }
+
+    @Test
+    void whenSnapshotsAreTakenThenTheyAddTheNewMovementsToTheNewestSnapshot() {
+        // Given
+        movementRepository.append(Arrays.asList(movement(1L, 10, 0), movement(2L, 4, 0)));
+        snapshotRepository.takeSnapshots(0, START.plusSeconds(5));
+        movementRepository.append(Arrays.asList(movement(1L, -3, 10), movement(1L, 1, 20)));
+
+        // When
+        int taken = snapshotRepository.takeSnapshots(0, START.plusSeconds(15));
+
+        // Then
+        assertThat(taken, is(equalTo(1)));
+        assertThat(snapshot(1L, START.plusSeconds(15)).getQuantity(), is(equalTo(7)));
+        assertThat(snapshot(2L, START.plusSeconds(15)).getQuantity(), is(equalTo(4)));
+        assertThat(snapshotRepository.findLatestAsOf().orElseThrow(), is(equalTo(START.plusSeconds(15))));
+    }
+
+    @Test
+    void whenTheLedgerIsCompactedThenOnlyTheNewestSnapshotBeforeTheHorizonIsKept() {
+        // Given
+        movementRepository.append(Arrays.asList(movement(1L, 10, 0), movement(2L, 4, 0)));
+        snapshotRepository.takeSnapshots(0, START.plusSeconds(5));
+        movementRepository.append(Arrays.asList(movement(1L, -3, 10), movement(1L, 1, 20)));
+        snapshotRepository.takeSnapshots(0, START.plusSeconds(15));
+
+        // When
+        int deleted = movementRepository.deleteCoveredBySnapshots(START.plusSeconds(30));
+        snapshotRepository.deleteSupersededBefore(START.plusSeconds(30));
+        snapshotRepository.markCompactedAt(START.plusSeconds(30));
+
+        // Then
+        assertThat(deleted, is(equalTo(3)));
+        assertThat(movementRepository.sumDeltas(1L, snapshot(1L, START.plusSeconds(30)).getLastMovementId(),
+                START.plusSeconds(30)), is(equalTo(1L)));
+        assertThat(snapshotRepository.count(), is(equalTo(2L)));
+        assertThat(snapshotRepository.existsByBeerIdAndCompactedTrue(1L), is(true));
+        assertThat(snapshotRepository.existsByBeerIdAndCompactedTrue(2L), is(true));
+        assertThat(snapshot(1L, START.plusSeconds(30)).getAsOf(), is(equalTo(START.plusSeconds(15))));
+    }
+
+    @Test
+    void whenAMovementCommitsAfterTheSnapshotItWasStampedBeforeThenTheNextOneFoldsIt() {
+        // Given
+        movementRepository.append(Arrays.asList(movement(1L, 10, 0), movement(2L, 4, 0)));
+        snapshotRepository.takeSnapshots(0, START.plusSeconds(5));
+
+        // When
+        movementRepository.append(Collections.singletonList(movement(1L, 3, 2)));
+        int taken = snapshotRepository.takeSnapshots(0, START.plusSeconds(15));
+
+        // Then
+        StockSnapshot before = snapshot(1L, START.plusSeconds(5));
+        assertThat(before.getQuantity() + movementRepository.sumDeltas(1L, before.getLastMovementId(), START.plusSeconds(5)),
+                is(equalTo(13L)));
+        assertThat(taken, is(equalTo(1)));
+        assertThat(snapshot(1L, START.plusSeconds(15)).getQuantity(), is(equalTo(13)));
+        assertThat(snapshotRepository.takeSnapshots(0, START.plusSeconds(25)), is(equalTo(0)));
+    }
+
+    @Test
+    void whenABeersHistoryIsQueriedThenTheBeerAndIdIndexIsUsed() {
+        // Given
+        appendLedger();
+
+        // When
+        String plan = explain("select coalesce(sum(delta), 0) from stock_movement " +
+                "where beer_id = 42 and id > 4000 and created_at <= timestamp '2021-07-01 00:20:00'");
+
+        // Then
+        assertThat(plan, containsString("IDX_STOCK_MOVEMENT_BEER_ID"));
+    }
+
+    @Test
+    void whenSnapshotsAreTakenThenOnlyTheMovementsSinceTheLastOnesAreRead() {
+        // Given
+        appendLedger();
+
+        // When
+        String plan = explain("select beer_id, sum(delta) from stock_movement " +
+                "where id > 4000 and created_at <= timestamp '2021-07-01 00:20:00' group by beer_id");
+
+        // Then
+        assertThat(plan, containsString("PRIMARY_KEY"));
+        assertThat(plan, containsString("ID > CAST(4000 AS BIGINT) */"));
+    }
+
+    private void appendLedger() {
+        List<StockMovement> movements = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            movements.add(movement((long) i % 100, i % 7 - 3, i));
+        }
+        movementRepository.append(movements);
+    }
+
+    private long firstMovementId() {
+        return jdbcTemplate.queryForObject("select min(id) from stock_movement", Long.class);
+    }
+
+    private StockSnapshot snapshot(Long beerId, Instant asOf) {
+        return snapshotRepository.findFirstByBeerIdAndAsOfLessThanEqualOrderByAsOfDesc(beerId, asOf).orElseThrow();
+    }
+
+    private String explain(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class));
+    }
+
+    private static StockMovement movement(Long beerId, int delta, int second) {
+        return new StockMovement(null, beerId, delta, StockMovementType.INCREMENT, START.plusSeconds(second));
+    }
+}
@@ -0,0 +1,129 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.mapper.BeerMapper;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AtomicStockUpdaterTest {
+
+    @Mock
+    private BeerRepository repository;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    private BeerMapper mapper = BeerMapper.INSTANCE;
+
+    @InjectMocks
+    private AtomicStockUpdater stockUpdater;
+
+    @Test
+    void whenIncrementIsCalledAndAValidQuantityIsGivenThenIncrementBeerStock() {
+        // Given
+        BeerDto beerDto = BeerDtoBuilder.builder().build().toBeerDto();
+        QuantityDto quantityDto = new QuantityDto(10);
+        int expectedQuantity = beerDto.getQuantity() + quantityDto.getQuantity();
+        Beer incrementedBeer = mapper.toEntity(beerDto);
+        incrementedBeer.setQuantity(expectedQuantity);
+
+        // When
+        when(repository.applyQuantityDelta(beerDto.getId(), quantityDto.getQuantity())).thenReturn(Optional.of(incrementedBeer));
+
+        // Then
+        Beer returnedBeer = stockUpdater.increment(beerDto.getId(), quantityDto.getQuantity());
+
+        assertThat(expectedQuantity, equalTo(returnedBeer.getQuantity()));
+        assertThat(expectedQuantity, lessThan(beerDto.getMax()));
+        verify(repository, never()).save(Mockito.any(Beer.class));
+        verify(repository, never()).findById(beerDto.getId());
+        verify(stockLedger).record(beerDto.getId(), quantityDto.getQuantity(), StockMovementType.INCREMENT);
+    }
+
+    @Test
+    void whenIncrementIsCalledAndAnInvalidQuantityIsGivenThenAnExceptionShouldBeThrown() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        Beer expectedBeer = mapper.toEntity(dto);
+        QuantityDto quantityDto = new QuantityDto(50);
+
+        // When
+        when(repository.applyQuantityDelta(dto.getId(), quantityDto.getQuantity())).thenReturn(Optional.empty());
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(expectedBeer));
+
+        // Then
+        assertThrows(BeerStockExceededException.class, () -> stockUpdater.increment(dto.getId(), quantityDto.getQuantity()));
+        verifyNoInteractions(stockLedger);
+    }
+
+    @Test
+    void whenIncrementIsCalledAndAnInvalidIdIsGivenThenAnExceptionShouldBeThrown() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        QuantityDto quantityDto = new QuantityDto(10);
+
+        // When
+        when(repository.applyQuantityDelta(dto.getId(), quantityDto.getQuantity())).thenReturn(Optional.empty());
+        when(repository.findById(dto.getId())).thenReturn(Optional.empty());
+
+        // Then
+        assertThrows(NotFoundException.class, () -> stockUpdater.increment(dto.getId(), quantityDto.getQuantity()));
+    }
+
+    @Test
+    void whenDecrementIsCalledAndAValidQuantityIsGivenThenDecrementBeerStock() {
+        // Given
+        BeerDto beerDto = BeerDtoBuilder.builder().build().toBeerDto();
+        QuantityDto quantityDto = new QuantityDto(10);
+        int expectedQuantity = beerDto.getQuantity() - quantityDto.getQuantity();
+        Beer decrementedBeer = mapper.toEntity(beerDto);
+        decrementedBeer.setQuantity(expectedQuantity);
+
+        // When
+        when(repository.applyQuantityDelta(beerDto.getId(), -quantityDto.getQuantity())).thenReturn(Optional.of(decrementedBeer));
+
+        // Then
+        Beer returnedBeer = stockUpdater.decrement(beerDto.getId(), quantityDto.getQuantity());
+
+        assertThat(expectedQuantity, equalTo(returnedBeer.getQuantity()));
+        assertThat(expectedQuantity, greaterThanOrEqualTo(0));
+        verify(repository, never()).save(Mockito.any(Beer.class));
+        verify(stockLedger).record(beerDto.getId(), -quantityDto.getQuantity(), StockMovementType.DECREMENT);
+    }
+
+    @Test
+    void whenDecrementIsCalledAndAnInvalidQuantityIsGivenThenAnExceptionShouldBeThrown() {
+        // Given
+        BeerDto beerDto = BeerDtoBuilder.builder().build().toBeerDto();
+        Beer expectedBeer = mapper.toEntity(beerDto);
+        QuantityDto quantityDto = new QuantityDto(80);
+
+        // When
+        when(repository.applyQuantityDelta(beerDto.getId(), -quantityDto.getQuantity())).thenReturn(Optional.empty());
+        when(repository.findById(beerDto.getId())).thenReturn(Optional.of(expectedBeer));
+
+        // Then
+        assertThrows(NegativeStockException.class, () -> stockUpdater.decrement(beerDto.getId(), quantityDto.getQuantity()));
+    }
+
+}
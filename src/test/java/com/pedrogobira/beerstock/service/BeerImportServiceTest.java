@@ -0,0 +1,133 @@
+package com.pedrogobira.beerstock.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.dto.BeerImportErrorDto;
+import com.pedrogobira.beerstock.dto.BeerImportProgressDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.exception.InvalidImportException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.repository.StockMovementRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "application.import.chunk-size=2")
+public class BeerImportServiceTest {
+
+    @Autowired
+    private BeerImportService importService;
+
+    @Autowired
+    private BeerService service;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<BeerImportErrorDto> rejected = new ArrayList<>();
+    private final List<BeerImportProgressDto> progress = new ArrayList<>();
+
+    private final BeerImportService.Listener listener = new BeerImportService.Listener() {
+        @Override
+        public void rejected(BeerImportErrorDto error) {
+            rejected.add(error);
+        }
+
+        @Override
+        public void progress(BeerImportProgressDto totals) {
+            progress.add(totals);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void whenACsvIsImportedThenValidRowsAreInsertedAndEveryOtherRowIsRejectedWithItsLine() throws Exception {
+        // Given
+        service.save(BeerDtoBuilder.builder().id(null).build().toBeerDto());
+        String csv = "Type,Name,Brand,Max,Quantity\n"
+                + "LAGER,Skol,Ambev,50,10\n"
+                + "IPA,\"Colorado, Indica\",Colorado,100,20\n"
+                + "\n"
+                + "LAGER,Skol,Ambev,60,5\n"
+                + "LAGER,Brahma,Ambev,50,10\n"
+                + "LAGER,Bohemia,Ambev,lots,10\n"
+                + "LAGER,Original,Ambev,50,200\n"
+                + "LAGER,\"Serramalte,Ambev,50,10\n";
+
+        // When
+        BeerImportProgressDto totals = importService.importBeers(BeerImportReader.csv(reader(csv)), listener);
+
+        // Then
+        assertThat(totals, is(equalTo(new BeerImportProgressDto(7L, 2L, 5L, true))));
+        assertThat(progress, contains(
+                new BeerImportProgressDto(2L, 2L, 0L, false),
+                new BeerImportProgressDto(4L, 2L, 2L, false),
+                new BeerImportProgressDto(6L, 2L, 4L, false),
+                totals));
+        assertThat(rejected.stream().map(BeerImportErrorDto::getLine).collect(Collectors.toList()),
+                contains(5L, 6L, 7L, 8L, 9L));
+        assertThat(rejected.get(0).getError(), containsString("already exists"));
+        assertThat(rejected.get(1).getError(), containsString("already exists"));
+        assertThat(rejected.get(2).getError(), containsString("max must be a whole number"));
+        assertThat(rejected.get(3).getError(), containsString("quantity"));
+        assertThat(rejected.get(4).getName(), is(nullValue()));
+
+        Beer indica = repository.findByName("Colorado, Indica").orElseThrow();
+        assertThat(indica.getQuantity(), is(equalTo(20)));
+        assertThat(repository.findByName("Skol").orElseThrow().getMax(), is(equalTo(50)));
+        assertThat(stockMovementRepository.existsByBeerId(indica.getId()), is(true));
+    }
+
+    @Test
+    void whenNdjsonIsImportedThenIdsAreIgnoredAndInvalidLinesAreRejected() throws Exception {
+        // Given
+        String ndjson = "{\"id\":42,\"name\":\"Heineken\",\"brand\":\"Heineken\",\"max\":50,\"quantity\":5,\"type\":\"LAGER\"}\n"
+                + "{\"name\":\"Amstel\",\n"
+                + "{\"name\":\"Amstel\",\"brand\":\"Heineken\",\"max\":50,\"quantity\":5}\n";
+
+        // When
+        BeerImportProgressDto totals = importService.importBeers(BeerImportReader.ndjson(reader(ndjson), objectMapper), listener);
+
+        // Then
+        assertThat(totals, is(equalTo(new BeerImportProgressDto(3L, 1L, 2L, true))));
+        assertThat(rejected.get(0).getLine(), is(equalTo(2L)));
+        assertThat(rejected.get(0).getError(), startsWith("Invalid JSON"));
+        assertThat(rejected.get(1).getName(), is(equalTo("Amstel")));
+        assertThat(rejected.get(1).getError(), containsString("type"));
+        assertThat(repository.findByName("Heineken").orElseThrow().getId(), is(not(equalTo(42L))));
+    }
+
+    @Test
+    void whenTheCsvHeaderMissesAColumnThenAnExceptionShouldBeThrown() {
+        // Given
+        String csv = "name,brand,max,quantity\nSkol,Ambev,50,10\n";
+
+        // Then
+        assertThrows(InvalidImportException.class, () -> BeerImportReader.csv(reader(csv)));
+    }
+
+    private static BufferedReader reader(String text) {
+        return new BufferedReader(new StringReader(text));
+    }
+}
@@ -0,0 +1,145 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.CacheConfig;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class BeerServiceCacheTest {
+
+    private static final int BEERS = 10;
+    private static final int REQUESTS = 1_000;
+
+    @Autowired
+    private BeerService service;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+        cacheManager.getCache(CacheConfig.BEERS_BY_NAME).clear();
+    }
+
+    @Test
+    void whenFindByNameIsCalledRepeatedlyThenTheDatabaseIsQueriedOncePerBeer() {
+        // Given
+        List<String> names = saveBeers();
+        double hitsBefore = cacheGets("hit");
+
+        // When
+        long uncachedStatements = countStatements(() -> {
+            for (int i = 0; i < REQUESTS; i++) {
+                cacheManager.getCache(CacheConfig.BEERS_BY_NAME).clear();
+                service.findByName(names.get(i % BEERS));
+            }
+        });
+        cacheManager.getCache(CacheConfig.BEERS_BY_NAME).clear();
+        long cachedStatements = countStatements(() -> {
+            for (int i = 0; i < REQUESTS; i++) {
+                service.findByName(names.get(i % BEERS));
+            }
+        });
+
+        // Then
+        assertThat(uncachedStatements, is(equalTo((long) REQUESTS)));
+        assertThat(cachedStatements, is(equalTo((long) BEERS)));
+        assertThat(cacheGets("hit") - hitsBefore, is(equalTo((double) REQUESTS - BEERS)));
+    }
+
+    @Test
+    void whenStockIsIncrementedThenTheCachedBeerIsRefreshed() {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(50).quantity(10).build().toBeerDto());
+        service.findByName(beer.getName());
+
+        // When
+        service.increment(beer.getId(), new QuantityDto(5));
+
+        // Then
+        assertThat(service.findByName(beer.getName()).getQuantity(), is(equalTo(15)));
+    }
+
+    @Test
+    void whenABeerIsRenamedThenItsPreviousNameIsEvicted() {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).build().toBeerDto());
+        service.findByName(beer.getName());
+
+        // When
+        service.update(beer.getId(), BeerDtoBuilder.builder().id(null).name("Renamed").build().toBeerDto());
+
+        // Then
+        assertThrows(NotFoundException.class, () -> service.findByName(beer.getName()));
+        assertThat(service.findByName("Renamed").getId(), is(equalTo(beer.getId())));
+    }
+
+    @Test
+    void whenABeerIsDeletedThenItIsEvicted() {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).build().toBeerDto());
+        service.findByName(beer.getName());
+
+        // When
+        service.delete(beer.getId());
+
+        // Then
+        assertThrows(NotFoundException.class, () -> service.findByName(beer.getName()));
+    }
+
+    private List<String> saveBeers() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < BEERS; i++) {
+            names.add(service.save(BeerDtoBuilder.builder().id(null).name("Beer " + i).build().toBeerDto()).getName());
+        }
+        return names;
+    }
+
+    private long countStatements(Runnable requests) {
+        long before = statistics.getPrepareStatementCount();
+        requests.run();
+        return statistics.getPrepareStatementCount() - before;
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", CacheConfig.BEERS_BY_NAME).tag("result", result)
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,171 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SpringBootTest
+public class BeerServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 50;
+
+    @Autowired
+    private BeerService service;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void whenIncrementIsCalledConcurrentlyThenNoUpdateIsLost() throws Exception {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(500).quantity(0).build().toBeerDto());
+
+        // When
+        int applied = runConcurrently(() -> service.increment(beer.getId(), new QuantityDto(1)));
+
+        // Then
+        assertThat(applied, is(equalTo(THREADS * OPERATIONS_PER_THREAD)));
+        assertThat(service.findByName(beer.getName()).getQuantity(), is(equalTo(THREADS * OPERATIONS_PER_THREAD)));
+    }
+
+    @Test
+    void whenIncrementAndDecrementAreCalledConcurrentlyThenFinalQuantityIsExact() throws Exception {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(500).quantity(100).build().toBeerDto());
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        runConcurrently(() -> calls.getAndIncrement() % 2 == 0
+                ? service.increment(beer.getId(), new QuantityDto(3))
+                : service.decrement(beer.getId(), new QuantityDto(2)));
+
+        // Then
+        int operations = THREADS * OPERATIONS_PER_THREAD;
+        assertThat(service.findByName(beer.getName()).getQuantity(), is(equalTo(100 + operations / 2 * 3 - operations / 2 * 2)));
+    }
+
+    @Test
+    void whenConcurrentIncrementsExceedMaxThenOnlyTheFittingOnesAreApplied() throws Exception {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(100).quantity(0).build().toBeerDto());
+
+        // When
+        int applied = runConcurrently(() -> service.increment(beer.getId(), new QuantityDto(1)));
+
+        // Then
+        assertThat(applied, is(equalTo(100)));
+        assertThat(service.findByName(beer.getName()).getQuantity(), is(equalTo(100)));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void whenIncrementIsCalledConcurrentlyThenStockUpdaterOutperformsReadModifyWrite() throws Exception {
+        // Given
+        BeerDto atomicBeer = service.save(BeerDtoBuilder.builder().id(null).name("Atomic").max(500).quantity(0).build().toBeerDto());
+        BeerDto legacyBeer = service.save(BeerDtoBuilder.builder().id(null).name("Legacy").max(500).quantity(0).build().toBeerDto());
+
+        // When
+        long legacyStart = System.nanoTime();
+        runConcurrently(() -> {
+            try {
+                return transactionTemplate.execute(status -> {
+                    Beer beer = repository.findById(legacyBeer.getId()).orElseThrow();
+                    beer.setQuantity(beer.getQuantity() + 1);
+                    return repository.save(beer);
+                });
+            } catch (ConcurrencyFailureException e) {
+                // the version column (or a lock timeout) now rejects what used to be a silently lost update
+                return null;
+            }
+        });
+        long legacyNanos = System.nanoTime() - legacyStart;
+
+        long atomicStart = System.nanoTime();
+        runConcurrently(() -> service.increment(atomicBeer.getId(), new QuantityDto(1)));
+        long atomicNanos = System.nanoTime() - atomicStart;
+
+        // Then
+        int legacyApplied = service.findByName(legacyBeer.getName()).getQuantity();
+        int atomicApplied = service.findByName(atomicBeer.getName()).getQuantity();
+        double legacyOpsPerSecond = legacyApplied / (legacyNanos / 1e9);
+        double atomicOpsPerSecond = atomicApplied / (atomicNanos / 1e9);
+        System.out.printf("read-modify-write: %d/%d applied, %.0f applied ops/s%n",
+                legacyApplied, THREADS * OPERATIONS_PER_THREAD, legacyOpsPerSecond);
+        System.out.printf("stock updater:     %d/%d applied, %.0f applied ops/s%n",
+                atomicApplied, THREADS * OPERATIONS_PER_THREAD, atomicOpsPerSecond);
+
+        assertThat(atomicApplied, is(equalTo(THREADS * OPERATIONS_PER_THREAD)));
+        assertThat(atomicOpsPerSecond, is(greaterThan(legacyOpsPerSecond)));
+    }
+
+    /**
+     * Runs the operation {@link #OPERATIONS_PER_THREAD} times on each of {@link #THREADS} threads, all released at
+     * once, and returns how many calls weren't rejected for exceeding the stock.
+     */
+    private int runConcurrently(Operation operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger applied = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        try {
+                            operation.run();
+                            applied.incrementAndGet();
+                        } catch (BeerStockExceededException ignored) {
+                            // expected once the max is reached
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return applied.get();
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+
+        Object run();
+    }
+}
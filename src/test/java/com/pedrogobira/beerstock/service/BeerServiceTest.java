@@ -1,24 +1,48 @@
 package com.pedrogobira.beerstock.service;
 
 import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.PaginationProperties;
+import com.pedrogobira.beerstock.config.ShardingProperties;
 import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerPageDto;
+import com.pedrogobira.beerstock.dto.BeerSearchDto;
 import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.dto.StockMovementResultDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.dto.StockQuantityDto;
 import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.enums.StockMovementMode;
+import com.pedrogobira.beerstock.enums.StockMovementStatus;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
 import com.pedrogobira.beerstock.exception.BeerAlreadyExistsException;
 import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.InvalidCursorException;
 import com.pedrogobira.beerstock.exception.NegativeStockException;
 import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.exception.StockMovementsRejectedException;
 import com.pedrogobira.beerstock.mapper.BeerMapper;
 import com.pedrogobira.beerstock.repository.BeerRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -29,9 +53,29 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 public class BeerServiceTest {
 
+    private static final long INVALID_BEER_ID = 0L;
+
     @Mock
     private BeerRepository repository;
 
+    @Mock
+    private StockUpdater stockUpdater;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private BeerNameDirectory names;
+
+    @Spy
+    private PaginationProperties paginationProperties = new PaginationProperties();
+
+    @Spy
+    private ShardRouter shards = new ShardRouter(new ShardingProperties(), mock(PlatformTransactionManager.class));
+
     private BeerMapper mapper = BeerMapper.INSTANCE;
 
     @InjectMocks
@@ -51,6 +95,7 @@ public class BeerServiceTest {
         BeerDto savedBeerDto = service.save(dto);
         assertThat(savedBeerDto.getId(), is(equalTo(expectedBeer.getId())));
         assertThat(savedBeerDto.getName(), is(equalTo(expectedBeer.getName())));
+        verify(stockLedger).record(dto.getId(), dto.getQuantity(), StockMovementType.CREATED);
     }
 
     @Test
@@ -93,28 +138,96 @@ public class BeerServiceTest {
     }
 
     @Test
-    void whenFindAllIsCalledThenReturnAListOfBeers() {
+    void whenFindAllIsCalledThenReturnAPageOfBeers() {
         // Given
         BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
         Beer expectedBeer = mapper.toEntity(dto);
 
         // When
-        when(repository.findAll()).thenReturn(Collections.singletonList(expectedBeer));
+        when(repository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 101))).thenReturn(Collections.singletonList(expectedBeer));
 
         // Then
-        List<BeerDto> returnedList = service.findAll();
-        assertThat(returnedList, is(not(empty())));
-        assertThat(returnedList.get(0), is(equalTo(dto)));
+        BeerPageDto page = service.findAll(null, null);
+        assertThat(page.getContent(), is(not(empty())));
+        assertThat(page.getContent().get(0), is(equalTo(dto)));
+        assertThat(page.getNextCursor(), is(nullValue()));
     }
 
     @Test
-    void whenFindAllIsCalledAndDatabaseIsEmptyThenReturnAnEmptyList() {
+    void whenFindAllIsCalledAndDatabaseIsEmptyThenReturnAnEmptyPage() {
         // When
-        when(repository.findAll()).thenReturn(Collections.emptyList());
+        when(repository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 101))).thenReturn(Collections.emptyList());
 
         // Then
-        List<BeerDto> returnedList = service.findAll();
-        assertTrue(returnedList.isEmpty());
+        BeerPageDto page = service.findAll(null, null);
+        assertTrue(page.getContent().isEmpty());
+        assertThat(page.getNextCursor(), is(nullValue()));
+    }
+
+    @Test
+    void whenFindAllReadsMoreBeersThanThePageSizeThenReturnACursorToTheNextPage() {
+        // Given
+        Beer first = mapper.toEntity(BeerDtoBuilder.builder().id(1L).build().toBeerDto());
+        Beer second = mapper.toEntity(BeerDtoBuilder.builder().id(2L).name("Second").build().toBeerDto());
+
+        // When
+        when(repository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 2))).thenReturn(Arrays.asList(first, second));
+        when(repository.findByIdGreaterThanOrderByIdAsc(1L, PageRequest.of(0, 2))).thenReturn(Collections.singletonList(second));
+
+        // Then
+        BeerPageDto firstPage = service.findAll(null, 1);
+        assertThat(firstPage.getContent(), hasSize(1));
+        assertThat(firstPage.getNextCursor(), is(notNullValue()));
+
+        BeerPageDto secondPage = service.findAll(firstPage.getNextCursor(), 1);
+        assertThat(secondPage.getContent().get(0).getId(), is(equalTo(2L)));
+        assertThat(secondPage.getNextCursor(), is(nullValue()));
+    }
+
+    @Test
+    void whenFindAllIsCalledWithAPageSizeAboveTheCapThenTheCapIsUsed() {
+        // When
+        when(repository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 1001))).thenReturn(Collections.emptyList());
+
+        // Then
+        service.findAll(null, 5000);
+        verify(repository).findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 1001));
+    }
+
+    @Test
+    void whenFindAllIsCalledWithAnInvalidCursorThenAnExceptionShouldBeThrown() {
+        // Then
+        assertThrows(InvalidCursorException.class, () -> service.findAll("not a cursor", null));
+    }
+
+    @Test
+    void whenSearchFindsMoreBeersThanThePageSizeThenReturnACursorToTheNextPage() {
+        // Given
+        BeerDto first = BeerDtoBuilder.builder().id(1L).build().toBeerDto();
+        BeerDto second = BeerDtoBuilder.builder().id(2L).name("Second").build().toBeerDto();
+        BeerSearchDto filter = new BeerSearchDto("Ambev", BeerType.LAGER, null, null, null, 20);
+
+        // When
+        when(repository.search(any(), eq(0L), eq(2))).thenReturn(Arrays.asList(first, second));
+
+        // Then
+        BeerPageDto page = service.search(filter, null, 1);
+        assertThat(page.getContent(), contains(first));
+        assertThat(page.getNextCursor(), is(notNullValue()));
+    }
+
+    @Test
+    void whenStreamAllIsCalledThenEveryBeerIsHandedToTheConsumer() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        List<BeerDto> streamed = new ArrayList<>();
+
+        // When
+        when(repository.streamAllAsDto()).thenReturn(Stream.of(dto));
+
+        // Then
+        service.streamAll(streamed::add);
+        assertThat(streamed, contains(dto));
     }
 
     @Test
@@ -131,6 +244,9 @@ public class BeerServiceTest {
         service.delete(dto.getId());
         verify(repository, times(1)).findById(dto.getId());
         verify(repository, times(1)).delete(expectedBeer);
+        verify(stockLedger).record(dto.getId(), -dto.getQuantity(), StockMovementType.DELETED);
+        verify(eventPublisher).publishEvent(argThat((BeerChangedEvent event) ->
+                event.getPreviousName().equals(dto.getName()) && event.getBeer() == null));
     }
 
     @Test
@@ -145,22 +261,58 @@ public class BeerServiceTest {
         assertThrows(NotFoundException.class, () -> service.delete(dto.getId()));
     }
 
+    @Test
+    void whenUpdateIsCalledAndAValidIdIsGivenThenManagedBeerIsUpdated() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        Beer managedBeer = mapper.toEntity(dto);
+        managedBeer.setVersion(3L);
+        BeerDto updatedDto = BeerDtoBuilder.builder().id(null).name("Heineken Lager").brand("Heineken").max(80)
+                .quantity(dto.getQuantity() + 5).build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(managedBeer));
+        when(repository.save(managedBeer)).thenReturn(managedBeer);
+
+        // Then
+        service.update(dto.getId(), updatedDto);
+        assertThat(managedBeer.getId(), is(equalTo(dto.getId())));
+        assertThat(managedBeer.getBrand(), is(equalTo("Heineken")));
+        assertThat(managedBeer.getMax(), is(equalTo(80)));
+        assertThat(managedBeer.getVersion(), is(equalTo(3L)));
+        verify(stockLedger).record(dto.getId(), 5, StockMovementType.UPDATED);
+        verify(eventPublisher).publishEvent(argThat((BeerChangedEvent event) ->
+                event.getPreviousName().equals(dto.getName()) && event.getBeer().getName().equals("Heineken Lager")));
+    }
+
+    @Test
+    void whenUpdateIsCalledAndAnInvalidIdIsGivenThenAnExceptionShouldBeThrown() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.empty());
+
+        // Then
+        assertThrows(NotFoundException.class, () -> service.update(dto.getId(), dto));
+    }
+
     @Test
     void whenIncrementIsCalledAndAValidQuantityIsGivenThenIncrementBeerStock() {
         // Given
         BeerDto beerDto = BeerDtoBuilder.builder().build().toBeerDto();
-        Beer expectedBeer = mapper.toEntity(beerDto);
         QuantityDto quantityDto = new QuantityDto(10);
-        int expectedQuantity = expectedBeer.getQuantity() + quantityDto.getQuantity();
+        int expectedQuantity = beerDto.getQuantity() + quantityDto.getQuantity();
+        Beer incrementedBeer = mapper.toEntity(beerDto);
+        incrementedBeer.setQuantity(expectedQuantity);
 
         // When
-        when(repository.findById(beerDto.getId())).thenReturn(Optional.of(expectedBeer));
-        when(repository.save(expectedBeer)).thenReturn(expectedBeer);
+        when(stockUpdater.increment(beerDto.getId(), quantityDto.getQuantity())).thenReturn(incrementedBeer);
 
         // Then
-        service.increment(beerDto.getId(), quantityDto);
+        BeerDto incrementedBeerDto = service.increment(beerDto.getId(), quantityDto);
 
-        assertThat(expectedQuantity, equalTo(expectedBeer.getQuantity()));
+        assertThat(expectedQuantity, equalTo(incrementedBeerDto.getQuantity()));
         assertThat(expectedQuantity, lessThan(beerDto.getMax()));
     }
 
@@ -168,11 +320,10 @@ public class BeerServiceTest {
     void whenIncrementIsCalledAndAnInvalidQuantityIsGivenThenAnExceptionShouldBeThrown() {
         // Given
         BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
-        Beer expectedBeer = mapper.toEntity(dto);
         QuantityDto quantityDto = new QuantityDto(50);
 
         // When
-        when(repository.findById(dto.getId())).thenReturn(Optional.of(expectedBeer));
+        when(stockUpdater.increment(dto.getId(), quantityDto.getQuantity())).thenThrow(new BeerStockExceededException());
 
         // Then
         assertThrows(BeerStockExceededException.class, () -> service.increment(dto.getId(), quantityDto));
@@ -182,18 +333,18 @@ public class BeerServiceTest {
     void whenDecrementIsCalledAndAValidQuantityIsGivenThenDecrementBeerStock() {
         // Given
         BeerDto beerDto = BeerDtoBuilder.builder().build().toBeerDto();
-        Beer expectedBeer = mapper.toEntity(beerDto);
         QuantityDto quantityDto = new QuantityDto(10);
         int expectedQuantity = beerDto.getQuantity() - quantityDto.getQuantity();
+        Beer decrementedBeer = mapper.toEntity(beerDto);
+        decrementedBeer.setQuantity(expectedQuantity);
 
         // When
-        when(repository.findById(beerDto.getId())).thenReturn(Optional.of(expectedBeer));
-        when(repository.save(expectedBeer)).thenReturn(expectedBeer);
+        when(stockUpdater.decrement(beerDto.getId(), quantityDto.getQuantity())).thenReturn(decrementedBeer);
 
         // Then
-        service.decrement(beerDto.getId(), quantityDto);
+        BeerDto decrementedBeerDto = service.decrement(beerDto.getId(), quantityDto);
 
-        assertThat(expectedQuantity, equalTo(expectedBeer.getQuantity()));
+        assertThat(expectedQuantity, equalTo(decrementedBeerDto.getQuantity()));
         assertThat(expectedQuantity, greaterThanOrEqualTo(0));
     }
 
@@ -201,14 +352,89 @@ public class BeerServiceTest {
     void whenDecrementIsCalledAndAnInvalidQuantityIsGivenThenAnExceptionShouldBeThrown() {
         // Given
         BeerDto beerDto = BeerDtoBuilder.builder().build().toBeerDto();
-        Beer expectedBeer = mapper.toEntity(beerDto);
         QuantityDto quantityDto = new QuantityDto(80);
 
         // When
-        when(repository.findById(beerDto.getId())).thenReturn(Optional.of(expectedBeer));
+        when(stockUpdater.decrement(beerDto.getId(), quantityDto.getQuantity())).thenThrow(new NegativeStockException());
 
         // Then
         assertThrows(NegativeStockException.class, () -> service.decrement(beerDto.getId(), quantityDto));
     }
 
+    @Test
+    void whenMoveIsCalledInBestEffortModeThenEachMovementIsReported() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        Beer movedBeer = mapper.toEntity(dto);
+        movedBeer.setQuantity(15);
+        StockMovementsDto movementsDto = new StockMovementsDto(Arrays.asList(
+                new StockMovementDto(dto.getId(), 5),
+                new StockMovementDto(dto.getId(), 100),
+                new StockMovementDto(INVALID_BEER_ID, 5)), StockMovementMode.BEST_EFFORT);
+
+        // When
+        when(repository.applyQuantityDeltas(anyList())).thenReturn(new int[]{0, 1, 0});
+        when(repository.findAllById(anySet())).thenReturn(Collections.singletonList(movedBeer));
+
+        // Then
+        List<StockMovementResultDto> results = service.move(movementsDto);
+        assertThat(results.get(0).getStatus(), is(equalTo(StockMovementStatus.APPLIED)));
+        assertThat(results.get(0).getQuantity(), is(equalTo(15)));
+        assertThat(results.get(1).getStatus(), is(equalTo(StockMovementStatus.STOCK_EXCEEDED)));
+        assertThat(results.get(2).getId(), is(equalTo(INVALID_BEER_ID)));
+        assertThat(results.get(2).getStatus(), is(equalTo(StockMovementStatus.NOT_FOUND)));
+        verify(stockLedger).record(Collections.singletonList(new StockMovementDto(dto.getId(), 5)), StockMovementType.BATCH);
+    }
+
+    @Test
+    void whenMoveIsCalledInAllOrNothingModeAndAMovementIsRejectedThenAnExceptionShouldBeThrown() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        Beer beer = mapper.toEntity(dto);
+        StockMovementsDto movementsDto = new StockMovementsDto(Arrays.asList(
+                new StockMovementDto(dto.getId(), 5),
+                new StockMovementDto(dto.getId(), -80)), StockMovementMode.ALL_OR_NOTHING);
+
+        // When
+        when(repository.applyQuantityDeltas(anyList())).thenReturn(new int[]{1, 0});
+        when(repository.findAllById(anySet())).thenReturn(Collections.singletonList(beer));
+
+        // Then
+        StockMovementsRejectedException exception = assertThrows(StockMovementsRejectedException.class,
+                () -> service.move(movementsDto));
+        assertThat(exception.getResults().get(0).getStatus(), is(equalTo(StockMovementStatus.ROLLED_BACK)));
+        assertThat(exception.getResults().get(1).getStatus(), is(equalTo(StockMovementStatus.NEGATIVE_STOCK)));
+        verifyNoInteractions(eventPublisher, stockLedger);
+    }
+
+    @Test
+    void whenFindQuantityAtIsCalledThenTheLedgerIsReplayedUpToTheGivenTime() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        Instant at = Instant.parse("2021-07-01T12:00:00Z");
+
+        // When
+        when(stockLedger.quantityAt(dto.getId(), at)).thenReturn(7);
+
+        // Then
+        StockQuantityDto quantity = service.findQuantityAt(dto.getId(), at);
+        assertThat(quantity.getQuantity(), is(equalTo(7)));
+        assertThat(quantity.getAt(), is(equalTo(at)));
+    }
+
+    @Test
+    void whenFindQuantityAtIsCalledWithoutATimeThenTheCurrentQuantityIsReturned() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        Instant before = Instant.now();
+
+        // When
+        when(stockLedger.quantityAt(eq(dto.getId()), Mockito.any(Instant.class))).thenReturn(dto.getQuantity());
+
+        // Then
+        StockQuantityDto quantity = service.findQuantityAt(dto.getId(), null);
+        assertThat(quantity.getQuantity(), is(equalTo(dto.getQuantity())));
+        assertThat(quantity.getAt(), is(greaterThanOrEqualTo(before)));
+    }
+
 }
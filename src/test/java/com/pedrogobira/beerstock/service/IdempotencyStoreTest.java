@@ -0,0 +1,215 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.IdempotencyProperties;
+import com.pedrogobira.beerstock.entity.IdempotencyRecord;
+import com.pedrogobira.beerstock.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyStoreTest {
+
+    private static final String KEY = "PATCH /api/v1/beers/1/increment key";
+
+    @Mock
+    private IdempotencyRecordRepository repository;
+
+    private IdempotencyProperties properties;
+
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        properties = new IdempotencyProperties();
+        store = new IdempotencyStore(repository, properties);
+    }
+
+    @Test
+    void whenAKeyIsRepeatedThenTheFirstResponseIsReplayedWithoutRunningAgain() {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+        IdempotencyRecord response = response(KEY);
+
+        // When
+        Optional<IdempotencyRecord> first = store.execute(KEY, () -> {
+            runs.incrementAndGet();
+            return response;
+        });
+        Optional<IdempotencyRecord> second = store.execute(KEY, () -> {
+            runs.incrementAndGet();
+            return response(KEY);
+        });
+
+        // Then
+        assertThat(first.isPresent(), is(false));
+        assertThat(second.orElseThrow(), is(sameInstance(response)));
+        assertThat(runs.get(), is(equalTo(1)));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void whenTheActionFailsThenTheKeyIsReleased() {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+
+        // When
+        assertThrows(IllegalStateException.class, () -> store.execute(KEY, () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException();
+        }));
+        store.execute(KEY, () -> {
+            runs.incrementAndGet();
+            return null;
+        });
+        Optional<IdempotencyRecord> third = store.execute(KEY, () -> {
+            runs.incrementAndGet();
+            return response(KEY);
+        });
+
+        // Then
+        assertThat(third.isPresent(), is(false));
+        assertThat(runs.get(), is(equalTo(3)));
+    }
+
+    @Test
+    void whenDuplicatesArriveWhileTheFirstRunsThenTheyWaitForItsResponse() throws Exception {
+        // Given
+        int duplicates = 8;
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IdempotencyRecord response = response(KEY);
+        ExecutorService executor = Executors.newFixedThreadPool(duplicates + 1);
+
+        try {
+            // When
+            Future<Optional<IdempotencyRecord>> first = executor.submit(() -> store.execute(KEY, () -> {
+                runs.incrementAndGet();
+                running.countDown();
+                await(release);
+                return response;
+            }));
+            running.await();
+            Future<?>[] waiting = new Future<?>[duplicates];
+            for (int i = 0; i < duplicates; i++) {
+                waiting[i] = executor.submit(() -> store.execute(KEY, () -> {
+                    runs.incrementAndGet();
+                    return response(KEY);
+                }));
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+            release.countDown();
+
+            // Then
+            assertThat(first.get(10, TimeUnit.SECONDS).isPresent(), is(false));
+            for (Future<?> duplicate : waiting) {
+                assertThat(duplicate.get(10, TimeUnit.SECONDS), is(equalTo(Optional.of(response))));
+            }
+            assertThat(runs.get(), is(equalTo(1)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenResponsesAreEvictedWhileARequestRunsThenItsDuplicatesStillWaitForIt() throws Exception {
+        // Given
+        properties.setMaximumSize(1);
+        store = new IdempotencyStore(repository, properties);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IdempotencyRecord response = response(KEY);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // When
+            Future<Optional<IdempotencyRecord>> first = executor.submit(() -> store.execute(KEY, () -> {
+                runs.incrementAndGet();
+                running.countDown();
+                await(release);
+                return response;
+            }));
+            running.await();
+            for (int i = 0; i < 100; i++) {
+                String other = KEY + i;
+                store.execute(other, () -> response(other));
+            }
+            Future<Optional<IdempotencyRecord>> duplicate = executor.submit(() -> store.execute(KEY, () -> {
+                runs.incrementAndGet();
+                return response(KEY);
+            }));
+            TimeUnit.MILLISECONDS.sleep(100);
+            release.countDown();
+
+            // Then
+            assertThat(first.get(10, TimeUnit.SECONDS).isPresent(), is(false));
+            assertThat(duplicate.get(10, TimeUnit.SECONDS), is(equalTo(Optional.of(response))));
+            assertThat(runs.get(), is(equalTo(1)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenPersistentThenResponsesAreStoredAndReadOnMemoryMisses() {
+        // Given
+        properties.setPersistent(true);
+        IdempotencyRecord persisted = response(KEY);
+        when(repository.findById(KEY)).thenReturn(Optional.empty()).thenReturn(Optional.of(persisted));
+        IdempotencyRecord response = response(KEY);
+
+        // When
+        store.execute(KEY, () -> response);
+        Optional<IdempotencyRecord> afterRestart = new IdempotencyStore(repository, properties)
+                .execute(KEY, () -> response(KEY));
+
+        // Then
+        verify(repository).save(response);
+        assertThat(afterRestart.orElseThrow(), is(sameInstance(persisted)));
+    }
+
+    @Test
+    void whenThePersistedResponseExpiredThenTheActionRuns() {
+        // Given
+        properties.setPersistent(true);
+        IdempotencyRecord expired = response(KEY);
+        expired.setCreatedAt(Instant.now().minus(properties.getTtl()).minusSeconds(1));
+        when(repository.findById(KEY)).thenReturn(Optional.of(expired));
+
+        // When
+        Optional<IdempotencyRecord> result = store.execute(KEY, () -> response(KEY));
+
+        // Then
+        assertThat(result.isPresent(), is(false));
+    }
+
+    private static IdempotencyRecord response(String key) {
+        return new IdempotencyRecord(key, "fingerprint", 200, "application/json", "{}".getBytes(), Instant.now());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.pedrogobira.beerstock.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Runs the contention scenarios of {@link BeerServiceConcurrencyTest} with the optimistic stock mode.
+ */
+@SpringBootTest(properties = {
+        "application.stock.mode=optimistic",
+        "application.stock.retry.max-attempts=100",
+        "application.stock.retry.max-backoff=10ms"
+})
+public class OptimisticBeerServiceConcurrencyTest extends BeerServiceConcurrencyTest {
+}
@@ -0,0 +1,142 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.StockProperties;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.ConcurrentStockUpdateException;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.mapper.BeerMapper;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OptimisticStockUpdaterTest {
+
+    @Mock
+    private BeerRepository repository;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BeerMapper mapper = BeerMapper.INSTANCE;
+
+    private MeterRegistry meterRegistry;
+
+    private OptimisticStockUpdater stockUpdater;
+
+    @BeforeEach
+    void setUp() {
+        StockProperties properties = new StockProperties();
+        properties.getRetry().setMaxAttempts(3);
+        properties.getRetry().setInitialBackoff(Duration.ZERO);
+        meterRegistry = new SimpleMeterRegistry();
+        stockUpdater = new OptimisticStockUpdater(repository, stockLedger, transactionManager, properties, meterRegistry);
+    }
+
+    @Test
+    void whenIncrementIsCalledWithoutConflictThenQuantityIsWrittenForTheReadVersion() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        Beer beer = versioned(dto, 7L);
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(beer));
+        when(repository.updateQuantityIfVersionMatches(dto.getId(), 20, 7L)).thenReturn(1);
+
+        // Then
+        Beer incrementedBeer = stockUpdater.increment(dto.getId(), 10);
+        assertThat(incrementedBeer.getQuantity(), is(equalTo(20)));
+        assertThat(incrementedBeer.getVersion(), is(equalTo(8L)));
+        assertThat(meterRegistry.counter("beer.stock.optimistic.conflicts").count(), is(equalTo(0.0)));
+    }
+
+    @Test
+    void whenDecrementConflictsThenItIsRetriedAgainstTheNewVersion() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId()))
+                .thenReturn(Optional.of(versioned(dto, 1L)))
+                .thenReturn(Optional.of(versioned(dto, 2L)));
+        when(repository.updateQuantityIfVersionMatches(dto.getId(), 5, 1L)).thenReturn(0);
+        when(repository.updateQuantityIfVersionMatches(dto.getId(), 5, 2L)).thenReturn(1);
+
+        // Then
+        Beer decrementedBeer = stockUpdater.decrement(dto.getId(), 5);
+        assertThat(decrementedBeer.getQuantity(), is(equalTo(5)));
+        assertThat(meterRegistry.counter("beer.stock.optimistic.conflicts").count(), is(equalTo(1.0)));
+        assertThat(meterRegistry.counter("beer.stock.optimistic.retries").count(), is(equalTo(1.0)));
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void whenEveryAttemptConflictsThenAnExceptionShouldBeThrown() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenAnswer(invocation -> Optional.of(versioned(dto, 1L)));
+        when(repository.updateQuantityIfVersionMatches(anyLong(), anyInt(), anyLong())).thenReturn(0);
+
+        // Then
+        assertThrows(ConcurrentStockUpdateException.class, () -> stockUpdater.increment(dto.getId(), 1));
+        verify(repository, times(3)).updateQuantityIfVersionMatches(anyLong(), anyInt(), anyLong());
+        assertThat(meterRegistry.counter("beer.stock.optimistic.exhausted").count(), is(equalTo(1.0)));
+    }
+
+    @Test
+    void whenIncrementExceedsMaxThenAnExceptionShouldBeThrownWithoutWriting() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(versioned(dto, 1L)));
+
+        // Then
+        assertThrows(BeerStockExceededException.class, () -> stockUpdater.increment(dto.getId(), 50));
+        verify(repository, never()).updateQuantityIfVersionMatches(anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    void whenDecrementGoesBelowZeroThenAnExceptionShouldBeThrownWithoutWriting() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(versioned(dto, 1L)));
+
+        // Then
+        assertThrows(NegativeStockException.class, () -> stockUpdater.decrement(dto.getId(), 80));
+        verify(repository, never()).updateQuantityIfVersionMatches(anyLong(), anyInt(), anyLong());
+    }
+
+    private Beer versioned(BeerDto dto, long version) {
+        Beer beer = mapper.toEntity(dto);
+        beer.setVersion(version);
+        return beer;
+    }
+}
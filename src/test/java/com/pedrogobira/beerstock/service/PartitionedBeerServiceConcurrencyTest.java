@@ -0,0 +1,13 @@
+package com.pedrogobira.beerstock.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Runs the contention scenarios of {@link BeerServiceConcurrencyTest} with the partitioned stock mode.
+ */
+@SpringBootTest(properties = {
+        "application.stock.mode=partitioned",
+        "application.stock.partitions.count=2"
+})
+public class PartitionedBeerServiceConcurrencyTest extends BeerServiceConcurrencyTest {
+}
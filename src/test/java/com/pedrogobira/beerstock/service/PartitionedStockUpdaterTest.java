@@ -0,0 +1,170 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.ShardingProperties;
+import com.pedrogobira.beerstock.config.StockProperties;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.exception.StockUpdatesBusyException;
+import com.pedrogobira.beerstock.mapper.BeerMapper;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PartitionedStockUpdaterTest {
+
+    @Mock
+    private BeerRepository repository;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BeerMapper mapper = BeerMapper.INSTANCE;
+
+    private MeterRegistry meterRegistry;
+
+    private PartitionedStockUpdater stockUpdater;
+
+    @BeforeEach
+    void setUp() {
+        StockProperties properties = new StockProperties();
+        properties.getPartitions().setCount(1);
+        properties.getPartitions().setQueueCapacity(3);
+        properties.getPartitions().setEnqueueTimeout(Duration.ofMillis(10));
+        properties.getRetry().setMaxAttempts(3);
+        meterRegistry = new SimpleMeterRegistry();
+        stockUpdater = new PartitionedStockUpdater(repository, stockLedger,
+                new ShardRouter(new ShardingProperties(), transactionManager), transactionManager, properties, meterRegistry);
+        stockUpdater.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        stockUpdater.stop();
+    }
+
+    @Test
+    void whenMutationsQueueBehindTheWriterThenTheyAreCheckedInOrderAndWrittenTogether() throws Exception {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+
+        // When
+        when(repository.findAllById(anyIterable()))
+                .thenAnswer(invocation -> {
+                    writing.countDown();
+                    resume.await();
+                    return Collections.singletonList(versioned(dto, 10, 1L));
+                })
+                .thenReturn(Collections.singletonList(versioned(dto, 15, 2L)));
+        when(repository.updateQuantityIfVersionMatches(dto.getId(), 15, 1L)).thenReturn(1);
+        when(repository.updateQuantityIfVersionMatches(dto.getId(), 40, 2L)).thenReturn(1);
+
+        // Then
+        try {
+            Future<Beer> first = callers.submit(() -> stockUpdater.increment(dto.getId(), 5));
+            writing.await();
+            Future<Beer> second = queue(callers, () -> stockUpdater.increment(dto.getId(), 30), 1);
+            Future<Beer> third = queue(callers, () -> stockUpdater.decrement(dto.getId(), 60), 2);
+            Future<Beer> fourth = queue(callers, () -> stockUpdater.decrement(dto.getId(), 5), 3);
+            assertThrows(StockUpdatesBusyException.class, () -> stockUpdater.increment(dto.getId(), 1));
+            resume.countDown();
+
+            assertThat(first.get(1, TimeUnit.MINUTES).getQuantity(), is(equalTo(15)));
+            assertThat(second.get(1, TimeUnit.MINUTES).getQuantity(), is(equalTo(45)));
+            ExecutionException rejected = assertThrows(ExecutionException.class, () -> third.get(1, TimeUnit.MINUTES));
+            assertThat(rejected.getCause(), is(instanceOf(NegativeStockException.class)));
+            assertThat(fourth.get(1, TimeUnit.MINUTES).getQuantity(), is(equalTo(40)));
+        } finally {
+            callers.shutdownNow();
+        }
+        verify(repository, times(2)).updateQuantityIfVersionMatches(anyLong(), anyInt(), anyLong());
+        assertThat(meterRegistry.counter(PartitionedStockUpdater.MUTATIONS_COUNTER).count(), is(equalTo(4.0)));
+        assertThat(meterRegistry.counter(PartitionedStockUpdater.WRITES_COUNTER).count(), is(equalTo(2.0)));
+        assertThat(meterRegistry.counter(PartitionedStockUpdater.REFUSED_COUNTER).count(), is(equalTo(1.0)));
+    }
+
+    @Test
+    void whenTheBeerChangedSinceItWasReadThenItsMutationsAreCheckedAgain() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findAllById(anyIterable())).thenReturn(Collections.singletonList(versioned(dto, 10, 1L)));
+        when(repository.updateQuantityIfVersionMatches(dto.getId(), 15, 1L)).thenReturn(0);
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(versioned(dto, 20, 2L)));
+        when(repository.updateQuantityIfVersionMatches(dto.getId(), 25, 2L)).thenReturn(1);
+
+        // Then
+        Beer incrementedBeer = stockUpdater.increment(dto.getId(), 5);
+        assertThat(incrementedBeer.getQuantity(), is(equalTo(25)));
+        assertThat(incrementedBeer.getVersion(), is(equalTo(3L)));
+        assertThat(meterRegistry.counter(PartitionedStockUpdater.CONFLICTS_COUNTER).count(), is(equalTo(1.0)));
+    }
+
+    @Test
+    void whenTheBeerDoesNotExistThenAnExceptionShouldBeThrownWithoutWriting() {
+        // Given
+        Long id = 99L;
+
+        // When
+        when(repository.findAllById(anyIterable())).thenReturn(Collections.emptyList());
+
+        // Then
+        assertThrows(NotFoundException.class, () -> stockUpdater.decrement(id, 1));
+        verify(repository, never()).updateQuantityIfVersionMatches(anyLong(), anyInt(), anyLong());
+    }
+
+    /**
+     * Submits the call and waits until it sits in the partition's queue, so the calls queue in the order given.
+     */
+    private Future<Beer> queue(ExecutorService callers, Callable<Beer> call, int depth)
+            throws InterruptedException {
+        Future<Beer> future = callers.submit(call);
+        while (meterRegistry.get(PartitionedStockUpdater.QUEUE_GAUGE).gauge().value() < depth) {
+            Thread.sleep(1);
+        }
+        return future;
+    }
+
+    private Beer versioned(BeerDto dto, int quantity, long version) {
+        Beer beer = mapper.toEntity(dto);
+        beer.setQuantity(quantity);
+        beer.setVersion(version);
+        return beer;
+    }
+}
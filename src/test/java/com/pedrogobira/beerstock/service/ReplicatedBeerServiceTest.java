@@ -0,0 +1,111 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.CacheConfig;
+import com.pedrogobira.beerstock.config.ReadAfterWrite;
+import com.pedrogobira.beerstock.config.ReplicaSet;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SpringBootTest
+@ActiveProfiles("replicas")
+public class ReplicatedBeerServiceTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Autowired
+    private BeerService service;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        ReadAfterWrite.clear();
+        repository.deleteAll();
+        cacheManager.getCache(CacheConfig.BEERS_BY_NAME).clear();
+    }
+
+    @Test
+    void whenTheReplicasHaveCaughtUpThenReadsAreServedByThemAndWritesByThePrimary() throws InterruptedException {
+        // Given
+        BeerDto saved = save("Brahma");
+        double writes = connections("primary", "false");
+
+        // When
+        BeerDto found = awaitReplicaRead(() -> service.findAll(null, 10).getContent().stream()
+                .filter(beer -> beer.getId().equals(saved.getId()))
+                .findFirst()
+                .orElse(null));
+        service.increment(saved.getId(), new QuantityDto(1));
+
+        // Then
+        assertThat(found, is(equalTo(saved)));
+        assertThat(connections("primary", "false"), is(greaterThan(writes)));
+    }
+
+    @Test
+    void whenAReadMustFollowAWriteThenItSeesTheWrite() {
+        // Given
+        BeerDto saved = save("Skol");
+        BeerDto incremented = service.increment(saved.getId(), new QuantityDto(5));
+        ReadAfterWrite.require(Instant.now());
+
+        // When
+        BeerDto found = service.findByName("Skol");
+
+        // Then
+        assertThat(found, is(equalTo(incremented)));
+    }
+
+    private BeerDto save(String name) {
+        return service.save(BeerDtoBuilder.builder().id(null).name(name).build().toBeerDto());
+    }
+
+    private double connections(String target, String readOnly) {
+        return meterRegistry.get(ReplicaSet.CONNECTIONS_COUNTER).tag("target", target).tag("read-only", readOnly)
+                .functionCounter().count();
+    }
+
+    private double replicaReads() {
+        return meterRegistry.get(ReplicaSet.CONNECTIONS_COUNTER).tag("read-only", "true").functionCounters().stream()
+                .filter(counter -> counter.getId().getTag("target").startsWith("replica-"))
+                .mapToDouble(FunctionCounter::count)
+                .sum();
+    }
+
+    /**
+     * Reads until a replica serves the read and has caught up with its result.
+     */
+    private <T> T awaitReplicaRead(Supplier<T> read) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (true) {
+            double replicaReads = replicaReads();
+            T result = read.get();
+            if (result != null && replicaReads() > replicaReads) return result;
+            if (System.currentTimeMillis() > deadline) return null;
+            Thread.sleep(50);
+        }
+    }
+}
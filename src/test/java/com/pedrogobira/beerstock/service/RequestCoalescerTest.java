@@ -0,0 +1,191 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.CoalescingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestCoalescerTest {
+
+    private static final String GROUP = RequestCoalescer.BEERS_BY_NAME;
+    private static final String KEY = "Brahma";
+
+    private CoalescingProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CoalescingProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new RequestCoalescer(properties, meterRegistry);
+    }
+
+    @Test
+    void whenIdenticalCallsArriveWhileTheFirstRunsThenTheyShareItsResult() throws Exception {
+        // Given
+        int followers = 8;
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Object result = new Object();
+        ExecutorService executor = Executors.newFixedThreadPool(followers + 1);
+
+        try {
+            // When
+            Future<Object> first = executor.submit(() -> coalescer.execute(GROUP, KEY, () -> {
+                runs.incrementAndGet();
+                running.countDown();
+                await(release);
+                return result;
+            }));
+            running.await();
+            Future<?>[] waiting = new Future<?>[followers];
+            for (int i = 0; i < followers; i++) {
+                waiting[i] = executor.submit(() -> coalescer.execute(GROUP, KEY, () -> {
+                    runs.incrementAndGet();
+                    return new Object();
+                }));
+            }
+            awaitFollowers(followers);
+            release.countDown();
+
+            // Then
+            assertThat(first.get(10, TimeUnit.SECONDS), is(sameInstance(result)));
+            for (Future<?> follower : waiting) {
+                assertThat(follower.get(10, TimeUnit.SECONDS), is(sameInstance(result)));
+            }
+            assertThat(runs.get(), is(equalTo(1)));
+            assertThat(count("leader"), is(equalTo(1.0)));
+            assertThat(count("follower"), is(equalTo((double) followers)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenTheFirstCallFailsThenWaitingCallsGetItsExceptionAndTheNextOneRuns() throws Exception {
+        // Given
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // When
+            Future<Object> first = executor.submit(() -> coalescer.execute(GROUP, KEY, () -> {
+                running.countDown();
+                await(release);
+                throw failure;
+            }));
+            running.await();
+            Future<Object> follower = executor.submit(() -> coalescer.execute(GROUP, KEY, Object::new));
+            awaitFollowers(1);
+            release.countDown();
+
+            // Then
+            Exception firstFailure = assertThrows(Exception.class, () -> first.get(10, TimeUnit.SECONDS));
+            Exception followerFailure = assertThrows(Exception.class, () -> follower.get(10, TimeUnit.SECONDS));
+            assertThat(firstFailure.getCause(), is(sameInstance(failure)));
+            assertThat(followerFailure.getCause(), is(sameInstance(failure)));
+            assertThat(coalescer.execute(GROUP, KEY, () -> KEY), is(equalTo(KEY)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenABeerChangesThenLaterCallsDoNotJoinTheRunningOne() throws Exception {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<Object> first = executor.submit(() -> coalescer.execute(GROUP, KEY, () -> {
+                runs.incrementAndGet();
+                running.countDown();
+                await(release);
+                return "before";
+            }));
+            running.await();
+
+            // When
+            coalescer.onBeerChanged(null);
+            Object after = coalescer.execute(GROUP, KEY, () -> {
+                runs.incrementAndGet();
+                return "after";
+            });
+            release.countDown();
+
+            // Then
+            assertThat(after, is(equalTo("after")));
+            assertThat(first.get(10, TimeUnit.SECONDS), is(equalTo("before")));
+            assertThat(runs.get(), is(equalTo(2)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenDifferentKeysAreRequestedThenEachOneRuns() {
+        // When
+        Object first = coalescer.execute(GROUP, KEY, () -> "first");
+        Object second = coalescer.execute(GROUP, "Skol", () -> "second");
+        Object page = coalescer.execute(RequestCoalescer.BEER_PAGES, KEY, () -> "page");
+
+        // Then
+        assertThat(first, is(equalTo("first")));
+        assertThat(second, is(equalTo("second")));
+        assertThat(page, is(equalTo("page")));
+        assertThat(count("leader"), is(equalTo(2.0)));
+    }
+
+    @Test
+    void whenDisabledThenEveryCallRuns() {
+        // Given
+        properties.setEnabled(false);
+        AtomicInteger runs = new AtomicInteger();
+
+        // When
+        coalescer.execute(GROUP, KEY, runs::incrementAndGet);
+        coalescer.execute(GROUP, KEY, runs::incrementAndGet);
+
+        // Then
+        assertThat(runs.get(), is(equalTo(2)));
+        assertThat(meterRegistry.find(RequestCoalescer.CALLS_COUNTER).counter(), is(nullValue()));
+    }
+
+    private double count(String role) {
+        return meterRegistry.get(RequestCoalescer.CALLS_COUNTER).tags("group", GROUP, "role", role).counter().count();
+    }
+
+    private void awaitFollowers(int followers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (count("follower") < followers && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
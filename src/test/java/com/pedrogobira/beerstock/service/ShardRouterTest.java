@@ -0,0 +1,144 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.config.ShardingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(MockitoExtension.class)
+public class ShardRouterTest {
+
+    private static final int SHARDS = 4;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ShardingProperties properties;
+
+    private ShardRouter router;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ShardingProperties();
+        properties.setEnabled(true);
+        properties.setShards(IntStream.range(0, SHARDS).mapToObj(shard -> {
+            ShardingProperties.Shard datasource = new ShardingProperties.Shard();
+            datasource.setUrl("jdbc:h2:mem:shard" + shard);
+            return datasource;
+        }).collect(Collectors.toList()));
+        properties.setBrands(Collections.singletonMap("Skol", 3));
+        router = new ShardRouter(properties, transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        router.stop();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void whenABrandIsMappedThenItsShardIsUsed() {
+        assertThat(router.shardOfBrand("Skol"), is(equalTo(3)));
+        assertThat(router.shardOfBrand("Brahma"), is(equalTo(Math.floorMod("Brahma".hashCode(), SHARDS))));
+    }
+
+    @Test
+    void whenAnIdIsNumberedFromTheFirstIdOfAShardThenItTellsTheShard() {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertThat(ShardRouter.shardOfId(ShardRouter.firstId(shard)), is(equalTo(shard)));
+            assertThat(ShardRouter.shardOfId(ShardRouter.lastId(shard)), is(equalTo(shard)));
+            assertThat(ShardRouter.shardOfId(ShardRouter.lastId(shard) + 1), is(equalTo(shard + 1)));
+        }
+        assertThat(ShardRouter.firstId(0), is(equalTo(1L)));
+    }
+
+    @Test
+    void whenGatheringThenEveryShardIsQueriedWithItsShardBound() {
+        // When
+        List<Integer> bound = router.gather(shard -> ShardRouter.currentShard());
+
+        // Then
+        assertThat(bound, is(equalTo(Arrays.asList(0, 1, 2, 3))));
+        assertThat(ShardRouter.currentShard(), is(nullValue()));
+    }
+
+    @Test
+    void whenAShardQueryFailsThenGatheringRethrowsItsException() {
+        // Given
+        IllegalArgumentException failure = new IllegalArgumentException();
+
+        // Then
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> router.gather(shard -> {
+            if (shard == 2) throw failure;
+            return shard;
+        }));
+        assertThat(thrown, is(sameInstance(failure)));
+    }
+
+    @Test
+    void whenWorkRunsOnAShardThenThePreviousShardIsRestored() {
+        // When
+        Integer inner = router.on(1, () -> router.on(2, ShardRouter::currentShard));
+        List<Integer> each = router.each(shard -> ShardRouter.currentShard());
+
+        // Then
+        assertThat(inner, is(equalTo(2)));
+        assertThat(each, is(equalTo(Arrays.asList(0, 1, 2, 3))));
+        assertThat(ShardRouter.currentShard(), is(nullValue()));
+    }
+
+    @Test
+    void whenATransactionIsActiveThenAnotherShardCantBeBound() {
+        // Given
+        Integer previous = router.bind(1);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        try {
+            // Then
+            assertThat(router.on(1, ShardRouter::currentShard), is(equalTo(1)));
+            assertThrows(IllegalStateException.class, () -> router.bind(2));
+        } finally {
+            router.restore(previous);
+        }
+        assertThat(router.on(0, ShardRouter::currentShard), is(equalTo(0)));
+        assertThrows(IllegalStateException.class, () -> router.bind(1));
+    }
+
+    @Test
+    void whenABrandIsMappedToAMissingShardThenTheRouterFailsToStart() {
+        // Given
+        properties.setBrands(Collections.singletonMap("Skol", SHARDS));
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> new ShardRouter(properties, transactionManager));
+    }
+
+    @Test
+    void whenShardingIsOffThenThereIsOneShard() {
+        // Given
+        properties.setEnabled(false);
+
+        // When
+        ShardRouter single = new ShardRouter(properties, transactionManager);
+
+        // Then
+        assertThat(single.count(), is(equalTo(1)));
+        assertThat(single.shardOfBrand("Skol"), is(equalTo(0)));
+        assertThat(single.gather(shard -> Thread.currentThread()), contains(Thread.currentThread()));
+    }
+}
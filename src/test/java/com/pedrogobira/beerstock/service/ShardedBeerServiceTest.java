@@ -0,0 +1,222 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.ShardRoutingDataSource;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.BeerPageDto;
+import com.pedrogobira.beerstock.dto.BeerSearchDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.enums.BeerType;
+import com.pedrogobira.beerstock.enums.StockMovementMode;
+import com.pedrogobira.beerstock.exception.BeerAlreadyExistsException;
+import com.pedrogobira.beerstock.exception.CrossShardMovementsException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {"application.sharding.brands.Ambev=0", "application.sharding.brands.Heineken=2"})
+@ActiveProfiles("sharded")
+public class ShardedBeerServiceTest {
+
+    @Autowired
+    private BeerService service;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @Autowired
+    private ShardRouter shards;
+
+    @Autowired
+    private ShardRoutingDataSource dataSource;
+
+    @Autowired
+    private BeerSuggestionService suggestionService;
+
+    @AfterEach
+    void tearDown() {
+        shards.each(shard -> {
+            repository.deleteAll();
+            return null;
+        });
+        new JdbcTemplate(dataSource.shard(0)).update("delete from beer_name");
+    }
+
+    @Test
+    void whenBeersAreSavedThenEachOneIsStoredAndNumberedOnTheShardOfItsBrand() {
+        // When
+        BeerDto brahma = save("Brahma", "Ambev");
+        BeerDto heineken = save("Heineken", "Heineken");
+
+        // Then
+        assertThat(ShardRouter.shardOfId(brahma.getId()), is(equalTo(0)));
+        assertThat(ShardRouter.shardOfId(heineken.getId()), is(equalTo(2)));
+        assertThat(countOnShard(0, "Heineken"), is(equalTo(0)));
+        assertThat(countOnShard(2, "Heineken"), is(equalTo(1)));
+    }
+
+    @Test
+    void whenPagingThroughAllBeersThenTheShardsAreMergedInIdOrder() {
+        // Given
+        List<Long> saved = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            saved.add(save("Heineken-" + i, "Heineken").getId());
+            saved.add(save("Brahma-" + i, "Ambev").getId());
+        }
+
+        // When
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            BeerPageDto page = service.findAll(cursor, 4);
+            page.getContent().forEach(beer -> paged.add(beer.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        // Then
+        assertThat(paged, is(equalTo(saved.stream().sorted().collect(Collectors.toList()))));
+    }
+
+    @Test
+    void whenSearchingThenEveryShardIsSearched() {
+        // Given
+        BeerDto brahma = save("Brahma", "Ambev");
+        BeerDto heineken = save("Heineken", "Heineken");
+
+        // When
+        BeerPageDto page = service.search(new BeerSearchDto(null, BeerType.LAGER, null, null, null, null), null, 10);
+
+        // Then
+        assertThat(page.getContent(), contains(brahma, heineken));
+    }
+
+    @Test
+    void whenABeerIsOnAnotherShardThenItIsFoundByNameAndItsStockIsUpdatedThere() {
+        // Given
+        BeerDto heineken = save("Heineken", "Heineken");
+
+        // When
+        BeerDto incremented = service.increment(heineken.getId(), new QuantityDto(5));
+
+        // Then
+        assertThat(incremented.getQuantity(), is(equalTo(heineken.getQuantity() + 5)));
+        assertThat(service.findByName("Heineken").getId(), is(equalTo(heineken.getId())));
+        assertThat(service.findQuantityAt(heineken.getId(), null).getQuantity(), is(equalTo(heineken.getQuantity() + 5)));
+    }
+
+    @Test
+    void whenANameIsTakenOnAnotherShardThenSavingItFails() {
+        // Given
+        save("Brahma", "Ambev");
+
+        // Then
+        assertThrows(BeerAlreadyExistsException.class, () -> save("Brahma", "Heineken"));
+    }
+
+    @Test
+    void whenANameIsSavedConcurrentlyOnTwoShardsThenOnlyOneSaveSucceeds() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When
+        List<Future<BeerDto>> saves = new ArrayList<>();
+        for (String brand : Arrays.asList("Ambev", "Heineken")) {
+            saves.add(executor.submit(() -> {
+                start.await();
+                return save("Brahma", brand);
+            }));
+        }
+        start.countDown();
+        int saved = 0;
+        int rejected = 0;
+        for (Future<BeerDto> future : saves) {
+            try {
+                future.get();
+                saved++;
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), is(instanceOf(BeerAlreadyExistsException.class)));
+                rejected++;
+            }
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(saved, is(equalTo(1)));
+        assertThat(rejected, is(equalTo(1)));
+        assertThat(countOnShard(0, "Brahma") + countOnShard(2, "Brahma"), is(equalTo(1)));
+    }
+
+    @Test
+    void whenABeerIsRenamedOrDeletedThenItsNameCanBeSavedOnAnotherShard() {
+        // Given
+        BeerDto brahma = save("Brahma", "Ambev");
+        BeerDto renamed = BeerDtoBuilder.builder().id(brahma.getId()).name("Brahma Extra").brand("Ambev").build().toBeerDto();
+
+        // When
+        service.update(brahma.getId(), renamed);
+        service.delete(save("Skol", "Ambev").getId());
+
+        // Then
+        assertThrows(BeerAlreadyExistsException.class, () -> save("Brahma Extra", "Heineken"));
+        assertThat(ShardRouter.shardOfId(save("Brahma", "Heineken").getId()), is(equalTo(2)));
+        assertThat(ShardRouter.shardOfId(save("Skol", "Heineken").getId()), is(equalTo(2)));
+    }
+
+    @Test
+    void whenStockMovementsSpanShardsThenTheBatchIsRejected() {
+        // Given
+        BeerDto brahma = save("Brahma", "Ambev");
+        BeerDto heineken = save("Heineken", "Heineken");
+        StockMovementsDto movements = new StockMovementsDto(Arrays.asList(
+                new StockMovementDto(brahma.getId(), 1),
+                new StockMovementDto(heineken.getId(), -1)), StockMovementMode.BEST_EFFORT);
+
+        // Then
+        assertThrows(CrossShardMovementsException.class, () -> service.move(movements));
+        assertThat(repository.findById(brahma.getId()).orElseThrow().getQuantity(), is(equalTo(brahma.getQuantity())));
+    }
+
+    @Test
+    void whenTheSuggestionIndexIsRebuiltThenItIsLoadedFromEveryShard() {
+        // Given
+        BeerDto brahma = save("Brahma", "Ambev");
+        BeerDto heineken = save("Heineken", "Heineken");
+
+        // When
+        suggestionService.rebuild();
+
+        // Then
+        assertThat(suggestionService.suggest("Brahma", 1).get(0).getId(), is(equalTo(brahma.getId())));
+        assertThat(suggestionService.suggest("Heineken", 1).get(0).getId(), is(equalTo(heineken.getId())));
+    }
+
+    private BeerDto save(String name, String brand) {
+        return service.save(BeerDtoBuilder.builder().id(null).name(name).brand(brand).build().toBeerDto());
+    }
+
+    private int countOnShard(int shard, String name) {
+        return new JdbcTemplate(dataSource.shard(shard))
+                .queryForObject("select count(*) from beer where name = ?", Integer.class, name);
+    }
+}
@@ -0,0 +1,76 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "application.stock.mode=counter",
+        "application.stock.counter.wal-directory=target/stock-wal-benchmark"
+})
+public class StockCounterEngineBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 10_000;
+
+    @Autowired
+    private BeerService service;
+
+    @Autowired
+    private StockCounterEngine engine;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void whenIncrementAndDecrementAreCalledConcurrentlyThenLatencyStaysOffTheDatabase() throws Exception {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(500).quantity(250).build().toBeerDto());
+        long[] latencies = new long[THREADS * OPERATIONS_PER_THREAD];
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        // When
+        for (int thread = 0; thread < THREADS; thread++) {
+            int offset = thread * OPERATIONS_PER_THREAD;
+            executor.execute(() -> {
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    long start = System.nanoTime();
+                    if (i % 2 == 0) service.increment(beer.getId(), new QuantityDto(1));
+                    else service.decrement(beer.getId(), new QuantityDto(1));
+                    latencies[offset + i] = System.nanoTime() - start;
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.MINUTES);
+        engine.flush();
+
+        // Then
+        Arrays.sort(latencies);
+        System.out.printf("counter mode: p50 %d us, p99 %d us, p99.9 %d us%n",
+                latencies[latencies.length / 2] / 1000,
+                latencies[latencies.length * 99 / 100] / 1000,
+                latencies[latencies.length * 999 / 1000] / 1000);
+        assertThat(service.findByName(beer.getName()).getQuantity(), is(equalTo(250)));
+    }
+}
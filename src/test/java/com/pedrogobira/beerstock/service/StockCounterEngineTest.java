@@ -0,0 +1,261 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.StockProperties;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.entity.Beer;
+import com.pedrogobira.beerstock.entity.StockCounterCheckpoint;
+import com.pedrogobira.beerstock.exception.BeerStockExceededException;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.mapper.BeerMapper;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.repository.StockCounterCheckpointRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockCounterEngineTest {
+
+    @Mock
+    private BeerRepository repository;
+
+    @Mock
+    private StockCounterCheckpointRepository checkpointRepository;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path walDirectory;
+
+    private BeerMapper mapper = BeerMapper.INSTANCE;
+
+    private StockCounterEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lenient().when(repository.applyQuantityDeltas(anyList()))
+                .thenAnswer(invocation -> applied(invocation.<List<?>>getArgument(0).size()));
+        engine = newEngine();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        engine.stop();
+    }
+
+    @Test
+    void whenIncrementIsCalledThenTheCounterIsUpdatedWithoutWritingTheDatabase() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(mapper.toEntity(dto)));
+
+        // Then
+        engine.increment(dto.getId(), 10);
+        Beer incrementedBeer = engine.increment(dto.getId(), 5);
+        assertThat(incrementedBeer.getQuantity(), is(equalTo(25)));
+        verify(repository, times(1)).findById(dto.getId());
+        verify(repository, never()).applyQuantityDeltas(anyList());
+    }
+
+    @Test
+    void whenCountersAreFlushedThenDeltasAreCoalescedPerBeer() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(mapper.toEntity(dto)));
+
+        // Then
+        engine.increment(dto.getId(), 10);
+        engine.decrement(dto.getId(), 3);
+        engine.increment(dto.getId(), 1);
+        engine.flush();
+        verify(repository).applyQuantityDeltas(Collections.singletonList(new StockMovementDto(dto.getId(), 8)));
+        verify(checkpointRepository).save(new StockCounterCheckpoint(1L, 1L));
+    }
+
+    @Test
+    void whenABeerIsReleasedThenItsDeltasAreFlushedAndItsCounterReloaded() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(mapper.toEntity(dto)));
+
+        // Then
+        engine.increment(dto.getId(), 10);
+        engine.release(dto.getId());
+        verify(repository).applyQuantityDeltas(Collections.singletonList(new StockMovementDto(dto.getId(), 10)));
+        engine.increment(dto.getId(), 1);
+        verify(repository, times(2)).findById(dto.getId());
+    }
+
+    @Test
+    void whenTheFlushOfAReleasedBeerFailsThenItsCounterAndDeltasAreKept() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(mapper.toEntity(dto)));
+        engine.increment(dto.getId(), 10);
+        doThrow(new IllegalStateException("database down")).doAnswer(invocation -> applied(1))
+                .when(repository).applyQuantityDeltas(anyList());
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> engine.release(dto.getId()));
+        assertThat(engine.increment(dto.getId(), 1).getQuantity(), is(equalTo(dto.getQuantity() + 11)));
+        engine.flush();
+        verify(repository).applyQuantityDeltas(Collections.singletonList(new StockMovementDto(dto.getId(), 11)));
+        verify(repository, times(1)).findById(dto.getId());
+    }
+
+    @Test
+    void whenTheDatabaseRejectsAFlushedDeltaThenTheCounterIsReloaded() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(mapper.toEntity(dto)));
+        engine.increment(dto.getId(), 10);
+        doReturn(new int[]{0}).when(repository).applyQuantityDeltas(anyList());
+        engine.flush();
+
+        // Then
+        assertThat(engine.increment(dto.getId(), 1).getQuantity(), is(equalTo(dto.getQuantity() + 1)));
+        verify(repository, times(2)).findById(dto.getId());
+    }
+
+    @Test
+    void whenLogSyncIsOnThenDeltasAreAcknowledgedAcrossRotations() throws Exception {
+        // Given
+        engine.stop();
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        engine = newEngine(true);
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(mapper.toEntity(dto)));
+        engine.increment(dto.getId(), 5);
+        engine.flush();
+        engine.increment(dto.getId(), 3);
+        engine.flush();
+
+        // Then
+        verify(repository).applyQuantityDeltas(Collections.singletonList(new StockMovementDto(dto.getId(), 5)));
+        verify(repository).applyQuantityDeltas(Collections.singletonList(new StockMovementDto(dto.getId(), 3)));
+        assertThat(engine.increment(dto.getId(), 0).getQuantity(), is(equalTo(dto.getQuantity() + 8)));
+    }
+
+    @Test
+    void whenMutationsBreakTheBoundsThenExceptionsShouldBeThrown() {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(mapper.toEntity(dto)));
+
+        // Then
+        assertThrows(BeerStockExceededException.class, () -> engine.increment(dto.getId(), 41));
+        assertThrows(NegativeStockException.class, () -> engine.decrement(dto.getId(), 11));
+        assertThat(engine.increment(dto.getId(), 0).getQuantity(), is(equalTo(dto.getQuantity())));
+    }
+
+    @Test
+    void whenBeerDoesNotExistThenAnExceptionShouldBeThrown() {
+        // When
+        when(repository.findById(1L)).thenReturn(Optional.empty());
+
+        // Then
+        assertThrows(NotFoundException.class, () -> engine.increment(1L, 1));
+    }
+
+    @Test
+    void whenCountersAreHitConcurrentlyThenBoundsHoldAndNoDeltaIsLost() throws Exception {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().max(500).quantity(0).build().toBeerDto();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(mapper.toEntity(dto)));
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> {
+                try {
+                    engine.increment(dto.getId(), 1);
+                } catch (BeerStockExceededException ignored) {
+                    // expected once the max is reached
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        // Then
+        assertThat(engine.increment(dto.getId(), 0).getQuantity(), is(equalTo(500)));
+    }
+
+    @Test
+    void whenEngineRestartsWithoutFlushingThenTheLogIsReplayedIntoTheDatabase() throws Exception {
+        // Given
+        BeerDto dto = BeerDtoBuilder.builder().build().toBeerDto();
+        when(repository.findById(dto.getId())).thenReturn(Optional.of(mapper.toEntity(dto)));
+        engine.increment(dto.getId(), 7);
+        engine.decrement(dto.getId(), 2);
+
+        // When
+        StockCounterEngine restartedEngine = newEngine();
+
+        // Then
+        verify(repository).applyQuantityDeltas(Collections.singletonList(new StockMovementDto(dto.getId(), 5)));
+        verify(checkpointRepository).save(new StockCounterCheckpoint(1L, 1L));
+        restartedEngine.stop();
+    }
+
+    private static int[] applied(int movements) {
+        int[] counts = new int[movements];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+
+    private StockCounterEngine newEngine() throws Exception {
+        return newEngine(false);
+    }
+
+    private StockCounterEngine newEngine(boolean fsync) throws Exception {
+        StockProperties properties = new StockProperties();
+        properties.getCounter().setWalDirectory(walDirectory);
+        properties.getCounter().setFlushInterval(Duration.ofHours(1));
+        properties.getCounter().setFsync(fsync);
+        StockCounterEngine engine = new StockCounterEngine(repository, checkpointRepository, stockLedger, transactionManager, properties);
+        engine.start();
+        return engine;
+    }
+}
@@ -0,0 +1,142 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.StockEventProperties;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.StockEventDto;
+import com.pedrogobira.beerstock.enums.StockEventType;
+import com.pedrogobira.beerstock.event.BeerChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class StockEventBrokerTest {
+
+    private StockEventProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StockEventBroker broker;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StockEventProperties();
+        properties.setBufferSize(4);
+        properties.setDispatcherThreads(1);
+        meterRegistry = new SimpleMeterRegistry();
+        broker = new StockEventBroker(properties, meterRegistry);
+        broker.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        broker.stop();
+    }
+
+    @Test
+    void whenStockChangesThenSubscribersReceiveTheEventTaggedWithTheCrossedThreshold() throws Exception {
+        // Given
+        SseEmitter emitter = mock(SseEmitter.class);
+        broker.subscribe(emitter, null);
+
+        // When
+        broker.onBeerChanged(stockChanged(20, 30, 100));
+        broker.onBeerChanged(stockChanged(30, 10, 100));
+        broker.onBeerChanged(stockChanged(10, 95, 100));
+
+        // Then
+        List<StockEventDto> events = sentEvents(emitter, 3);
+        assertThat(events.stream().map(StockEventDto::getType).collect(Collectors.toList()),
+                contains(StockEventType.STOCK_CHANGED, StockEventType.LOW_STOCK, StockEventType.NEAR_MAX));
+        assertThat(events.get(1).getPreviousQuantity(), is(equalTo(30)));
+        assertThat(events.get(1).getQuantity(), is(equalTo(10)));
+        assertThat(events.get(2).getSequence(), is(greaterThan(events.get(1).getSequence())));
+    }
+
+    @Test
+    void whenSubscribedToSomeTypesThenOnlyThoseAreReceived() throws Exception {
+        // Given
+        SseEmitter emitter = mock(SseEmitter.class);
+        broker.subscribe(emitter, Collections.singleton(StockEventType.LOW_STOCK));
+
+        // When
+        broker.onBeerChanged(stockChanged(50, 40, 100));
+        broker.onBeerChanged(stockChanged(40, 5, 100));
+
+        // Then
+        List<StockEventDto> events = sentEvents(emitter, 1);
+        assertThat(events.get(0).getType(), is(equalTo(StockEventType.LOW_STOCK)));
+    }
+
+    @Test
+    void whenTheQuantityIsUnchangedOrTheBeerIsCreatedOrDeletedThenNothingIsSent() throws Exception {
+        // Given
+        SseEmitter emitter = mock(SseEmitter.class);
+        broker.subscribe(emitter, null);
+        BeerDto beer = BeerDtoBuilder.builder().build().toBeerDto();
+
+        // When
+        broker.onBeerChanged(new BeerChangedEvent(beer.getId(), null, null, beer));
+        broker.onBeerChanged(new BeerChangedEvent(beer.getId(), beer.getName(), beer.getQuantity(), beer));
+        broker.onBeerChanged(new BeerChangedEvent(beer.getId(), beer.getName(), beer.getQuantity(), null));
+
+        // Then
+        verify(emitter, after(100).never()).send(Mockito.any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    void whenASubscriberFallsBehindByMoreThanItsBufferThenItIsDropped() throws Exception {
+        // Given
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SseEmitter slowEmitter = mock(SseEmitter.class);
+        doAnswer(invocation -> {
+            blocked.countDown();
+            release.await();
+            return null;
+        }).when(slowEmitter).send(Mockito.any(SseEmitter.SseEventBuilder.class));
+        broker.subscribe(slowEmitter, null);
+
+        // When
+        broker.onBeerChanged(stockChanged(50, 51, 100));
+        blocked.await();
+        for (int i = 0; i <= properties.getBufferSize(); i++) {
+            broker.onBeerChanged(stockChanged(51 + i, 52 + i, 100));
+        }
+        release.countDown();
+
+        // Then
+        verify(slowEmitter).complete();
+        assertThat(broker.subscriberCount(), is(equalTo(0)));
+        assertThat(meterRegistry.counter("beer.stock.events.dropped").count(), is(equalTo(1.0)));
+    }
+
+    private static BeerChangedEvent stockChanged(int previousQuantity, int quantity, int max) {
+        BeerDto beer = BeerDtoBuilder.builder().max(max).quantity(quantity).build().toBeerDto();
+        return new BeerChangedEvent(beer.getId(), beer.getName(), previousQuantity, beer);
+    }
+
+    private static List<StockEventDto> sentEvents(SseEmitter emitter, int count) throws Exception {
+        ArgumentCaptor<SseEmitter.SseEventBuilder> events = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, timeout(1000).times(count)).send(events.capture());
+        return events.getAllValues().stream()
+                .flatMap(event -> event.build().stream())
+                .map(data -> data.getData())
+                .filter(StockEventDto.class::isInstance)
+                .map(StockEventDto.class::cast)
+                .collect(Collectors.toList());
+    }
+}
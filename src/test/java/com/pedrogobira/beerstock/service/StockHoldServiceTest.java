@@ -0,0 +1,206 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.config.StockProperties;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockHoldDto;
+import com.pedrogobira.beerstock.entity.StockHold;
+import com.pedrogobira.beerstock.exception.NegativeStockException;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.repository.StockHoldRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class StockHoldServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int HOLDS_PER_THREAD = 50;
+
+    @Autowired
+    private StockHoldService holdService;
+
+    @Autowired
+    private BeerService beerService;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @Autowired
+    private StockHoldRepository holdRepository;
+
+    @Autowired
+    private StockProperties properties;
+
+    @AfterEach
+    void tearDown() {
+        holdRepository.deleteAll();
+        repository.deleteAll();
+    }
+
+    @Test
+    void whenStockIsHeldThenItCantBeDecremented() {
+        // Given
+        BeerDto beer = save("Brahma", 10);
+
+        // When
+        StockHoldDto hold = holdService.reserve(beer.getId(), new QuantityDto(8));
+
+        // Then
+        assertThat(hold.getAvailable(), is(equalTo(2)));
+        assertThrows(NegativeStockException.class, () -> beerService.decrement(beer.getId(), new QuantityDto(3)));
+        assertThat(beerService.decrement(beer.getId(), new QuantityDto(2)).getQuantity(), is(equalTo(8)));
+        assertThrows(NegativeStockException.class, () -> holdService.reserve(beer.getId(), new QuantityDto(1)));
+    }
+
+    @Test
+    void whenAHoldIsConfirmedThenItsStockIsSoldOnce() {
+        // Given
+        BeerDto beer = save("Skol", 10);
+        StockHoldDto hold = holdService.reserve(beer.getId(), new QuantityDto(4));
+
+        // When
+        BeerDto sold = holdService.confirm(beer.getId(), hold.getId());
+
+        // Then
+        assertThat(sold.getQuantity(), is(equalTo(6)));
+        assertThat(reserved(beer), is(equalTo(0)));
+        assertThrows(NotFoundException.class, () -> holdService.confirm(beer.getId(), hold.getId()));
+        assertThrows(NotFoundException.class, () -> holdService.release(beer.getId(), hold.getId()));
+    }
+
+    @Test
+    void whenAHoldIsReleasedThenItsStockIsAvailableAgain() {
+        // Given
+        BeerDto beer = save("Antarctica", 10);
+        StockHoldDto hold = holdService.reserve(beer.getId(), new QuantityDto(4));
+
+        // When
+        holdService.release(beer.getId(), hold.getId());
+
+        // Then
+        assertThat(reserved(beer), is(equalTo(0)));
+        assertThat(repository.findById(beer.getId()).orElseThrow().getQuantity(), is(equalTo(10)));
+    }
+
+    @Test
+    void whenHoldsExpireThenTheOnesLeftAreReleasedTogether() {
+        // Given
+        BeerDto first = save("Heineken", 10);
+        BeerDto second = save("Stella", 10);
+        holdService.reserve(first.getId(), new QuantityDto(2));
+        holdService.reserve(first.getId(), new QuantityDto(3));
+        StockHoldDto released = holdService.reserve(second.getId(), new QuantityDto(4));
+        holdService.release(second.getId(), released.getId());
+
+        // When
+        long afterTtl = System.currentTimeMillis() + properties.getHolds().getTtl().toMillis()
+                + properties.getHolds().getTick().toMillis();
+        int expired = holdService.expire(afterTtl);
+
+        // Then
+        assertThat(expired, is(equalTo(2)));
+        assertThat(reserved(first), is(equalTo(0)));
+        assertThat(reserved(second), is(equalTo(0)));
+        assertThat(holdRepository.count(), is(equalTo(0L)));
+    }
+
+    @Test
+    void whenHoldsOfAStoppedInstanceAreOverdueThenTheSweepReleasesThem() {
+        // Given
+        BeerDto beer = save("Corona", 10);
+        StockHold hold = holdRepository.findById(holdService.reserve(beer.getId(), new QuantityDto(3)).getId()).orElseThrow();
+        hold.setExpiresAt(Instant.now().minus(properties.getHolds().getTtl()));
+        holdRepository.save(hold);
+
+        // When
+        int swept = holdService.sweep(Instant.now().plus(properties.getHolds().getSweepInterval()));
+
+        // Then
+        assertThat(swept, is(equalTo(1)));
+        assertThat(reserved(beer), is(equalTo(0)));
+        assertThat(holdRepository.count(), is(equalTo(0L)));
+    }
+
+    @Test
+    void whenAnOverdueHoldIsConfirmedThenItIsReleasedInstead() {
+        // Given
+        BeerDto beer = save("Eisenbahn", 10);
+        StockHold hold = holdRepository.findById(holdService.reserve(beer.getId(), new QuantityDto(4)).getId()).orElseThrow();
+        hold.setExpiresAt(Instant.now().minusSeconds(1));
+        holdRepository.save(hold);
+
+        // When
+        assertThrows(NotFoundException.class, () -> holdService.confirm(beer.getId(), hold.getId()));
+
+        // Then
+        assertThat(reserved(beer), is(equalTo(0)));
+        assertThat(repository.findById(beer.getId()).orElseThrow().getQuantity(), is(equalTo(10)));
+        assertThat(holdRepository.count(), is(equalTo(0L)));
+    }
+
+    @Test
+    void whenStockIsHeldConcurrentlyThenItIsNeverOversold() throws Exception {
+        // Given
+        BeerDto beer = save("Budweiser", 100);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger held = new AtomicInteger();
+
+        // When
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < HOLDS_PER_THREAD; i++) {
+                        try {
+                            holdService.reserve(beer.getId(), new QuantityDto(1));
+                            held.incrementAndGet();
+                        } catch (NegativeStockException ignored) {
+                            // expected once everything is held
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        assertThat(held.get(), is(equalTo(100)));
+        assertThat(reserved(beer), is(equalTo(100)));
+        assertThat(holdRepository.count(), is(equalTo(100L)));
+    }
+
+    private BeerDto save(String name, int quantity) {
+        return beerService.save(BeerDtoBuilder.builder().id(null).name(name).max(100).quantity(quantity).build().toBeerDto());
+    }
+
+    private int reserved(BeerDto beer) {
+        return repository.findById(beer.getId()).orElseThrow().getReserved();
+    }
+}
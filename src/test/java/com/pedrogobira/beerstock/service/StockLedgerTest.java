@@ -0,0 +1,181 @@
+package com.pedrogobira.beerstock.service;
+
+import com.pedrogobira.beerstock.builder.BeerDtoBuilder;
+import com.pedrogobira.beerstock.dto.BeerDto;
+import com.pedrogobira.beerstock.dto.QuantityDto;
+import com.pedrogobira.beerstock.dto.StockMovementDto;
+import com.pedrogobira.beerstock.dto.StockMovementsDto;
+import com.pedrogobira.beerstock.enums.StockMovementMode;
+import com.pedrogobira.beerstock.enums.StockMovementType;
+import com.pedrogobira.beerstock.exception.NotFoundException;
+import com.pedrogobira.beerstock.exception.StockHistoryCompactedException;
+import com.pedrogobira.beerstock.exception.StockMovementsRejectedException;
+import com.pedrogobira.beerstock.repository.BeerRepository;
+import com.pedrogobira.beerstock.repository.StockMovementRepository;
+import com.pedrogobira.beerstock.repository.StockSnapshotRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.IllegalTransactionStateException;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class StockLedgerTest {
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private BeerService service;
+
+    @Autowired
+    private BeerRepository repository;
+
+    @Autowired
+    private StockMovementRepository movementRepository;
+
+    @Autowired
+    private StockSnapshotRepository snapshotRepository;
+
+    @BeforeEach
+    void setUp() {
+        movementRepository.deleteAll();
+        snapshotRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+        movementRepository.deleteAll();
+        snapshotRepository.deleteAll();
+    }
+
+    @Test
+    void whenStockChangesThenQuantityAtReplaysTheLedgerUpToThatTime() throws InterruptedException {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(100).quantity(10).build().toBeerDto());
+        Instant created = tick();
+        service.increment(beer.getId(), new QuantityDto(5));
+        Instant incremented = tick();
+        service.decrement(beer.getId(), new QuantityDto(3));
+        Instant decremented = tick();
+
+        // When
+        service.move(new StockMovementsDto(Arrays.asList(
+                new StockMovementDto(beer.getId(), 20),
+                new StockMovementDto(beer.getId(), -2)), StockMovementMode.ALL_OR_NOTHING));
+
+        // Then
+        assertThat(stockLedger.quantityAt(beer.getId(), created), is(equalTo(10)));
+        assertThat(stockLedger.quantityAt(beer.getId(), incremented), is(equalTo(15)));
+        assertThat(stockLedger.quantityAt(beer.getId(), decremented), is(equalTo(12)));
+        assertThat(stockLedger.quantityAt(beer.getId(), Instant.now()), is(equalTo(30)));
+        assertThat(stockLedger.quantityAt(beer.getId(), Instant.now()),
+                is(equalTo(repository.findById(beer.getId()).orElseThrow().getQuantity())));
+    }
+
+    @Test
+    void whenSnapshotsAreTakenThenQuantityAtStartsFromTheNewestOne() throws InterruptedException {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(100).quantity(10).build().toBeerDto());
+        service.increment(beer.getId(), new QuantityDto(5));
+        Instant first = tick();
+        assertThat(stockLedger.snapshot(first), is(equalTo(1)));
+        service.decrement(beer.getId(), new QuantityDto(7));
+        Instant second = tick();
+
+        // When
+        int snapshots = stockLedger.snapshot(second);
+
+        // Then
+        assertThat(snapshots, is(equalTo(1)));
+        assertThat(stockLedger.snapshot(second), is(equalTo(0)));
+        assertThat(snapshotRepository.findFirstByBeerIdAndAsOfLessThanEqualOrderByAsOfDesc(beer.getId(), second)
+                .orElseThrow().getQuantity(), is(equalTo(8)));
+        assertThat(stockLedger.quantityAt(beer.getId(), first), is(equalTo(15)));
+        assertThat(stockLedger.quantityAt(beer.getId(), second), is(equalTo(8)));
+
+        service.increment(beer.getId(), new QuantityDto(1));
+        assertThat(stockLedger.quantityAt(beer.getId(), Instant.now()), is(equalTo(9)));
+    }
+
+    @Test
+    void whenTheLedgerIsCompactedThenHistoryBeforeTheHorizonIsRejected() throws InterruptedException {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(100).quantity(10).build().toBeerDto());
+        Instant created = tick();
+        service.increment(beer.getId(), new QuantityDto(5));
+        Instant horizon = tick();
+        stockLedger.snapshot(horizon);
+        service.increment(beer.getId(), new QuantityDto(2));
+
+        // When
+        int compacted = stockLedger.compact(horizon);
+
+        // Then
+        assertThat(compacted, is(equalTo(2)));
+        assertThat(movementRepository.count(), is(equalTo(1L)));
+        assertThat(stockLedger.quantityAt(beer.getId(), horizon), is(equalTo(15)));
+        assertThat(stockLedger.quantityAt(beer.getId(), Instant.now()), is(equalTo(17)));
+        assertThrows(StockHistoryCompactedException.class, () -> stockLedger.quantityAt(beer.getId(), created));
+    }
+
+    @Test
+    void whenABeerIsDeletedThenItsHistoryIsKept() throws InterruptedException {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(100).quantity(10).build().toBeerDto());
+        Instant created = tick();
+
+        // When
+        service.delete(beer.getId());
+
+        // Then
+        assertThat(stockLedger.quantityAt(beer.getId(), created), is(equalTo(10)));
+        assertThat(stockLedger.quantityAt(beer.getId(), Instant.now()), is(equalTo(0)));
+    }
+
+    @Test
+    void whenABatchIsRolledBackThenNothingIsRecorded() {
+        // Given
+        BeerDto beer = service.save(BeerDtoBuilder.builder().id(null).max(100).quantity(10).build().toBeerDto());
+        long recorded = movementRepository.count();
+
+        // When
+        assertThrows(StockMovementsRejectedException.class, () -> service.move(new StockMovementsDto(Arrays.asList(
+                new StockMovementDto(beer.getId(), 5),
+                new StockMovementDto(beer.getId(), -50)), StockMovementMode.ALL_OR_NOTHING)));
+
+        // Then
+        assertThat(movementRepository.count(), is(equalTo(recorded)));
+        assertThat(stockLedger.quantityAt(beer.getId(), Instant.now()), is(equalTo(10)));
+    }
+
+    @Test
+    void whenTheLedgerHasNothingOnABeerThenAnExceptionShouldBeThrown() {
+        assertThrows(NotFoundException.class, () -> stockLedger.quantityAt(Long.MAX_VALUE, Instant.now()));
+    }
+
+    @Test
+    void whenAMovementIsRecordedOutsideATransactionThenAnExceptionShouldBeThrown() {
+        assertThrows(IllegalTransactionStateException.class,
+                () -> stockLedger.record(1L, 5, StockMovementType.INCREMENT));
+    }
+
+    /**
+     * Returns a time strictly between the movements recorded before and after the call.
+     */
+    private static Instant tick() throws InterruptedException {
+        Thread.sleep(5);
+        Instant now = Instant.now();
+        Thread.sleep(5);
+        return now;
+    }
+}
@@ -0,0 +1,92 @@
+package com.pedrogobira.beerstock.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final long START = 1_000_000;
+
+    @Test
+    void whenTheWheelAdvancesThenOnlyTheItemsDueAreReturned() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(Duration.ofMillis(TICK), START);
+        wheel.schedule("soon", START + 25);
+        wheel.schedule("later", START + 100);
+
+        // When
+        List<String> early = wheel.advance(START + 20);
+        List<String> due = wheel.advance(START + 30);
+
+        // Then
+        assertThat(early, is(empty()));
+        assertThat(due, contains("soon"));
+        assertThat(wheel.size(), is(equalTo(1)));
+    }
+
+    @Test
+    void whenItemsAreDueOnEveryWheelThenEachIsReturnedOnTheTickOfItsDeadline() {
+        // Given
+        TimingWheel<Long> wheel = new TimingWheel<>(Duration.ofMillis(TICK), START);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long ticks = 1 + (long) Math.pow(TimingWheel.SLOTS, random.nextDouble() * 3.5);
+            deadlines.add(START + ticks * TICK);
+        }
+        deadlines.forEach(deadline -> wheel.schedule(deadline, deadline));
+
+        // When
+        long last = deadlines.stream().mapToLong(Long::longValue).max().orElseThrow();
+        List<Long> late = new ArrayList<>();
+        int returned = 0;
+        for (long now = START + TICK; now <= last; now += TICK * 7) {
+            for (Long deadline : wheel.advance(now)) {
+                returned++;
+                if (deadline > now || deadline <= now - TICK * 7) late.add(deadline);
+            }
+        }
+
+        // Then
+        assertThat(late, is(empty()));
+        assertThat(returned + wheel.advance(last).size(), is(equalTo(deadlines.size())));
+        assertThat(wheel.size(), is(equalTo(0)));
+    }
+
+    @Test
+    void whenAnItemIsDueBeyondTheLastWheelThenItWaitsForItsDeadline() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(Duration.ofMillis(1), 0);
+        long span = 1L << (TimingWheel.SLOT_BITS * TimingWheel.LEVELS);
+        wheel.schedule("far", span * 2 + 5);
+
+        // When
+        List<String> early = wheel.advance(span * 2 + 4);
+        List<String> due = wheel.advance(span * 2 + 5);
+
+        // Then
+        assertThat(early, is(empty()));
+        assertThat(due, contains("far"));
+    }
+
+    @Test
+    void whenTheDeadlineHasPassedThenTheItemIsDueOnTheNextAdvance() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(Duration.ofMillis(TICK), START);
+        wheel.advance(START + 100);
+
+        // When
+        wheel.schedule("overdue", START);
+
+        // Then
+        assertThat(wheel.advance(START + 100 + TICK), contains("overdue"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.pedrogobira.beerstock.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TrigramIndexTest {
+
+    private static final double MIN_SCORE = 0.5;
+
+    @Test
+    void whenTheQueryHasATypoThenTheBeerIsStillFound() {
+        // Given
+        TrigramIndex index = index();
+
+        // When
+        List<String> names = names(index.search("heinekne", 3, MIN_SCORE));
+
+        // Then
+        assertThat(names.get(0), is(equalTo("Heineken")));
+    }
+
+    @Test
+    void whenTheQueryIsTheStartOfAWordThenBeersStartingWithItRankFirst() {
+        // Given
+        TrigramIndex index = index();
+
+        // When
+        List<String> names = names(index.search("bra", 10, MIN_SCORE));
+
+        // Then
+        assertThat(names, contains("Brahma", "Brahma Duplo Malte"));
+    }
+
+    @Test
+    void whenTheQueryMatchesTheBrandThenItsBeersAreFound() {
+        // Given
+        TrigramIndex index = index();
+
+        // When
+        List<String> names = names(index.search("ambev", 10, MIN_SCORE));
+
+        // Then
+        assertThat(names, containsInAnyOrder("Brahma", "Brahma Duplo Malte", "Skol"));
+    }
+
+    @Test
+    void whenAccentsAndCaseDifferThenTheyAreIgnored() {
+        // Given
+        TrigramIndex index = index();
+
+        // When
+        List<String> names = names(index.search("CERVEJA SAO", 1, MIN_SCORE));
+
+        // Then
+        assertThat(names, contains("Cerveja São Paulo"));
+    }
+
+    @Test
+    void whenABeerIsRenamedOrRemovedThenOnlyItsCurrentNameIsFound() {
+        // Given
+        TrigramIndex index = index();
+
+        // When
+        index.put(1L, "Brahma Extra", "Ambev");
+        index.remove(3L);
+
+        // Then
+        assertThat(names(index.search("brahma extra", 10, 0.9)), contains("Brahma Extra"));
+        assertThat(index.search("skol", 10, MIN_SCORE), is(empty()));
+        assertThat(index.size(), is(equalTo(4)));
+    }
+
+    @Test
+    void whenMostBeersAreRemovedThenTheIndexIsCompactedAndStillAnswers() {
+        // Given
+        TrigramIndex index = new TrigramIndex();
+        for (long id = 0; id < 5_000; id++) {
+            index.put(id, "Beer " + id, "Brand " + id % 10);
+        }
+
+        // When
+        for (long id = 0; id < 5_000; id++) {
+            if (id % 100 != 0) index.remove(id);
+        }
+
+        // Then
+        assertThat(index.size(), is(equalTo(50)));
+        assertThat(index.search("beer 4200", 1, MIN_SCORE).get(0).getId(), is(equalTo(4200L)));
+        assertThat(index.footprint().getBeers(), is(equalTo(50)));
+    }
+
+    private static TrigramIndex index() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(1L, "Brahma", "Ambev");
+        index.put(2L, "Brahma Duplo Malte", "Ambev");
+        index.put(3L, "Skol", "Ambev");
+        index.put(4L, "Heineken", "Heineken");
+        index.put(5L, "Cerveja São Paulo", "Paulistânia");
+        return index;
+    }
+
+    private static List<String> names(List<TrigramIndex.Match> matches) {
+        return matches.stream().map(TrigramIndex.Match::getName).collect(Collectors.toList());
+    }
+}